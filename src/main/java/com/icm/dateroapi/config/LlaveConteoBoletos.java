@@ -0,0 +1,60 @@
+package com.icm.dateroapi.config;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/*
+ * El upsert del contador de boletos depende de la llave unica (bus, boleto, dia). ddl-auto
+ * no la puede crear si la tabla ya tiene filas repetidas, y sin ella cada volcado insertaria
+ * otra fila. Al arrancar se juntan los repetidos en la fila de menor id y se crea la llave;
+ * si aun asi no existe, la aplicacion no arranca.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class LlaveConteoBoletos {
+    private static final Logger log = LoggerFactory.getLogger(LlaveConteoBoletos.class);
+    public static final String TABLA = "conteo_boletos";
+    public static final String LLAVE = "uk_conteo_bus_boleto_dia";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PostConstruct
+    public void verificar() {
+        if (existe()) {
+            return;
+        }
+        // Las filas sin dia no chocan con la llave (NULL no se repite) y se dejan como estan
+        Integer borradas = new TransactionTemplate(transactionManager).execute(status -> {
+            jdbcTemplate.update("UPDATE " + TABLA + " c JOIN (" +
+                    "SELECT MIN(id) AS id, SUM(COALESCE(conteo, 0)) AS conteo, SUM(COALESCE(total_acumulado, 0)) AS total " +
+                    "FROM " + TABLA + " WHERE dia IS NOT NULL GROUP BY buses, boletos, dia HAVING COUNT(*) > 1) d " +
+                    "ON d.id = c.id SET c.conteo = d.conteo, c.total_acumulado = d.total");
+            return jdbcTemplate.update("DELETE c FROM " + TABLA + " c JOIN " + TABLA + " k " +
+                    "ON k.buses = c.buses AND k.boletos = c.boletos AND k.dia = c.dia AND k.id < c.id");
+        });
+        if (borradas != null && borradas > 0) {
+            log.warn("Se juntaron {} filas repetidas de {} antes de crear la llave {}", borradas, TABLA, LLAVE);
+        }
+        jdbcTemplate.execute("ALTER TABLE " + TABLA + " ADD CONSTRAINT " + LLAVE + " UNIQUE (buses, boletos, dia)");
+        if (!existe()) {
+            throw new IllegalStateException("No existe la llave " + LLAVE + " en " + TABLA + "; el conteo de boletos duplicaria filas");
+        }
+    }
+
+    private boolean existe() {
+        Integer indices = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.statistics " +
+                "WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ?", Integer.class, TABLA, LLAVE);
+        return indices != null && indices > 0;
+    }
+}
@@ -20,12 +20,20 @@ public class MqttConfig {
     @Value("${mqtt.topic}")
     private String topic;
 
+    // Fijo para que el broker conserve la sesion (suscripciones y QoS 1 pendientes) entre reconexiones
+    @Value("${mqtt.client-id:}")
+    private String clientId;
+
     @Bean
     public MqttClient mqttClient() throws MqttException {
         MqttConnectOptions options = new MqttConnectOptions();
         options.setServerURIs(new String[]{serverUri});
+        // Paho reintenta solo si se cae el broker; MqttSubscriber vuelve a suscribir al reconectar
+        options.setAutomaticReconnect(true);
+        options.setCleanSession(false);
 
-        MqttClient client = new MqttClient(serverUri, MqttClient.generateClientId(), new MemoryPersistence());
+        String id = clientId.isBlank() ? MqttClient.generateClientId() : clientId;
+        MqttClient client = new MqttClient(serverUri, id, new MemoryPersistence());
         try {
             client.connect(options);
         } catch (MqttException e) {
@@ -1,18 +1,43 @@
 package com.icm.dateroapi.config.MQTT;
 
+import com.icm.dateroapi.services.TelemetriaService;
+import jakarta.annotation.PreDestroy;
 import org.eclipse.paho.client.mqttv3.IMqttClient;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
 import org.eclipse.paho.client.mqttv3.IMqttMessageListener;
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 @Component
 public class MqttSubscriber {
+    private static final Logger log = LoggerFactory.getLogger(MqttSubscriber.class);
 
     @Autowired
     private IMqttClient mqttClient;
 
+    @Autowired
+    private TelemetriaService telemetriaService;
+
+    // Los callbacks de Paho corren en sus hilos de red: un subscribe bloqueante ahi no recibe el SUBACK
+    private final ExecutorService resuscripcion = Executors.newSingleThreadExecutor(r -> {
+        Thread hilo = new Thread(r, "mqtt-resuscripcion");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    @PreDestroy
+    public void detener() {
+        resuscripcion.shutdownNow();
+    }
+
     public void subscribeToTopic(String topic) {
         try {
             mqttClient.subscribe(topic, new IMqttMessageListener() {
@@ -27,4 +52,48 @@ public class MqttSubscriber {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    // Suscripcion con comodines a posiciones y boletos de todas las empresas y buses.
+    // Paho reconecta solo; al reconectar se vuelve a suscribir por si el broker perdio la sesion
+    public void subscribeTelemetria() {
+        mqttClient.setCallback(new MqttCallbackExtended() {
+            @Override
+            public void connectComplete(boolean reconnect, String serverURI) {
+                telemetriaService.registrarConexion(reconnect);
+                if (reconnect) {
+                    log.info("Reconectado a {}, se vuelve a suscribir la telemetria", serverURI);
+                    resuscripcion.execute(MqttSubscriber.this::suscribirTopicos);
+                }
+            }
+
+            @Override
+            public void connectionLost(Throwable cause) {
+                telemetriaService.registrarDesconexion();
+                log.warn("Se perdio la conexion MQTT, reintentando", cause);
+            }
+
+            // Los mensajes llegan por el listener de cada suscripcion
+            @Override
+            public void messageArrived(String topic, MqttMessage message) {
+            }
+
+            @Override
+            public void deliveryComplete(IMqttDeliveryToken token) {
+            }
+        });
+        if (mqttClient.isConnected()) {
+            telemetriaService.registrarConexion(false);
+        }
+        suscribirTopicos();
+    }
+
+    private void suscribirTopicos() {
+        for (String topico : telemetriaService.getTopicos()) {
+            try {
+                mqttClient.subscribe(topico, 1, (topic, message) -> telemetriaService.recibir(topic, message.getPayload()));
+            } catch (MqttException e) {
+                log.error("No se pudo suscribir a {}", topico, e);
+            }
+        }
+    }
+}
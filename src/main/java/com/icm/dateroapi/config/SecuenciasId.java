@@ -0,0 +1,45 @@
+package com.icm.dateroapi.config;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/*
+ * Ids por tabla para las entidades de alto volumen. Con IDENTITY Hibernate tiene que
+ * insertar fila por fila para leer el id; con un generador de tabla reserva un bloque
+ * de ids de una vez y puede mandar los INSERT en lote.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class SecuenciasId {
+    public static final String TABLA = "secuencias_id";
+    public static final String NOMBRE = "nombre";
+    public static final String VALOR = "siguiente";
+    public static final int BLOQUE = 100;
+
+    public static final String REGISTRO_RUTA = "registro_ruta";
+    public static final String TIEMPO_RUTA = "tiemporuta";
+    public static final String HISTORIAL_POSICION = "historial_posicion";
+    // Catalogos que se cargan por importacion masiva
+    public static final String PARADEROS = "paraderos";
+    public static final String RUTAS = "rutas";
+    public static final String RP = "rp";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Las tablas ya tienen filas con ids de AUTO_INCREMENT: el contador arranca por encima del mayor
+    @PostConstruct
+    public void alinear() {
+        for (String tabla : List.of(REGISTRO_RUTA, TIEMPO_RUTA, HISTORIAL_POSICION, PARADEROS, RUTAS, RP)) {
+            jdbcTemplate.update("INSERT INTO " + TABLA + " (" + NOMBRE + ", " + VALOR + ") " +
+                    "SELECT ?, COALESCE(MAX(id), 0) + ? FROM " + tabla + " " +
+                    "ON DUPLICATE KEY UPDATE " + VALOR + " = GREATEST(" + VALOR + ", VALUES(" + VALOR + "))",
+                    tabla, 2 * BLOQUE);
+        }
+    }
+}
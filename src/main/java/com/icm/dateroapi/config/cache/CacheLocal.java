@@ -0,0 +1,126 @@
+package com.icm.dateroapi.config.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+// Cache de lectura con limite de entradas y vencimiento; los metodos de escritura la invalidan
+public class CacheLocal<K, V> {
+    private final String nombre;
+    private final int maximo;
+    private final long ttlMs;
+    private final ConcurrentHashMap<K, Entrada<V>> entradas = new ConcurrentHashMap<>();
+
+    // Una carga que empezo antes de una invalidacion no debe dejar el valor viejo guardado
+    private final AtomicLong generacion = new AtomicLong();
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder expulsiones = new LongAdder();
+    private final LongAdder invalidaciones = new LongAdder();
+
+    public CacheLocal(String nombre, int maximo, long ttlMs) {
+        this.nombre = nombre;
+        this.maximo = maximo;
+        this.ttlMs = ttlMs;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public V obtener(K clave, Function<K, V> cargador) {
+        long ahora = System.currentTimeMillis();
+        Entrada<V> entrada = entradas.get(clave);
+        if (entrada != null && entrada.expira > ahora) {
+            entrada.ultimoAcceso = ahora;
+            aciertos.increment();
+            return entrada.valor;
+        }
+        fallos.increment();
+        long vista = generacion.get();
+        V valor = cargador.apply(clave);
+        // Un Optional vacio no se guarda: los create no invalidan por id y el registro nuevo no se veria
+        if (valor != null && !(valor instanceof Optional<?> opcional && opcional.isEmpty())) {
+            // La generacion se revisa dentro del compute: invalidar incrementa la generacion antes de
+            // quitar la clave, asi o este compute ve la generacion nueva o la invalidacion lo quita despues
+            entradas.compute(clave, (k, actual) -> generacion.get() == vista
+                    ? new Entrada<>(valor, ahora + ttlMs, ahora) : actual);
+            if (entradas.size() > maximo) {
+                recortar(ahora);
+            }
+        }
+        return valor;
+    }
+
+    public void invalidar(K clave) {
+        generacion.incrementAndGet();
+        if (entradas.remove(clave) != null) {
+            invalidaciones.increment();
+        }
+    }
+
+    public void invalidarTodo() {
+        generacion.incrementAndGet();
+        int tamanio = entradas.size();
+        entradas.clear();
+        invalidaciones.add(tamanio);
+    }
+
+    // Primero lo vencido; si no alcanza, lo que lleva mas tiempo sin leerse
+    private void recortar(long ahora) {
+        entradas.entrySet().removeIf(e -> {
+            if (e.getValue().expira <= ahora) {
+                expulsiones.increment();
+                return true;
+            }
+            return false;
+        });
+        while (entradas.size() > maximo) {
+            K menosUsada = null;
+            long masAntiguo = Long.MAX_VALUE;
+            for (Map.Entry<K, Entrada<V>> e : entradas.entrySet()) {
+                if (e.getValue().ultimoAcceso < masAntiguo) {
+                    masAntiguo = e.getValue().ultimoAcceso;
+                    menosUsada = e.getKey();
+                }
+            }
+            if (menosUsada == null || entradas.remove(menosUsada) == null) {
+                break;
+            }
+            expulsiones.increment();
+        }
+    }
+
+    public Map<String, Object> getMetricas() {
+        long a = aciertos.sum();
+        long f = fallos.sum();
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("nombre", nombre);
+        metricas.put("entradas", entradas.size());
+        metricas.put("maximo", maximo);
+        metricas.put("ttlMs", ttlMs);
+        metricas.put("aciertos", a);
+        metricas.put("fallos", f);
+        metricas.put("tasaAciertos", a + f == 0 ? 0.0 : (double) a / (a + f));
+        metricas.put("expulsiones", expulsiones.sum());
+        metricas.put("invalidaciones", invalidaciones.sum());
+        return metricas;
+    }
+
+    private static class Entrada<V> {
+        private final V valor;
+        private final long expira;
+        private volatile long ultimoAcceso;
+
+        private Entrada(V valor, long expira, long ultimoAcceso) {
+            this.valor = valor;
+            this.expira = expira;
+            this.ultimoAcceso = ultimoAcceso;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.icm.dateroapi.config.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Caches por nombre ("boletos.id", "rp.xruta"...) para que un servicio pueda invalidar las de otro sin depender de el
+@Component
+public class CacheRegistro {
+    @Value("${cache.catalogo.maximo:1000}")
+    private int maximo;
+
+    @Value("${cache.catalogo.ttl-ms:600000}")
+    private long ttlMs;
+
+    private final Map<String, CacheLocal<?, ?>> caches = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public <K, V> CacheLocal<K, V> crear(String nombre) {
+        return (CacheLocal<K, V>) caches.computeIfAbsent(nombre, n -> new CacheLocal<K, V>(n, maximo, ttlMs));
+    }
+
+    public void invalidar(String... prefijos) {
+        for (CacheLocal<?, ?> cache : caches.values()) {
+            for (String prefijo : prefijos) {
+                if (cache.getNombre().startsWith(prefijo)) {
+                    cache.invalidarTodo();
+                    break;
+                }
+            }
+        }
+    }
+
+    public List<Map<String, Object>> getMetricas() {
+        List<Map<String, Object>> metricas = new ArrayList<>();
+        caches.values().stream()
+                .sorted((a, b) -> a.getNombre().compareTo(b.getNombre()))
+                .forEach(c -> metricas.add(c.getMetricas()));
+        return metricas;
+    }
+}
@@ -0,0 +1,49 @@
+package com.icm.dateroapi.config.cache;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Version en memoria por recurso ("paraderos", "rp:5"...) para responder 304 sin leer la base.
+// El arranque entra en el ETag: al reiniciar todas las versiones vuelven a cero y los clientes recargan una vez.
+@Component
+public class VersionesRecurso {
+    private final String arranque = Long.toString(System.currentTimeMillis(), 36);
+    private final ConcurrentHashMap<String, AtomicLong> versiones = new ConcurrentHashMap<>();
+
+    public void incrementar(String... recursos) {
+        for (String recurso : recursos) {
+            versiones.computeIfAbsent(recurso, r -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    // Un recurso puede depender de varios contadores, por ejemplo "rp" (todas las rutas) y "rp:5"
+    public String etag(String... recursos) {
+        StringBuilder sb = new StringBuilder("\"").append(arranque);
+        for (String recurso : recursos) {
+            AtomicLong version = versiones.get(recurso);
+            sb.append('-').append(version == null ? 0 : version.get());
+        }
+        return sb.append('"').toString();
+    }
+
+    public static boolean coincide(String siNoCoincide, String etag) {
+        if (siNoCoincide == null || siNoCoincide.isBlank()) {
+            return false;
+        }
+        for (String valor : siNoCoincide.split(",")) {
+            String v = valor.trim();
+            if (v.equals("*")) {
+                return true;
+            }
+            if (v.startsWith("W/")) {
+                v = v.substring(2);
+            }
+            if (v.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,29 @@
+package com.icm.dateroapi.controller;
+
+import com.icm.dateroapi.dto.EspaciadoBus;
+import com.icm.dateroapi.services.AgrupamientoService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("api/agrupamiento")
+public class AgrupamientoController {
+    @Autowired
+    private AgrupamientoService agrupamientoService;
+
+    @GetMapping("/ruta/{ruta}")
+    public List<EspaciadoBus> GetEspaciado(@PathVariable Long ruta){
+        return agrupamientoService.getEspaciado(ruta);
+    }
+
+    @GetMapping("/metricas")
+    public Map<String, Object> GetMetricas(){
+        return agrupamientoService.getMetricas();
+    }
+}
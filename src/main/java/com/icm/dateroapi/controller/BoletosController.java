@@ -1,8 +1,12 @@
 package com.icm.dateroapi.controller;
 
+import com.icm.dateroapi.config.cache.VersionesRecurso;
+import com.icm.dateroapi.dto.BoletoDTO;
 import com.icm.dateroapi.models.BoletosModel;
 import com.icm.dateroapi.services.BoletosService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -17,7 +21,7 @@ public class BoletosController {
     private BoletosService boletosService;
 
     @GetMapping
-    public List<BoletosModel> GetAll(){
+    public List<BoletoDTO> GetAll(){
         return boletosService.getAll();
     }
 
@@ -31,8 +35,13 @@ public class BoletosController {
     }
 
     @GetMapping("/xempresaAndRuta/{empresaid}/{ruta}")
-    public List<BoletosModel> GetxEmpresaAndEstado(@PathVariable Long empresaid, @PathVariable Long ruta){
-        return boletosService.getByEmpresaAndRuta(empresaid, ruta);
+    public ResponseEntity<List<BoletoDTO>> GetxEmpresaAndEstado(@PathVariable Long empresaid, @PathVariable Long ruta,
+                                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String siNoCoincide){
+        String etag = boletosService.getEtagxEmpresaAndRuta(empresaid, ruta);
+        if (VersionesRecurso.coincide(siNoCoincide, etag)){
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(boletosService.getByEmpresaAndRuta(empresaid, ruta));
     }
 
     @PostMapping
@@ -1,16 +1,29 @@
 package com.icm.dateroapi.controller;
 
+import com.icm.dateroapi.dto.PaginaCursor;
+import com.icm.dateroapi.dto.BusDTO;
+import com.icm.dateroapi.dto.PosicionBus;
+import com.icm.dateroapi.dto.PosicionLote;
+import com.icm.dateroapi.dto.PuntoHistorial;
+import com.icm.dateroapi.dto.ResultadoCercania;
 import com.icm.dateroapi.models.BusesModel;
 import com.icm.dateroapi.services.BusesService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -20,7 +33,7 @@ public class BusesController {
     private BusesService busesService;
 
     @GetMapping
-    public List<BusesModel> GetAll(){
+    public List<BusDTO> GetAll(){
         return busesService.getAll();
     }
 
@@ -34,25 +47,44 @@ public class BusesController {
     }
 
     @GetMapping("/xempresa/{empresaid}")
-    public List<BusesModel> GetxEmpresa(@PathVariable Long empresaid){
+    public List<BusDTO> GetxEmpresa(@PathVariable Long empresaid){
         return busesService.getByEmpresa(empresaid);
     }
 
+    // Foto inicial de la flota y luego solo los cambios, para las pantallas de despacho
+    @GetMapping(value = "/stream/{empresaid}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter StreamxEmpresa(@PathVariable Long empresaid) throws IOException {
+        return busesService.suscribirFlota(empresaid);
+    }
+
     @GetMapping("/xempresaAndEstado/{empresaid}/{estado}")
-    public List<BusesModel> GetxEmpresaAndEstado(@PathVariable Long empresaid, @PathVariable Boolean estado){
+    public List<BusDTO> GetxEmpresaAndEstado(@PathVariable Long empresaid, @PathVariable Boolean estado){
         return busesService.getByEmpresaAndEstado(empresaid, estado);
     }
 
     @GetMapping("/xempresaP/{empresaid}")
-    public Page<BusesModel> GetxEmpresaP(@PathVariable Long empresaid ,
+    public Page<BusDTO> GetxEmpresaP(@PathVariable Long empresaid ,
                                         @RequestParam(defaultValue = "0") int page,
                                         @RequestParam(defaultValue = "6") int size){
         Pageable pageable = PageRequest.of(page, size);
         return busesService.getByEmpresa(empresaid, pageable );
     }
 
+    // Con after pagina por cursor: el costo no crece con la pagina y el total es opcional
+    @GetMapping(value = "/xempresaP/{empresaid}", params = "after")
+    public ResponseEntity<PaginaCursor<BusDTO>> GetxEmpresaC(@PathVariable Long empresaid,
+            @RequestParam String after,
+            @RequestParam(defaultValue = "6") int size,
+            @RequestParam(defaultValue = "false") boolean conteo){
+        try {
+            return new ResponseEntity<>(busesService.getByEmpresa(empresaid, after, size, conteo), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
     @GetMapping("/xempresaAndEstadoP/{empresaid}/{estado}")
-    public Page<BusesModel> GetxEmpresaAndEstadoP(@PathVariable Long empresaid,
+    public Page<BusDTO> GetxEmpresaAndEstadoP(@PathVariable Long empresaid,
                                                  @PathVariable Boolean estado,
                                                  @RequestParam(defaultValue = "0") int page,
                                                  @RequestParam(defaultValue = "6") int size){
@@ -60,6 +92,19 @@ public class BusesController {
         return busesService.getByEmpresaAndEstado(empresaid, estado, pageable);
     }
 
+    @GetMapping(value = "/xempresaAndEstadoP/{empresaid}/{estado}", params = "after")
+    public ResponseEntity<PaginaCursor<BusDTO>> GetxEmpresaAndEstadoC(@PathVariable Long empresaid,
+            @PathVariable Boolean estado,
+            @RequestParam String after,
+            @RequestParam(defaultValue = "6") int size,
+            @RequestParam(defaultValue = "false") boolean conteo){
+        try {
+            return new ResponseEntity<>(busesService.getByEmpresaAndEstado(empresaid, estado, after, size, conteo), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
     @PostMapping
     public ResponseEntity<BusesModel> CrearB(@RequestBody BusesModel busesModel){
         BusesModel cbus = busesService.createBus(busesModel);
@@ -75,13 +120,82 @@ public class BusesController {
         return null;
     }
 
+    // Con k devuelve los k buses mas cercanos dentro del radio, sin k los del radio hasta el maximo
+    // de cercania.k-max; solo buses con pings recientes. radio o k fuera de los maximos dan 400
+    @GetMapping("/cerca")
+    public ResponseEntity<List<ResultadoCercania>> GetCerca(@RequestParam double latitud,
+                                            @RequestParam double longitud,
+                                            @RequestParam(required = false) Integer k,
+                                            @RequestParam(defaultValue = "1000") double radio){
+        try {
+            return new ResponseEntity<>(busesService.getCercanos(latitud, longitud, k, radio), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    // Fechas en hora de Peru, por ejemplo 2024-05-10T06:00:00
+    // tolerancia (metros) simplifica con Douglas-Peucker, maxPuntos limita por intervalos de tiempo
+    @GetMapping("/historial/{id}")
+    public ResponseEntity<List<PuntoHistorial>> GetHistorial(@PathVariable Long id,
+                                                             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+                                                             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta,
+                                                             @RequestParam(required = false) Double tolerancia,
+                                                             @RequestParam(defaultValue = "500") Integer maxPuntos){
+        try {
+            return new ResponseEntity<>(busesService.getHistorial(id, aMilis(desde), aMilis(hasta), tolerancia, maxPuntos), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @GetMapping("/historial/xruta/{rutaId}")
+    public ResponseEntity<Map<Long, List<PuntoHistorial>>> GetHistorialxRuta(@PathVariable Long rutaId,
+                                                                             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+                                                                             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta,
+                                                                             @RequestParam(required = false) Double tolerancia,
+                                                                             @RequestParam(defaultValue = "500") Integer maxPuntos){
+        try {
+            return new ResponseEntity<>(busesService.getHistorialxRuta(rutaId, aMilis(desde), aMilis(hasta), tolerancia, maxPuntos), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    private long aMilis(LocalDateTime fecha){
+        return fecha.atZone(ZoneId.of("America/Lima")).toInstant().toEpochMilli();
+    }
+
+    @GetMapping("pos/{id}")
+    public ResponseEntity<PosicionBus> GetPos(@PathVariable Long id){
+        Optional<PosicionBus> posicion = busesService.getPosicion(id);
+        if (posicion.isPresent()){
+            return new ResponseEntity<>(posicion.get(), HttpStatus.OK);
+        }
+        return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+
     @PutMapping("pos/{id}")
-    public ResponseEntity<BusesModel> EditarPos(@RequestBody BusesModel busesModel, @PathVariable Long id){
-        BusesModel ebus = busesService.editarPosicionamiento(busesModel, id);
-        if (ebus!=null){
-            return new ResponseEntity<>(ebus, HttpStatus.OK);
+    public ResponseEntity<PosicionBus> EditarPos(@RequestBody BusesModel busesModel, @PathVariable Long id){
+        if (busesModel.getLatitud() == null || busesModel.getLongitud() == null){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        PosicionBus posicion = busesService.editarPosicionamiento(busesModel, id);
+        if (posicion!=null){
+            return new ResponseEntity<>(posicion, HttpStatus.OK);
+        }
+        return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+
+    // Reenvio en bloque de posiciones con su fecha (ms epoch) tras recuperar senal.
+    // Como el PUT de una posicion, sin latitud o longitud (o con mas de buses.posicion.lote-max) da 400
+    @PostMapping("pos/lote")
+    public ResponseEntity<Map<String, Object>> EditarPosLote(@RequestBody List<PosicionLote> posiciones){
+        try {
+            return new ResponseEntity<>(busesService.actualizarPosiciones(posiciones), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
-        return null;
     }
 
     @DeleteMapping("/{id}")
@@ -0,0 +1,22 @@
+package com.icm.dateroapi.controller;
+
+import com.icm.dateroapi.config.cache.CacheRegistro;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("api/cache")
+public class CacheController {
+    @Autowired
+    private CacheRegistro cacheRegistro;
+
+    @GetMapping("/metricas")
+    public List<Map<String, Object>> GetMetricas(){
+        return cacheRegistro.getMetricas();
+    }
+}
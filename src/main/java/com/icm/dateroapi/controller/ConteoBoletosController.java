@@ -1,13 +1,23 @@
 package com.icm.dateroapi.controller;
 
+import com.icm.dateroapi.dto.ConteoBoletosDTO;
+import com.icm.dateroapi.dto.EventoBoleto;
 import com.icm.dateroapi.models.ConteoBoletosModel;
 
 import com.icm.dateroapi.services.ConteoBoletosService;
+import com.icm.dateroapi.services.EventosBoletoService;
+import com.icm.dateroapi.services.ExportacionService;
+import com.icm.dateroapi.services.IngestaAsincronaService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -15,14 +25,36 @@ import java.util.Optional;
 @RestController
 @RequestMapping("api/conteoB")
 public class ConteoBoletosController {
+    @Autowired
+    private ExportacionService exportacionService;
+    @Autowired
+    private EventosBoletoService eventosBoletoService;
     @Autowired
     private ConteoBoletosService conteoBoletosService;
+    @Autowired
+    private IngestaAsincronaService ingestaAsincronaService;
 
     @GetMapping
-    public List<ConteoBoletosModel> getAllCB(){
+    public List<ConteoBoletosDTO> getAllCB(){
         return conteoBoletosService.getAll();
     }
 
+    // Exportacion completa en NDJSON o CSV, escrita por partes
+    @GetMapping("/exportar")
+    public ResponseEntity<StreamingResponseBody> exportar(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+                                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+                                                          @RequestParam(defaultValue = "ndjson") String formato){
+        MediaType tipo = ExportacionService.tipo(formato);
+        if (tipo == null){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        StreamingResponseBody cuerpo = exportacionService.<ConteoBoletosDTO>exportar(formato, destino -> conteoBoletosService.exportar(desde, hasta, destino));
+        return ResponseEntity.ok()
+                .contentType(tipo)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"conteo-boletos." + formato.toLowerCase() + "\"")
+                .body(cuerpo);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<ConteoBoletosModel> getCBId(@PathVariable Long id){
         Optional<ConteoBoletosModel> conteoB = conteoBoletosService.getById(id);
@@ -33,7 +65,7 @@ public class ConteoBoletosController {
     }
 
     @GetMapping("/last-7-days")
-    public List<ConteoBoletosModel> findLast7DaysRecords() {
+    public List<ConteoBoletosDTO> findLast7DaysRecords() {
         return conteoBoletosService.findLast7DaysRecords();
     }
 
@@ -47,8 +79,19 @@ public class ConteoBoletosController {
         return conteoBoletosService.findRecordsInCurrentMonth(busId);
     }
 
+    @GetMapping("/resumen-mensual/{busId}")
+    public List<Map<String, Object>> getMonthlySummary(@PathVariable Long busId) {
+        return conteoBoletosService.findMonthlySummary(busId);
+    }
+
+    @PostMapping("/resumenes/reconstruir")
+    public ResponseEntity<Void> reconstruirResumenes() {
+        conteoBoletosService.reconstruirResumenes();
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+
     @GetMapping("/conteoPorBusYFechaActual/{bus}")
-    public List<ConteoBoletosModel> obtenerConteoPorBusIdYFechaActual(@PathVariable Long bus) {
+    public List<ConteoBoletosDTO> obtenerConteoPorBusIdYFechaActual(@PathVariable Long bus) {
         return conteoBoletosService.obtenerConteoPorBusIdYFechaActual(bus);
     }
 
@@ -59,8 +102,40 @@ public class ConteoBoletosController {
     }
 
     @PostMapping("/aumentar")
-    public ConteoBoletosModel aumentarBoleto(@RequestBody ConteoBoletosModel conteoBoletosModel) {
-        return conteoBoletosService.aumentarBoleto(conteoBoletosModel);
+    public ResponseEntity<ConteoBoletosModel> aumentarBoleto(@RequestBody ConteoBoletosModel conteoBoletosModel) {
+        try {
+            return new ResponseEntity<>(conteoBoletosService.aumentarBoleto(conteoBoletosModel), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    // Modo asincrono: se acepta la venta y se aplica despues; ver /api/ingesta/metricas
+    @PostMapping(value = "/aumentar", params = "async=true")
+    public ResponseEntity<Void> aumentarBoletoAsync(@RequestBody ConteoBoletosModel conteoBoletosModel) {
+        try {
+            if (ingestaAsincronaService.encolarVenta(conteoBoletosModel)) {
+                return new ResponseEntity<>(HttpStatus.ACCEPTED);
+            }
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    // Ventas acumuladas sin senal; reenviar el mismo lote no vuelve a sumar
+    @PostMapping("/lote")
+    public ResponseEntity<Map<String, Object>> registrarLote(@RequestBody List<EventoBoleto> eventos) {
+        try {
+            return new ResponseEntity<>(eventosBoletoService.registrarLote(eventos), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @GetMapping("/lote/metricas")
+    public Map<String, Object> metricasLote() {
+        return eventosBoletoService.getMetricas();
     }
 
     @PutMapping("/{id}")
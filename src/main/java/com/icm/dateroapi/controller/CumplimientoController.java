@@ -0,0 +1,45 @@
+package com.icm.dateroapi.controller;
+
+import com.icm.dateroapi.dto.Cumplimiento;
+import com.icm.dateroapi.services.CumplimientoService;
+import com.icm.dateroapi.services.SeguidorTramos;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// Sin dia se toma el de hoy; solo se conservan los ultimos cumplimiento.dias
+@RestController
+@RequestMapping("api/cumplimiento")
+public class CumplimientoController {
+    @Autowired
+    private CumplimientoService cumplimientoService;
+
+    @GetMapping("/ruta/{ruta}")
+    public Cumplimiento GetRuta(@PathVariable Long ruta,
+                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dia){
+        return cumplimientoService.getRuta(ruta, dia != null ? dia : hoy());
+    }
+
+    @GetMapping("/ruta/{ruta}/paraderos")
+    public List<Cumplimiento> GetParaderos(@PathVariable Long ruta,
+                                           @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dia){
+        return cumplimientoService.getParaderos(ruta, dia != null ? dia : hoy());
+    }
+
+    @GetMapping("/ruta/{ruta}/paradero/{paradero}")
+    public Cumplimiento GetParadero(@PathVariable Long ruta, @PathVariable Long paradero,
+                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dia){
+        return cumplimientoService.getParadero(ruta, paradero, dia != null ? dia : hoy());
+    }
+
+    private static LocalDate hoy() {
+        return LocalDate.now(SeguidorTramos.ZONA_PERU);
+    }
+}
@@ -1,8 +1,11 @@
 package com.icm.dateroapi.controller;
 
+import com.icm.dateroapi.config.cache.VersionesRecurso;
 import com.icm.dateroapi.models.DistritosModel;
 import com.icm.dateroapi.services.DistritosService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -17,8 +20,12 @@ public class DistritosController {
     private DistritosService distritosService;
 
     @GetMapping
-    public List<DistritosModel> GetAllD(){
-        return distritosService.getAll();
+    public ResponseEntity<List<DistritosModel>> GetAllD(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String siNoCoincide){
+        String etag = distritosService.getEtag();
+        if (VersionesRecurso.coincide(siNoCoincide, etag)){
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(distritosService.getAll());
     }
 
     @GetMapping("/{id}")
@@ -0,0 +1,34 @@
+package com.icm.dateroapi.controller;
+
+import com.icm.dateroapi.dto.EstadisticaTramo;
+import com.icm.dateroapi.services.EstadisticasTramoService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("api/estadisticas")
+public class EstadisticasController {
+    @Autowired
+    private EstadisticasTramoService estadisticasTramoService;
+
+    // p50/p90/p99 en segundos por tramo, en el orden de la ruta
+    @GetMapping("/tramos")
+    public List<EstadisticaTramo> GetTramos(@RequestParam Long ruta,
+                                            @RequestParam(required = false) Integer diaSemana,
+                                            @RequestParam(required = false) Integer horaDesde,
+                                            @RequestParam(required = false) Integer horaHasta){
+        return estadisticasTramoService.reporte(ruta, diaSemana, horaDesde, horaHasta);
+    }
+
+    @PostMapping("/reconstruir")
+    public Map<String, Object> Reconstruir(@RequestParam(defaultValue = "60") int dias){
+        return Map.of("celdas", estadisticasTramoService.reconstruir(dias));
+    }
+}
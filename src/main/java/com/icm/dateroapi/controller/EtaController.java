@@ -0,0 +1,26 @@
+package com.icm.dateroapi.controller;
+
+import com.icm.dateroapi.dto.EtaBus;
+import com.icm.dateroapi.services.EtaService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("api/eta")
+public class EtaController {
+    @Autowired
+    private EtaService etaService;
+
+    @GetMapping("/paradero/{paraderoId}")
+    public List<EtaBus> GetProximos(@PathVariable Long paraderoId,
+                                    @RequestParam(required = false) Long ruta,
+                                    @RequestParam(defaultValue = "5") int limite){
+        return etaService.proximosBuses(paraderoId, ruta, Math.max(1, limite));
+    }
+}
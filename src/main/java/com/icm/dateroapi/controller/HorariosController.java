@@ -0,0 +1,57 @@
+package com.icm.dateroapi.controller;
+
+import com.icm.dateroapi.models.DespachosModel;
+import com.icm.dateroapi.models.HorariosModel;
+import com.icm.dateroapi.services.HorariosService;
+import com.icm.dateroapi.services.SeguidorTramos;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("api/horarios")
+public class HorariosController {
+    @Autowired
+    private HorariosService horariosService;
+
+    // Sin dia se toma el de hoy
+    @GetMapping("/ruta/{ruta}")
+    public List<HorariosModel> GetHorario(@PathVariable Long ruta,
+                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dia){
+        return horariosService.getHorario(ruta, dia != null ? dia : hoy());
+    }
+
+    @PostMapping("/generar")
+    public Map<String, Object> Generar(@RequestParam Long ruta,
+                                       @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dia){
+        return Map.of("pasos", horariosService.generar(ruta, dia != null ? dia : hoy()));
+    }
+
+    @GetMapping("/despachos/{ruta}")
+    public List<DespachosModel> GetDespachos(@PathVariable Long ruta){
+        return horariosService.getDespachos(ruta);
+    }
+
+    @PostMapping("/despachos")
+    public ResponseEntity<List<DespachosModel>> CrearDespachos(@RequestBody List<DespachosModel> despachos){
+        return new ResponseEntity<>(horariosService.guardarDespachos(despachos), HttpStatus.CREATED);
+    }
+
+    @DeleteMapping("/despachos/{id}")
+    public ResponseEntity<DespachosModel> EliminarDespacho(@PathVariable Long id){
+        if (horariosService.eliminarDespacho(id)) {
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+        return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+
+    private static LocalDate hoy() {
+        return LocalDate.now(SeguidorTramos.ZONA_PERU);
+    }
+}
@@ -1,13 +1,22 @@
 package com.icm.dateroapi.controller;
 
 
+import com.icm.dateroapi.config.cache.VersionesRecurso;
+import com.icm.dateroapi.dto.PaginaCursor;
+import com.icm.dateroapi.dto.ParaderoDTO;
+import com.icm.dateroapi.dto.ResultadoCercania;
+import com.icm.dateroapi.dto.ResultadoImportacion;
 import com.icm.dateroapi.models.ParaderosModel;
+import com.icm.dateroapi.services.ImportacionService;
 import com.icm.dateroapi.services.ParaderosService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -19,20 +28,54 @@ import java.util.Optional;
 public class ParaderosController {
     @Autowired
     private ParaderosService paraderosService;
+    @Autowired
+    private ImportacionService importacionService;
 
     @GetMapping
-    public List<ParaderosModel> ListarP(){
-        return paraderosService.getAll();
+    public ResponseEntity<List<ParaderoDTO>> ListarP(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String siNoCoincide){
+        String etag = paraderosService.getEtag();
+        if (VersionesRecurso.coincide(siNoCoincide, etag)){
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(paraderosService.getAll());
     }
 
     @GetMapping("/page")
-    public Page<ParaderosModel> findAll(
+    public Page<ParaderoDTO> findAll(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "6") int size) {
         Pageable pageable = PageRequest.of(page, size);
         return paraderosService.findAll(pageable);
     }
 
+    @GetMapping(value = "/page", params = "after")
+    public ResponseEntity<PaginaCursor<ParaderoDTO>> findAllC(@RequestParam String after,
+            @RequestParam(defaultValue = "6") int size,
+            @RequestParam(defaultValue = "false") boolean conteo){
+        try {
+            return new ResponseEntity<>(paraderosService.findAll(after, size, conteo), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    // Con k devuelve los k paraderos mas cercanos dentro del radio, sin k los del radio hasta el maximo
+    // de cercania.k-max; radio o k fuera de los maximos dan 400
+    @GetMapping("/cerca")
+    public ResponseEntity<List<ResultadoCercania>> GetCerca(@RequestParam double latitud,
+                                            @RequestParam double longitud,
+                                            @RequestParam(required = false) Integer k,
+                                            @RequestParam(defaultValue = "500") double radio){
+        try {
+            if (k != null){
+                return new ResponseEntity<>(paraderosService.getCercanos(latitud, longitud, k, radio), HttpStatus.OK);
+            }
+            return new ResponseEntity<>(paraderosService.getEnRadio(latitud, longitud, radio, Integer.MAX_VALUE), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<ParaderosModel> ListarPId(@PathVariable Long id){
         Optional<ParaderosModel> paraderos = paraderosService.getById(id);
@@ -44,7 +87,7 @@ public class ParaderosController {
     }
 
     @GetMapping("/xestado/{estado}")
-    public List<ParaderosModel> GetxEstado(@PathVariable Boolean estado){
+    public List<ParaderoDTO> GetxEstado(@PathVariable Boolean estado){
         return paraderosService.getByEstado(estado);
     }
     /*
@@ -54,19 +97,47 @@ public class ParaderosController {
     }
 */
     @GetMapping("/xestadoP/{estado}")
-    public Page<ParaderosModel> GetxEstadoP(@PathVariable Boolean estado,
+    public Page<ParaderoDTO> GetxEstadoP(@PathVariable Boolean estado,
                                             @RequestParam(defaultValue = "0") int page,
                                             @RequestParam(defaultValue = "6") int size){
         Pageable pageable = PageRequest.of(page, size);
         return paraderosService.getByEstado(estado, pageable);
     }
 
+    @GetMapping(value = "/xestadoP/{estado}", params = "after")
+    public ResponseEntity<PaginaCursor<ParaderoDTO>> GetxEstadoC(@PathVariable Boolean estado,
+            @RequestParam String after,
+            @RequestParam(defaultValue = "6") int size,
+            @RequestParam(defaultValue = "false") boolean conteo){
+        try {
+            return new ResponseEntity<>(paraderosService.getByEstado(estado, after, size, conteo), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
     @PostMapping
     public ResponseEntity<ParaderosModel> CrearE(@RequestBody ParaderosModel paraderosModel){
         ParaderosModel cparaderos = paraderosService.createParaderos(paraderosModel);
         return new ResponseEntity<>(cparaderos, HttpStatus.CREATED);
     }
 
+    // JSON (arreglo) o CSV con encabezado; si alguna fila tiene error no se guarda ninguna
+    @PostMapping(value = "/importar", consumes = {MediaType.APPLICATION_JSON_VALUE, ImportacionService.CSV})
+    public ResponseEntity<ResultadoImportacion> ImportarP(@RequestBody String cuerpo,
+                                                     @RequestHeader(HttpHeaders.CONTENT_TYPE) String tipo){
+        ResultadoImportacion resultado;
+        try {
+            resultado = importacionService.importarParaderos(importacionService.leer(cuerpo, ImportacionService.esCsv(tipo), ParaderoDTO.class));
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(new ResultadoImportacion(0, null, List.of(e.getMessage())), HttpStatus.BAD_REQUEST);
+        }
+        if (resultado.getErrores() != null) {
+            return new ResponseEntity<>(resultado, HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>(resultado, HttpStatus.CREATED);
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<ParaderosModel> EditarE(@RequestBody ParaderosModel paraderosModel, @PathVariable Long id){
         ParaderosModel eparaderos = paraderosService.editParaderos(paraderosModel, id);
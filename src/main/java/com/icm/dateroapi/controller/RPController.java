@@ -1,10 +1,17 @@
 package com.icm.dateroapi.controller;
 
 
+import com.icm.dateroapi.config.cache.VersionesRecurso;
+import com.icm.dateroapi.dto.RPDTO;
+import com.icm.dateroapi.dto.ResultadoImportacion;
 import com.icm.dateroapi.models.RPModel;
+import com.icm.dateroapi.services.ImportacionService;
 import com.icm.dateroapi.services.RPService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -16,9 +23,11 @@ import java.util.Optional;
 public class RPController {
     @Autowired
     private RPService rpService;
+    @Autowired
+    private ImportacionService importacionService;
 
     @GetMapping
-    public List<RPModel> ListarRP(){
+    public List<RPDTO> ListarRP(){
         return rpService.listarRP();
     }
 
@@ -32,8 +41,13 @@ public class RPController {
     }
 
     @GetMapping("xruta/{ruta}")
-    public List<RPModel> ListarPxR(@PathVariable("ruta") Long ruta){
-        return rpService.getByRutasId(ruta);
+    public ResponseEntity<List<RPDTO>> ListarPxR(@PathVariable("ruta") Long ruta,
+                                                 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String siNoCoincide){
+        String etag = rpService.getEtagxRuta(ruta);
+        if (VersionesRecurso.coincide(siNoCoincide, etag)){
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(rpService.getByRutasId(ruta));
     }
 
     @PostMapping
@@ -42,6 +56,22 @@ public class RPController {
         return new ResponseEntity<>(crp, HttpStatus.CREATED);
     }
 
+    // JSON (arreglo) o CSV con encabezado; si alguna fila tiene error no se guarda ninguna
+    @PostMapping(value = "/importar", consumes = {MediaType.APPLICATION_JSON_VALUE, ImportacionService.CSV})
+    public ResponseEntity<ResultadoImportacion> ImportarRP(@RequestBody String cuerpo,
+                                                     @RequestHeader(HttpHeaders.CONTENT_TYPE) String tipo){
+        ResultadoImportacion resultado;
+        try {
+            resultado = importacionService.importarRP(importacionService.leer(cuerpo, ImportacionService.esCsv(tipo), RPDTO.class));
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(new ResultadoImportacion(0, null, List.of(e.getMessage())), HttpStatus.BAD_REQUEST);
+        }
+        if (resultado.getErrores() != null) {
+            return new ResponseEntity<>(resultado, HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>(resultado, HttpStatus.CREATED);
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<RPModel> EditarRP(@RequestBody RPModel rpModel, @PathVariable Long id){
         RPModel erp = rpService.editarRP(rpModel, id);
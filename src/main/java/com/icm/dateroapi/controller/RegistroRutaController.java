@@ -1,26 +1,63 @@
 package com.icm.dateroapi.controller;
 
+import com.icm.dateroapi.dto.RegistroRutaDTO;
 import com.icm.dateroapi.models.RegistroRutaModel;
+import com.icm.dateroapi.services.DetectorLlegadasService;
+import com.icm.dateroapi.services.ExportacionService;
+import com.icm.dateroapi.services.IngestaAsincronaService;
 import com.icm.dateroapi.services.RegistroRutaService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
 @RequestMapping("api/registroRuta")
 public class RegistroRutaController {
+    @Autowired
+    private ExportacionService exportacionService;
     @Autowired
     private RegistroRutaService registroRutaService;
+    @Autowired
+    private IngestaAsincronaService ingestaAsincronaService;
+    @Autowired
+    private DetectorLlegadasService detectorLlegadasService;
 
     @GetMapping
-    public List<RegistroRutaModel> GetAllCB(){
+    public List<RegistroRutaDTO> GetAllCB(){
         return registroRutaService.getAll();
     }
 
+    // Pasos detectados por geocerca que esperan volcado, reintentados y descartados
+    @GetMapping("/llegadas/metricas")
+    public Map<String, Object> GetMetricasLlegadas(){
+        return detectorLlegadasService.getMetricas();
+    }
+
+    @GetMapping("/exportar")
+    public ResponseEntity<StreamingResponseBody> exportar(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+                                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+                                                          @RequestParam(defaultValue = "ndjson") String formato){
+        MediaType tipo = ExportacionService.tipo(formato);
+        if (tipo == null){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        StreamingResponseBody cuerpo = exportacionService.<RegistroRutaDTO>exportar(formato, destino -> registroRutaService.exportar(desde, hasta, destino));
+        return ResponseEntity.ok()
+                .contentType(tipo)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"registro-ruta." + formato.toLowerCase() + "\"")
+                .body(cuerpo);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<RegistroRutaModel> GetRBId(@PathVariable Long id){
         Optional<RegistroRutaModel> conteoB = registroRutaService.getById(id);
@@ -31,7 +68,7 @@ public class RegistroRutaController {
     }
 
     @GetMapping("/registrosPorBusYFechaActual/{busId}")
-    public List<RegistroRutaModel> obtenerRegistrosPorBusYFechaActual(@PathVariable Long busId) {
+    public List<RegistroRutaDTO> obtenerRegistrosPorBusYFechaActual(@PathVariable Long busId) {
         return registroRutaService.obtenerRegistrosPorBusYFechaActual(busId);
     }
 
@@ -43,6 +80,18 @@ public class RegistroRutaController {
 
     }
 
+    @PostMapping(value = "/agregarPasoRuta", params = "async=true")
+    public ResponseEntity<Void> agregarPasoRutaAsync(@RequestBody RegistroRutaModel registroRutaModel) {
+        try {
+            if (ingestaAsincronaService.encolarPaso(registroRutaModel)) {
+                return new ResponseEntity<>(HttpStatus.ACCEPTED);
+            }
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
     @PostMapping
     public ResponseEntity<RegistroRutaModel> CrearRR(@RequestBody RegistroRutaModel registroRutaModel){
         RegistroRutaModel RR = registroRutaService.createRegistroRuta(registroRutaModel);
@@ -1,12 +1,18 @@
 package com.icm.dateroapi.controller;
 
+import com.icm.dateroapi.dto.PaginaCursor;
+import com.icm.dateroapi.dto.ResultadoImportacion;
+import com.icm.dateroapi.dto.RutaDTO;
 import com.icm.dateroapi.models.RutasModel;
+import com.icm.dateroapi.services.ImportacionService;
 import com.icm.dateroapi.services.RutasService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -18,9 +24,11 @@ import java.util.Optional;
 public class RutasController {
     @Autowired
     private RutasService rutasService;
+    @Autowired
+    private ImportacionService importacionService;
 
     @GetMapping
-    public List<RutasModel> GetAll(){
+    public List<RutaDTO> GetAll(){
         return rutasService.getAll();
     }
 
@@ -33,15 +41,27 @@ public class RutasController {
         return null;
     }
     @GetMapping("/xempresa/{empresaid}")
-    public Page<RutasModel> GetxEmpresa(@PathVariable Long empresaid,
+    public Page<RutaDTO> GetxEmpresa(@PathVariable Long empresaid,
                                         @RequestParam(defaultValue = "0") int page,
                                         @RequestParam(defaultValue = "6") int size){
         Pageable pageable = PageRequest.of(page, size);
         return rutasService.getByEmpresa(empresaid, pageable);
     }
 
+    @GetMapping(value = "/xempresa/{empresaid}", params = "after")
+    public ResponseEntity<PaginaCursor<RutaDTO>> GetxEmpresaC(@PathVariable Long empresaid,
+            @RequestParam String after,
+            @RequestParam(defaultValue = "6") int size,
+            @RequestParam(defaultValue = "false") boolean conteo){
+        try {
+            return new ResponseEntity<>(rutasService.getByEmpresa(empresaid, after, size, conteo), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
     @GetMapping("/xempresaAndEstado/{empresaid}/{estado}")
-    public Page<RutasModel> GetxEstado(@PathVariable Long empresaid,
+    public Page<RutaDTO> GetxEstado(@PathVariable Long empresaid,
                                        @PathVariable Boolean estado,
                                        @RequestParam(defaultValue = "0") int page,
                                        @RequestParam(defaultValue = "6") int size) {
@@ -49,11 +69,40 @@ public class RutasController {
         return rutasService.getByEmpresaAndEstado(empresaid, estado, pageable);
     }
 
+    @GetMapping(value = "/xempresaAndEstado/{empresaid}/{estado}", params = "after")
+    public ResponseEntity<PaginaCursor<RutaDTO>> GetxEstadoC(@PathVariable Long empresaid,
+            @PathVariable Boolean estado,
+            @RequestParam String after,
+            @RequestParam(defaultValue = "6") int size,
+            @RequestParam(defaultValue = "false") boolean conteo){
+        try {
+            return new ResponseEntity<>(rutasService.getByEmpresaAndEstado(empresaid, estado, after, size, conteo), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
     @PostMapping
     public ResponseEntity<RutasModel> CrearR(@RequestBody RutasModel rutasModel){
         RutasModel crutas = rutasService.createRuta(rutasModel);
         return new ResponseEntity<>(crutas, HttpStatus.CREATED);
     }
+
+    // JSON (arreglo) o CSV con encabezado; si alguna fila tiene error no se guarda ninguna
+    @PostMapping(value = "/importar", consumes = {MediaType.APPLICATION_JSON_VALUE, ImportacionService.CSV})
+    public ResponseEntity<ResultadoImportacion> ImportarR(@RequestBody String cuerpo,
+                                                     @RequestHeader(HttpHeaders.CONTENT_TYPE) String tipo){
+        ResultadoImportacion resultado;
+        try {
+            resultado = importacionService.importarRutas(importacionService.leer(cuerpo, ImportacionService.esCsv(tipo), RutaDTO.class));
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(new ResultadoImportacion(0, null, List.of(e.getMessage())), HttpStatus.BAD_REQUEST);
+        }
+        if (resultado.getErrores() != null) {
+            return new ResponseEntity<>(resultado, HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>(resultado, HttpStatus.CREATED);
+    }
     @PutMapping("/{id}")
     public ResponseEntity<RutasModel> EditarR(@RequestBody RutasModel rutasModel, @PathVariable Long id){
         RutasModel eruta = rutasService.editRuta(rutasModel, id);
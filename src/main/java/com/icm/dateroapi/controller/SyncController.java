@@ -0,0 +1,23 @@
+package com.icm.dateroapi.controller;
+
+import com.icm.dateroapi.dto.CambiosSync;
+import com.icm.dateroapi.services.SyncService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("api/sync")
+public class SyncController {
+    @Autowired
+    private SyncService syncService;
+
+    // desde es la marca de la respuesta anterior (ms); sin desde se envia el catalogo completo
+    @GetMapping
+    public CambiosSync GetCambios(@RequestParam(required = false) Long desde,
+                                  @RequestParam(required = false) Long empresaId){
+        return syncService.cambiosDesde(desde, empresaId);
+    }
+}
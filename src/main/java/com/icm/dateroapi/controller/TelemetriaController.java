@@ -0,0 +1,21 @@
+package com.icm.dateroapi.controller;
+
+import com.icm.dateroapi.services.TelemetriaService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("api/telemetria")
+public class TelemetriaController {
+    @Autowired
+    private TelemetriaService telemetriaService;
+
+    @GetMapping("/metricas")
+    public Map<String, Object> GetMetricas(){
+        return telemetriaService.getMetricas();
+    }
+}
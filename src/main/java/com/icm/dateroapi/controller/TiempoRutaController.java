@@ -1,11 +1,16 @@
 package com.icm.dateroapi.controller;
 
+import com.icm.dateroapi.dto.TiempoRutaDTO;
 import com.icm.dateroapi.models.TiempoRutaModel;
+import com.icm.dateroapi.services.ExportacionService;
 import com.icm.dateroapi.services.TiempoRutaService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Optional;
@@ -13,14 +18,30 @@ import java.util.Optional;
 @RestController
 @RequestMapping("api/tiemporuta")
 public class TiempoRutaController {
+    @Autowired
+    private ExportacionService exportacionService;
     @Autowired
     private TiempoRutaService tiempoRutaService;
 
     @GetMapping
-    public List<TiempoRutaModel> GetAll(){
+    public List<TiempoRutaDTO> GetAll(){
         return tiempoRutaService.getAll();
     }
 
+    @GetMapping("/exportar")
+    public ResponseEntity<StreamingResponseBody> exportar(@RequestParam(required = false) Long rutaId,
+                                                          @RequestParam(defaultValue = "ndjson") String formato){
+        MediaType tipo = ExportacionService.tipo(formato);
+        if (tipo == null){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        StreamingResponseBody cuerpo = exportacionService.<TiempoRutaDTO>exportar(formato, destino -> tiempoRutaService.exportar(rutaId, destino));
+        return ResponseEntity.ok()
+                .contentType(tipo)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"tiempo-ruta." + formato.toLowerCase() + "\"")
+                .body(cuerpo);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<TiempoRutaModel> GetTRId(@PathVariable Long id){
         Optional<TiempoRutaModel> rutas = tiempoRutaService.getById(id);
@@ -1,5 +1,7 @@
 package com.icm.dateroapi.controller;
 
+import com.icm.dateroapi.dto.PaginaCursor;
+import com.icm.dateroapi.dto.UsuarioDTO;
 import com.icm.dateroapi.models.UsuariosModel;
 import com.icm.dateroapi.services.UsuariosService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,7 +22,7 @@ public class UsuariosController {
     private UsuariosService usuariosService;
 
     @GetMapping
-    public List<UsuariosModel> GetAllT(){
+    public List<UsuarioDTO> GetAllT(){
         return usuariosService.getAll();
     }
 
@@ -34,15 +36,27 @@ public class UsuariosController {
     }
 
     @GetMapping("/xempresa/{empresaid}")
-    public Page<UsuariosModel> GetxEmpresa(@PathVariable Long empresaid,
+    public Page<UsuarioDTO> GetxEmpresa(@PathVariable Long empresaid,
                                            @RequestParam(defaultValue = "0") int page,
                                            @RequestParam(defaultValue = "6") int size){
         Pageable pageable = PageRequest.of(page, size);
         return usuariosService.getByEmpresa(empresaid, pageable);
     }
 
+    @GetMapping(value = "/xempresa/{empresaid}", params = "after")
+    public ResponseEntity<PaginaCursor<UsuarioDTO>> GetxEmpresaC(@PathVariable Long empresaid,
+            @RequestParam String after,
+            @RequestParam(defaultValue = "6") int size,
+            @RequestParam(defaultValue = "false") boolean conteo){
+        try {
+            return new ResponseEntity<>(usuariosService.getByEmpresa(empresaid, after, size, conteo), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
     @GetMapping("/xempresaAndEstado/{empresaid}/{estado}")
-    public Page<UsuariosModel> GetxEmpresaAndEstado(@PathVariable Long empresaid,
+    public Page<UsuarioDTO> GetxEmpresaAndEstado(@PathVariable Long empresaid,
                                                     @PathVariable Boolean estado,
                                                     @RequestParam(defaultValue = "0") int page,
                                                     @RequestParam(defaultValue = "6") int size){
@@ -51,6 +65,19 @@ public class UsuariosController {
         return usuariosService.getByEmpresaAndEstado(empresaid, estado, pageable);
     }
 
+    @GetMapping(value = "/xempresaAndEstado/{empresaid}/{estado}", params = "after")
+    public ResponseEntity<PaginaCursor<UsuarioDTO>> GetxEmpresaAndEstadoC(@PathVariable Long empresaid,
+            @PathVariable Boolean estado,
+            @RequestParam String after,
+            @RequestParam(defaultValue = "6") int size,
+            @RequestParam(defaultValue = "false") boolean conteo){
+        try {
+            return new ResponseEntity<>(usuariosService.getByEmpresaAndEstado(empresaid, estado, after, size, conteo), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
     @PostMapping
     public ResponseEntity<UsuariosModel> CrearT(@RequestBody UsuariosModel trabajadoresModel){
         UsuariosModel ctrabajador = usuariosService.createUsuario(trabajadoresModel);
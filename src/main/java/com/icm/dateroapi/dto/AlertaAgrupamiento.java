@@ -0,0 +1,21 @@
+package com.icm.dateroapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Dos buses de la misma ruta demasiado juntos; busId va detras de busDelanteId
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class AlertaAgrupamiento {
+    private Long rutaId;
+    private Long busId;
+    private Long busDelanteId;
+    // "posicion": separacion por la ruta en metros; "paso": segundos entre pasos por el mismo paradero
+    private String origen;
+    private Long paraderoId;
+    private double separacion;
+    // ms epoch
+    private long fecha;
+}
@@ -0,0 +1,15 @@
+package com.icm.dateroapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class AsignacionBus {
+    private Long busId;
+    private Long empresaId;
+    // Puede ser null si el bus no tiene ruta asignada
+    private Long rutaId;
+}
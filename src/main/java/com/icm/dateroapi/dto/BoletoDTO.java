@@ -0,0 +1,17 @@
+package com.icm.dateroapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class BoletoDTO {
+    private Long id;
+    private String nombre;
+    private String valor;
+    private Long rutaId;
+    private String rutaNombre;
+    private Long empresaId;
+}
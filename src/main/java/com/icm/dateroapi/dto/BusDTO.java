@@ -0,0 +1,26 @@
+package com.icm.dateroapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class BusDTO {
+    private Long id;
+    private String modelo;
+    private String placa;
+    private BigDecimal longitud;
+    private BigDecimal latitud;
+    private Boolean estado;
+    private Long usuarioId;
+    private String usuarioNombre;
+    private String usuarioApellido;
+    private Long empresaId;
+    private String empresaNombre;
+    private Long rutaId;
+    private String rutaNombre;
+}
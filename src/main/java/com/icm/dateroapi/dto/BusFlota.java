@@ -0,0 +1,20 @@
+package com.icm.dateroapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class BusFlota {
+    private Long busId;
+    private String placa;
+    private Boolean estado;
+    private Long rutaId;
+    private Double latitud;
+    private Double longitud;
+    private Long fecha;
+}
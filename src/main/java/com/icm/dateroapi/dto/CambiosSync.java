@@ -0,0 +1,22 @@
+package com.icm.dateroapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+// marca se envia como desde en la siguiente sincronizacion; con completo el equipo reemplaza todo su catalogo
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class CambiosSync {
+    private Long marca;
+    private Boolean completo;
+    private List<RutaDTO> rutas;
+    private List<ParaderoDTO> paraderos;
+    private List<RPDTO> rp;
+    private List<BoletoDTO> boletos;
+    private Map<String, List<Long>> eliminados;
+}
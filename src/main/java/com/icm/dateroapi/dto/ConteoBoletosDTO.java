@@ -0,0 +1,23 @@
+package com.icm.dateroapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class ConteoBoletosDTO {
+    private Long id;
+    private Integer conteo;
+    private LocalDate dia;
+    private Double totalAcumulado;
+    private Long boletoId;
+    private String boletoNombre;
+    private String boletoValor;
+    private Long busId;
+    private String placa;
+    private Long empresaId;
+}
@@ -0,0 +1,32 @@
+package com.icm.dateroapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+// Puntualidad e intervalos del dia; paraderoId null = toda la ruta
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class Cumplimiento {
+    private Long rutaId;
+    private Long paraderoId;
+    private LocalDate dia;
+    private long pasos;
+    // Pasos con hora de horario, los unicos que cuentan para la puntualidad
+    private long conHorario;
+    private long puntuales;
+    private long adelantados;
+    private long atrasados;
+    private Double porcentajePuntual;
+    // Llegada - esperada, positivo = atrasado
+    private Double desvioPromedioS;
+    // Tiempo entre buses consecutivos en el mismo paradero
+    private long intervalos;
+    private Double intervaloPromedioS;
+    private Double intervaloDesvioS;
+    private Long intervaloMinS;
+    private Long intervaloMaxS;
+}
@@ -0,0 +1,41 @@
+package com.icm.dateroapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Solo viajan los campos que cambiaron en la ventana
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class DeltaFlota {
+    private Long busId;
+    private Double latitud;
+    private Double longitud;
+    private Long fecha;
+    private Boolean estado;
+    private Long rutaId;
+    private Boolean eliminado;
+    private String placa;
+
+    // Gana el ultimo: una baja descarta lo anterior y un cambio posterior a la baja la anula
+    public static DeltaFlota combinar(DeltaFlota anterior, DeltaFlota nuevo) {
+        if (Boolean.TRUE.equals(nuevo.eliminado)) {
+            return nuevo;
+        }
+        if (Boolean.TRUE.equals(anterior.eliminado)) {
+            return new DeltaFlota(nuevo.busId, nuevo.latitud, nuevo.longitud, nuevo.fecha, nuevo.estado, nuevo.rutaId,
+                    false, nuevo.placa);
+        }
+        return new DeltaFlota(nuevo.busId,
+                nuevo.latitud != null ? nuevo.latitud : anterior.latitud,
+                nuevo.longitud != null ? nuevo.longitud : anterior.longitud,
+                nuevo.fecha != null ? nuevo.fecha : anterior.fecha,
+                nuevo.estado != null ? nuevo.estado : anterior.estado,
+                nuevo.rutaId != null ? nuevo.rutaId : anterior.rutaId,
+                nuevo.eliminado != null ? nuevo.eliminado : anterior.eliminado,
+                nuevo.placa != null ? nuevo.placa : anterior.placa);
+    }
+}
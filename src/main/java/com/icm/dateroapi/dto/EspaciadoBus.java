@@ -0,0 +1,16 @@
+package com.icm.dateroapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class EspaciadoBus {
+    private Long busId;
+    // Metros recorridos desde el primer paradero de la ruta
+    private double avanceMetros;
+    private Long busDelanteId;
+    private Double separacionMetros;
+}
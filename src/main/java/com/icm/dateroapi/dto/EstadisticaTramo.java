@@ -0,0 +1,21 @@
+package com.icm.dateroapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Segundos de viaje entre dos paraderos consecutivos de la ruta; cuantiles null si no hay muestras
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class EstadisticaTramo {
+    private int orden;
+    private Long origenId;
+    private Long destinoId;
+    private long muestras;
+    private Double p50;
+    private Double p90;
+    private Double p99;
+}
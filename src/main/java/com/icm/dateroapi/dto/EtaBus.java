@@ -0,0 +1,18 @@
+package com.icm.dateroapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class EtaBus {
+    private Long busId;
+    private Long rutaId;
+    private Long paraderoId;
+    private int paradasRestantes;
+    private long segundos;
+    // ms epoch
+    private long llegada;
+}
@@ -0,0 +1,19 @@
+package com.icm.dateroapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Venta registrada por el validador; evento es unico por venta y se repite igual en cada reintento
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class EventoBoleto {
+    private String evento;
+    private Long busId;
+    private Long empresaId;
+    private Long boletoId;
+    private Double monto;
+    // ms epoch de la venta; define el dia del conteo aunque llegue despues
+    private Long fecha;
+}
@@ -0,0 +1,22 @@
+package com.icm.dateroapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+// Paso por paradero aceptado en modo asincrono, con la hora en que llego el pedido
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class IngresoPaso {
+    private Long empresaId;
+    private Long rutaId;
+    private Long busId;
+    private Long paraderoId;
+    private LocalDate dia;
+    private LocalTime hora;
+    private long recibido;
+}
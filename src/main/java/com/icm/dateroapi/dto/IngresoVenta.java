@@ -0,0 +1,20 @@
+package com.icm.dateroapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+// Venta aceptada en modo asincrono; el dia se fija al recibirla, no al aplicarla
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class IngresoVenta {
+    private Long busId;
+    private Long empresaId;
+    private Long boletoId;
+    private Double monto;
+    private LocalDate dia;
+    private long recibido;
+}
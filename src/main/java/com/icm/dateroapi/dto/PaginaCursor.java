@@ -0,0 +1,65 @@
+package com.icm.dateroapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+// Pagina por cursor: siguiente es null en la ultima pagina, total solo si se pidio
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class PaginaCursor<T> {
+    // El mismo tope que Spring Data pone al size de las paginas por offset
+    public static final int TAMANIO_MAXIMO = 2000;
+
+    private List<T> contenido;
+    private String siguiente;
+    private Long total;
+
+    // Se pide una fila de mas para saber si hay otra pagina sin contar la tabla
+    public static Pageable limite(int size) {
+        return PageRequest.of(0, tamanio(size) + 1);
+    }
+
+    public static int tamanio(int size) {
+        return Math.min(Math.max(1, size), TAMANIO_MAXIMO);
+    }
+
+    public static <T> PaginaCursor<T> armar(List<T> filas, int size, Function<T, Long> id, Long total) {
+        int tamanio = tamanio(size);
+        if (filas.size() <= tamanio) {
+            return new PaginaCursor<>(filas, null, total);
+        }
+        List<T> contenido = filas.subList(0, tamanio);
+        return new PaginaCursor<>(contenido, codificar(id.apply(contenido.get(tamanio - 1))), total);
+    }
+
+    public static String codificar(Long id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(("id:" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Cursor vacio es la primera pagina
+    public static long decodificar(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0L;
+        }
+        try {
+            String valor = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!valor.startsWith("id:")) {
+                throw new IllegalArgumentException("Cursor invalido");
+            }
+            return Long.parseLong(valor.substring(3));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor invalido", e);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.icm.dateroapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class ParaderoDTO {
+    private Long id;
+    private String nombre;
+    private Boolean estado;
+    private BigDecimal longitud;
+    private BigDecimal latitud;
+    private Long distritoId;
+    private String distritoNombre;
+}
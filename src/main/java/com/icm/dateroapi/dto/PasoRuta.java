@@ -0,0 +1,20 @@
+package com.icm.dateroapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.sql.Time;
+import java.time.LocalDate;
+
+// Lo minimo de un RegistroRuta para reconstruir los modelos en memoria
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class PasoRuta {
+    private Long rutaId;
+    private Long busId;
+    private Long paraderoId;
+    private LocalDate dia;
+    private Time horaLlegada;
+}
@@ -0,0 +1,16 @@
+package com.icm.dateroapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class PosicionBus {
+    private Long busId;
+    private double latitud;
+    private double longitud;
+    // Momento del ping en milisegundos epoch
+    private long fecha;
+}
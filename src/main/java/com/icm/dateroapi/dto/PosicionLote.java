@@ -0,0 +1,17 @@
+package com.icm.dateroapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Posicion del reenvio en bloque; con objetos para distinguir un campo que no vino de un 0
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class PosicionLote {
+    private Long busId;
+    private Double latitud;
+    private Double longitud;
+    // Milisegundos epoch; sin fecha se toma la hora de llegada
+    private Long fecha;
+}
@@ -0,0 +1,15 @@
+package com.icm.dateroapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class PuntoHistorial {
+    private double latitud;
+    private double longitud;
+    // Milisegundos epoch
+    private long fecha;
+}
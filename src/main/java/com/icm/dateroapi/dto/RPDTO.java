@@ -0,0 +1,21 @@
+package com.icm.dateroapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class RPDTO {
+    private Long id;
+    private Integer orden;
+    private Boolean estado;
+    private Long rutaId;
+    private Long paraderoId;
+    private String paraderoNombre;
+    private BigDecimal longitud;
+    private BigDecimal latitud;
+}
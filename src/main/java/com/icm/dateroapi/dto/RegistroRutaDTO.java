@@ -0,0 +1,25 @@
+package com.icm.dateroapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.sql.Time;
+import java.time.LocalDate;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class RegistroRutaDTO {
+    private Long id;
+    private LocalDate dia;
+    private Time horaEsperada;
+    private Time horaLlegada;
+    private Long empresaId;
+    private Long rutaId;
+    private String rutaNombre;
+    private Long busId;
+    private String placa;
+    private Long paraderoId;
+    private String paraderoNombre;
+}
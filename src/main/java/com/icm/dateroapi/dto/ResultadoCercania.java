@@ -0,0 +1,17 @@
+package com.icm.dateroapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class ResultadoCercania {
+    private Long id;
+    private String nombre;
+    private double latitud;
+    private double longitud;
+    // Distancia en metros al punto consultado
+    private double distancia;
+}
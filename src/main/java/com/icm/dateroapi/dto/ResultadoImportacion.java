@@ -0,0 +1,19 @@
+package com.icm.dateroapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Si hay errores no se guarda ninguna fila; ids va en el mismo orden que las filas recibidas
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class ResultadoImportacion {
+    private int creados;
+    private List<Long> ids;
+    private List<String> errores;
+}
@@ -0,0 +1,16 @@
+package com.icm.dateroapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class RutaDTO {
+    private Long id;
+    private String nombre;
+    private Boolean estado;
+    private Long empresaId;
+    private String empresaNombre;
+}
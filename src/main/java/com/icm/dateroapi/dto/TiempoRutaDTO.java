@@ -0,0 +1,19 @@
+package com.icm.dateroapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class TiempoRutaDTO {
+    private Long id;
+    private String paseEsperado;
+    private String horaPase;
+    private Long rutaId;
+    private Long busId;
+    private String placa;
+    private Long paraderoId;
+    private String paraderoNombre;
+}
@@ -0,0 +1,22 @@
+package com.icm.dateroapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Nunca incluye la contrasenia
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class UsuarioDTO {
+    private Long id;
+    private String nombre;
+    private String apellido;
+    private String dni;
+    private Boolean estado;
+    private String username;
+    private Long rolId;
+    private String rolNombre;
+    private Long empresaId;
+    private String empresaNombre;
+}
@@ -0,0 +1,36 @@
+package com.icm.dateroapi.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDate;
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Entity
+@Table(name = "ConteoBoletosDiario", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_diario_bus_boleto_dia", columnNames = {"bus", "boleto", "dia"})
+}, indexes = {
+        @Index(name = "ix_diario_bus_dia", columnList = "bus, dia")
+})
+public class ConteoBoletosDiarioModel {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(unique = true, nullable = false)
+    private Long id;
+
+    // Resumen precalculado: se guardan ids y datos copiados para no hacer joins al leer
+    @Column(name = "bus", nullable = false)
+    private Long busId;
+
+    @Column(name = "boleto", nullable = false)
+    private Long boletoId;
+
+    private LocalDate dia;
+    private String placa;
+    private String nombreBoleto;
+    private String valorBoleto;
+    private Long conteo;
+    private Double totalAcumulado;
+}
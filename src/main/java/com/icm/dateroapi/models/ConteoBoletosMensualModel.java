@@ -0,0 +1,33 @@
+package com.icm.dateroapi.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Entity
+@Table(name = "ConteoBoletosMensual", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_mensual_bus_boleto_mes", columnNames = {"bus", "boleto", "anio", "mes"})
+})
+public class ConteoBoletosMensualModel {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(unique = true, nullable = false)
+    private Long id;
+
+    @Column(name = "bus", nullable = false)
+    private Long busId;
+
+    @Column(name = "boleto", nullable = false)
+    private Long boletoId;
+
+    private Integer anio;
+    private Integer mes;
+    private String placa;
+    private String nombreBoleto;
+    private String valorBoleto;
+    private Long conteo;
+    private Double totalAcumulado;
+}
@@ -9,7 +9,9 @@ import java.time.LocalDate;
 @AllArgsConstructor
 @Data
 @Entity
-@Table(name = "ConteoBoletos")
+@Table(name = "ConteoBoletos", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_conteo_bus_boleto_dia", columnNames = {"buses", "boletos", "dia"})
+})
 public class ConteoBoletosModel {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,38 @@
+package com.icm.dateroapi.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+// Incrementos del contador de boletos que la BD rechazo (llave foranea, nulos); se revisan a mano
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Entity
+@Table(name = "ConteosRechazados")
+public class ConteosRechazadosModel {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(unique = true, nullable = false)
+    private Long id;
+
+    @Column(name = "bus")
+    private Long busId;
+
+    @Column(name = "boleto")
+    private Long boletoId;
+
+    @Column(name = "empresa")
+    private Long empresaId;
+
+    private LocalDate dia;
+    private Long conteo;
+    private Double total;
+
+    @Column(length = 500)
+    private String error;
+
+    private LocalDateTime fecha;
+}
@@ -0,0 +1,32 @@
+package com.icm.dateroapi.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalTime;
+// Hora de salida de un bus desde el primer paradero de la ruta
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Entity
+@Table(name = "Despachos", indexes = {
+        @Index(name = "ix_despachos_ruta", columnList = "ruta")
+})
+public class DespachosModel {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(unique = true, nullable = false)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalTime hora;
+
+    // 1 = lunes ... 7 = domingo; null = todos los dias
+    private Integer diaSemana;
+    private Boolean estado;
+
+    @ManyToOne
+    @JoinColumn(name = "ruta", referencedColumnName = "id", nullable = false)
+    private RutasModel rutasModel;
+}
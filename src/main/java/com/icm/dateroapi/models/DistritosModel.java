@@ -4,11 +4,15 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Data
 @Entity
-@Table(name = "Distritos")
+@Table(name = "Distritos", indexes = {
+        @Index(name = "ix_distritos_actualizado", columnList = "actualizado")
+})
 public class DistritosModel {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -16,4 +20,8 @@ public class DistritosModel {
     private Long id;
     private String nombre;
     private Boolean estado;
+
+    // Para la sincronizacion: el nombre del distrito viaja en cada paradero
+    @UpdateTimestamp
+    private LocalDateTime actualizado;
 }
@@ -0,0 +1,35 @@
+package com.icm.dateroapi.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+// Registro de borrados para que la sincronizacion pueda avisar que una fila ya no existe
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Entity
+@Table(name = "Eliminaciones", indexes = {
+        @Index(name = "ix_eliminaciones_fecha", columnList = "fecha")
+})
+public class EliminacionesModel {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(unique = true, nullable = false)
+    private Long id;
+
+    // "rutas", "paraderos", "rp" o "boletos"
+    @Column(nullable = false, length = 20)
+    private String tipo;
+
+    @Column(name = "entidad", nullable = false)
+    private Long entidadId;
+
+    // Empresa duenia de la fila, para filtrar por empresa; null en paraderos
+    @Column(name = "empresa")
+    private Long empresaId;
+
+    @Column(nullable = false)
+    private LocalDateTime fecha;
+}
@@ -4,11 +4,15 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Data
 @Entity
-@Table(name = "Empresas")
+@Table(name = "Empresas", indexes = {
+        @Index(name = "ix_empresas_actualizado", columnList = "actualizado")
+})
 public class EmpresasModel {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -16,4 +20,8 @@ public class EmpresasModel {
     private Long id;
     private String nombre;
     private Boolean estado;
+
+    // Para la sincronizacion: el nombre de la empresa viaja en cada ruta
+    @UpdateTimestamp
+    private LocalDateTime actualizado;
 }
@@ -0,0 +1,46 @@
+package com.icm.dateroapi.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+// Resumen de cuantiles de un tramo (origen -> destino) de la ruta, por dia de la semana y hora
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Entity
+@Table(name = "EstadisticasTramo", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_estadisticas_tramo", columnNames = {"ruta", "origen", "destino", "dia_semana", "hora"})
+})
+public class EstadisticasTramoModel {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(unique = true, nullable = false)
+    private Long id;
+
+    @Column(name = "ruta", nullable = false)
+    private Long rutaId;
+
+    @Column(name = "origen", nullable = false)
+    private Long origenId;
+
+    @Column(name = "destino", nullable = false)
+    private Long destinoId;
+
+    // 1 = lunes ... 7 = domingo
+    @Column(name = "dia_semana", nullable = false)
+    private Integer diaSemana;
+
+    @Column(nullable = false)
+    private Integer hora;
+
+    private Long muestras;
+
+    // SketchCuantiles codificado
+    @Lob
+    @Column(columnDefinition = "BLOB")
+    private byte[] datos;
+
+    private LocalDateTime actualizado;
+}
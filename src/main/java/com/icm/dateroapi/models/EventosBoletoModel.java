@@ -0,0 +1,46 @@
+package com.icm.dateroapi.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+// Ventas ya aplicadas al conteo, identificadas por el id que genera el validador
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Entity
+@Table(name = "EventosBoleto", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_eventos_boleto_evento", columnNames = {"evento"})
+}, indexes = {
+        @Index(name = "ix_eventos_boleto_lote", columnList = "lote"),
+        @Index(name = "ix_eventos_boleto_dia", columnList = "dia")
+})
+public class EventosBoletoModel {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(unique = true, nullable = false)
+    private Long id;
+
+    @Column(nullable = false, length = 64)
+    private String evento;
+
+    @Column(name = "bus", nullable = false)
+    private Long busId;
+
+    @Column(name = "boleto", nullable = false)
+    private Long boletoId;
+
+    @Column(name = "empresa", nullable = false)
+    private Long empresaId;
+
+    private LocalDate dia;
+    private Double monto;
+
+    // Marca del lote que lo inserto, para saber que filas entraron de verdad
+    @Column(length = 36)
+    private String lote;
+
+    private LocalDateTime recibido;
+}
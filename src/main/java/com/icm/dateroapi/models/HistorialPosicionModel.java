@@ -0,0 +1,39 @@
+package com.icm.dateroapi.models;
+
+import com.icm.dateroapi.config.SecuenciasId;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDate;
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Entity
+@Table(name = "HistorialPosicion", indexes = {
+        @Index(name = "ix_historial_bus_dia", columnList = "bus, dia")
+})
+public class HistorialPosicionModel {
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "historialPosicionId")
+    @TableGenerator(name = "historialPosicionId", table = SecuenciasId.TABLA, pkColumnName = SecuenciasId.NOMBRE,
+            valueColumnName = SecuenciasId.VALOR, pkColumnValue = SecuenciasId.HISTORIAL_POSICION,
+            allocationSize = SecuenciasId.BLOQUE)
+    @Column(unique = true, nullable = false)
+    private Long id;
+
+    @Column(name = "bus", nullable = false)
+    private Long busId;
+
+    private LocalDate dia;
+
+    // Rango de tiempo (ms epoch) que cubre el bloque, para descartarlo sin decodificar
+    private Long desde;
+    private Long hasta;
+    private Integer puntos;
+
+    // Pings codificados con CodificadorPosiciones
+    @Lob
+    @Column(columnDefinition = "MEDIUMBLOB")
+    private byte[] datos;
+}
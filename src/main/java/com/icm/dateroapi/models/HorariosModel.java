@@ -0,0 +1,40 @@
+package com.icm.dateroapi.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDate;
+import java.time.LocalTime;
+// Hora esperada de paso por cada paradero para cada despacho del dia; la genera HorariosService
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Entity
+@Table(name = "Horarios", indexes = {
+        @Index(name = "ix_horarios_ruta_dia", columnList = "ruta, dia")
+})
+public class HorariosModel {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(unique = true, nullable = false)
+    private Long id;
+
+    @Column(name = "ruta", nullable = false)
+    private Long rutaId;
+
+    @Column(nullable = false)
+    private LocalDate dia;
+
+    // Hora de salida del despacho al que pertenece el paso
+    @Column(nullable = false)
+    private LocalTime despacho;
+
+    @Column(name = "paradero", nullable = false)
+    private Long paraderoId;
+
+    private Integer orden;
+
+    @Column(nullable = false)
+    private LocalTime hora;
+}
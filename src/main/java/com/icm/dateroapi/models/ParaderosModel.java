@@ -1,18 +1,26 @@
 package com.icm.dateroapi.models;
 
+import com.icm.dateroapi.config.SecuenciasId;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Data
 @Entity
-@Table(name = "Paraderos")
+@Table(name = "Paraderos", indexes = {
+        @Index(name = "ix_paraderos_actualizado", columnList = "actualizado")
+})
 public class ParaderosModel {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "paraderosId")
+    @TableGenerator(name = "paraderosId", table = SecuenciasId.TABLA, pkColumnName = SecuenciasId.NOMBRE,
+            valueColumnName = SecuenciasId.VALOR, pkColumnValue = SecuenciasId.PARADEROS,
+            allocationSize = SecuenciasId.BLOQUE)
     @Column(unique = true, nullable = false)
     private Long id;
     private String nombre;
@@ -27,4 +35,7 @@ public class ParaderosModel {
     @ManyToOne
     @JoinColumn(name = "distrito", referencedColumnName = "id", nullable = false)
     private DistritosModel distritosModel;
+
+    @UpdateTimestamp
+    private LocalDateTime actualizado;
 }
@@ -1,17 +1,25 @@
 package com.icm.dateroapi.models;
 
+import com.icm.dateroapi.config.SecuenciasId;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Data
 @Entity
-@Table(name = "RP")
+@Table(name = "RP", indexes = {
+        @Index(name = "ix_rp_actualizado", columnList = "actualizado")
+})
 public class RPModel {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "rpId")
+    @TableGenerator(name = "rpId", table = SecuenciasId.TABLA, pkColumnName = SecuenciasId.NOMBRE,
+            valueColumnName = SecuenciasId.VALOR, pkColumnValue = SecuenciasId.RP,
+            allocationSize = SecuenciasId.BLOQUE)
     @Column(unique = true, nullable = false)
     private Long id;
     private Integer orden;
@@ -24,4 +32,7 @@ public class RPModel {
     @ManyToOne
     @JoinColumn(name = "paradero", referencedColumnName = "id", nullable = false)
     private ParaderosModel paraderosModel;
+
+    @UpdateTimestamp
+    private LocalDateTime actualizado;
 }
@@ -1,5 +1,6 @@
 package com.icm.dateroapi.models;
 
+import com.icm.dateroapi.config.SecuenciasId;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -12,10 +13,15 @@ import java.time.LocalDate;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "RegistroRuta")
+@Table(name = "RegistroRuta", indexes = {
+        @Index(name = "ix_registro_ruta_dia", columnList = "dia")
+})
 public class RegistroRutaModel {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "registroRutaId")
+    @TableGenerator(name = "registroRutaId", table = SecuenciasId.TABLA, pkColumnName = SecuenciasId.NOMBRE,
+            valueColumnName = SecuenciasId.VALOR, pkColumnValue = SecuenciasId.REGISTRO_RUTA,
+            allocationSize = SecuenciasId.BLOQUE)
     @Column(unique = true, nullable = false)
     private Long id;
     private LocalDate dia;
@@ -1,22 +1,36 @@
 package com.icm.dateroapi.models;
 
+import com.icm.dateroapi.config.SecuenciasId;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Data
 @Entity
-@Table(name = "Rutas")
+@Table(name = "Rutas", indexes = {
+        @Index(name = "ix_rutas_actualizado", columnList = "actualizado")
+})
 public class RutasModel {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "rutasId")
+    @TableGenerator(name = "rutasId", table = SecuenciasId.TABLA, pkColumnName = SecuenciasId.NOMBRE,
+            valueColumnName = SecuenciasId.VALOR, pkColumnValue = SecuenciasId.RUTAS,
+            allocationSize = SecuenciasId.BLOQUE)
     @Column(unique = true, nullable = false)
     private Long id;
     private String nombre;
     private Boolean estado;
+    // La ultima parada vuelve a la primera; si no, la ruta termina en su ultimo paradero
+    private Boolean circular;
     @ManyToOne
     @JoinColumn(name = "empresa", referencedColumnName = "id", nullable = false)
     private EmpresasModel empresasModel;
+
+    // Lo usa la sincronizacion de los equipos de los buses
+    @UpdateTimestamp
+    private LocalDateTime actualizado;
 }
@@ -1,5 +1,6 @@
 package com.icm.dateroapi.models;
 
+import com.icm.dateroapi.config.SecuenciasId;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -11,7 +12,10 @@ import lombok.NoArgsConstructor;
 @Table(name = "Tiemporuta")
 public class TiempoRutaModel {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "tiempoRutaId")
+    @TableGenerator(name = "tiempoRutaId", table = SecuenciasId.TABLA, pkColumnName = SecuenciasId.NOMBRE,
+            valueColumnName = SecuenciasId.VALOR, pkColumnValue = SecuenciasId.TIEMPO_RUTA,
+            allocationSize = SecuenciasId.BLOQUE)
     @Column(unique = true, nullable = false)
     private Long id;
     private String paseEsperado;
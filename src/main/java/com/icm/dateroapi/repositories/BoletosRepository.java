@@ -1,10 +1,25 @@
 package com.icm.dateroapi.repositories;
 
+import com.icm.dateroapi.dto.BoletoDTO;
 import com.icm.dateroapi.models.BoletosModel;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
 import java.util.List;
 @Repository
 public interface BoletosRepository extends JpaRepository<BoletosModel, Long> {
-    List<BoletosModel> findByEmpresasModelIdAndRutasModelId(Long empresaid, Long rutaid);
+    String BOLETO_DTO = "SELECT new com.icm.dateroapi.dto.BoletoDTO(b.id, b.nombre, b.valor, r.id, r.nombre, e.id) " +
+            "FROM BoletosModel b JOIN b.rutasModel r JOIN b.empresasModel e";
+
+    @Query(BOLETO_DTO)
+    List<BoletoDTO> findAllDTO();
+
+    @Query(BOLETO_DTO + " WHERE e.id = :empresaid AND r.id = :rutaid")
+    List<BoletoDTO> findDTOByEmpresaAndRuta(@Param("empresaid") Long empresaid, @Param("rutaid") Long rutaid);
+
+    @Query(BOLETO_DTO + " WHERE (:desde IS NULL OR b.actualizado > :desde OR r.actualizado > :desde) " +
+            "AND (:empresaId IS NULL OR e.id = :empresaId)")
+    List<BoletoDTO> findDTOCambiados(@Param("desde") LocalDateTime desde, @Param("empresaId") Long empresaId);
 }
\ No newline at end of file
@@ -1,15 +1,67 @@
 package com.icm.dateroapi.repositories;
 
+import com.icm.dateroapi.dto.AsignacionBus;
+import com.icm.dateroapi.dto.BusDTO;
+import com.icm.dateroapi.dto.BusFlota;
 import com.icm.dateroapi.models.BusesModel;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 @Repository
 public interface BusesRepository extends JpaRepository<BusesModel, Long> {
-    List<BusesModel> findByEmpresasModelId(Long empresaid);
-    List<BusesModel> findByEmpresasModelIdAndEstado(Long empresaid, Boolean estado );
-    Page<BusesModel> findByEmpresasModelId(Long empresaid, Pageable pageable);
-    Page<BusesModel> findByEmpresasModelIdAndEstado(Long empresaid, Boolean estado, Pageable pageable );
+    // Listados planos en una sola consulta, sin datos del usuario mas que su nombre
+    String BUS_DTO = "SELECT new com.icm.dateroapi.dto.BusDTO(b.id, b.modelo, b.placa, b.longitud, b.latitud, b.estado, " +
+            "u.id, u.nombre, u.apellido, e.id, e.nombre, r.id, r.nombre) " +
+            "FROM BusesModel b JOIN b.empresasModel e LEFT JOIN b.usuariosModel u LEFT JOIN b.rutasModel r";
+
+    @Query(BUS_DTO)
+    List<BusDTO> findAllDTO();
+
+    @Query(BUS_DTO + " WHERE e.id = :empresaid")
+    List<BusDTO> findDTOByEmpresa(@Param("empresaid") Long empresaid);
+
+    @Query(BUS_DTO + " WHERE e.id = :empresaid AND b.estado = :estado")
+    List<BusDTO> findDTOByEmpresaAndEstado(@Param("empresaid") Long empresaid, @Param("estado") Boolean estado);
+
+    @Query(value = BUS_DTO + " WHERE e.id = :empresaid",
+            countQuery = "SELECT COUNT(b) FROM BusesModel b WHERE b.empresasModel.id = :empresaid")
+    Page<BusDTO> findDTOByEmpresa(@Param("empresaid") Long empresaid, Pageable pageable);
+
+    @Query(value = BUS_DTO + " WHERE e.id = :empresaid AND b.estado = :estado",
+            countQuery = "SELECT COUNT(b) FROM BusesModel b WHERE b.empresasModel.id = :empresaid AND b.estado = :estado")
+    Page<BusDTO> findDTOByEmpresaAndEstado(@Param("empresaid") Long empresaid, @Param("estado") Boolean estado, Pageable pageable);
+
+    // Por cursor: se busca desde el ultimo id visto, sin OFFSET ni COUNT
+    @Query(BUS_DTO + " WHERE e.id = :empresaid AND b.id > :despues ORDER BY b.id")
+    List<BusDTO> findDTOByEmpresaDespues(@Param("empresaid") Long empresaid, @Param("despues") Long despues, Pageable limite);
+
+    @Query(BUS_DTO + " WHERE e.id = :empresaid AND b.estado = :estado AND b.id > :despues ORDER BY b.id")
+    List<BusDTO> findDTOByEmpresaAndEstadoDespues(@Param("empresaid") Long empresaid, @Param("estado") Boolean estado,
+                                                  @Param("despues") Long despues, Pageable limite);
+
+    long countByEmpresasModelId(Long empresaid);
+    long countByEmpresasModelIdAndEstado(Long empresaid, Boolean estado);
+
+    @Query("SELECT b.id, b.latitud, b.longitud, b.placa FROM BusesModel b WHERE b.latitud IS NOT NULL AND b.longitud IS NOT NULL")
+    List<Object[]> findPosiciones();
+
+    @Query("SELECT new com.icm.dateroapi.dto.AsignacionBus(b.id, e.id, r.id) FROM BusesModel b " +
+            "JOIN b.empresasModel e LEFT JOIN b.rutasModel r WHERE b.id = :id")
+    Optional<AsignacionBus> findAsignacion(@Param("id") Long id);
+
+    @Query("SELECT new com.icm.dateroapi.dto.BusFlota(b.id, b.placa, b.estado, r.id, null, null, null) " +
+            "FROM BusesModel b LEFT JOIN b.rutasModel r WHERE b.empresasModel.id = :empresaId")
+    List<BusFlota> findFlota(@Param("empresaId") Long empresaId);
+
+    @Query("SELECT b.id FROM BusesModel b WHERE b.id IN :ids")
+    List<Long> findIdsExistentes(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT b.id FROM BusesModel b WHERE b.rutasModel.id = :rutaId")
+    List<Long> findIdsByRuta(@Param("rutaId") Long rutaId);
 }
\ No newline at end of file
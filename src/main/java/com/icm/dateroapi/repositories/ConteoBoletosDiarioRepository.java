@@ -0,0 +1,12 @@
+package com.icm.dateroapi.repositories;
+
+import com.icm.dateroapi.models.ConteoBoletosDiarioModel;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+@Repository
+public interface ConteoBoletosDiarioRepository extends JpaRepository<ConteoBoletosDiarioModel, Long> {
+    List<ConteoBoletosDiarioModel> findByBusIdAndDiaBetweenOrderByDiaAscBoletoIdAsc(Long busId, LocalDate desde, LocalDate hasta);
+}
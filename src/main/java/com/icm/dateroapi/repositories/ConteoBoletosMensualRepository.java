@@ -0,0 +1,11 @@
+package com.icm.dateroapi.repositories;
+
+import com.icm.dateroapi.models.ConteoBoletosMensualModel;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+@Repository
+public interface ConteoBoletosMensualRepository extends JpaRepository<ConteoBoletosMensualModel, Long> {
+    List<ConteoBoletosMensualModel> findByBusIdOrderByAnioAscMesAscBoletoIdAsc(Long busId);
+}
@@ -1,8 +1,36 @@
 package com.icm.dateroapi.repositories;
 
+import com.icm.dateroapi.dto.ConteoBoletosDTO;
 import com.icm.dateroapi.models.ConteoBoletosModel;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface ConteoBoletosRepository extends JpaRepository<ConteoBoletosModel, Long> {
+    String CONTEO_DTO = "SELECT new com.icm.dateroapi.dto.ConteoBoletosDTO(c.id, c.conteo, c.dia, c.totalAcumulado, " +
+            "bo.id, bo.nombre, bo.valor, b.id, b.placa, e.id) " +
+            "FROM ConteoBoletosModel c JOIN c.boletosModel bo JOIN c.busesModel b JOIN c.empresasModel e";
+
+    @Query(CONTEO_DTO)
+    List<ConteoBoletosDTO> findAllDTO();
+
+    @Query(CONTEO_DTO + " WHERE c.dia >= :desde AND c.dia <= :hasta")
+    List<ConteoBoletosDTO> findDTOByDiaBetween(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+    @Query(CONTEO_DTO + " WHERE b.id = :busId AND c.dia = :dia")
+    List<ConteoBoletosDTO> findDTOByBusAndDia(@Param("busId") Long busId, @Param("dia") LocalDate dia);
+
+    // Por paginas de id para la exportacion, sin una transaccion abierta toda la descarga
+    @Query(CONTEO_DTO + " WHERE c.id > :despues AND (:desde IS NULL OR c.dia >= :desde) AND (:hasta IS NULL OR c.dia <= :hasta) ORDER BY c.id")
+    List<ConteoBoletosDTO> findDTOPagina(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta,
+                                         @Param("despues") long despues, Pageable pageable);
+
+    Optional<ConteoBoletosModel> findFirstByBusesModelIdAndBoletosModelIdAndDia(Long busId, Long boletoId, LocalDate dia);
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.icm.dateroapi.repositories;
+
+import com.icm.dateroapi.models.DespachosModel;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalTime;
+import java.util.List;
+@Repository
+public interface DespachosRepository extends JpaRepository<DespachosModel, Long> {
+    List<DespachosModel> findByRutasModelIdOrderByHora(Long rutaId);
+
+    @Query("SELECT d.hora FROM DespachosModel d WHERE d.rutasModel.id = :rutaId " +
+            "AND (d.estado IS NULL OR d.estado = true) AND (d.diaSemana IS NULL OR d.diaSemana = :diaSemana) ORDER BY d.hora")
+    List<LocalTime> findHorasDelDia(@Param("rutaId") Long rutaId, @Param("diaSemana") Integer diaSemana);
+
+    @Query("SELECT DISTINCT d.rutasModel.id FROM DespachosModel d WHERE d.estado IS NULL OR d.estado = true")
+    List<Long> findRutasConDespachos();
+}
@@ -0,0 +1,23 @@
+package com.icm.dateroapi.repositories;
+
+import com.icm.dateroapi.models.EliminacionesModel;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+@Repository
+public interface EliminacionesRepository extends JpaRepository<EliminacionesModel, Long> {
+    @Query("SELECT e FROM EliminacionesModel e WHERE e.fecha > :desde " +
+            "AND (:empresaId IS NULL OR e.empresaId IS NULL OR e.empresaId = :empresaId) ORDER BY e.id")
+    List<EliminacionesModel> findDesde(@Param("desde") LocalDateTime desde, @Param("empresaId") Long empresaId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM EliminacionesModel e WHERE e.fecha < :limite")
+    int borrarAnteriores(@Param("limite") LocalDateTime limite);
+}
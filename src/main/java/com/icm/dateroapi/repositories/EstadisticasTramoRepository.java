@@ -0,0 +1,9 @@
+package com.icm.dateroapi.repositories;
+
+import com.icm.dateroapi.models.EstadisticasTramoModel;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface EstadisticasTramoRepository extends JpaRepository<EstadisticasTramoModel, Long> {
+}
@@ -0,0 +1,34 @@
+package com.icm.dateroapi.repositories;
+
+import com.icm.dateroapi.models.EventosBoletoModel;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+@Repository
+public interface EventosBoletoRepository extends JpaRepository<EventosBoletoModel, Long> {
+    @Query("SELECT e.evento FROM EventosBoletoModel e WHERE e.evento IN :eventos")
+    List<String> findExistentes(@Param("eventos") Collection<String> eventos);
+
+    @Query("SELECT e.evento FROM EventosBoletoModel e WHERE e.lote = :lote")
+    List<String> findByLote(@Param("lote") String lote);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT e.evento FROM EventosBoletoModel e WHERE e.dia >= :desde")
+    Stream<String> streamEventosDesde(@Param("desde") LocalDate desde);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM EventosBoletoModel e WHERE e.dia < :limite")
+    int borrarAnteriores(@Param("limite") LocalDate limite);
+}
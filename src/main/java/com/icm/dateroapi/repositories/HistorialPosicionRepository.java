@@ -0,0 +1,29 @@
+package com.icm.dateroapi.repositories;
+
+import com.icm.dateroapi.models.HistorialPosicionModel;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+@Repository
+public interface HistorialPosicionRepository extends JpaRepository<HistorialPosicionModel, Long> {
+    List<HistorialPosicionModel> findByBusIdAndDiaBetweenAndHastaGreaterThanEqualAndDesdeLessThanEqualOrderByIdAsc(
+            Long busId, LocalDate diaDesde, LocalDate diaHasta, Long inicioRango, Long finRango);
+
+    List<HistorialPosicionModel> findByBusIdAndDiaOrderByIdAsc(Long busId, LocalDate dia);
+
+    // Bus y dia de los dias cerrados que todavia tienen mas de un bloque
+    @Query("SELECT h.busId, h.dia FROM HistorialPosicionModel h WHERE h.dia < :dia " +
+            "GROUP BY h.busId, h.dia HAVING COUNT(h) > 1")
+    List<Object[]> findDiasPorCompactar(@Param("dia") LocalDate dia);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM HistorialPosicionModel h WHERE h.dia < :limite")
+    int borrarAnteriores(@Param("limite") LocalDate limite);
+}
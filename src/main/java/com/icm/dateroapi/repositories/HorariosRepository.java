@@ -0,0 +1,23 @@
+package com.icm.dateroapi.repositories;
+
+import com.icm.dateroapi.models.HorariosModel;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+@Repository
+public interface HorariosRepository extends JpaRepository<HorariosModel, Long> {
+    List<HorariosModel> findByRutaIdAndDiaOrderByDespachoAscOrdenAsc(Long rutaId, LocalDate dia);
+
+    boolean existsByRutaIdAndDia(Long rutaId, LocalDate dia);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM HorariosModel h WHERE h.dia < :limite")
+    int borrarAnteriores(@Param("limite") LocalDate limite);
+}
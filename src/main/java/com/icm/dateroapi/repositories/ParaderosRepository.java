@@ -1,11 +1,15 @@
 package com.icm.dateroapi.repositories;
 
+import com.icm.dateroapi.dto.ParaderoDTO;
 import com.icm.dateroapi.models.ParaderosModel;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 @Repository
 public interface ParaderosRepository extends JpaRepository<ParaderosModel, Long> {
@@ -13,6 +17,32 @@ public interface ParaderosRepository extends JpaRepository<ParaderosModel, Long>
     /*
     List<ParaderosModel> findByEmpresasModelIdAndEstado(Long id,Boolean estado);
      */
-    //Page<ParaderosModel> findByEstado(Boolean estado, Pageable pageable);
-    Page<ParaderosModel> findByEstado(Boolean estado, Pageable pageable);
+
+    String PARADERO_DTO = "SELECT new com.icm.dateroapi.dto.ParaderoDTO(p.id, p.nombre, p.estado, p.longitud, p.latitud, d.id, d.nombre) " +
+            "FROM ParaderosModel p JOIN p.distritosModel d";
+
+    @Query(PARADERO_DTO)
+    List<ParaderoDTO> findAllDTO();
+
+    @Query(value = PARADERO_DTO, countQuery = "SELECT COUNT(p) FROM ParaderosModel p")
+    Page<ParaderoDTO> findAllDTO(Pageable pageable);
+
+    @Query(PARADERO_DTO + " WHERE p.estado = :estado")
+    List<ParaderoDTO> findDTOByEstado(@Param("estado") Boolean estado);
+
+    @Query(value = PARADERO_DTO + " WHERE p.estado = :estado",
+            countQuery = "SELECT COUNT(p) FROM ParaderosModel p WHERE p.estado = :estado")
+    Page<ParaderoDTO> findDTOByEstado(@Param("estado") Boolean estado, Pageable pageable);
+
+    @Query(PARADERO_DTO + " WHERE p.id > :despues ORDER BY p.id")
+    List<ParaderoDTO> findDTODespues(@Param("despues") Long despues, Pageable limite);
+
+    @Query(PARADERO_DTO + " WHERE p.estado = :estado AND p.id > :despues ORDER BY p.id")
+    List<ParaderoDTO> findDTOByEstadoDespues(@Param("estado") Boolean estado, @Param("despues") Long despues, Pageable limite);
+
+    long countByEstado(Boolean estado);
+
+    // El DTO lleva el nombre del distrito: si cambia el distrito, sus paraderos tambien viajan
+    @Query(PARADERO_DTO + " WHERE (:desde IS NULL OR p.actualizado > :desde OR d.actualizado > :desde)")
+    List<ParaderoDTO> findDTOCambiados(@Param("desde") LocalDateTime desde);
 }
@@ -1,10 +1,28 @@
 package com.icm.dateroapi.repositories;
 
+import com.icm.dateroapi.dto.RPDTO;
 import com.icm.dateroapi.models.RPModel;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
 import java.util.List;
 @Repository
 public interface RPRepository extends JpaRepository<RPModel, Long> {
     List<RPModel> findByRutasModelId(Long rutaid);
+
+    String RP_DTO = "SELECT new com.icm.dateroapi.dto.RPDTO(rp.id, rp.orden, rp.estado, r.id, p.id, p.nombre, p.longitud, p.latitud) " +
+            "FROM RPModel rp JOIN rp.rutasModel r JOIN rp.paraderosModel p";
+
+    @Query(RP_DTO)
+    List<RPDTO> findAllDTO();
+
+    // El DTO lleva nombre y posicion del paradero: si cambia el paradero o la ruta, la fila tambien viaja
+    @Query(RP_DTO + " WHERE (:desde IS NULL OR rp.actualizado > :desde OR r.actualizado > :desde OR p.actualizado > :desde) " +
+            "AND (:empresaId IS NULL OR r.empresasModel.id = :empresaId)")
+    List<RPDTO> findDTOCambiados(@Param("desde") LocalDateTime desde, @Param("empresaId") Long empresaId);
+
+    @Query(RP_DTO + " WHERE r.id = :rutaid ORDER BY rp.orden")
+    List<RPDTO> findDTOByRuta(@Param("rutaid") Long rutaid);
 }
\ No newline at end of file
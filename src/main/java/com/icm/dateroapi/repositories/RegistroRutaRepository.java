@@ -1,9 +1,44 @@
 package com.icm.dateroapi.repositories;
 
+import com.icm.dateroapi.dto.PasoRuta;
+import com.icm.dateroapi.dto.RegistroRutaDTO;
 import com.icm.dateroapi.models.RegistroRutaModel;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Consumer;
+
 @Repository
 public interface RegistroRutaRepository extends JpaRepository<RegistroRutaModel, Long> {
+    String REGISTRO_DTO = "SELECT new com.icm.dateroapi.dto.RegistroRutaDTO(rr.id, rr.dia, rr.horaEsperada, rr.horaLlegada, " +
+            "e.id, r.id, r.nombre, b.id, b.placa, p.id, p.nombre) " +
+            "FROM RegistroRutaModel rr JOIN rr.empresasModel e JOIN rr.rutasModel r JOIN rr.busesModel b JOIN rr.paraderosModel p";
+
+    @Query(REGISTRO_DTO)
+    List<RegistroRutaDTO> findAllDTO();
+
+    @Query(REGISTRO_DTO + " WHERE b.id = :busId AND rr.dia = :dia")
+    List<RegistroRutaDTO> findDTOByBusAndDia(@Param("busId") Long busId, @Param("dia") LocalDate dia);
+
+    // Por paginas de id para la exportacion, sin una transaccion abierta toda la descarga
+    @Query(REGISTRO_DTO + " WHERE rr.id > :despues AND (:desde IS NULL OR rr.dia >= :desde) AND (:hasta IS NULL OR rr.dia <= :hasta) ORDER BY rr.id")
+    List<RegistroRutaDTO> findDTOPagina(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta,
+                                        @Param("despues") long despues, Pageable pageable);
+
+    // Un dia completo en memoria: quien lo recorre puede consultar otras tablas sin un cursor abierto
+    @Query("SELECT new com.icm.dateroapi.dto.PasoRuta(rr.rutasModel.id, rr.busesModel.id, rr.paraderosModel.id, rr.dia, rr.horaLlegada) " +
+            "FROM RegistroRutaModel rr WHERE rr.dia = :dia ORDER BY rr.horaLlegada, rr.id")
+    List<PasoRuta> findPasosDelDia(@Param("dia") LocalDate dia);
+
+    // En orden cronologico, igual que si los pasos llegaran en vivo
+    default void recorrerPasos(LocalDate desde, LocalDate hasta, Consumer<PasoRuta> destino) {
+        for (LocalDate dia = desde; !dia.isAfter(hasta); dia = dia.plusDays(1)) {
+            findPasosDelDia(dia).forEach(destino);
+        }
+    }
 }
\ No newline at end of file
@@ -1,13 +1,42 @@
 package com.icm.dateroapi.repositories;
 
+import com.icm.dateroapi.dto.RutaDTO;
 import com.icm.dateroapi.models.RutasModel;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
 import java.util.List;
 @Repository
 public interface RutasRepository extends JpaRepository<RutasModel, Long> {
-    Page<RutasModel> findByEmpresasModelId(Long empresaId, Pageable pageable);
-    Page<RutasModel> findByEmpresasModelIdAndEstado(Long empresaId, Boolean estado, Pageable pageable);
+    String RUTA_DTO = "SELECT new com.icm.dateroapi.dto.RutaDTO(r.id, r.nombre, r.estado, e.id, e.nombre) " +
+            "FROM RutasModel r JOIN r.empresasModel e";
+
+    @Query(RUTA_DTO)
+    List<RutaDTO> findAllDTO();
+
+    @Query(value = RUTA_DTO + " WHERE e.id = :empresaId",
+            countQuery = "SELECT COUNT(r) FROM RutasModel r WHERE r.empresasModel.id = :empresaId")
+    Page<RutaDTO> findDTOByEmpresa(@Param("empresaId") Long empresaId, Pageable pageable);
+
+    @Query(value = RUTA_DTO + " WHERE e.id = :empresaId AND r.estado = :estado",
+            countQuery = "SELECT COUNT(r) FROM RutasModel r WHERE r.empresasModel.id = :empresaId AND r.estado = :estado")
+    Page<RutaDTO> findDTOByEmpresaAndEstado(@Param("empresaId") Long empresaId, @Param("estado") Boolean estado, Pageable pageable);
+
+    @Query(RUTA_DTO + " WHERE e.id = :empresaId AND r.id > :despues ORDER BY r.id")
+    List<RutaDTO> findDTOByEmpresaDespues(@Param("empresaId") Long empresaId, @Param("despues") Long despues, Pageable limite);
+
+    @Query(RUTA_DTO + " WHERE e.id = :empresaId AND r.estado = :estado AND r.id > :despues ORDER BY r.id")
+    List<RutaDTO> findDTOByEmpresaAndEstadoDespues(@Param("empresaId") Long empresaId, @Param("estado") Boolean estado,
+                                                   @Param("despues") Long despues, Pageable limite);
+
+    // Sin desde devuelve todo; con desde solo lo modificado despues, o cuyo nombre de empresa cambio
+    @Query(RUTA_DTO + " WHERE (:desde IS NULL OR r.actualizado > :desde OR e.actualizado > :desde) AND (:empresaId IS NULL OR e.id = :empresaId)")
+    List<RutaDTO> findDTOCambiados(@Param("desde") LocalDateTime desde, @Param("empresaId") Long empresaId);
+
+    long countByEmpresasModelId(Long empresaId);
+    long countByEmpresasModelIdAndEstado(Long empresaId, Boolean estado);
 }
\ No newline at end of file
@@ -1,8 +1,23 @@
 package com.icm.dateroapi.repositories;
 
+import com.icm.dateroapi.dto.TiempoRutaDTO;
 import com.icm.dateroapi.models.TiempoRutaModel;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+
+import java.util.List;
 @Repository
 public interface TiempoRutaRepository extends JpaRepository<TiempoRutaModel, Long> {
+    String TIEMPO_DTO = "SELECT new com.icm.dateroapi.dto.TiempoRutaDTO(t.id, t.paseEsperado, t.horaPase, r.id, b.id, b.placa, p.id, p.nombre) " +
+            "FROM TiempoRutaModel t JOIN t.rutasModel r JOIN t.busesModel b JOIN t.paraderosModel p";
+
+    @Query(TIEMPO_DTO)
+    List<TiempoRutaDTO> findAllDTO();
+
+    // Por paginas de id para la exportacion, sin una transaccion abierta toda la descarga
+    @Query(TIEMPO_DTO + " WHERE t.id > :despues AND (:rutaId IS NULL OR r.id = :rutaId) ORDER BY t.id")
+    List<TiempoRutaDTO> findDTOPagina(@Param("rutaId") Long rutaId, @Param("despues") long despues, Pageable pageable);
 }
\ No newline at end of file
@@ -1,13 +1,39 @@
 package com.icm.dateroapi.repositories;
 
+import com.icm.dateroapi.dto.UsuarioDTO;
 import com.icm.dateroapi.models.UsuariosModel;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 @Repository
 public interface UsuariosRepository extends JpaRepository<UsuariosModel, Long> {
-    Page<UsuariosModel> findByEmpresasModelId (Long empresaid, Pageable pageable);
-    Page<UsuariosModel> findByEmpresasModelIdAndEstado(Long empresaid, Boolean estado, Pageable pageable);
+    // Sin la contrasenia
+    String USUARIO_DTO = "SELECT new com.icm.dateroapi.dto.UsuarioDTO(u.id, u.nombre, u.apellido, u.dni, u.estado, u.username, " +
+            "ro.id, ro.nombre, e.id, e.nombre) " +
+            "FROM UsuariosModel u JOIN u.rolesModel ro JOIN u.empresasModel e";
+
+    @Query(USUARIO_DTO)
+    List<UsuarioDTO> findAllDTO();
+
+    @Query(value = USUARIO_DTO + " WHERE e.id = :empresaid",
+            countQuery = "SELECT COUNT(u) FROM UsuariosModel u WHERE u.empresasModel.id = :empresaid")
+    Page<UsuarioDTO> findDTOByEmpresa(@Param("empresaid") Long empresaid, Pageable pageable);
+
+    @Query(value = USUARIO_DTO + " WHERE e.id = :empresaid AND u.estado = :estado",
+            countQuery = "SELECT COUNT(u) FROM UsuariosModel u WHERE u.empresasModel.id = :empresaid AND u.estado = :estado")
+    Page<UsuarioDTO> findDTOByEmpresaAndEstado(@Param("empresaid") Long empresaid, @Param("estado") Boolean estado, Pageable pageable);
+
+    @Query(USUARIO_DTO + " WHERE e.id = :empresaid AND u.id > :despues ORDER BY u.id")
+    List<UsuarioDTO> findDTOByEmpresaDespues(@Param("empresaid") Long empresaid, @Param("despues") Long despues, Pageable limite);
+
+    @Query(USUARIO_DTO + " WHERE e.id = :empresaid AND u.estado = :estado AND u.id > :despues ORDER BY u.id")
+    List<UsuarioDTO> findDTOByEmpresaAndEstadoDespues(@Param("empresaid") Long empresaid, @Param("estado") Boolean estado,
+                                                      @Param("despues") Long despues, Pageable limite);
+
+    long countByEmpresasModelId(Long empresaid);
+    long countByEmpresasModelIdAndEstado(Long empresaid, Boolean estado);
 }
\ No newline at end of file
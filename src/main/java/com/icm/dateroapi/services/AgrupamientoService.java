@@ -0,0 +1,367 @@
+package com.icm.dateroapi.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.icm.dateroapi.dto.AlertaAgrupamiento;
+import com.icm.dateroapi.dto.AsignacionBus;
+import com.icm.dateroapi.dto.EspaciadoBus;
+import com.icm.dateroapi.dto.PosicionBus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.integration.mqtt.support.MqttHeaders;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Time;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Detecta buses de la misma ruta que van pegados. Por ruta se ordenan los buses
+ * segun los metros avanzados desde el primer paradero (ultimo paradero pasado mas
+ * lo recorrido hacia el siguiente); cada ping solo reubica a su bus y mira al de
+ * adelante y al de atras, asi el costo no crece con el tamanio de la flota.
+ * Solo en las rutas circulares el ultimo bus tiene por delante al primero.
+ * Los pasos por paradero se comparan con el paso anterior en ese mismo paradero.
+ * En las terminales los buses esperan juntos su despacho: ahi no se avisa.
+ * Las alertas salen por MQTT desde otro hilo, sin frenar la ingesta de pings.
+ */
+@Service
+public class AgrupamientoService {
+    private static final Comparator<BusEnRuta> POR_AVANCE =
+            Comparator.comparingDouble((BusEnRuta b) -> b.avance).thenComparingLong(b -> b.busId);
+
+    @Autowired
+    private AsignacionBusService asignacionBusService;
+
+    @Autowired
+    private ParadasRutaService paradasRutaService;
+
+    @Autowired
+    private TramosService tramosService;
+
+    @Autowired
+    private MessageHandler mqttOutbound;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${agrupamiento.distancia-m:300}")
+    private double distanciaM;
+
+    @Value("${agrupamiento.intervalo-s:60}")
+    private long intervaloS;
+
+    // Un bus a menos de esto de la terminal de salida todavia no fue despachado
+    @Value("${agrupamiento.terminal-m:150}")
+    private double terminalM;
+
+    // Un bus sin pings en este tiempo deja de contar como vecino
+    @Value("${agrupamiento.bus-activo-ms:300000}")
+    private long busActivoMs;
+
+    // La misma pareja no se vuelve a avisar antes de este tiempo
+    @Value("${agrupamiento.repetir-ms:300000}")
+    private long repetirMs;
+
+    // Se le agrega "/<rutaId>"
+    @Value("${agrupamiento.topico:datero/alertas/agrupamiento}")
+    private String topico;
+
+    private final Map<Long, EstadoRuta> rutas = new ConcurrentHashMap<>();
+    private final Map<Long, Long> rutaDeBus = new ConcurrentHashMap<>();
+    private final Map<ClaveParadero, PasoParadero> pasos = new ConcurrentHashMap<>();
+    private final Map<String, Long> avisos = new ConcurrentHashMap<>();
+    private final Queue<AlertaAgrupamiento> pendientes = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder detectadas = new LongAdder();
+    private final LongAdder enviadas = new LongAdder();
+    private final LongAdder fallidas = new LongAdder();
+
+    public void procesar(PosicionBus posicion) {
+        AsignacionBus asignacion = asignacionBusService.getAsignacion(posicion.getBusId());
+        if (asignacion == null || asignacion.getRutaId() == null) {
+            return;
+        }
+        Long rutaId = asignacion.getRutaId();
+        ParadasRutaService.ParadasRuta paradas = paradasRutaService.getParadas(rutaId);
+        if (paradas == null || paradas.tamanio() < 2) {
+            return;
+        }
+        // Hasta su primer paso por un paradero de la ruta no se sabe en que vuelta va
+        SeguidorTramos.UltimoPaso ultimo = tramosService.getUltimo(posicion.getBusId());
+        if (ultimo == null || !ultimo.getRutaId().equals(rutaId)) {
+            return;
+        }
+        // El ultimo paso de ayer no dice nada de la vuelta de hoy
+        LocalDate dia = Instant.ofEpochMilli(posicion.getFecha()).atZone(SeguidorTramos.ZONA_PERU).toLocalDate();
+        if (Math.floorDiv(ultimo.getSegundo(), SeguidorTramos.SEGUNDOS_DIA) != dia.toEpochDay()) {
+            return;
+        }
+        int indice = paradas.indiceDe(ultimo.getParaderoId());
+        if (indice < 0) {
+            return;
+        }
+        Long anterior = rutaDeBus.put(posicion.getBusId(), rutaId);
+        if (anterior != null && !anterior.equals(rutaId)) {
+            EstadoRuta previa = rutas.get(anterior);
+            if (previa != null) {
+                previa.quitar(posicion.getBusId());
+            }
+        }
+        // Si la ruta se recargo los buses se vuelven a ubicar con su siguiente ping
+        EstadoRuta estado = rutas.compute(rutaId, (id, actual) ->
+                actual != null && actual.paradas == paradas ? actual : new EstadoRuta(paradas, terminalM));
+        AlertaAgrupamiento alerta = estado.mover(posicion, indice, distanciaM, busActivoMs);
+        if (alerta != null) {
+            avisar(alerta);
+        }
+    }
+
+    public void paso(Long rutaId, Long busId, Long paraderoId, LocalDate dia, Time hora) {
+        ParadasRutaService.ParadasRuta paradas = paradasRutaService.getParadas(rutaId);
+        if (paradas == null || paradas.esTerminal(paradas.indiceDe(paraderoId))) {
+            return;
+        }
+        long segundo = SeguidorTramos.segundoLocal(dia, hora.toLocalTime());
+        AlertaAgrupamiento[] alerta = new AlertaAgrupamiento[1];
+        pasos.compute(new ClaveParadero(rutaId, paraderoId), (clave, previo) -> {
+            if (previo != null && previo.segundo > segundo) {
+                return previo;
+            }
+            if (previo != null && !previo.busId.equals(busId) && segundo - previo.segundo < intervaloS) {
+                alerta[0] = new AlertaAgrupamiento(rutaId, busId, previo.busId, "paso", paraderoId,
+                        segundo - previo.segundo, SeguidorTramos.aEpochMs(segundo));
+            }
+            return new PasoParadero(busId, segundo);
+        });
+        if (alerta[0] != null) {
+            avisar(alerta[0]);
+        }
+    }
+
+    private void avisar(AlertaAgrupamiento alerta) {
+        long a = Math.min(alerta.getBusId(), alerta.getBusDelanteId());
+        long b = Math.max(alerta.getBusId(), alerta.getBusDelanteId());
+        boolean[] nueva = new boolean[1];
+        avisos.compute(a + "-" + b, (par, ultimo) -> {
+            if (ultimo != null && alerta.getFecha() - ultimo < repetirMs) {
+                return ultimo;
+            }
+            nueva[0] = true;
+            return alerta.getFecha();
+        });
+        if (nueva[0]) {
+            detectadas.increment();
+            pendientes.add(alerta);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${agrupamiento.envio-ms:1000}")
+    public void enviar() {
+        AlertaAgrupamiento alerta;
+        while ((alerta = pendientes.poll()) != null) {
+            try {
+                mqttOutbound.handleMessage(MessageBuilder.withPayload(objectMapper.writeValueAsString(alerta))
+                        .setHeader(MqttHeaders.TOPIC, topico + "/" + alerta.getRutaId())
+                        .build());
+                enviadas.increment();
+            } catch (JsonProcessingException | RuntimeException e) {
+                // Una alerta vieja ya no sirve: no se reintenta
+                fallidas.increment();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${agrupamiento.limpieza-ms:60000}")
+    public void limpiar() {
+        long ahora = System.currentTimeMillis();
+        for (EstadoRuta estado : rutas.values()) {
+            estado.quitarInactivos(ahora - busActivoMs);
+        }
+        rutaDeBus.entrySet().removeIf(e -> {
+            EstadoRuta estado = rutas.get(e.getValue());
+            return estado == null || !estado.contiene(e.getKey());
+        });
+        avisos.values().removeIf(fecha -> ahora - fecha >= repetirMs);
+    }
+
+    // Buses de la ruta en orden de avance, cada uno con su separacion al de adelante
+    public List<EspaciadoBus> getEspaciado(Long rutaId) {
+        EstadoRuta estado = rutas.get(rutaId);
+        return estado != null ? estado.espaciado() : List.of();
+    }
+
+    public Map<String, Object> getMetricas() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("rutas", rutas.size());
+        metricas.put("buses", rutaDeBus.size());
+        metricas.put("detectadas", detectadas.sum());
+        metricas.put("enviadas", enviadas.sum());
+        metricas.put("fallidas", fallidas.sum());
+        metricas.put("pendientes", pendientes.size());
+        return metricas;
+    }
+
+    static class EstadoRuta {
+        private final ParadasRutaService.ParadasRuta paradas;
+        private final double terminalM;
+        // Metros desde el primer paradero hasta cada paradero; en una ruta circular el ultimo valor es la vuelta completa
+        private final double[] acumulado;
+        private final TreeSet<BusEnRuta> orden = new TreeSet<>(POR_AVANCE);
+        private final Map<Long, BusEnRuta> buses = new HashMap<>();
+
+        EstadoRuta(ParadasRutaService.ParadasRuta paradas, double terminalM) {
+            int n = paradas.tamanio();
+            int tramos = paradas.isCircular() ? n : n - 1;
+            this.paradas = paradas;
+            this.terminalM = terminalM;
+            this.acumulado = new double[tramos + 1];
+            for (int i = 0; i < tramos; i++) {
+                int j = (i + 1) % n;
+                acumulado[i + 1] = acumulado[i] + paradas.distancia(i, paradas.getLatitud(j), paradas.getLongitud(j));
+            }
+        }
+
+        synchronized AlertaAgrupamiento mover(PosicionBus posicion, int indice, double distanciaM, long activoMs) {
+            BusEnRuta previo = buses.get(posicion.getBusId());
+            if (previo != null) {
+                if (previo.fecha > posicion.getFecha()) {
+                    return null;
+                }
+                orden.remove(previo);
+            }
+            // Lo recorrido desde el ultimo paradero, sin pasar del siguiente; pasado el final de una ruta lineal no avanza
+            double desdeParadero = paradas.distancia(indice, posicion.getLatitud(), posicion.getLongitud());
+            double recorrido = indice + 1 < acumulado.length
+                    ? Math.min(acumulado[indice + 1] - acumulado[indice], desdeParadero)
+                    : 0;
+            // Esperando en la terminal de salida o ya en la de llegada
+            boolean enTerminal = paradas.esTerminal(indice) && (indice != 0 || desdeParadero <= terminalM);
+            BusEnRuta bus = new BusEnRuta(posicion.getBusId(), acumulado[indice] + recorrido, posicion.getFecha(), enTerminal);
+            buses.put(bus.busId, bus);
+            orden.add(bus);
+            if (enTerminal) {
+                return null;
+            }
+
+            long limite = posicion.getFecha() - activoMs;
+            BusEnRuta delante = vecino(bus, true, limite);
+            if (delante != null && separacion(bus, delante) < distanciaM) {
+                return new AlertaAgrupamiento(paradas.getRutaId(), bus.busId, delante.busId, "posicion", null,
+                        Math.round(separacion(bus, delante)), posicion.getFecha());
+            }
+            BusEnRuta detras = vecino(bus, false, limite);
+            if (detras != null && separacion(detras, bus) < distanciaM) {
+                return new AlertaAgrupamiento(paradas.getRutaId(), detras.busId, bus.busId, "posicion", null,
+                        Math.round(separacion(detras, bus)), posicion.getFecha());
+            }
+            return null;
+        }
+
+        // El bus siguiente (o anterior) en recorrido, sin contar los que estan en una terminal;
+        // solo en una ruta circular se da la vuelta. Los inactivos que aparecen se sacan
+        private BusEnRuta vecino(BusEnRuta bus, boolean adelante, long limite) {
+            BusEnRuta otro = bus;
+            while (true) {
+                otro = adelante ? orden.higher(otro) : orden.lower(otro);
+                if (otro == null) {
+                    if (!paradas.isCircular() || orden.isEmpty()) {
+                        return null;
+                    }
+                    otro = adelante ? orden.first() : orden.last();
+                }
+                if (otro == bus) {
+                    return null;
+                }
+                if (otro.fecha < limite) {
+                    orden.remove(otro);
+                    buses.remove(otro.busId);
+                } else if (!otro.enTerminal) {
+                    return otro;
+                }
+            }
+        }
+
+        private double separacion(BusEnRuta atras, BusEnRuta adelante) {
+            double metros = adelante.avance - atras.avance;
+            return metros >= 0 ? metros : metros + acumulado[acumulado.length - 1];
+        }
+
+        synchronized void quitar(Long busId) {
+            BusEnRuta bus = buses.remove(busId);
+            if (bus != null) {
+                orden.remove(bus);
+            }
+        }
+
+        synchronized void quitarInactivos(long limite) {
+            orden.removeIf(bus -> bus.fecha < limite);
+            buses.values().removeIf(bus -> bus.fecha < limite);
+        }
+
+        synchronized boolean contiene(Long busId) {
+            return buses.containsKey(busId);
+        }
+
+        synchronized List<EspaciadoBus> espaciado() {
+            List<EspaciadoBus> lista = new ArrayList<>(orden.size());
+            for (BusEnRuta bus : orden) {
+                BusEnRuta delante = orden.higher(bus);
+                if (delante == null && paradas.isCircular() && orden.size() > 1) {
+                    delante = orden.first();
+                }
+                lista.add(new EspaciadoBus(bus.busId, Math.round(bus.avance * 10) / 10.0,
+                        delante != null ? delante.busId : null,
+                        delante != null ? Math.round(separacion(bus, delante) * 10) / 10.0 : null));
+            }
+            return lista;
+        }
+    }
+
+    private static class BusEnRuta {
+        private final Long busId;
+        private final double avance;
+        private final long fecha;
+        private final boolean enTerminal;
+
+        private BusEnRuta(Long busId, double avance, long fecha, boolean enTerminal) {
+            this.busId = busId;
+            this.avance = avance;
+            this.fecha = fecha;
+            this.enTerminal = enTerminal;
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    private static class ClaveParadero {
+        private Long rutaId;
+        private Long paraderoId;
+    }
+
+    private static class PasoParadero {
+        private final Long busId;
+        private final long segundo;
+
+        private PasoParadero(Long busId, long segundo) {
+            this.busId = busId;
+            this.segundo = segundo;
+        }
+    }
+}
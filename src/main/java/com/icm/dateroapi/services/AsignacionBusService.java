@@ -0,0 +1,32 @@
+package com.icm.dateroapi.services;
+
+import com.icm.dateroapi.dto.AsignacionBus;
+import com.icm.dateroapi.repositories.BusesRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Empresa y ruta de cada bus, para no cargar la entidad completa en cada ping
+@Service
+public class AsignacionBusService {
+    @Autowired
+    private BusesRepository busesRepository;
+
+    private final Map<Long, AsignacionBus> asignaciones = new ConcurrentHashMap<>();
+
+    // La carga va dentro de computeIfAbsent: un olvidar del mismo bus espera a que termine,
+    // asi una lectura anterior a la edicion no deja guardada la asignacion vieja
+    public AsignacionBus getAsignacion(Long busId) {
+        AsignacionBus asignacion = asignaciones.get(busId);
+        if (asignacion != null) {
+            return asignacion;
+        }
+        return asignaciones.computeIfAbsent(busId, id -> busesRepository.findAsignacion(id).orElse(null));
+    }
+
+    public void olvidar(Long busId) {
+        asignaciones.remove(busId);
+    }
+}
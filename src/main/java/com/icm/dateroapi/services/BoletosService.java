@@ -1,7 +1,12 @@
 package com.icm.dateroapi.services;
 
+import com.icm.dateroapi.config.cache.CacheLocal;
+import com.icm.dateroapi.config.cache.CacheRegistro;
+import com.icm.dateroapi.config.cache.VersionesRecurso;
+import com.icm.dateroapi.dto.BoletoDTO;
 import com.icm.dateroapi.models.BoletosModel;
 import com.icm.dateroapi.repositories.BoletosRepository;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -13,20 +18,47 @@ public class BoletosService {
     @Autowired
     private BoletosRepository boletosRepository;
 
-    public List<BoletosModel> getAll() {
-        return boletosRepository.findAll();
+    @Autowired
+    private ResumenConteoService resumenConteoService;
+
+    @Autowired
+    private CacheRegistro cacheRegistro;
+
+    @Autowired
+    private VersionesRecurso versionesRecurso;
+
+    @Autowired
+    private SyncService syncService;
+
+    private CacheLocal<Long, Optional<BoletosModel>> porId;
+    private CacheLocal<String, List<BoletoDTO>> porEmpresaRuta;
+
+    @PostConstruct
+    public void crearCaches() {
+        porId = cacheRegistro.crear("boletos.id");
+        porEmpresaRuta = cacheRegistro.crear("boletos.xempresaAndRuta");
+    }
+
+    public List<BoletoDTO> getAll() {
+        return boletosRepository.findAllDTO();
     }
 
     public Optional<BoletosModel> getById(Long id) {
-        return boletosRepository.findById(id);
+        return porId.obtener(id, boletosRepository::findById);
+    }
+
+    public String getEtagxEmpresaAndRuta(Long empresaId, Long rutaId) {
+        return versionesRecurso.etag("boletos", "boletos:" + empresaId + ":" + rutaId);
     }
 
-    public List<BoletosModel> getByEmpresaAndRuta(Long empresaId, Long rutaId) {
-        return boletosRepository.findByEmpresasModelIdAndRutasModelId(empresaId, rutaId);
+    public List<BoletoDTO> getByEmpresaAndRuta(Long empresaId, Long rutaId) {
+        return porEmpresaRuta.obtener(empresaId + ":" + rutaId, k -> List.copyOf(boletosRepository.findDTOByEmpresaAndRuta(empresaId, rutaId)));
     }
 
     public BoletosModel createBoleto(BoletosModel boleto) {
-        return boletosRepository.save(boleto);
+        BoletosModel guardado = boletosRepository.save(boleto);
+        invalidarLista(claveLista(guardado));
+        return guardado;
     }
 
     public BoletosModel editBoleto(BoletosModel boleto, Long id) {
@@ -35,13 +67,45 @@ public class BoletosService {
             BoletosModel existingBoleto = existing.get();
             existingBoleto.setNombre(boleto.getNombre());
             existingBoleto.setValor(boleto.getValor());
+            // La ruta puede cambiar: se invalida la lista anterior y la nueva
+            String anterior = claveLista(existingBoleto);
             existingBoleto.setRutasModel(boleto.getRutasModel());
-            return boletosRepository.save(existingBoleto);
+            BoletosModel guardado = boletosRepository.save(existingBoleto);
+            resumenConteoService.olvidarBoleto(id);
+            porId.invalidar(id);
+            invalidarLista(anterior);
+            invalidarLista(claveLista(guardado));
+            return guardado;
         }
         return null;
     }
 
     public void deleteBoleto(Long id) {
+        Optional<BoletosModel> existing = boletosRepository.findById(id);
         boletosRepository.deleteById(id);
+        porId.invalidar(id);
+        existing.ifPresent(b -> {
+            invalidarLista(claveLista(b));
+            syncService.registrarEliminacion(SyncService.BOLETOS, id, b.getEmpresasModel().getId());
+        });
+    }
+
+    private static String claveLista(BoletosModel boleto) {
+        if (boleto.getEmpresasModel() == null || boleto.getRutasModel() == null
+                || boleto.getEmpresasModel().getId() == null || boleto.getRutasModel().getId() == null) {
+            return null;
+        }
+        return boleto.getEmpresasModel().getId() + ":" + boleto.getRutasModel().getId();
+    }
+
+    // Sin clave conocida se descarta todo antes que dejar una lista vieja
+    private void invalidarLista(String clave) {
+        if (clave == null) {
+            porEmpresaRuta.invalidarTodo();
+            versionesRecurso.incrementar("boletos");
+        } else {
+            porEmpresaRuta.invalidar(clave);
+            versionesRecurso.incrementar("boletos:" + clave);
+        }
     }
 }
\ No newline at end of file
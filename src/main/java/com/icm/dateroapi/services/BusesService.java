@@ -1,72 +1,284 @@
 package com.icm.dateroapi.services;
 
+import com.icm.dateroapi.dto.PaginaCursor;
+import com.icm.dateroapi.dto.BusDTO;
+import com.icm.dateroapi.dto.AsignacionBus;
+import com.icm.dateroapi.dto.DeltaFlota;
+import com.icm.dateroapi.dto.PosicionBus;
+import com.icm.dateroapi.dto.PosicionLote;
+import com.icm.dateroapi.dto.PuntoHistorial;
+import com.icm.dateroapi.dto.ResultadoCercania;
 import com.icm.dateroapi.models.BusesModel;
 import com.icm.dateroapi.repositories.BusesRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Service
 public class BusesService {
     @Autowired
     private BusesRepository busesRepository;
 
-    public List<BusesModel> getAll() {
-        return busesRepository.findAll();
+    @Autowired
+    private ResumenConteoService resumenConteoService;
+
+    @Autowired
+    private PosicionBusService posicionBusService;
+
+    @Autowired
+    private AsignacionBusService asignacionBusService;
+
+    @Autowired
+    private DetectorLlegadasService detectorLlegadasService;
+
+    @Autowired
+    private FlotaStreamService flotaStreamService;
+
+    @Autowired
+    private HistorialPosicionService historialPosicionService;
+
+    @Value("${buses.posicion.lote-max:5000}")
+    private int loteMaximo;
+
+    @Value("${historial.consulta.dias-max:7}")
+    private int diasMaximosConsulta;
+
+    public List<BusDTO> getAll() {
+        return conPosicionActual(busesRepository.findAllDTO());
     }
 
     public Optional<BusesModel> getById(Long id) {
         return busesRepository.findById(id);
     }
-    public List<BusesModel> getByEmpresa(Long empresaid) {
-        return busesRepository.findByEmpresasModelId(empresaid);
+    public List<BusDTO> getByEmpresa(Long empresaid) {
+        return conPosicionActual(busesRepository.findDTOByEmpresa(empresaid));
     }
 
-    public List<BusesModel> getByEmpresaAndEstado(Long empresaid, Boolean estado) {
-        return busesRepository.findByEmpresasModelIdAndEstado(empresaid, estado);
+    public List<BusDTO> getByEmpresaAndEstado(Long empresaid, Boolean estado) {
+        return conPosicionActual(busesRepository.findDTOByEmpresaAndEstado(empresaid, estado));
     }
 
-    public Page<BusesModel> getByEmpresa(Long empresaid, Pageable pageable) {
-        return busesRepository.findByEmpresasModelId(empresaid,  pageable);
+    public Page<BusDTO> getByEmpresa(Long empresaid, Pageable pageable) {
+        Page<BusDTO> pagina = busesRepository.findDTOByEmpresa(empresaid, pageable);
+        conPosicionActual(pagina.getContent());
+        return pagina;
     }
 
-    public Page<BusesModel> getByEmpresaAndEstado(Long empresaid, Boolean estado, Pageable pageable) {
-        return busesRepository.findByEmpresasModelIdAndEstado(empresaid, estado, pageable);
+    public Page<BusDTO> getByEmpresaAndEstado(Long empresaid, Boolean estado, Pageable pageable) {
+        Page<BusDTO> pagina = busesRepository.findDTOByEmpresaAndEstado(empresaid, estado, pageable);
+        conPosicionActual(pagina.getContent());
+        return pagina;
+    }
+
+    public PaginaCursor<BusDTO> getByEmpresa(Long empresaid, String despues, int size, boolean conteo) {
+        List<BusDTO> filas = busesRepository.findDTOByEmpresaDespues(empresaid, PaginaCursor.decodificar(despues), PaginaCursor.limite(size));
+        Long total = conteo ? busesRepository.countByEmpresasModelId(empresaid) : null;
+        PaginaCursor<BusDTO> pagina = PaginaCursor.armar(filas, size, BusDTO::getId, total);
+        conPosicionActual(pagina.getContenido());
+        return pagina;
+    }
+
+    public PaginaCursor<BusDTO> getByEmpresaAndEstado(Long empresaid, Boolean estado, String despues, int size, boolean conteo) {
+        List<BusDTO> filas = busesRepository.findDTOByEmpresaAndEstadoDespues(empresaid, estado, PaginaCursor.decodificar(despues), PaginaCursor.limite(size));
+        Long total = conteo ? busesRepository.countByEmpresasModelIdAndEstado(empresaid, estado) : null;
+        PaginaCursor<BusDTO> pagina = PaginaCursor.armar(filas, size, BusDTO::getId, total);
+        conPosicionActual(pagina.getContenido());
+        return pagina;
+    }
+
+    // La tabla se actualiza cada pocos segundos; la memoria tiene la ultima posicion recibida
+    private List<BusDTO> conPosicionActual(List<BusDTO> buses) {
+        for (BusDTO bus : buses) {
+            posicionBusService.getPosicionEnMemoria(bus.getId()).ifPresent(p -> {
+                bus.setLatitud(BigDecimal.valueOf(p.getLatitud()));
+                bus.setLongitud(BigDecimal.valueOf(p.getLongitud()));
+            });
+        }
+        return buses;
     }
 
     public BusesModel createBus(BusesModel busesModel) {
-        return busesRepository.save(busesModel);
+        BusesModel guardado = busesRepository.save(busesModel);
+        publicarAlta(guardado);
+        return guardado;
     }
     public BusesModel editBus(BusesModel busesModel, Long id){
         Optional<BusesModel> existing = busesRepository.findById(id);
         if (existing.isPresent()){
             BusesModel bus = existing.get();
+            Long empresaAnterior = bus.getEmpresasModel() != null ? bus.getEmpresasModel().getId() : null;
             bus.setModelo(busesModel.getModelo());
             bus.setPlaca(busesModel.getPlaca());
             bus.setEstado(busesModel.getEstado());
             bus.setUsuariosModel(busesModel.getUsuariosModel());
             bus.setEmpresasModel(busesModel.getEmpresasModel());
             bus.setRutasModel(busesModel.getRutasModel());
-            return busesRepository.save(bus);
+            BusesModel guardado = busesRepository.save(bus);
+            // Despues del save: una lectura entre medio volveria a guardar los datos viejos
+            resumenConteoService.olvidarBus(id);
+            asignacionBusService.olvidar(id);
+            Long empresaNueva = guardado.getEmpresasModel() != null ? guardado.getEmpresasModel().getId() : null;
+            if (empresaAnterior != null && !empresaAnterior.equals(empresaNueva)) {
+                // Para la flota de la empresa anterior el bus deja de existir
+                flotaStreamService.publicar(empresaAnterior, new DeltaFlota(id, null, null, null, null, null, true, null));
+                publicarAlta(guardado);
+            } else if (empresaNueva != null) {
+                flotaStreamService.publicar(empresaNueva, new DeltaFlota(id, null, null, null, guardado.getEstado(),
+                        guardado.getRutasModel() != null ? guardado.getRutasModel().getId() : null, null, guardado.getPlaca()));
+            }
+            return guardado;
         }
         return null;
     }
-    public BusesModel editarPosicionamiento(BusesModel busesModel, Long id){
-        Optional<BusesModel> existing = busesRepository.findById(id);
-        if (existing.isPresent()){
-            BusesModel bus = existing.get();
-            bus.setLongitud(busesModel.getLongitud());
-            bus.setLatitud(busesModel.getLatitud());
-            return busesRepository.save(bus);
+    // Bus nuevo en la flota de su empresa, con todos sus datos
+    private void publicarAlta(BusesModel bus) {
+        if (bus.getEmpresasModel() == null || bus.getEmpresasModel().getId() == null) {
+            return;
         }
-        return null;
+        DeltaFlota delta = new DeltaFlota(bus.getId(), null, null, null, bus.getEstado(),
+                bus.getRutasModel() != null ? bus.getRutasModel().getId() : null, false, bus.getPlaca());
+        Optional<PosicionBus> posicion = posicionBusService.getPosicionEnMemoria(bus.getId());
+        if (posicion.isPresent()) {
+            delta.setLatitud(posicion.get().getLatitud());
+            delta.setLongitud(posicion.get().getLongitud());
+            delta.setFecha(posicion.get().getFecha());
+        } else if (bus.getLatitud() != null && bus.getLongitud() != null) {
+            delta.setLatitud(bus.getLatitud().doubleValue());
+            delta.setLongitud(bus.getLongitud().doubleValue());
+        }
+        flotaStreamService.publicar(bus.getEmpresasModel().getId(), delta);
+    }
+
+    public PosicionBus editarPosicionamiento(BusesModel busesModel, Long id){
+        return actualizarPosicion(id, busesModel.getLatitud().doubleValue(),
+                busesModel.getLongitud().doubleValue(), System.currentTimeMillis());
+    }
+
+    public PosicionBus actualizarPosicion(Long id, double latitud, double longitud, long fecha){
+        // Solo se consulta la BD la primera vez que se ve al bus
+        if (!posicionBusService.esConocido(id) && !busesRepository.existsById(id)){
+            return null;
+        }
+        return posicionBusService.actualizar(id, latitud, longitud, fecha);
+    }
+
+    // Lanza IllegalArgumentException si el rango esta invertido o pasa historial.consulta.dias-max
+    public List<PuntoHistorial> getHistorial(Long id, long desde, long hasta, Double tolerancia, Integer maxPuntos) {
+        validarRango(desde, hasta);
+        return SimplificadorTrayectoria.simplificar(historialPosicionService.reproducir(id, desde, hasta), tolerancia, maxPuntos);
+    }
+
+    // Recorrido de cada bus asignado actualmente a la ruta
+    public Map<Long, List<PuntoHistorial>> getHistorialxRuta(Long rutaId, long desde, long hasta, Double tolerancia, Integer maxPuntos) {
+        validarRango(desde, hasta);
+        Map<Long, List<PuntoHistorial>> recorridos = new LinkedHashMap<>();
+        for (Long busId : busesRepository.findIdsByRuta(rutaId)) {
+            List<PuntoHistorial> puntos = getHistorial(busId, desde, hasta, tolerancia, maxPuntos);
+            if (!puntos.isEmpty()) {
+                recorridos.put(busId, puntos);
+            }
+        }
+        return recorridos;
+    }
+
+    private void validarRango(long desde, long hasta) {
+        if (hasta < desde || hasta - desde > TimeUnit.DAYS.toMillis(diasMaximosConsulta)) {
+            throw new IllegalArgumentException("Rango de historial invalido");
+        }
+    }
+
+    public SseEmitter suscribirFlota(Long empresaid) throws IOException {
+        return flotaStreamService.suscribir(empresaid);
+    }
+
+    // Posiciones acumuladas por los dispositivos sin senal, de uno o varios buses.
+    // Lanza IllegalArgumentException si el lote pasa el maximo o alguna posicion no tiene bus o coordenadas validas
+    public Map<String, Object> actualizarPosiciones(List<PosicionLote> posiciones){
+        if (posiciones == null || posiciones.size() > loteMaximo) {
+            throw new IllegalArgumentException("El lote debe tener como maximo " + loteMaximo + " posiciones");
+        }
+        for (PosicionLote posicion : posiciones) {
+            if (posicion == null || posicion.getBusId() == null || posicion.getLatitud() == null || posicion.getLongitud() == null
+                    || Math.abs(posicion.getLatitud()) > 90 || Math.abs(posicion.getLongitud()) > 180) {
+                throw new IllegalArgumentException("Posicion sin bus o con coordenadas invalidas");
+            }
+        }
+        long ahora = System.currentTimeMillis();
+        Map<Long, List<PosicionBus>> porBus = new LinkedHashMap<>();
+        for (PosicionLote posicion : posiciones) {
+            long fecha = posicion.getFecha() != null && posicion.getFecha() > 0 ? posicion.getFecha() : ahora;
+            porBus.computeIfAbsent(posicion.getBusId(), id -> new ArrayList<>())
+                    .add(new PosicionBus(posicion.getBusId(), posicion.getLatitud(), posicion.getLongitud(), fecha));
+        }
+
+        // Una sola consulta para todos los buses que aun no estan en memoria
+        List<Long> desconocidos = porBus.keySet().stream()
+                .filter(id -> !posicionBusService.esConocido(id))
+                .collect(Collectors.toList());
+        Set<Long> existentes = desconocidos.isEmpty() ? Set.of() : new HashSet<>(busesRepository.findIdsExistentes(desconocidos));
+
+        int aceptadas = 0;
+        int rechazadas = 0;
+        for (Map.Entry<Long, List<PosicionBus>> entrada : porBus.entrySet()) {
+            Long busId = entrada.getKey();
+            List<PosicionBus> lista = entrada.getValue();
+            if (!posicionBusService.esConocido(busId) && !existentes.contains(busId)) {
+                rechazadas += lista.size();
+                continue;
+            }
+            lista.sort(Comparator.comparingLong(PosicionBus::getFecha));
+            // Las anteriores solo van al historial; la mas nueva actualiza la posicion actual
+            for (int i = 0; i < lista.size() - 1; i++) {
+                PosicionBus p = lista.get(i);
+                posicionBusService.registrarAtrasado(busId, p.getLatitud(), p.getLongitud(), p.getFecha());
+            }
+            PosicionBus ultima = lista.get(lista.size() - 1);
+            posicionBusService.actualizar(busId, ultima.getLatitud(), ultima.getLongitud(), ultima.getFecha());
+            aceptadas += lista.size();
+        }
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("buses", porBus.size());
+        resultado.put("aceptadas", aceptadas);
+        resultado.put("rechazadas", rechazadas);
+        return resultado;
+    }
+
+    public Optional<PosicionBus> getPosicion(Long id) {
+        return posicionBusService.getPosicion(id);
+    }
+
+    public List<ResultadoCercania> getCercanos(double latitud, double longitud, Integer k, double radio) {
+        if (k != null) {
+            return posicionBusService.getCercanos(latitud, longitud, k, radio);
+        }
+        return posicionBusService.getEnRadio(latitud, longitud, radio, Integer.MAX_VALUE);
     }
 
     public void deleteById(Long id) {
+        AsignacionBus asignacion = asignacionBusService.getAsignacion(id);
         busesRepository.deleteById(id);
+        if (asignacion != null) {
+            flotaStreamService.publicar(asignacion.getEmpresaId(), new DeltaFlota(id, null, null, null, null, null, true, null));
+        }
+        posicionBusService.olvidar(id);
+        asignacionBusService.olvidar(id);
+        detectorLlegadasService.olvidar(id);
     }
 }
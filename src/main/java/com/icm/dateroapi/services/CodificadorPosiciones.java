@@ -0,0 +1,107 @@
+package com.icm.dateroapi.services;
+
+import com.icm.dateroapi.dto.PuntoHistorial;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Codificacion compacta de una secuencia de pings.
+ * Lat/lon se guardan en punto fijo (1e-6 grados, ~11 cm) y el tiempo en ms.
+ * El primer punto va completo y los siguientes como diferencias con el anterior,
+ * todo en varint zigzag, asi un ping tipico ocupa entre 4 y 7 bytes.
+ */
+public class CodificadorPosiciones {
+    private static final double ESCALA = 1_000_000d;
+
+    private byte[] datos = new byte[64];
+    private int tamanio;
+    private int puntos;
+    private long ultimaLatitud;
+    private long ultimaLongitud;
+    private long ultimaFecha;
+    private long minFecha = Long.MAX_VALUE;
+    private long maxFecha = Long.MIN_VALUE;
+
+    public void agregar(double latitud, double longitud, long fecha) {
+        long lat = Math.round(latitud * ESCALA);
+        long lon = Math.round(longitud * ESCALA);
+        if (puntos == 0) {
+            escribir(lat);
+            escribir(lon);
+            escribir(fecha);
+        } else {
+            escribir(lat - ultimaLatitud);
+            escribir(lon - ultimaLongitud);
+            escribir(fecha - ultimaFecha);
+        }
+        ultimaLatitud = lat;
+        ultimaLongitud = lon;
+        ultimaFecha = fecha;
+        minFecha = Math.min(minFecha, fecha);
+        maxFecha = Math.max(maxFecha, fecha);
+        puntos++;
+    }
+
+    public void agregarTodos(List<PuntoHistorial> lista) {
+        for (PuntoHistorial punto : lista) {
+            agregar(punto.getLatitud(), punto.getLongitud(), punto.getFecha());
+        }
+    }
+
+    public int getPuntos() {
+        return puntos;
+    }
+
+    public long getMinFecha() {
+        return minFecha;
+    }
+
+    public long getMaxFecha() {
+        return maxFecha;
+    }
+
+    public byte[] getDatos() {
+        return Arrays.copyOf(datos, tamanio);
+    }
+
+    public static List<PuntoHistorial> decodificar(byte[] datos) {
+        List<PuntoHistorial> resultado = new ArrayList<>();
+        int[] posicion = {0};
+        long lat = 0;
+        long lon = 0;
+        long fecha = 0;
+        while (posicion[0] < datos.length) {
+            lat += leer(datos, posicion);
+            lon += leer(datos, posicion);
+            fecha += leer(datos, posicion);
+            resultado.add(new PuntoHistorial(lat / ESCALA, lon / ESCALA, fecha));
+        }
+        return resultado;
+    }
+
+    private void escribir(long valor) {
+        long zigzag = (valor << 1) ^ (valor >> 63);
+        if (tamanio + 10 > datos.length) {
+            datos = Arrays.copyOf(datos, datos.length * 2);
+        }
+        while ((zigzag & ~0x7FL) != 0) {
+            datos[tamanio++] = (byte) ((zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        datos[tamanio++] = (byte) zigzag;
+    }
+
+    private static long leer(byte[] datos, int[] posicion) {
+        long resultado = 0;
+        int desplazamiento = 0;
+        byte b;
+        do {
+            b = datos[posicion[0]++];
+            resultado |= (long) (b & 0x7F) << desplazamiento;
+            desplazamiento += 7;
+        } while ((b & 0x80) != 0);
+        return (resultado >>> 1) ^ -(resultado & 1);
+    }
+}
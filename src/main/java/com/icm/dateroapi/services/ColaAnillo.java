@@ -0,0 +1,82 @@
+package com.icm.dateroapi.services;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/*
+ * Cola circular acotada sin candados: varios productores, un solo consumidor.
+ * Cada casilla lleva un numero de secuencia que indica si esta libre para
+ * el productor de esa vuelta o lista para el consumidor.
+ */
+public class ColaAnillo<T> {
+    private final Object[] elementos;
+    private final AtomicLongArray secuencias;
+    private final int mascara;
+    private final AtomicLong cola = new AtomicLong();
+    // Solo la escribe el consumidor
+    private volatile long cabeza;
+
+    public ColaAnillo(int capacidadMinima) {
+        int capacidad = Integer.highestOneBit(Math.max(2, capacidadMinima - 1)) << 1;
+        this.elementos = new Object[capacidad];
+        this.secuencias = new AtomicLongArray(capacidad);
+        this.mascara = capacidad - 1;
+        for (int i = 0; i < capacidad; i++) {
+            secuencias.set(i, i);
+        }
+    }
+
+    // false si esta llena; nunca bloquea
+    public boolean ofrecer(T elemento) {
+        long posicion = cola.get();
+        while (true) {
+            int indice = (int) (posicion & mascara);
+            long diferencia = secuencias.get(indice) - posicion;
+            if (diferencia == 0) {
+                if (cola.compareAndSet(posicion, posicion + 1)) {
+                    elementos[indice] = elemento;
+                    secuencias.set(indice, posicion + 1);
+                    return true;
+                }
+                posicion = cola.get();
+            } else if (diferencia < 0) {
+                return false;
+            } else {
+                posicion = cola.get();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public T sacar() {
+        long posicion = cabeza;
+        int indice = (int) (posicion & mascara);
+        if (secuencias.get(indice) != posicion + 1) {
+            return null;
+        }
+        T elemento = (T) elementos[indice];
+        elementos[indice] = null;
+        secuencias.set(indice, posicion + mascara + 1);
+        cabeza = posicion + 1;
+        return elemento;
+    }
+
+    public int drenar(Consumer<T> destino, int maximo) {
+        int cantidad = 0;
+        T elemento;
+        while (cantidad < maximo && (elemento = sacar()) != null) {
+            destino.accept(elemento);
+            cantidad++;
+        }
+        return cantidad;
+    }
+
+    public int tamanio() {
+        return (int) Math.max(0, cola.get() - cabeza);
+    }
+
+    public int capacidad() {
+        return elementos.length;
+    }
+}
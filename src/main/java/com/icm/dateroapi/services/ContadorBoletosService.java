@@ -0,0 +1,374 @@
+package com.icm.dateroapi.services;
+
+import com.icm.dateroapi.dto.AsignacionBus;
+import com.icm.dateroapi.models.BoletosModel;
+import com.icm.dateroapi.models.BusesModel;
+import com.icm.dateroapi.models.ConteoBoletosModel;
+import com.icm.dateroapi.models.EmpresasModel;
+import com.icm.dateroapi.repositories.ConteoBoletosRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Contador en memoria de boletos por (bus, boleto, dia de Peru).
+ * Cada venta solo suma en un LongAdder; un proceso periodico vuelca los
+ * incrementos pendientes con un upsert atomico sobre ConteoBoletos.
+ */
+@Service
+public class ContadorBoletosService {
+    private static final Logger log = LoggerFactory.getLogger(ContadorBoletosService.class);
+    private static final ZoneId ZONA_PERU = ZoneId.of("America/Lima");
+    private static final int TAMANIO_LOTE = 500;
+
+    static final String UPSERT_CONTEO =
+            "INSERT INTO conteo_boletos (buses, boletos, empresa, dia, conteo, total_acumulado) " +
+            "VALUES (?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE conteo = conteo + VALUES(conteo), " +
+            "total_acumulado = COALESCE(total_acumulado, 0) + VALUES(total_acumulado)";
+
+    private static final String INSERT_RECHAZADO =
+            "INSERT INTO conteos_rechazados (bus, boleto, empresa, dia, conteo, total, error, fecha) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private ConteoBoletosRepository conteoBoletosRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ResumenConteoService resumenConteoService;
+
+    @Autowired
+    private AsignacionBusService asignacionBusService;
+
+    @Autowired
+    private BoletosService boletosService;
+
+    private final Map<ClaveConteo, Acumulador> acumuladores = new ConcurrentHashMap<>();
+
+    // El volcado va en su propia transaccion aunque se dispare desde otra (editar/eliminar)
+    public ContadorBoletosService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public LocalDate hoyPeru() {
+        return LocalDate.now(ZONA_PERU);
+    }
+
+    public ConteoBoletosModel aumentar(Long busId, Long empresaId, Long boletoId, Double monto) {
+        return aumentar(busId, empresaId, boletoId, monto, hoyPeru());
+    }
+
+    // Para ventas aceptadas antes y aplicadas despues (ingesta asincrona): cuentan en el dia en que llegaron
+    public ConteoBoletosModel aumentar(Long busId, Long empresaId, Long boletoId, Double monto, LocalDate dia) {
+        validar(busId, empresaId, boletoId);
+        ClaveConteo clave = new ClaveConteo(busId, boletoId, dia);
+        double valor = monto != null ? monto : 0;
+        while (true) {
+            // La consulta va fuera de compute para no tener bloqueada la cubeta del mapa mientras
+            // responde la BD; si otra venta cargo la clave antes, lo leido se descarta
+            Acumulador cargado = acumuladores.containsKey(clave) ? null : cargar(clave, empresaId);
+            // Se suma dentro de compute: descartar y la limpieza sacan la clave con el mismo candado,
+            // asi ninguna venta cae en un acumulador que ya salio del mapa
+            Acumulador acumulador = acumuladores.compute(clave, (c, actual) -> {
+                Acumulador a = actual != null ? actual : cargado;
+                if (a != null) {
+                    a.sumar(valor);
+                }
+                return a;
+            });
+            // null: la clave salio del mapa entre la consulta y el compute, se vuelve a cargar
+            if (acumulador != null) {
+                return acumulador.aModelo(clave);
+            }
+        }
+    }
+
+    // Una venta invalida se rechaza aqui y no al volcar, donde haria fallar el lote entero.
+    // Bus y boleto salen de las busquedas en cache
+    public void validar(Long busId, Long empresaId, Long boletoId) {
+        if (busId == null || empresaId == null || boletoId == null) {
+            throw new IllegalArgumentException("bus, empresa y boleto son obligatorios");
+        }
+        AsignacionBus asignacion = asignacionBusService.getAsignacion(busId);
+        if (asignacion == null) {
+            throw new IllegalArgumentException("no existe el bus " + busId);
+        }
+        if (!empresaId.equals(asignacion.getEmpresaId())) {
+            throw new IllegalArgumentException("el bus " + busId + " no es de la empresa " + empresaId);
+        }
+        BoletosModel boleto = boletosService.getById(boletoId)
+                .orElseThrow(() -> new IllegalArgumentException("no existe el boleto " + boletoId));
+        if (boleto.getEmpresasModel() != null && !empresaId.equals(boleto.getEmpresasModel().getId())) {
+            throw new IllegalArgumentException("el boleto " + boletoId + " no es de la empresa " + empresaId);
+        }
+    }
+
+    // Solo se consulta la BD la primera vez que se toca la clave en el dia
+    private Acumulador cargar(ClaveConteo clave, Long empresaId) {
+        Acumulador acumulador = new Acumulador(empresaId);
+        Optional<ConteoBoletosModel> existente = conteoBoletosRepository
+                .findFirstByBusesModelIdAndBoletosModelIdAndDia(clave.getBusId(), clave.getBoletoId(), clave.getDia());
+        if (existente.isPresent()) {
+            ConteoBoletosModel registro = existente.get();
+            acumulador.id = registro.getId();
+            acumulador.conteo.add(registro.getConteo() != null ? registro.getConteo() : 0);
+            acumulador.total.add(registro.getTotalAcumulado() != null ? registro.getTotalAcumulado() : 0);
+        }
+        return acumulador;
+    }
+
+    @Scheduled(fixedDelayString = "${conteo.boletos.flush-ms:2000}")
+    public synchronized void volcarConteos() {
+        List<Pendiente> lote = new ArrayList<>();
+        acumuladores.forEach((clave, acumulador) -> {
+            long conteo = acumulador.conteoPendiente.sumThenReset();
+            double total = acumulador.totalPendiente.sumThenReset();
+            if (conteo != 0 || total != 0) {
+                lote.add(new Pendiente(clave, acumulador, conteo, total));
+            }
+        });
+
+        escribirPendientes(lote);
+
+        // Las claves de dias pasados ya no reciben ventas
+        LocalDate ayer = hoyPeru().minusDays(1);
+        for (ClaveConteo clave : acumuladores.keySet()) {
+            if (clave.getDia().isBefore(ayer)) {
+                acumuladores.computeIfPresent(clave, (c, acumulador) -> acumulador.sinPendientes() ? null : acumulador);
+            }
+        }
+    }
+
+    // false si algo se devolvio para el siguiente intento
+    private boolean escribirPendientes(List<Pendiente> lote) {
+        if (lote.isEmpty()) {
+            return true;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> escribir(lote));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            if (lote.size() == 1) {
+                rechazar(lote.get(0), e);
+                return true;
+            }
+        } catch (RuntimeException e) {
+            if (lote.size() == 1) {
+                devolver(lote);
+                return false;
+            }
+        }
+        // Fila por fila, para que una fila mala no frene al resto en cada volcado
+        for (int i = 0; i < lote.size(); i++) {
+            Pendiente pendiente = lote.get(i);
+            try {
+                transactionTemplate.executeWithoutResult(status -> escribir(List.of(pendiente)));
+            } catch (DataIntegrityViolationException e) {
+                rechazar(pendiente, e);
+            } catch (RuntimeException e) {
+                // No es la fila sino la BD: esta y las que faltan se devuelven para el siguiente intento
+                devolver(lote.subList(i, lote.size()));
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void devolver(List<Pendiente> pendientes) {
+        for (Pendiente pendiente : pendientes) {
+            pendiente.acumulador.conteoPendiente.add(pendiente.conteo);
+            pendiente.acumulador.totalPendiente.add(pendiente.total);
+        }
+    }
+
+    private void rechazar(Pendiente pendiente, DataIntegrityViolationException causa) {
+        // Lo que no se guardo tampoco cuenta en los totales que se le responden al datero
+        pendiente.acumulador.conteo.add(-pendiente.conteo);
+        pendiente.acumulador.total.add(-pendiente.total);
+        String error = String.valueOf(causa.getMostSpecificCause().getMessage());
+        log.warn("Conteo rechazado bus={} boleto={} dia={} conteo={}: {}", pendiente.clave.getBusId(),
+                pendiente.clave.getBoletoId(), pendiente.clave.getDia(), pendiente.conteo, error);
+        try {
+            jdbcTemplate.update(INSERT_RECHAZADO, pendiente.clave.getBusId(), pendiente.clave.getBoletoId(),
+                    pendiente.acumulador.empresaId, Date.valueOf(pendiente.clave.getDia()), pendiente.conteo,
+                    pendiente.total, error.length() > 500 ? error.substring(0, 500) : error,
+                    Timestamp.valueOf(LocalDateTime.now()));
+        } catch (RuntimeException e) {
+            log.error("No se pudo guardar el conteo rechazado", e);
+        }
+    }
+
+    private void escribir(List<Pendiente> lote) {
+        resumenConteoService.iniciarEscritura();
+        jdbcTemplate.batchUpdate(UPSERT_CONTEO, lote, TAMANIO_LOTE, (ps, pendiente) -> {
+            ps.setLong(1, pendiente.clave.getBusId());
+            ps.setLong(2, pendiente.clave.getBoletoId());
+            ps.setLong(3, pendiente.acumulador.empresaId);
+            ps.setDate(4, Date.valueOf(pendiente.clave.getDia()));
+            ps.setLong(5, pendiente.conteo);
+            ps.setDouble(6, pendiente.total);
+        });
+
+        List<ResumenConteoService.DeltaConteo> deltas = new ArrayList<>(lote.size());
+        for (Pendiente pendiente : lote) {
+            deltas.add(new ResumenConteoService.DeltaConteo(pendiente.clave.getBusId(), pendiente.clave.getBoletoId(),
+                    pendiente.clave.getDia(), pendiente.conteo, pendiente.total));
+        }
+        resumenConteoService.aplicar(deltas);
+    }
+
+    // Se toma el mismo candado que el volcado para que no se crucen; las demas escrituras las
+    // ordena ResumenConteoService. Quien toma los dos candados toma primero este
+    public synchronized void reconstruirResumenes() {
+        volcarConteos();
+        resumenConteoService.reconstruir();
+    }
+
+    // Ventas que otro proceso ya escribio en la BD (lotes de eventos): solo se reflejan en los totales en memoria
+    public void sumarAplicado(ClaveConteo clave, long conteo, double total) {
+        acumuladores.computeIfPresent(clave, (c, acumulador) -> {
+            acumulador.conteo.add(conteo);
+            acumulador.total.add(total);
+            return acumulador;
+        });
+    }
+
+    // Para cuando el registro se edita o elimina por fuera del contador: primero se saca la clave,
+    // asi una venta que llegue en medio crea un acumulador nuevo en vez de perderse
+    public synchronized void descartar(Long busId, Long boletoId, LocalDate dia) {
+        Acumulador[] quitado = new Acumulador[1];
+        acumuladores.computeIfPresent(new ClaveConteo(busId, boletoId, dia), (clave, acumulador) -> {
+            quitado[0] = acumulador;
+            return null;
+        });
+        if (quitado[0] == null) {
+            return;
+        }
+        ClaveConteo clave = new ClaveConteo(busId, boletoId, dia);
+        long conteo = quitado[0].conteoPendiente.sumThenReset();
+        double total = quitado[0].totalPendiente.sumThenReset();
+        if ((conteo != 0 || total != 0) && !escribirPendientes(List.of(new Pendiente(clave, quitado[0], conteo, total)))) {
+            // Vuelve al mapa para el siguiente volcado y la edicion no sigue, como antes
+            acumuladores.compute(clave, (c, actual) -> {
+                if (actual == null) {
+                    return quitado[0];
+                }
+                actual.absorber(quitado[0]);
+                return actual;
+            });
+            throw new IllegalStateException("no se pudieron volcar las ventas pendientes de la clave " + clave);
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        volcarConteos();
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class ClaveConteo {
+        private Long busId;
+        private Long boletoId;
+        private LocalDate dia;
+    }
+
+    private static class Acumulador {
+        private final Long empresaId;
+        private volatile Long id;
+        // Totales del dia (BD + memoria) para responder al datero
+        private final LongAdder conteo = new LongAdder();
+        private final DoubleAdder total = new DoubleAdder();
+        // Incrementos que aun no se escriben en la BD
+        private final LongAdder conteoPendiente = new LongAdder();
+        private final DoubleAdder totalPendiente = new DoubleAdder();
+
+        private Acumulador(Long empresaId) {
+            this.empresaId = empresaId;
+        }
+
+        private void sumar(double valor) {
+            conteo.increment();
+            total.add(valor);
+            conteoPendiente.increment();
+            totalPendiente.add(valor);
+        }
+
+        // Pendientes de un acumulador que salio del mapa; no estan en la BD, cuentan tambien en los totales
+        private void absorber(Acumulador otro) {
+            long pendiente = otro.conteoPendiente.sumThenReset();
+            double totalPendienteOtro = otro.totalPendiente.sumThenReset();
+            conteo.add(pendiente);
+            total.add(totalPendienteOtro);
+            conteoPendiente.add(pendiente);
+            totalPendiente.add(totalPendienteOtro);
+        }
+
+        private boolean sinPendientes() {
+            return conteoPendiente.sum() == 0 && totalPendiente.sum() == 0;
+        }
+
+        private ConteoBoletosModel aModelo(ClaveConteo clave) {
+            BusesModel bus = new BusesModel();
+            bus.setId(clave.getBusId());
+
+            EmpresasModel empresa = new EmpresasModel();
+            empresa.setId(empresaId);
+
+            BoletosModel boleto = new BoletosModel();
+            boleto.setId(clave.getBoletoId());
+
+            ConteoBoletosModel modelo = new ConteoBoletosModel();
+            modelo.setId(id);
+            modelo.setBusesModel(bus);
+            modelo.setEmpresasModel(empresa);
+            modelo.setBoletosModel(boleto);
+            modelo.setDia(clave.getDia());
+            modelo.setConteo((int) conteo.sum());
+            modelo.setTotalAcumulado(total.sum());
+            return modelo;
+        }
+    }
+
+    private static class Pendiente {
+        private final ClaveConteo clave;
+        private final Acumulador acumulador;
+        private final long conteo;
+        private final double total;
+
+        private Pendiente(ClaveConteo clave, Acumulador acumulador, long conteo, double total) {
+            this.clave = clave;
+            this.acumulador = acumulador;
+            this.conteo = conteo;
+            this.total = total;
+        }
+    }
+}
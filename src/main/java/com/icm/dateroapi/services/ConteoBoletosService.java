@@ -1,11 +1,13 @@
 package com.icm.dateroapi.services;
 
+import com.icm.dateroapi.dto.ConteoBoletosDTO;
 import com.icm.dateroapi.models.*;
 import com.icm.dateroapi.repositories.ConteoBoletosRepository;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.TypedQuery;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 
 import java.time.LocalDate;
@@ -13,127 +15,78 @@ import java.time.YearMonth;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 @Service
 public class ConteoBoletosService {
     @Autowired
     private ConteoBoletosRepository conteoBoletosRepository;
     @Autowired
-    private EntityManager entityManager;
+    private ContadorBoletosService contadorBoletosService;
+    @Autowired
+    private ResumenConteoService resumenConteoService;
 
-    public List<ConteoBoletosModel> getAll(){
-        return conteoBoletosRepository.findAll();
+    public List<ConteoBoletosDTO> getAll(){
+        return conteoBoletosRepository.findAllDTO();
     }
 
     public Optional<ConteoBoletosModel> getById(Long id){
         return conteoBoletosRepository.findById(id);
     }
 
-    public List<ConteoBoletosModel> findLast7DaysRecords() {
+    public void exportar(LocalDate desde, LocalDate hasta, Consumer<ConteoBoletosDTO> destino) {
+        ExportacionService.porPaginas((despues, pagina) -> conteoBoletosRepository.findDTOPagina(desde, hasta, despues, pagina),
+                ConteoBoletosDTO::getId, destino);
+    }
+
+    public List<ConteoBoletosDTO> findLast7DaysRecords() {
         LocalDate today = LocalDate.now();  // Obtener la fecha actual
 
         // Calcular la fecha hace 7 días
         LocalDate oneWeekAgo = today.minusDays(7);
 
-        // Realizar la consulta JPA para buscar registros en los últimos 7 días
-        List<ConteoBoletosModel> records = entityManager.createQuery(
-                        "SELECT cb FROM ConteoBoletosModel cb WHERE cb.dia >= :oneWeekAgo AND cb.dia <= :today",
-                        ConteoBoletosModel.class
-                )
-                .setParameter("oneWeekAgo", oneWeekAgo)
-                .setParameter("today", today)
-                .getResultList();
-
-        return records;
+        return conteoBoletosRepository.findDTOByDiaBetween(oneWeekAgo, today);
     }
 
     public List<Map<String, Object>> findLast7DaysRecordsOrdered(Long busId) {
         LocalDate today = LocalDate.now();
         LocalDate sixDaysAgo = today.minusDays(6);
+        return armarRespuestaDiaria(resumenConteoService.getDiario(busId, sixDaysAgo, today));
+    }
 
-        List<Object[]> resultList = entityManager.createQuery(
-                        "SELECT cb.dia, cb.busesModel.placa, cb.boletosModel.nombre, cb.boletosModel.valor, SUM(cb.conteo), SUM(cb.totalAcumulado) " +
-                                "FROM ConteoBoletosModel cb " +
-                                "WHERE cb.dia >= :sixDaysAgo AND cb.dia <= :today " +
-                                "AND cb.busesModel.id = :busId " +  // Agregamos la condición para el ID del vehículo
-                                "GROUP BY cb.dia, cb.busesModel.placa, cb.boletosModel.nombre, cb.boletosModel.valor",
-                        Object[].class
-                )
-                .setParameter("sixDaysAgo", sixDaysAgo)
-                .setParameter("today", today)
-                .setParameter("busId", busId)  // Pasamos el parámetro del ID del vehículo
-                .getResultList();
+    public List<Map<String, Object>> findRecordsInCurrentMonth(Long busId) {
+        YearMonth currentYearMonth = YearMonth.now();
+        LocalDate firstDayOfMonth = currentYearMonth.atDay(1);
+        LocalDate lastDayOfMonth = currentYearMonth.atEndOfMonth();
+        return armarRespuestaDiaria(resumenConteoService.getDiario(busId, firstDayOfMonth, lastDayOfMonth));
+    }
 
+    public List<Map<String, Object>> findMonthlySummary(Long busId) {
         List<Map<String, Object>> responseList = new ArrayList<>();
-
-        for (Object[] result : resultList) {
-            LocalDate dia = (LocalDate) result[0];
-            String placa = (String) result[1];
-            String nombreBoleto = (String) result[2];
-            String valorBoleto = (String) result[3];
-            Long conteo = (Long) result[4];
-            Double totalAcumulado = (Double) result[5];
-
-            // Create a map for the response structure
+        for (ConteoBoletosMensualModel resumen : resumenConteoService.getMensual(busId)) {
             Map<String, Object> response = new LinkedHashMap<>();
-            response.put("dia", new int[]{dia.getYear(), dia.getMonthValue(), dia.getDayOfMonth()});
-            response.put("placa", placa);
-
-            Map<String, Object> servicio = new LinkedHashMap<>();
-            servicio.put("nombre", nombreBoleto);
-            servicio.put("valor", valorBoleto);
-            servicio.put("conteo", conteo);
-            servicio.put("totalAcumulado", totalAcumulado);
-
-            response.put("servicios", Collections.singletonList(servicio));
-
+            response.put("anio", resumen.getAnio());
+            response.put("mes", resumen.getMes());
+            response.put("placa", resumen.getPlaca());
+            response.put("servicios", Collections.singletonList(
+                    armarServicio(resumen.getNombreBoleto(), resumen.getValorBoleto(), resumen.getConteo(), resumen.getTotalAcumulado())));
             responseList.add(response);
         }
-
         return responseList;
     }
 
-    public List<Map<String, Object>> findRecordsInCurrentMonth(Long busId) {
-        YearMonth currentYearMonth = YearMonth.now();
-        LocalDate firstDayOfMonth = currentYearMonth.atDay(1);
-        LocalDate lastDayOfMonth = currentYearMonth.atEndOfMonth();
-
-        List<Object[]> resultList = entityManager.createQuery(
-                        "SELECT cb.dia, cb.busesModel.placa, cb.boletosModel.nombre, cb.boletosModel.valor, SUM(cb.conteo), SUM(cb.totalAcumulado) " +
-                                "FROM ConteoBoletosModel cb " +
-                                "WHERE cb.dia >= :firstDayOfMonth AND cb.dia <= :lastDayOfMonth " +
-                                "AND cb.busesModel.id = :busId " +  // Agregamos la condición para el ID del vehículo
-                                "GROUP BY cb.dia, cb.busesModel.placa, cb.boletosModel.nombre, cb.boletosModel.valor",
-                        Object[].class
-                )
-                .setParameter("firstDayOfMonth", firstDayOfMonth)
-                .setParameter("lastDayOfMonth", lastDayOfMonth)
-                .setParameter("busId", busId)  // Pasamos el parámetro del ID del vehículo
-                .getResultList();
-
+    // Lee directo de las filas ya agregadas en ConteoBoletosDiario
+    private List<Map<String, Object>> armarRespuestaDiaria(List<ConteoBoletosDiarioModel> resumenes) {
         List<Map<String, Object>> responseList = new ArrayList<>();
 
-        for (Object[] result : resultList) {
-            LocalDate dia = (LocalDate) result[0];
-            String placa = (String) result[1];
-            String nombreBoleto = (String) result[2];
-            String valorBoleto = (String) result[3];
-            Long conteo = (Long) result[4];
-            Double totalAcumulado = (Double) result[5];
+        for (ConteoBoletosDiarioModel resumen : resumenes) {
+            LocalDate dia = resumen.getDia();
 
-            // Create a map for the response structure
             Map<String, Object> response = new LinkedHashMap<>();
             response.put("dia", new int[]{dia.getYear(), dia.getMonthValue(), dia.getDayOfMonth()});
-            response.put("placa", placa);
-
-            Map<String, Object> servicio = new LinkedHashMap<>();
-            servicio.put("nombre", nombreBoleto);
-            servicio.put("valor", valorBoleto);
-            servicio.put("conteo", conteo);
-            servicio.put("totalAcumulado", totalAcumulado);
-
-            response.put("servicios", Collections.singletonList(servicio));
+            response.put("placa", resumen.getPlaca());
+            response.put("servicios", Collections.singletonList(
+                    armarServicio(resumen.getNombreBoleto(), resumen.getValorBoleto(), resumen.getConteo(), resumen.getTotalAcumulado())));
 
             responseList.add(response);
         }
@@ -141,19 +94,31 @@ public class ConteoBoletosService {
         return responseList;
     }
 
+    private Map<String, Object> armarServicio(String nombreBoleto, String valorBoleto, Long conteo, Double totalAcumulado) {
+        Map<String, Object> servicio = new LinkedHashMap<>();
+        servicio.put("nombre", nombreBoleto);
+        servicio.put("valor", valorBoleto);
+        servicio.put("conteo", conteo);
+        servicio.put("totalAcumulado", totalAcumulado);
+        return servicio;
+    }
 
-    public List<ConteoBoletosModel> obtenerConteoPorBusIdYFechaActual(Long busId) {
-        LocalDate fechaActualPeru = obtenerFechaActualPeru();
+    public void reconstruirResumenes() {
+        contadorBoletosService.reconstruirResumenes();
+    }
+
+    // Primer arranque con los resumenes vacios: se llenan con el historial existente
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializarResumenes() {
+        if (resumenConteoService.estaVacio() && conteoBoletosRepository.count() > 0) {
+            reconstruirResumenes();
+        }
+    }
 
-        TypedQuery<ConteoBoletosModel> query = entityManager.createQuery(
-                "SELECT c FROM ConteoBoletosModel c " +
-                        "WHERE c.busesModel.id = :busId " +
-                        "AND c.dia = :fechaActualPeru",
-                ConteoBoletosModel.class
-        );
-        query.setParameter("busId", busId);
-        query.setParameter("fechaActualPeru", fechaActualPeru);
-        return query.getResultList();
+
+    public List<ConteoBoletosDTO> obtenerConteoPorBusIdYFechaActual(Long busId) {
+        LocalDate fechaActualPeru = obtenerFechaActualPeru();
+        return conteoBoletosRepository.findDTOByBusAndDia(busId, fechaActualPeru);
     }
 
     private LocalDate obtenerFechaActualPeru() {
@@ -163,76 +128,58 @@ public class ConteoBoletosService {
         return fechaActualPeru;
     }
 
+    // IllegalArgumentException si falta el bus, la empresa o el boleto, o no corresponden
     public ConteoBoletosModel aumentarBoleto(ConteoBoletosModel conteoBoletosModel) {
-        Long busId = conteoBoletosModel.getBusesModel().getId();
-        Long boletoId = conteoBoletosModel.getBoletosModel().getId();
-        List<ConteoBoletosModel> registros = obtenerConteoPorBusIdYFechaActual(busId);
-
-        ConteoBoletosModel nuevoRegistro;
-
-        if (registros.isEmpty()) {
-            nuevoRegistro = crearNuevoRegistro(conteoBoletosModel, busId, boletoId);
-        } else {
-            List<ConteoBoletosModel> registrosFiltrados = registros.stream()
-                    .filter(registro -> registro.getBoletosModel().getId().equals(boletoId))
-                    .collect(Collectors.toList());
-
-            if (registrosFiltrados.isEmpty()) {
-                nuevoRegistro = crearNuevoRegistro(conteoBoletosModel, busId, boletoId);
-            } else {
-                nuevoRegistro = actualizarRegistroExistente(registrosFiltrados.get(0), conteoBoletosModel);
-            }
-        }
-
-        return nuevoRegistro;
-    }
-
-    private ConteoBoletosModel crearNuevoRegistro(ConteoBoletosModel conteoBoletosModel, Long busId, Long boletoId) {
-        BusesModel bus = new BusesModel();
-        bus.setId(busId);
-
-        EmpresasModel empresa = new EmpresasModel();
-        empresa.setId(conteoBoletosModel.getEmpresasModel().getId());
-
-        BoletosModel boleto = new BoletosModel();
-        boleto.setId(boletoId);
-
-        ConteoBoletosModel nuevoRegistro = new ConteoBoletosModel();
-        nuevoRegistro.setBusesModel(bus);
-        nuevoRegistro.setEmpresasModel(empresa);
-        nuevoRegistro.setBoletosModel(boleto);
-        nuevoRegistro.setDia(obtenerFechaActualPeru());
-        nuevoRegistro.setConteo(1);
-        nuevoRegistro.setTotalAcumulado(conteoBoletosModel.getTotalAcumulado());
-
-        return createConteoB(nuevoRegistro);
-    }
-
-    private ConteoBoletosModel actualizarRegistroExistente(ConteoBoletosModel registroExistente, ConteoBoletosModel conteoBoletosModel) {
-        int nuevoConteo = registroExistente.getConteo() + 1;
-        registroExistente.setConteo(nuevoConteo);
-        registroExistente.setTotalAcumulado(registroExistente.getTotalAcumulado() + conteoBoletosModel.getTotalAcumulado());
-        return editConteoB(registroExistente, registroExistente.getId());
+        return contadorBoletosService.aumentar(
+                conteoBoletosModel.getBusesModel() != null ? conteoBoletosModel.getBusesModel().getId() : null,
+                conteoBoletosModel.getEmpresasModel() != null ? conteoBoletosModel.getEmpresasModel().getId() : null,
+                conteoBoletosModel.getBoletosModel() != null ? conteoBoletosModel.getBoletosModel().getId() : null,
+                conteoBoletosModel.getTotalAcumulado());
     }
 
+    @Transactional
     public ConteoBoletosModel createConteoB(ConteoBoletosModel conteoBoletosModel){
-        return conteoBoletosRepository.save(conteoBoletosModel);
+        resumenConteoService.iniciarEscritura();
+        ConteoBoletosModel conteoB = conteoBoletosRepository.save(conteoBoletosModel);
+        resumenConteoService.aplicar(List.of(delta(conteoB, 1)));
+        return conteoB;
     }
 
+    @Transactional
     public ConteoBoletosModel editConteoB(ConteoBoletosModel conteoBoletosModel, Long id){
         Optional<ConteoBoletosModel> existing = conteoBoletosRepository.findById(id);
         if (existing.isPresent()){
             ConteoBoletosModel conteoB = existing.get();
+            // descartar toma el candado del contador: va antes de iniciarEscritura, en el mismo orden que el volcado
+            contadorBoletosService.descartar(conteoB.getBusesModel().getId(), conteoB.getBoletosModel().getId(), conteoB.getDia());
+            resumenConteoService.iniciarEscritura();
+            ResumenConteoService.DeltaConteo anterior = delta(conteoB, -1);
             conteoB.setConteo(conteoBoletosModel.getConteo());
             conteoB.setDia(conteoBoletosModel.getDia());
             conteoB.setBoletosModel(conteoBoletosModel.getBoletosModel());
-            return conteoBoletosRepository.save(conteoB);
+            ConteoBoletosModel guardado = conteoBoletosRepository.save(conteoB);
+            resumenConteoService.aplicar(List.of(anterior, delta(guardado, 1)));
+            return guardado;
         } else {
             return null;
         }
     }
 
+    @Transactional
     public void deleteById(Long id){
+        Optional<ConteoBoletosModel> existing = conteoBoletosRepository.findById(id);
+        existing.ifPresent(conteoB -> {
+            contadorBoletosService.descartar(conteoB.getBusesModel().getId(), conteoB.getBoletosModel().getId(), conteoB.getDia());
+            resumenConteoService.iniciarEscritura();
+            resumenConteoService.aplicar(List.of(delta(conteoB, -1)));
+        });
         conteoBoletosRepository.deleteById(id);
     }
+
+    private ResumenConteoService.DeltaConteo delta(ConteoBoletosModel conteoB, int signo) {
+        long conteo = conteoB.getConteo() != null ? conteoB.getConteo() : 0;
+        double total = conteoB.getTotalAcumulado() != null ? conteoB.getTotalAcumulado() : 0;
+        return new ResumenConteoService.DeltaConteo(conteoB.getBusesModel().getId(), conteoB.getBoletosModel().getId(),
+                conteoB.getDia(), signo * conteo, signo * total);
+    }
 }
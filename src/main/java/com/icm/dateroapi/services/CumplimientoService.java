@@ -0,0 +1,183 @@
+package com.icm.dateroapi.services;
+
+import com.icm.dateroapi.dto.Cumplimiento;
+import com.icm.dateroapi.repositories.RegistroRutaRepository;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Time;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Puntualidad (llegada contra horario) e intervalo entre buses por ruta y paradero,
+ * acumulados paso a paso. Cada paso suma en su paradero y en el total de la ruta,
+ * asi leer un agregado no recorre los pasos del dia.
+ */
+@Service
+public class CumplimientoService {
+    @Autowired
+    private HorariosService horariosService;
+
+    @Autowired
+    private ParadasRutaService paradasRutaService;
+
+    @Autowired
+    private RegistroRutaRepository registroRutaRepository;
+
+    // Ventana de puntualidad: hasta adelanto-s antes y atraso-s despues de la hora esperada
+    @Value("${cumplimiento.adelanto-s:60}")
+    private long adelantoS;
+
+    @Value("${cumplimiento.atraso-s:300}")
+    private long atrasoS;
+
+    // Dias que se mantienen en memoria, contando hoy
+    @Value("${cumplimiento.dias:2}")
+    private int diasConservados;
+
+    private final Map<ClaveDia, AgregadoRuta> agregados = new ConcurrentHashMap<>();
+
+    // Tras un reinicio se rehace el dia con los pasos ya guardados. Se leen antes de recorrerlos:
+    // horaEsperada puede cargar el horario de una ruta y no debe hacerlo con un cursor abierto
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarHoy() {
+        LocalDate hoy = LocalDate.now(SeguidorTramos.ZONA_PERU);
+        registroRutaRepository.recorrerPasos(hoy, hoy, p -> registrar(p.getRutaId(), p.getBusId(), p.getParaderoId(),
+                p.getDia(), p.getHoraLlegada(),
+                horariosService.horaEsperada(p.getRutaId(), p.getBusId(), p.getParaderoId(), p.getDia(), p.getHoraLlegada())));
+    }
+
+    // esperada null si la ruta no tiene horario ese dia: solo cuenta para el intervalo
+    public void registrar(Long rutaId, Long busId, Long paraderoId, LocalDate dia, Time llegada, Time esperada) {
+        long segundo = llegada.toLocalTime().toSecondOfDay();
+        Long desvio = esperada != null ? segundo - esperada.toLocalTime().toSecondOfDay() : null;
+        AgregadoRuta agregado = agregados.computeIfAbsent(new ClaveDia(rutaId, dia), c -> new AgregadoRuta());
+        Acumulado paradero = agregado.porParadero.computeIfAbsent(paraderoId, p -> new Acumulado());
+        Long intervalo = paradero.agregar(busId, segundo, desvio, adelantoS, atrasoS);
+        agregado.total.sumar(desvio, intervalo, adelantoS, atrasoS);
+    }
+
+    public Cumplimiento getRuta(Long rutaId, LocalDate dia) {
+        AgregadoRuta agregado = agregados.get(new ClaveDia(rutaId, dia));
+        return (agregado != null ? agregado.total : new Acumulado()).resumen(rutaId, null, dia);
+    }
+
+    public Cumplimiento getParadero(Long rutaId, Long paraderoId, LocalDate dia) {
+        AgregadoRuta agregado = agregados.get(new ClaveDia(rutaId, dia));
+        Acumulado acumulado = agregado != null ? agregado.porParadero.get(paraderoId) : null;
+        return (acumulado != null ? acumulado : new Acumulado()).resumen(rutaId, paraderoId, dia);
+    }
+
+    // Un resumen por paradero, en el orden de la ruta
+    public List<Cumplimiento> getParaderos(Long rutaId, LocalDate dia) {
+        ParadasRutaService.ParadasRuta paradas = paradasRutaService.getParadas(rutaId);
+        if (paradas == null) {
+            return List.of();
+        }
+        List<Cumplimiento> resumen = new ArrayList<>(paradas.tamanio());
+        for (int i = 0; i < paradas.tamanio(); i++) {
+            resumen.add(getParadero(rutaId, paradas.getParaderoId(i), dia));
+        }
+        return resumen;
+    }
+
+    @Scheduled(cron = "0 0 4 * * *", zone = "America/Lima")
+    public void purgar() {
+        LocalDate limite = LocalDate.now(SeguidorTramos.ZONA_PERU).minusDays(diasConservados - 1);
+        agregados.keySet().removeIf(clave -> clave.getDia().isBefore(limite));
+    }
+
+    @Data
+    @AllArgsConstructor
+    private static class ClaveDia {
+        private Long rutaId;
+        private LocalDate dia;
+    }
+
+    private static class AgregadoRuta {
+        private final Acumulado total = new Acumulado();
+        private final Map<Long, Acumulado> porParadero = new ConcurrentHashMap<>();
+    }
+
+    private static class Acumulado {
+        private long pasos;
+        private long conHorario;
+        private long puntuales;
+        private long adelantados;
+        private long atrasados;
+        private long sumaDesvio;
+        private long intervalos;
+        private long sumaIntervalo;
+        private double sumaCuadrados;
+        private long minIntervalo = Long.MAX_VALUE;
+        private long maxIntervalo;
+        // Solo en los paraderos: ultimo paso y su bus, para el intervalo del siguiente
+        private long ultimoSegundo = -1;
+        private Long ultimoBus;
+
+        // Devuelve el intervalo con el bus anterior, o null si es el primero, llego fuera de orden
+        // o es el mismo bus otra vez (esperando en el paradero o un paso repetido)
+        private synchronized Long agregar(Long busId, long segundo, Long desvio, long adelantoS, long atrasoS) {
+            Long intervalo = null;
+            if (ultimoSegundo >= 0 && segundo >= ultimoSegundo && !Objects.equals(busId, ultimoBus)) {
+                intervalo = segundo - ultimoSegundo;
+            }
+            if (segundo >= ultimoSegundo) {
+                ultimoSegundo = segundo;
+                ultimoBus = busId;
+            }
+            sumar(desvio, intervalo, adelantoS, atrasoS);
+            return intervalo;
+        }
+
+        private synchronized void sumar(Long desvio, Long intervalo, long adelantoS, long atrasoS) {
+            pasos++;
+            if (desvio != null) {
+                conHorario++;
+                sumaDesvio += desvio;
+                if (desvio < -adelantoS) {
+                    adelantados++;
+                } else if (desvio > atrasoS) {
+                    atrasados++;
+                } else {
+                    puntuales++;
+                }
+            }
+            if (intervalo != null) {
+                intervalos++;
+                sumaIntervalo += intervalo;
+                sumaCuadrados += (double) intervalo * intervalo;
+                minIntervalo = Math.min(minIntervalo, intervalo);
+                maxIntervalo = Math.max(maxIntervalo, intervalo);
+            }
+        }
+
+        private synchronized Cumplimiento resumen(Long rutaId, Long paraderoId, LocalDate dia) {
+            Double promedio = intervalos > 0 ? (double) sumaIntervalo / intervalos : null;
+            Double desvioIntervalo = promedio != null
+                    ? Math.sqrt(Math.max(0, sumaCuadrados / intervalos - promedio * promedio))
+                    : null;
+            return new Cumplimiento(rutaId, paraderoId, dia, pasos, conHorario, puntuales, adelantados, atrasados,
+                    conHorario > 0 ? redondear(100.0 * puntuales / conHorario) : null,
+                    conHorario > 0 ? redondear((double) sumaDesvio / conHorario) : null,
+                    intervalos, promedio != null ? redondear(promedio) : null,
+                    desvioIntervalo != null ? redondear(desvioIntervalo) : null,
+                    intervalos > 0 ? minIntervalo : null, intervalos > 0 ? maxIntervalo : null);
+        }
+    }
+
+    private static double redondear(double valor) {
+        return Math.round(valor * 10) / 10.0;
+    }
+}
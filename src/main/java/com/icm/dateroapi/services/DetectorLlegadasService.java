@@ -0,0 +1,256 @@
+package com.icm.dateroapi.services;
+
+import com.icm.dateroapi.dto.AsignacionBus;
+import com.icm.dateroapi.dto.PosicionBus;
+import com.icm.dateroapi.models.BusesModel;
+import com.icm.dateroapi.models.EmpresasModel;
+import com.icm.dateroapi.models.ParaderosModel;
+import com.icm.dateroapi.models.RegistroRutaModel;
+import com.icm.dateroapi.models.RutasModel;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Time;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Detecta la llegada de cada bus a los paraderos de su ruta a partir de los pings.
+ * Por bus solo se guarda el indice del siguiente paradero esperado, asi cada ping
+ * se compara contra unas pocas geocercas sin consultar la BD.
+ */
+@Service
+public class DetectorLlegadasService {
+    private static final Logger log = LoggerFactory.getLogger(DetectorLlegadasService.class);
+    private static final ZoneId ZONA_PERU = ZoneId.of("America/Lima");
+
+    @Autowired
+    private AsignacionBusService asignacionBusService;
+
+    @Autowired
+    private ParadasRutaService paradasRutaService;
+
+    @Lazy
+    @Autowired
+    private RegistroRutaService registroRutaService;
+
+    @Autowired
+    private HorariosService horariosService;
+
+    @Value("${llegadas.radio-metros:40}")
+    private double radioMetros;
+
+    // Cuantos paraderos por delante del esperado se revisan en cada ping
+    @Value("${llegadas.ventana-paraderos:3}")
+    private int ventanaParaderos;
+
+    // Pings seguidos sin llegar a ninguno tras los que se vuelve a ubicar al bus
+    @Value("${llegadas.reanclar-pings:10}")
+    private int reanclarPings;
+
+    private final Map<Long, EstadoBus> estados = new ConcurrentHashMap<>();
+    private final Queue<RegistroRutaModel> pendientes = new ConcurrentLinkedQueue<>();
+
+    // Pasos de un volcado que fallo; van primero en el siguiente para no desordenarlos
+    private final List<RegistroRutaModel> devueltos = new ArrayList<>();
+
+    private final LongAdder reintentados = new LongAdder();
+    private final LongAdder descartados = new LongAdder();
+
+    public void procesar(PosicionBus posicion) {
+        AsignacionBus asignacion = asignacionBusService.getAsignacion(posicion.getBusId());
+        if (asignacion == null || asignacion.getRutaId() == null) {
+            return;
+        }
+        ParadasRutaService.ParadasRuta paradas = paradasRutaService.getParadas(asignacion.getRutaId());
+        if (paradas == null || paradas.tamanio() == 0) {
+            return;
+        }
+        ZonedDateTime momento = Instant.ofEpochMilli(posicion.getFecha()).atZone(ZONA_PERU);
+        EstadoBus estado = estados.computeIfAbsent(posicion.getBusId(), id -> new EstadoBus());
+
+        synchronized (estado) {
+            if (estado.paradas != paradas || !momento.toLocalDate().equals(estado.dia)) {
+                // Ruta nueva, ruta recargada o dia nuevo: se ubica al bus en el paradero mas cercano
+                estado.paradas = paradas;
+                estado.dia = momento.toLocalDate();
+                estado.ultimo = -1;
+                anclar(estado, posicion);
+            } else if (estado.sinLlegar >= reanclarPings) {
+                // Se le perdio (hueco de GPS, paraderos saltados o fin de una ruta lineal)
+                anclar(estado, posicion);
+            }
+            int llegada = -1;
+            for (int i = 0; i < ventanaParaderos && llegada < 0; i++) {
+                int indice = estado.siguiente + i;
+                if (indice >= paradas.tamanio()) {
+                    if (!paradas.isCircular()) {
+                        break;
+                    }
+                    indice -= paradas.tamanio();
+                }
+                if (indice == estado.ultimo) {
+                    // Ruta circular mas corta que la ventana: ya se dio la vuelta
+                    break;
+                }
+                // Los anteriores al que coincide se saltaron (sin ping dentro de su geocerca)
+                if (paradas.distancia(indice, posicion.getLatitud(), posicion.getLongitud()) <= radioMetros) {
+                    llegada = indice;
+                }
+            }
+            if (llegada >= 0) {
+                llego(estado, llegada);
+                pendientes.add(crearRegistro(asignacion, paradas.getParaderoId(llegada), momento));
+            } else {
+                estado.sinLlegar++;
+            }
+        }
+    }
+
+    // Si el mas cercano es el ultimo paradero marcado, el bus sigue ahi o recien salio: no se repite
+    private void anclar(EstadoBus estado, PosicionBus posicion) {
+        int cercano = estado.paradas.masCercano(posicion.getLatitud(), posicion.getLongitud());
+        estado.siguiente = cercano == estado.ultimo ? despues(estado.paradas, cercano) : cercano;
+        estado.sinLlegar = 0;
+    }
+
+    private static void llego(EstadoBus estado, int indice) {
+        estado.ultimo = indice;
+        estado.siguiente = despues(estado.paradas, indice);
+        estado.sinLlegar = 0;
+    }
+
+    // Solo la ruta circular vuelve al primero; en una lineal, pasado el ultimo no se espera ninguno
+    private static int despues(ParadasRutaService.ParadasRuta paradas, int indice) {
+        return paradas.isCircular() ? (indice + 1) % paradas.tamanio() : indice + 1;
+    }
+
+    // Un paso reportado por el datero tambien mueve el estado para no duplicarlo
+    public void pasoExterno(Long busId, Long rutaId, Long paraderoId) {
+        EstadoBus estado = estados.get(busId);
+        if (estado == null) {
+            return;
+        }
+        synchronized (estado) {
+            if (estado.paradas != null && estado.paradas.getRutaId().equals(rutaId)) {
+                int indice = estado.paradas.indiceDe(paraderoId);
+                if (indice >= 0) {
+                    llego(estado, indice);
+                }
+            }
+        }
+    }
+
+    public void olvidar(Long busId) {
+        estados.remove(busId);
+    }
+
+    @Scheduled(fixedDelayString = "${llegadas.flush-ms:5000}")
+    public synchronized void volcarLlegadas() {
+        List<RegistroRutaModel> lote = new ArrayList<>(devueltos);
+        devueltos.clear();
+        RegistroRutaModel registro;
+        while ((registro = pendientes.poll()) != null) {
+            lote.add(registro);
+        }
+        if (lote.isEmpty()) {
+            return;
+        }
+        try {
+            registroRutaService.registrarPasos(lote);
+        } catch (RuntimeException e) {
+            registrarUnoAUno(lote);
+        }
+    }
+
+    // Un paso que la BD rechaza se descarta con un aviso; ante cualquier otro error
+    // (BD caida) el resto se devuelve para el siguiente volcado
+    private void registrarUnoAUno(List<RegistroRutaModel> lote) {
+        for (int i = 0; i < lote.size(); i++) {
+            RegistroRutaModel registro = lote.get(i);
+            // El id que dejo el insert que se revirtio
+            registro.setId(null);
+            try {
+                registroRutaService.registrarPasos(List.of(registro));
+            } catch (DataIntegrityViolationException e) {
+                descartados.increment();
+                log.warn("Paso descartado: bus {} paradero {} a las {}: {}", registro.getBusesModel().getId(),
+                        registro.getParaderosModel().getId(), registro.getHoraLlegada(), e.getMostSpecificCause().getMessage());
+            } catch (RuntimeException e) {
+                List<RegistroRutaModel> resto = lote.subList(i, lote.size());
+                resto.forEach(r -> r.setId(null));
+                devueltos.addAll(resto);
+                reintentados.add(resto.size());
+                log.warn("No se pudieron guardar {} pasos, se reintenta en el siguiente volcado", resto.size(), e);
+                return;
+            }
+        }
+    }
+
+    public Map<String, Object> getMetricas() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("pendientes", pendientes.size());
+        metricas.put("reintentados", reintentados.sum());
+        metricas.put("descartados", descartados.sum());
+        return metricas;
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        volcarLlegadas();
+    }
+
+    private RegistroRutaModel crearRegistro(AsignacionBus asignacion, long paraderoId, ZonedDateTime momento) {
+        EmpresasModel empresa = new EmpresasModel();
+        empresa.setId(asignacion.getEmpresaId());
+
+        RutasModel ruta = new RutasModel();
+        ruta.setId(asignacion.getRutaId());
+
+        BusesModel bus = new BusesModel();
+        bus.setId(asignacion.getBusId());
+
+        ParaderosModel paradero = new ParaderosModel();
+        paradero.setId(paraderoId);
+
+        Time horaLlegada = Time.valueOf(momento.toLocalTime().withNano(0));
+
+        RegistroRutaModel nuevoregistro = new RegistroRutaModel();
+        nuevoregistro.setEmpresasModel(empresa);
+        nuevoregistro.setRutasModel(ruta);
+        nuevoregistro.setBusesModel(bus);
+        nuevoregistro.setParaderosModel(paradero);
+        nuevoregistro.setDia(momento.toLocalDate());
+        nuevoregistro.setHoraLlegada(horaLlegada);
+        Time horaEsperada = horariosService.horaEsperada(asignacion.getRutaId(), asignacion.getBusId(), paraderoId,
+                momento.toLocalDate(), horaLlegada);
+        nuevoregistro.setHoraEsperada(horaEsperada != null ? horaEsperada : horaLlegada);
+        return nuevoregistro;
+    }
+
+    private static class EstadoBus {
+        private ParadasRutaService.ParadasRuta paradas;
+        private LocalDate dia;
+        private int siguiente;
+        // Indice del ultimo paso marcado, -1 si aun no hay
+        private int ultimo;
+        private int sinLlegar;
+    }
+}
@@ -1,7 +1,11 @@
 package com.icm.dateroapi.services;
 
+import com.icm.dateroapi.config.cache.CacheLocal;
+import com.icm.dateroapi.config.cache.CacheRegistro;
+import com.icm.dateroapi.config.cache.VersionesRecurso;
 import com.icm.dateroapi.models.DistritosModel;
 import com.icm.dateroapi.repositories.DistritosRepository;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -13,18 +17,40 @@ public class DistritosService {
     @Autowired
     private DistritosRepository distritosRepository;
 
+    @Autowired
+    private CacheRegistro cacheRegistro;
+
+    @Autowired
+    private VersionesRecurso versionesRecurso;
+
+    private CacheLocal<Long, Optional<DistritosModel>> porId;
+    private CacheLocal<String, List<DistritosModel>> listas;
+
+    @PostConstruct
+    public void crearCaches() {
+        porId = cacheRegistro.crear("distritos.id");
+        listas = cacheRegistro.crear("distritos.lista");
+    }
+
+    public String getEtag() {
+        return versionesRecurso.etag("distritos");
+    }
+
     public List<DistritosModel> getAll(){
-        return distritosRepository.findAll();
+        return listas.obtener("todos", k -> List.copyOf(distritosRepository.findAll()));
     }
 
     public Optional<DistritosModel> getById(Long id){
-        return distritosRepository.findById(id);
+        return porId.obtener(id, distritosRepository::findById);
     }
     public List<DistritosModel> getByEstado(Boolean estado) {
-        return distritosRepository.findByEstado(estado);
+        return listas.obtener(String.valueOf(estado), k -> List.copyOf(distritosRepository.findByEstado(estado)));
     }
     public DistritosModel createDistrito(DistritosModel distritosModel){
-        return distritosRepository.save(distritosModel);
+        DistritosModel guardado = distritosRepository.save(distritosModel);
+        listas.invalidarTodo();
+        versionesRecurso.incrementar("distritos");
+        return guardado;
     }
 
     public DistritosModel editDistrito(DistritosModel distritosModel, Long id){
@@ -33,7 +59,9 @@ public class DistritosService {
             DistritosModel distrito = existing.get();
             distrito.setNombre(distritosModel.getNombre());
             distrito.setEstado(distritosModel.getEstado());
-            return distritosRepository.save(distrito);
+            DistritosModel guardado = distritosRepository.save(distrito);
+            invalidar(id);
+            return guardado;
         } else {
             return null;
         }
@@ -41,5 +69,13 @@ public class DistritosService {
 
     public void deleteById(Long id){
         distritosRepository.deleteById(id);
+        invalidar(id);
+    }
+
+    private void invalidar(Long id) {
+        porId.invalidar(id);
+        listas.invalidarTodo();
+        // Los paraderos muestran el nombre del distrito
+        versionesRecurso.incrementar("distritos", "paraderos");
     }
 }
@@ -1,7 +1,10 @@
 package com.icm.dateroapi.services;
 
+import com.icm.dateroapi.config.cache.CacheLocal;
+import com.icm.dateroapi.config.cache.CacheRegistro;
 import com.icm.dateroapi.models.EmpresasModel;
 import com.icm.dateroapi.repositories.EmpresasRepository;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -13,18 +16,32 @@ public class EmpresasService {
     @Autowired
     private EmpresasRepository empresasRepository;
 
+    @Autowired
+    private CacheRegistro cacheRegistro;
+
+    private CacheLocal<Long, Optional<EmpresasModel>> porId;
+    private CacheLocal<String, List<EmpresasModel>> listas;
+
+    @PostConstruct
+    public void crearCaches() {
+        porId = cacheRegistro.crear("empresas.id");
+        listas = cacheRegistro.crear("empresas.lista");
+    }
+
     public List<EmpresasModel> getAll() {
-        return empresasRepository.findAll();
+        return listas.obtener("todos", k -> List.copyOf(empresasRepository.findAll()));
     }
 
     public Optional<EmpresasModel> getById(Long id) {
-        return empresasRepository.findById(id);
+        return porId.obtener(id, empresasRepository::findById);
     }
     public List<EmpresasModel> getByEstado(Boolean estado) {
-        return empresasRepository.findByEstado(estado);
+        return listas.obtener(String.valueOf(estado), k -> List.copyOf(empresasRepository.findByEstado(estado)));
     }
     public EmpresasModel createEmpresa(EmpresasModel empresasModel){
-        return empresasRepository.save(empresasModel);
+        EmpresasModel guardado = empresasRepository.save(empresasModel);
+        listas.invalidarTodo();
+        return guardado;
     }
 
     public EmpresasModel editEmpresa(EmpresasModel empresasModel, Long id){
@@ -33,7 +50,9 @@ public class EmpresasService {
             EmpresasModel empresa = existing.get();
             empresa.setNombre(empresasModel.getNombre());
             empresa.setEstado(empresasModel.getEstado());
-            return empresasRepository.save(empresa);
+            EmpresasModel guardado = empresasRepository.save(empresa);
+            invalidar(id);
+            return guardado;
         } else {
             return null;
         }
@@ -41,6 +60,14 @@ public class EmpresasService {
 
     public void deleteEmpresa(Long id){
         empresasRepository.deleteById(id);
+        invalidar(id);
+    }
+
+    private void invalidar(Long id) {
+        porId.invalidar(id);
+        listas.invalidarTodo();
+        // Rutas y boletos llevan la empresa embebida
+        cacheRegistro.invalidar("rutas.", "boletos.");
     }
 
 }
@@ -0,0 +1,327 @@
+package com.icm.dateroapi.services;
+
+import com.icm.dateroapi.dto.EstadisticaTramo;
+import com.icm.dateroapi.models.EstadisticasTramoModel;
+import com.icm.dateroapi.repositories.EstadisticasTramoRepository;
+import com.icm.dateroapi.repositories.RegistroRutaRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Percentiles de tiempo de viaje por tramo de ruta, dia de la semana y hora.
+ * Cada celda es un SketchCuantiles que se alimenta con cada tramo recorrido;
+ * el reporte fusiona las celdas pedidas sin leer RegistroRuta.
+ * Las celdas cambiadas se reescriben en EstadisticasTramo cada cierto tiempo.
+ * Cada noche se reconstruye con los ultimos dias del historial, asi las celdas
+ * reflejan una ventana movil y no todo lo recorrido desde el primer dia.
+ * La precision no se guarda: si se cambia hay que reconstruir.
+ */
+@Service
+public class EstadisticasTramoService {
+    private static final int TAMANIO_LOTE = 500;
+
+    private static final String UPSERT_TRAMO =
+            "INSERT INTO estadisticas_tramo (ruta, origen, destino, dia_semana, hora, muestras, datos, actualizado) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE muestras = VALUES(muestras), datos = VALUES(datos), actualizado = VALUES(actualizado)";
+
+    @Autowired
+    private EstadisticasTramoRepository estadisticasTramoRepository;
+
+    @Autowired
+    private RegistroRutaRepository registroRutaRepository;
+
+    @Autowired
+    private ParadasRutaService paradasRutaService;
+
+    @Autowired
+    private TramosService tramosService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${estadisticas.precision:0.01}")
+    private double precision;
+
+    // Dias de la ventana; con la tabla vacia tambien se arma desde estos dias
+    @Value("${estadisticas.historial.dias:60}")
+    private int diasHistorial;
+
+    private volatile Map<Long, Map<ClaveTramo, Celda>> porRuta = new ConcurrentHashMap<>();
+
+    // Tramos que llegan mientras se reconstruye; null fuera de una reconstruccion
+    private final Object candadoEnVivo = new Object();
+    private List<SeguidorTramos.Tramo> durante;
+
+    public EstadisticasTramoService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void cargar() {
+        for (EstadisticasTramoModel fila : estadisticasTramoRepository.findAll()) {
+            Celda celda = new Celda(SketchCuantiles.decodificar(fila.getDatos(), precision));
+            porRuta.computeIfAbsent(fila.getRutaId(), r -> new ConcurrentHashMap<>())
+                    .put(new ClaveTramo(fila.getOrigenId(), fila.getDestinoId(), fila.getDiaSemana(), fila.getHora()), celda);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void completarInicial() {
+        if (porRuta.isEmpty() && diasHistorial > 0) {
+            reconstruir(diasHistorial);
+        }
+    }
+
+    public void registrar(SeguidorTramos.Tramo tramo) {
+        synchronized (candadoEnVivo) {
+            if (durante != null) {
+                durante.add(tramo);
+            }
+            registrar(porRuta, tramo);
+        }
+    }
+
+    private void registrar(Map<Long, Map<ClaveTramo, Celda>> destino, SeguidorTramos.Tramo tramo) {
+        ClaveTramo clave = new ClaveTramo(tramo.getOrigenId(), tramo.getDestinoId(),
+                SeguidorTramos.diaSemana(tramo.getInicio()), SeguidorTramos.hora(tramo.getInicio()));
+        Celda celda = destino.computeIfAbsent(tramo.getRutaId(), r -> new ConcurrentHashMap<>())
+                .computeIfAbsent(clave, c -> new Celda(new SketchCuantiles(precision)));
+        synchronized (celda) {
+            celda.sketch.agregar(tramo.getDuracion());
+            celda.sucia = true;
+        }
+    }
+
+    // Antes de generar los horarios del dia (3:30), que usan las medianas
+    @Scheduled(cron = "${estadisticas.ventana.cron:0 0 3 * * *}", zone = "America/Lima")
+    public void renovarVentana() {
+        if (diasHistorial > 0) {
+            reconstruir(diasHistorial);
+        }
+    }
+
+    /*
+     * Rehace todo desde RegistroRuta con un seguidor propio, sin mover el estado en vivo.
+     * La tabla se reemplaza en una sola transaccion; los tramos que llegan mientras tanto
+     * se anotan y, si la lectura no los alcanzo a ver, se suman a las celdas nuevas.
+     */
+    public synchronized int reconstruir(int dias) {
+        Map<Long, Map<ClaveTramo, Celda>> nuevo = new ConcurrentHashMap<>();
+        SeguidorTramos seguidor = tramosService.nuevoSeguidor();
+        LocalDate hoy = LocalDate.now(SeguidorTramos.ZONA_PERU);
+        // Solo los tramos recientes pueden repetirse con los que llegan en vivo
+        long recientes = SeguidorTramos.segundoLocal(hoy.minusDays(1), LocalTime.MIDNIGHT);
+        Set<String> vistos = new HashSet<>();
+        synchronized (candadoEnVivo) {
+            durante = new ArrayList<>();
+        }
+        try {
+            // Dia por dia: el seguidor puede cargar las paradas de una ruta mientras se recorre
+            registroRutaRepository.recorrerPasos(hoy.minusDays(dias), hoy, p -> {
+                SeguidorTramos.Tramo tramo = seguidor.registrarPaso(p.getRutaId(), p.getBusId(),
+                        p.getParaderoId(), p.getDia(), p.getHoraLlegada().toLocalTime());
+                if (tramo != null) {
+                    registrar(nuevo, tramo);
+                    if (tramo.getInicio() >= recientes) {
+                        vistos.add(identidad(tramo));
+                    }
+                }
+            });
+            // Las celdas recien armadas estan todas sucias: salen todas
+            List<Object[]> filas = filas(nuevo, LocalDateTime.now(), new ArrayList<>());
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.update("DELETE FROM estadisticas_tramo");
+                insertar(filas);
+            });
+            synchronized (candadoEnVivo) {
+                for (SeguidorTramos.Tramo tramo : durante) {
+                    if (!vistos.contains(identidad(tramo))) {
+                        registrar(nuevo, tramo);
+                    }
+                }
+                porRuta = nuevo;
+            }
+        } finally {
+            synchronized (candadoEnVivo) {
+                durante = null;
+            }
+        }
+        int celdas = 0;
+        for (Map<ClaveTramo, Celda> celdasRuta : nuevo.values()) {
+            celdas += celdasRuta.size();
+        }
+        return celdas;
+    }
+
+    @Scheduled(fixedDelayString = "${estadisticas.flush-ms:60000}")
+    public synchronized void volcar() {
+        List<Celda> escritas = new ArrayList<>();
+        List<Object[]> filas = filas(porRuta, LocalDateTime.now(), escritas);
+        if (filas.isEmpty()) {
+            return;
+        }
+        try {
+            insertar(filas);
+        } catch (RuntimeException e) {
+            // Se vuelven a marcar para el siguiente intento; el sketch en memoria sigue completo
+            for (Celda celda : escritas) {
+                synchronized (celda) {
+                    celda.sucia = true;
+                }
+            }
+            throw e;
+        }
+    }
+
+    // Solo las celdas sucias, que quedan limpias y anotadas en escritas
+    private List<Object[]> filas(Map<Long, Map<ClaveTramo, Celda>> celdas, LocalDateTime ahora, List<Celda> escritas) {
+        List<Object[]> filas = new ArrayList<>();
+        Timestamp marca = Timestamp.valueOf(ahora);
+        celdas.forEach((rutaId, celdasRuta) -> celdasRuta.forEach((clave, celda) -> {
+            synchronized (celda) {
+                if (!celda.sucia) {
+                    return;
+                }
+                celda.sucia = false;
+                filas.add(new Object[]{rutaId, clave.getOrigenId(), clave.getDestinoId(), clave.getDiaSemana(),
+                        clave.getHora(), celda.sketch.getTotal(), celda.sketch.codificar(), marca});
+                escritas.add(celda);
+            }
+        }));
+        return filas;
+    }
+
+    private void insertar(List<Object[]> filas) {
+        for (int i = 0; i < filas.size(); i += TAMANIO_LOTE) {
+            jdbcTemplate.batchUpdate(UPSERT_TRAMO, filas.subList(i, Math.min(i + TAMANIO_LOTE, filas.size())));
+        }
+    }
+
+    private static String identidad(SeguidorTramos.Tramo tramo) {
+        return tramo.getBusId() + ":" + tramo.getInicio() + ":" + tramo.getDestinoId();
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        volcar();
+    }
+
+    // Filtros opcionales; horaDesde..horaHasta inclusive
+    public List<EstadisticaTramo> reporte(Long rutaId, Integer diaSemana, Integer horaDesde, Integer horaHasta) {
+        ParadasRutaService.ParadasRuta paradas = paradasRutaService.getParadas(rutaId);
+        if (paradas == null || paradas.tamanio() < 2) {
+            return List.of();
+        }
+        Map<String, SketchCuantiles> fusionados = new HashMap<>();
+        Map<ClaveTramo, Celda> celdas = porRuta.getOrDefault(rutaId, Map.of());
+        celdas.forEach((clave, celda) -> {
+            if ((diaSemana != null && !diaSemana.equals(clave.getDiaSemana()))
+                    || (horaDesde != null && clave.getHora() < horaDesde)
+                    || (horaHasta != null && clave.getHora() > horaHasta)) {
+                return;
+            }
+            SketchCuantiles suma = fusionados.computeIfAbsent(tramo(clave.getOrigenId(), clave.getDestinoId()),
+                    k -> new SketchCuantiles(precision));
+            synchronized (celda) {
+                suma.fusionar(celda.sketch);
+            }
+        });
+
+        int n = paradas.tamanio();
+        List<EstadisticaTramo> reporte = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            long origen = paradas.getParaderoId(i);
+            long destino = paradas.getParaderoId((i + 1) % n);
+            SketchCuantiles sketch = fusionados.get(tramo(origen, destino));
+            if (sketch == null || sketch.getTotal() == 0) {
+                reporte.add(new EstadisticaTramo(i, origen, destino, 0, null, null, null));
+            } else {
+                reporte.add(new EstadisticaTramo(i, origen, destino, sketch.getTotal(), redondear(sketch.cuantil(0.5)),
+                        redondear(sketch.cuantil(0.9)), redondear(sketch.cuantil(0.99))));
+            }
+        }
+        return reporte;
+    }
+
+    /*
+     * Mediana por tramo (clave de tramo()) para un dia de la semana: posiciones 0-23 por hora,
+     * NaN si esa hora no tiene muestras; la posicion 24 junta todas las horas de todos los dias.
+     */
+    public Map<String, double[]> medianas(Long rutaId, int diaSemana) {
+        Map<String, SketchCuantiles[]> porTramo = new HashMap<>();
+        porRuta.getOrDefault(rutaId, Map.of()).forEach((clave, celda) -> {
+            SketchCuantiles[] sketches = porTramo.computeIfAbsent(tramo(clave.getOrigenId(), clave.getDestinoId()),
+                    k -> new SketchCuantiles[25]);
+            synchronized (celda) {
+                if (clave.getDiaSemana() == diaSemana) {
+                    sketches[clave.getHora()] = celda.sketch.copia();
+                }
+                if (sketches[24] == null) {
+                    sketches[24] = new SketchCuantiles(precision);
+                }
+                sketches[24].fusionar(celda.sketch);
+            }
+        });
+        Map<String, double[]> medianas = new HashMap<>();
+        porTramo.forEach((tramo, sketches) -> {
+            double[] valores = new double[25];
+            for (int h = 0; h < 25; h++) {
+                valores[h] = sketches[h] != null ? sketches[h].cuantil(0.5) : Double.NaN;
+            }
+            medianas.put(tramo, valores);
+        });
+        return medianas;
+    }
+
+    public static String tramo(long origenId, long destinoId) {
+        return origenId + "-" + destinoId;
+    }
+
+    private static double redondear(double segundos) {
+        return Math.round(segundos * 10) / 10.0;
+    }
+
+    @Data
+    @AllArgsConstructor
+    private static class ClaveTramo {
+        private Long origenId;
+        private Long destinoId;
+        private int diaSemana;
+        private int hora;
+    }
+
+    private static class Celda {
+        private final SketchCuantiles sketch;
+        private boolean sucia;
+
+        private Celda(SketchCuantiles sketch) {
+            this.sketch = sketch;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.icm.dateroapi.services;
+
+import com.icm.dateroapi.dto.EtaBus;
+import com.icm.dateroapi.repositories.RegistroRutaRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Tiempos de llegada estimados a partir de los pasos por paradero.
+ * Por ruta se aprende el tiempo de cada tramo (paradero i -> i+1) por hora del dia
+ * con un promedio movil exponencial; la suma de tramos sale de sumas prefijas,
+ * asi una consulta no recorre la ruta ni toca la BD.
+ */
+@Service
+public class EtaService {
+    private static final int FRANJAS = 24;
+    // Fila extra con el tramo sin distinguir hora, para franjas sin muestras
+    private static final int TODO_EL_DIA = FRANJAS;
+
+    @Autowired
+    private ParadasRutaService paradasRutaService;
+
+    @Autowired
+    private TramosService tramosService;
+
+    @Autowired
+    private RegistroRutaRepository registroRutaRepository;
+
+    @Value("${eta.alfa:0.2}")
+    private double alfa;
+
+    @Value("${eta.historial.dias:14}")
+    private int diasHistorial;
+
+    // Un bus sin pasos en este tiempo ya no se considera en recorrido
+    @Value("${eta.bus-activo-s:3600}")
+    private long busActivoS;
+
+    private final Map<Long, ModeloRuta> modelos = new ConcurrentHashMap<>();
+
+    // Dia por dia: registrarPaso puede cargar las paradas de una ruta, y eso no se puede
+    // hacer en la misma conexion mientras MySQL esta entregando un resultado por streaming
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarHistorial() {
+        LocalDate hoy = LocalDate.now(SeguidorTramos.ZONA_PERU);
+        registroRutaRepository.recorrerPasos(hoy.minusDays(diasHistorial), hoy, p -> {
+            // Tambien deja a cada bus en su ultimo paradero del dia
+            SeguidorTramos.Tramo tramo = tramosService.registrarPaso(p.getRutaId(), p.getBusId(),
+                    p.getParaderoId(), p.getDia(), p.getHoraLlegada().toLocalTime());
+            if (tramo != null) {
+                aprender(tramo);
+            }
+        });
+    }
+
+    public void aprender(SeguidorTramos.Tramo tramo) {
+        modelo(tramo.getParadas()).aprender(tramo.getIndice(), SeguidorTramos.hora(tramo.getInicio()),
+                tramo.getDuracion(), alfa);
+    }
+
+    // Proximos buses que llegaran al paradero, por cualquier ruta o solo por la indicada
+    public List<EtaBus> proximosBuses(Long paraderoId, Long rutaId, int limite) {
+        long ahora = SeguidorTramos.segundoActual();
+        List<EtaBus> resultado = new ArrayList<>();
+        Iterable<Long> rutas = rutaId != null ? List.of(rutaId) : tramosService.getRutas();
+        for (Long ruta : rutas) {
+            ModeloRuta modelo = modelos.get(ruta);
+            ParadasRutaService.ParadasRuta paradas = paradasRutaService.getParadas(ruta);
+            if (modelo == null || paradas == null) {
+                continue;
+            }
+            int destino = paradas.indiceDe(paraderoId);
+            if (destino < 0) {
+                continue;
+            }
+            modelo = modelo.paradas == paradas ? modelo : modelo(paradas);
+            for (Long busId : tramosService.getBuses(ruta)) {
+                SeguidorTramos.UltimoPaso ultimo = tramosService.getUltimo(busId);
+                if (ultimo == null || !ultimo.getRutaId().equals(ruta) || ahora - ultimo.getSegundo() > busActivoS) {
+                    continue;
+                }
+                int origen = paradas.indiceDe(ultimo.getParaderoId());
+                // Si acaba de pasar por ese paradero se esta alejando
+                if (origen < 0 || origen == destino) {
+                    continue;
+                }
+                double estimado = modelo.estimar(origen, destino, SeguidorTramos.hora(ultimo.getSegundo()));
+                if (estimado < 0) {
+                    continue;
+                }
+                long restante = Math.max(0, Math.round(estimado) - (ahora - ultimo.getSegundo()));
+                int paradasRestantes = Math.floorMod(destino - origen, paradas.tamanio());
+                resultado.add(new EtaBus(busId, ruta, paraderoId, paradasRestantes, restante,
+                        SeguidorTramos.aEpochMs(ahora + restante)));
+            }
+        }
+        resultado.sort(Comparator.comparingLong(EtaBus::getSegundos));
+        return resultado.size() > limite ? new ArrayList<>(resultado.subList(0, limite)) : resultado;
+    }
+
+    // Si la ruta cambio de paraderos se rehace el modelo conservando los tramos que siguen iguales
+    private ModeloRuta modelo(ParadasRutaService.ParadasRuta paradas) {
+        return modelos.compute(paradas.getRutaId(), (id, actual) ->
+                actual != null && actual.paradas == paradas ? actual : new ModeloRuta(paradas, actual));
+    }
+
+    private static class ModeloRuta {
+        private final ParadasRutaService.ParadasRuta paradas;
+        // [franja][tramo]: tramo i va del paradero i al i+1 (el ultimo vuelve al primero)
+        private final double[][] tiempos;
+        private final int[][] muestras;
+        // Sumas prefijas por franja; null cuando hay que rehacerlas
+        private final double[][] acumulados = new double[FRANJAS + 1][];
+        private final int[][] desconocidos = new int[FRANJAS + 1][];
+
+        private ModeloRuta(ParadasRutaService.ParadasRuta paradas, ModeloRuta anterior) {
+            int n = paradas.tamanio();
+            this.paradas = paradas;
+            this.tiempos = new double[FRANJAS + 1][n];
+            this.muestras = new int[FRANJAS + 1][n];
+            if (anterior != null) {
+                anterior.copiarA(this);
+            }
+        }
+
+        private synchronized void copiarA(ModeloRuta nuevo) {
+            int n = paradas.tamanio();
+            for (int i = 0; i < n; i++) {
+                int desde = nuevo.paradas.indiceDe(paradas.getParaderoId(i));
+                int hasta = nuevo.paradas.indiceDe(paradas.getParaderoId((i + 1) % n));
+                if (desde < 0 || hasta != (desde + 1) % nuevo.paradas.tamanio()) {
+                    continue;
+                }
+                for (int f = 0; f <= FRANJAS; f++) {
+                    nuevo.tiempos[f][desde] = tiempos[f][i];
+                    nuevo.muestras[f][desde] = muestras[f][i];
+                }
+            }
+        }
+
+        private synchronized void aprender(int tramo, int franja, double segundos, double alfa) {
+            for (int f : new int[]{franja, TODO_EL_DIA}) {
+                tiempos[f][tramo] = muestras[f][tramo] == 0
+                        ? segundos
+                        : tiempos[f][tramo] + alfa * (segundos - tiempos[f][tramo]);
+                muestras[f][tramo]++;
+            }
+            // Cambiar la fila general afecta a todas las franjas que la usan de respaldo
+            for (int f = 0; f <= FRANJAS; f++) {
+                acumulados[f] = null;
+            }
+        }
+
+        // Segundos desde el paradero "desde" hasta "hasta" avanzando por la ruta; -1 si falta algun tramo
+        private synchronized double estimar(int desde, int hasta, int franja) {
+            if (acumulados[franja] == null) {
+                armarPrefijo(franja);
+            }
+            double[] suma = acumulados[franja];
+            int[] faltan = desconocidos[franja];
+            int n = paradas.tamanio();
+            double total;
+            int sinDato;
+            if (hasta > desde) {
+                total = suma[hasta] - suma[desde];
+                sinDato = faltan[hasta] - faltan[desde];
+            } else {
+                total = suma[n] - suma[desde] + suma[hasta];
+                sinDato = faltan[n] - faltan[desde] + faltan[hasta];
+            }
+            return sinDato > 0 ? -1 : total;
+        }
+
+        private void armarPrefijo(int franja) {
+            int n = paradas.tamanio();
+            double[] suma = new double[n + 1];
+            int[] faltan = new int[n + 1];
+            for (int i = 0; i < n; i++) {
+                double valor = 0;
+                boolean conocido = true;
+                if (muestras[franja][i] > 0) {
+                    valor = tiempos[franja][i];
+                } else if (muestras[TODO_EL_DIA][i] > 0) {
+                    valor = tiempos[TODO_EL_DIA][i];
+                } else {
+                    conocido = false;
+                }
+                suma[i + 1] = suma[i] + valor;
+                faltan[i + 1] = faltan[i] + (conocido ? 0 : 1);
+            }
+            acumulados[franja] = suma;
+            desconocidos[franja] = faltan;
+        }
+    }
+}
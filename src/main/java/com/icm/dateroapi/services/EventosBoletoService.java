@@ -0,0 +1,317 @@
+package com.icm.dateroapi.services;
+
+import com.icm.dateroapi.dto.AsignacionBus;
+import com.icm.dateroapi.dto.EventoBoleto;
+import com.icm.dateroapi.repositories.EventosBoletoRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/*
+ * Carga de ventas en lote desde validadores que estuvieron sin senal.
+ * Cada venta trae un id propio; el filtro de Bloom descarta en memoria los
+ * que seguro son nuevos y solo los "quizas vistos" se confirman en la BD.
+ * La clave unica de EventosBoleto es la que garantiza que se aplique una vez:
+ * eventos y conteos se escriben en la misma transaccion.
+ */
+@Service
+public class EventosBoletoService {
+    private static final ZoneId ZONA_PERU = ZoneId.of("America/Lima");
+    private static final int TAMANIO_LOTE = 500;
+    private static final int MAX_EN_CONSULTA = 1000;
+    private static final int LARGO_EVENTO = 64;
+
+    private static final String INSERT_EVENTO =
+            "INSERT IGNORE INTO eventos_boleto (evento, bus, boleto, empresa, dia, monto, lote, recibido) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private EventosBoletoRepository eventosBoletoRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ResumenConteoService resumenConteoService;
+
+    @Autowired
+    private ContadorBoletosService contadorBoletosService;
+
+    @Autowired
+    private AsignacionBusService asignacionBusService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${boletos.eventos.lote-max:5000}")
+    private int loteMaximo;
+
+    @Value("${boletos.eventos.bloom-bits:8388608}")
+    private long bitsFiltro;
+
+    @Value("${boletos.eventos.bloom-funciones:5}")
+    private int funcionesFiltro;
+
+    // Los eventos se guardan este tiempo; ventas mas antiguas ya no se aceptan
+    @Value("${boletos.eventos.dias:30}")
+    private int diasEventos;
+
+    private volatile FiltroBloom filtro;
+
+    private final LongAdder recibidos = new LongAdder();
+    private final LongAdder aplicados = new LongAdder();
+    private final LongAdder duplicados = new LongAdder();
+    private final LongAdder invalidos = new LongAdder();
+    private final LongAdder consultados = new LongAdder();
+
+    public EventosBoletoService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarFiltro() {
+        FiltroBloom nuevo = new FiltroBloom(bitsFiltro, funcionesFiltro);
+        LocalDate desde = hoyPeru().minusDays(diasEventos);
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<String> eventos = eventosBoletoRepository.streamEventosDesde(desde)) {
+                eventos.forEach(nuevo::agregar);
+            }
+        });
+        filtro = nuevo;
+    }
+
+    // Lanza IllegalArgumentException si el lote pasa boletos.eventos.lote-max; los eventos invalidos
+    // solo se cuentan y no frenan al resto
+    public Map<String, Object> registrarLote(List<EventoBoleto> eventos) {
+        if (eventos == null || eventos.size() > loteMaximo) {
+            throw new IllegalArgumentException("El lote debe tener como maximo " + loteMaximo + " eventos");
+        }
+        LocalDate hoy = hoyPeru();
+        LocalDate limite = hoy.minusDays(diasEventos);
+        int invalidosLote = 0;
+        int duplicadosLote = 0;
+
+        // Un validador manda muchas ventas del mismo bus y boleto: se revisan una vez por lote
+        Map<String, Boolean> combinaciones = new HashMap<>();
+        Map<String, Venta> ventas = new LinkedHashMap<>();
+        for (EventoBoleto evento : eventos) {
+            Venta venta = validar(evento, hoy, limite, combinaciones);
+            if (venta == null) {
+                invalidosLote++;
+            } else if (ventas.putIfAbsent(venta.evento, venta) != null) {
+                duplicadosLote++;
+            }
+        }
+
+        FiltroBloom actual = filtro;
+        List<String> quizasVistos = new ArrayList<>();
+        for (String evento : ventas.keySet()) {
+            if (actual == null || actual.puedeContener(evento)) {
+                quizasVistos.add(evento);
+            }
+        }
+        for (int i = 0; i < quizasVistos.size(); i += MAX_EN_CONSULTA) {
+            List<String> tramo = quizasVistos.subList(i, Math.min(i + MAX_EN_CONSULTA, quizasVistos.size()));
+            consultados.add(tramo.size());
+            for (String existente : eventosBoletoRepository.findExistentes(tramo)) {
+                if (ventas.remove(existente) != null) {
+                    duplicadosLote++;
+                }
+            }
+        }
+
+        List<Venta> aplicadas = ventas.isEmpty() ? List.of() : aplicar(new ArrayList<>(ventas.values()));
+        duplicadosLote += ventas.size() - aplicadas.size();
+
+        // Despues del commit: lo que ya esta en la BD se marca en el filtro y en los totales del contador
+        for (String evento : ventas.keySet()) {
+            if (actual != null) {
+                actual.agregar(evento);
+            }
+        }
+        Map<ContadorBoletosService.ClaveConteo, double[]> porClave = agrupar(aplicadas);
+        porClave.forEach((clave, suma) -> contadorBoletosService.sumarAplicado(clave, (long) suma[0], suma[1]));
+
+        recibidos.add(eventos.size());
+        aplicados.add(aplicadas.size());
+        duplicados.add(duplicadosLote);
+        invalidos.add(invalidosLote);
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("recibidos", eventos.size());
+        resultado.put("aplicados", aplicadas.size());
+        resultado.put("duplicados", duplicadosLote);
+        resultado.put("invalidos", invalidosLote);
+        return resultado;
+    }
+
+    // Una transaccion por lote: insertar eventos, ver cuales entraron y sumar solo esos
+    private List<Venta> aplicar(List<Venta> ventas) {
+        String lote = UUID.randomUUID().toString();
+        Timestamp recibido = Timestamp.valueOf(LocalDateTime.now());
+        return transactionTemplate.execute(status -> {
+            resumenConteoService.iniciarEscritura();
+            jdbcTemplate.batchUpdate(INSERT_EVENTO, ventas, TAMANIO_LOTE, (ps, venta) -> {
+                ps.setString(1, venta.evento);
+                ps.setLong(2, venta.busId);
+                ps.setLong(3, venta.boletoId);
+                ps.setLong(4, venta.empresaId);
+                ps.setDate(5, Date.valueOf(venta.dia));
+                ps.setDouble(6, venta.monto);
+                ps.setString(7, lote);
+                ps.setTimestamp(8, recibido);
+            });
+            // Otro lote concurrente pudo ganar la clave unica; esas filas no llevan esta marca
+            Set<String> insertados = new HashSet<>(
+                    jdbcTemplate.queryForList("SELECT evento FROM eventos_boleto WHERE lote = ?", String.class, lote));
+            List<Venta> nuevas = new ArrayList<>(insertados.size());
+            for (Venta venta : ventas) {
+                if (insertados.contains(venta.evento)) {
+                    nuevas.add(venta);
+                }
+            }
+            if (nuevas.isEmpty()) {
+                return nuevas;
+            }
+
+            Map<ContadorBoletosService.ClaveConteo, double[]> porClave = agrupar(nuevas);
+            Map<ContadorBoletosService.ClaveConteo, Long> empresas = new LinkedHashMap<>();
+            for (Venta venta : nuevas) {
+                empresas.putIfAbsent(new ContadorBoletosService.ClaveConteo(venta.busId, venta.boletoId, venta.dia), venta.empresaId);
+            }
+            List<Map.Entry<ContadorBoletosService.ClaveConteo, double[]>> filas = new ArrayList<>(porClave.entrySet());
+            jdbcTemplate.batchUpdate(ContadorBoletosService.UPSERT_CONTEO, filas, TAMANIO_LOTE, (ps, fila) -> {
+                ContadorBoletosService.ClaveConteo clave = fila.getKey();
+                ps.setLong(1, clave.getBusId());
+                ps.setLong(2, clave.getBoletoId());
+                ps.setLong(3, empresas.get(clave));
+                ps.setDate(4, Date.valueOf(clave.getDia()));
+                ps.setLong(5, (long) fila.getValue()[0]);
+                ps.setDouble(6, fila.getValue()[1]);
+            });
+
+            List<ResumenConteoService.DeltaConteo> deltas = new ArrayList<>(filas.size());
+            for (Map.Entry<ContadorBoletosService.ClaveConteo, double[]> fila : filas) {
+                ContadorBoletosService.ClaveConteo clave = fila.getKey();
+                deltas.add(new ResumenConteoService.DeltaConteo(clave.getBusId(), clave.getBoletoId(), clave.getDia(),
+                        (long) fila.getValue()[0], fila.getValue()[1]));
+            }
+            resumenConteoService.aplicar(deltas);
+            return nuevas;
+        });
+    }
+
+    private Venta validar(EventoBoleto evento, LocalDate hoy, LocalDate limite, Map<String, Boolean> combinaciones) {
+        if (evento == null || evento.getEvento() == null || evento.getEvento().isBlank()
+                || evento.getEvento().length() > LARGO_EVENTO
+                || evento.getBusId() == null || evento.getBoletoId() == null
+                || (evento.getMonto() != null && !(evento.getMonto() >= 0 && evento.getMonto() < Double.POSITIVE_INFINITY))) {
+            return null;
+        }
+        Long empresaId = evento.getEmpresaId();
+        if (empresaId == null) {
+            AsignacionBus asignacion = asignacionBusService.getAsignacion(evento.getBusId());
+            empresaId = asignacion != null ? asignacion.getEmpresaId() : null;
+        }
+        if (empresaId == null) {
+            return null;
+        }
+        // Bus y boleto existentes y de la misma empresa, con las consultas en cache del contador
+        Long empresa = empresaId;
+        boolean valida = combinaciones.computeIfAbsent(evento.getBusId() + ":" + evento.getBoletoId() + ":" + empresaId, k -> {
+            try {
+                contadorBoletosService.validar(evento.getBusId(), empresa, evento.getBoletoId());
+                return true;
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        });
+        if (!valida) {
+            return null;
+        }
+        LocalDate dia = evento.getFecha() != null
+                ? LocalDate.ofInstant(Instant.ofEpochMilli(evento.getFecha()), ZONA_PERU)
+                : hoy;
+        if (dia.isBefore(limite)) {
+            return null;
+        }
+        // Reloj del validador adelantado
+        if (dia.isAfter(hoy)) {
+            dia = hoy;
+        }
+        return new Venta(evento.getEvento(), evento.getBusId(), evento.getBoletoId(), empresaId, dia,
+                evento.getMonto() != null ? evento.getMonto() : 0);
+    }
+
+    private static Map<ContadorBoletosService.ClaveConteo, double[]> agrupar(List<Venta> ventas) {
+        Map<ContadorBoletosService.ClaveConteo, double[]> porClave = new LinkedHashMap<>();
+        for (Venta venta : ventas) {
+            double[] suma = porClave.computeIfAbsent(
+                    new ContadorBoletosService.ClaveConteo(venta.busId, venta.boletoId, venta.dia), c -> new double[2]);
+            suma[0]++;
+            suma[1] += venta.monto;
+        }
+        return porClave;
+    }
+
+    @Scheduled(cron = "0 45 3 * * *", zone = "America/Lima")
+    public void purgarEventos() {
+        eventosBoletoRepository.borrarAnteriores(hoyPeru().minusDays(diasEventos));
+        // El filtro solo acumula; se rehace para que no se sature con eventos ya purgados
+        cargarFiltro();
+    }
+
+    public Map<String, Object> getMetricas() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("recibidos", recibidos.sum());
+        metricas.put("aplicados", aplicados.sum());
+        metricas.put("duplicados", duplicados.sum());
+        metricas.put("invalidos", invalidos.sum());
+        metricas.put("consultadosEnBd", consultados.sum());
+        return metricas;
+    }
+
+    private LocalDate hoyPeru() {
+        return LocalDate.now(ZONA_PERU);
+    }
+
+    private static class Venta {
+        private final String evento;
+        private final Long busId;
+        private final Long boletoId;
+        private final Long empresaId;
+        private final LocalDate dia;
+        private final double monto;
+
+        private Venta(String evento, Long busId, Long boletoId, Long empresaId, LocalDate dia, double monto) {
+            this.evento = evento;
+            this.busId = busId;
+            this.boletoId = boletoId;
+            this.empresaId = empresaId;
+            this.dia = dia;
+            this.monto = monto;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.icm.dateroapi.services;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// Escribe las filas conforme salen de cada pagina, sin juntarlas en una lista
+@Service
+public class ExportacionService {
+    public static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    public static final MediaType CSV = MediaType.parseMediaType("text/csv");
+
+    private static final int TAMANIO_PAGINA = 1000;
+
+    private static final TypeReference<LinkedHashMap<String, Object>> COLUMNAS = new TypeReference<>() {};
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public static MediaType tipo(String formato) {
+        if ("ndjson".equalsIgnoreCase(formato)) {
+            return NDJSON;
+        }
+        if ("csv".equalsIgnoreCase(formato)) {
+            return CSV;
+        }
+        return null;
+    }
+
+    // Recorre por id creciente (keyset): cada pagina es una consulta corta y ninguna transaccion
+    // queda abierta mientras el cliente descarga
+    public static <T> void porPaginas(BiFunction<Long, Pageable, List<T>> pagina, Function<T, Long> id, Consumer<T> destino) {
+        Pageable limite = PageRequest.of(0, TAMANIO_PAGINA);
+        long despues = 0;
+        while (true) {
+            List<T> filas = pagina.apply(despues, limite);
+            filas.forEach(destino);
+            if (filas.size() < TAMANIO_PAGINA) {
+                return;
+            }
+            despues = id.apply(filas.get(filas.size() - 1));
+        }
+    }
+
+    public <T> StreamingResponseBody exportar(String formato, Consumer<Consumer<T>> fuente) {
+        boolean csv = tipo(formato) == CSV;
+        return salida -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), 16 * 1024);
+            boolean[] encabezado = {false};
+            try {
+                fuente.accept(fila -> {
+                    try {
+                        if (csv) {
+                            Map<String, Object> columnas = objectMapper.convertValue(fila, COLUMNAS);
+                            if (!encabezado[0]) {
+                                escribirCsv(writer, columnas.keySet());
+                                encabezado[0] = true;
+                            }
+                            escribirCsv(writer, columnas.values());
+                        } else {
+                            writer.write(objectMapper.writeValueAsString(fila));
+                            writer.write('\n');
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.flush();
+        };
+    }
+
+    private static void escribirCsv(Writer writer, Iterable<?> valores) throws IOException {
+        boolean primero = true;
+        for (Object valor : valores) {
+            if (!primero) {
+                writer.write(',');
+            }
+            primero = false;
+            if (valor == null) {
+                continue;
+            }
+            String texto = valor.toString();
+            if (texto.indexOf(',') >= 0 || texto.indexOf('"') >= 0 || texto.indexOf('\n') >= 0 || texto.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(texto.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(texto);
+            }
+        }
+        writer.write("\r\n");
+    }
+}
@@ -0,0 +1,68 @@
+package com.icm.dateroapi.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Filtro de Bloom sobre ids de texto.
+ * "No esta" es seguro; "puede estar" hay que confirmarlo contra la base.
+ * Seguro entre hilos: los bits solo se encienden, nunca se apagan.
+ */
+public class FiltroBloom {
+    private final AtomicLongArray palabras;
+    private final long bits;
+    private final int funciones;
+
+    public FiltroBloom(long bits, int funciones) {
+        int cantidad = (int) Math.max(1, (bits + 63) / 64);
+        this.palabras = new AtomicLongArray(cantidad);
+        this.bits = (long) cantidad * 64;
+        this.funciones = funciones;
+    }
+
+    public void agregar(String valor) {
+        long h = hash(valor);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        for (int i = 0; i < funciones; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bits);
+            int palabra = (int) (bit >>> 6);
+            long mascara = 1L << (bit & 63);
+            long actual;
+            do {
+                actual = palabras.get(palabra);
+                if ((actual & mascara) != 0) {
+                    break;
+                }
+            } while (!palabras.compareAndSet(palabra, actual, actual | mascara));
+        }
+    }
+
+    public boolean puedeContener(String valor) {
+        long h = hash(valor);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        for (int i = 0; i < funciones; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bits);
+            if ((palabras.get((int) (bit >>> 6)) & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // FNV-1a de 64 bits con la mezcla final de murmur3
+    private static long hash(String valor) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : valor.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
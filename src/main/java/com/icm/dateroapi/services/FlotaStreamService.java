@@ -0,0 +1,253 @@
+package com.icm.dateroapi.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.icm.dateroapi.dto.AsignacionBus;
+import com.icm.dateroapi.dto.BusFlota;
+import com.icm.dateroapi.dto.DeltaFlota;
+import com.icm.dateroapi.dto.PosicionBus;
+import com.icm.dateroapi.repositories.BusesRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Envio en vivo de la flota por empresa (Server-Sent Events).
+ * Al conectarse el cliente recibe una foto completa; despues solo recibe los
+ * cambios de cada ventana, combinados por bus y serializados una sola vez
+ * para todos los clientes de la empresa. Cada cliente tiene su propia cola que
+ * se escribe desde un pool aparte: un cliente lento no frena a los demas ni al
+ * scheduler, y si se atrasa demasiado se lo desconecta.
+ */
+@Service
+public class FlotaStreamService {
+    private static final long LATIDO_MS = 15000;
+
+    @Autowired
+    private BusesRepository busesRepository;
+
+    @Autowired
+    private AsignacionBusService asignacionBusService;
+
+    @Lazy
+    @Autowired
+    private PosicionBusService posicionBusService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${flota.stream.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${flota.stream.hilos:2}")
+    private int hilos;
+
+    // Eventos sin escribir que se le toleran a un cliente antes de desconectarlo
+    @Value("${flota.stream.cola-max:120}")
+    private int colaMaxima;
+
+    private final Map<Long, List<Cliente>> suscriptores = new ConcurrentHashMap<>();
+    private final Map<Long, Map<Long, DeltaFlota>> cambios = new ConcurrentHashMap<>();
+    private volatile long ultimoEnvio = System.currentTimeMillis();
+    private ExecutorService envios;
+
+    @PostConstruct
+    public void iniciar() {
+        AtomicInteger numero = new AtomicInteger();
+        envios = Executors.newFixedThreadPool(hilos, r -> {
+            Thread hilo = new Thread(r, "flota-sse-" + numero.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    @PreDestroy
+    public void detener() {
+        envios.shutdownNow();
+    }
+
+    public SseEmitter suscribir(Long empresaId) throws IOException {
+        return suscribir(empresaId, new SseEmitter(timeoutMs));
+    }
+
+    SseEmitter suscribir(Long empresaId, SseEmitter emitter) throws IOException {
+        List<Cliente> lista = suscriptores.computeIfAbsent(empresaId, id -> new CopyOnWriteArrayList<>());
+        Cliente cliente = new Cliente(emitter, lista);
+        emitter.onCompletion(() -> lista.remove(cliente));
+        emitter.onTimeout(() -> lista.remove(cliente));
+        emitter.onError(e -> lista.remove(cliente));
+
+        // Se registra antes de leer la foto, asi los cambios posteriores ya se acumulan en su
+        // cola; la cola no se escribe hasta que sale la foto
+        lista.add(cliente);
+        try {
+            List<BusFlota> foto = busesRepository.findFlota(empresaId);
+            for (BusFlota bus : foto) {
+                posicionBusService.getPosicionEnMemoria(bus.getBusId()).ifPresent(p -> {
+                    bus.setLatitud(p.getLatitud());
+                    bus.setLongitud(p.getLongitud());
+                    bus.setFecha(p.getFecha());
+                });
+            }
+            emitter.send(SseEmitter.event().name("snapshot").data(objectMapper.writeValueAsString(foto)));
+        } catch (IOException | RuntimeException e) {
+            lista.remove(cliente);
+            throw e;
+        }
+        cliente.listo();
+        return emitter;
+    }
+
+    public void publicarPosicion(PosicionBus posicion) {
+        AsignacionBus asignacion = asignacionBusService.getAsignacion(posicion.getBusId());
+        if (asignacion != null) {
+            publicar(asignacion.getEmpresaId(), new DeltaFlota(posicion.getBusId(), posicion.getLatitud(),
+                    posicion.getLongitud(), posicion.getFecha(), null, null, null, null));
+        }
+    }
+
+    public void publicar(Long empresaId, DeltaFlota delta) {
+        List<Cliente> lista = suscriptores.get(empresaId);
+        // Sin clientes conectados no se acumula nada
+        if (lista == null || lista.isEmpty()) {
+            return;
+        }
+        cambios.computeIfAbsent(empresaId, id -> new ConcurrentHashMap<>())
+                .merge(delta.getBusId(), delta, DeltaFlota::combinar);
+    }
+
+    // Solo arma los eventos y los encola; la escritura va por el pool de envios
+    @Scheduled(fixedDelayString = "${flota.stream.ventana-ms:1000}")
+    public void emitirCambios() {
+        long ahora = System.currentTimeMillis();
+        boolean latido = ahora - ultimoEnvio >= LATIDO_MS;
+
+        suscriptores.forEach((empresaId, lista) -> {
+            if (lista.isEmpty()) {
+                cambios.remove(empresaId);
+                return;
+            }
+            Map<Long, DeltaFlota> pendientes = cambios.get(empresaId);
+            List<DeltaFlota> lote = new ArrayList<>();
+            if (pendientes != null) {
+                for (DeltaFlota delta : pendientes.values()) {
+                    // Si llego otro cambio mientras tanto se queda para la siguiente ventana
+                    if (pendientes.remove(delta.getBusId(), delta)) {
+                        lote.add(delta);
+                    }
+                }
+            }
+            if (!lote.isEmpty()) {
+                enviar(lista, "delta", lote);
+            } else if (latido) {
+                enviar(lista, "latido", List.of());
+            }
+        });
+        if (latido) {
+            ultimoEnvio = ahora;
+        }
+    }
+
+    private void enviar(List<Cliente> lista, String nombre, List<DeltaFlota> lote) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(lote);
+        } catch (JsonProcessingException e) {
+            return;
+        }
+        // La lista es copy-on-write: se recorre una copia sin bloquear altas ni bajas
+        for (Cliente cliente : lista) {
+            cliente.encolar(nombre, json);
+        }
+    }
+
+    private class Cliente {
+        private final SseEmitter emitter;
+        private final List<Cliente> lista;
+        private final Queue<String[]> cola = new ArrayDeque<>();
+        // Ya se envio la foto
+        private boolean listo;
+        // Hay una tarea del pool escribiendo la cola
+        private boolean programado;
+        private boolean cerrado;
+
+        private Cliente(SseEmitter emitter, List<Cliente> lista) {
+            this.emitter = emitter;
+            this.lista = lista;
+        }
+
+        private synchronized void listo() {
+            listo = true;
+            programar();
+        }
+
+        private void encolar(String nombre, String json) {
+            synchronized (this) {
+                if (cerrado) {
+                    return;
+                }
+                if (cola.size() < colaMaxima) {
+                    cola.add(new String[]{nombre, json});
+                    programar();
+                    return;
+                }
+            }
+            cerrar(new IllegalStateException("Cliente de flota atrasado en " + colaMaxima + " eventos"));
+        }
+
+        private void programar() {
+            if (listo && !programado && !cola.isEmpty()) {
+                programado = true;
+                envios.execute(this::escribir);
+            }
+        }
+
+        // Una sola tarea por cliente a la vez, asi sus eventos salen en orden
+        private void escribir() {
+            while (true) {
+                String[] evento;
+                synchronized (this) {
+                    evento = cerrado ? null : cola.poll();
+                    if (evento == null) {
+                        programado = false;
+                        return;
+                    }
+                }
+                try {
+                    emitter.send(SseEmitter.event().name(evento[0]).data(evento[1]));
+                } catch (IOException | IllegalStateException e) {
+                    cerrar(e);
+                }
+            }
+        }
+
+        private void cerrar(Exception e) {
+            synchronized (this) {
+                if (cerrado) {
+                    return;
+                }
+                cerrado = true;
+                cola.clear();
+            }
+            lista.remove(this);
+            emitter.completeWithError(e);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.icm.dateroapi.services;
+
+import com.icm.dateroapi.dto.PuntoHistorial;
+import com.icm.dateroapi.models.HistorialPosicionModel;
+import com.icm.dateroapi.repositories.HistorialPosicionRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Historial de posiciones solo de agregado.
+ * Los pings de cada bus y dia se codifican en memoria y cada cierto tiempo el
+ * bloque abierto se escribe como una fila nueva; nunca se reescriben filas del dia en curso.
+ * Cerrado el dia, sus bloques se unen en uno solo por bus, y pasados historial.dias se borran.
+ * Reproducir un dia de un bus es leer sus bloques en orden de id.
+ */
+@Service
+public class HistorialPosicionService {
+    private static final Logger log = LoggerFactory.getLogger(HistorialPosicionService.class);
+    private static final ZoneId ZONA_PERU = ZoneId.of("America/Lima");
+
+    @Autowired
+    private HistorialPosicionRepository historialPosicionRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${historial.dias:90}")
+    private int diasConservados;
+
+    private final Map<ClaveBloque, CodificadorPosiciones> abiertos = new ConcurrentHashMap<>();
+
+    public HistorialPosicionService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public void registrar(Long busId, double latitud, double longitud, long fecha) {
+        ClaveBloque clave = new ClaveBloque(busId, diaDe(fecha));
+        abiertos.compute(clave, (k, bloque) -> {
+            CodificadorPosiciones actual = bloque != null ? bloque : new CodificadorPosiciones();
+            actual.agregar(latitud, longitud, fecha);
+            return actual;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${historial.flush-ms:60000}")
+    public synchronized void volcarHistorial() {
+        Map<ClaveBloque, CodificadorPosiciones> sacados = new HashMap<>();
+        List<HistorialPosicionModel> lote = new ArrayList<>();
+        for (ClaveBloque clave : new ArrayList<>(abiertos.keySet())) {
+            // Se saca el bloque del mapa; el siguiente ping abre uno nuevo
+            CodificadorPosiciones bloque = abiertos.remove(clave);
+            if (bloque != null && bloque.getPuntos() > 0) {
+                sacados.put(clave, bloque);
+                lote.add(new HistorialPosicionModel(null, clave.getBusId(), clave.getDia(),
+                        bloque.getMinFecha(), bloque.getMaxFecha(), bloque.getPuntos(), bloque.getDatos()));
+            }
+        }
+        if (lote.isEmpty()) {
+            return;
+        }
+        try {
+            historialPosicionRepository.saveAll(lote);
+        } catch (RuntimeException e) {
+            // saveAll es una sola transaccion: se devuelve todo, delante de lo que llego mientras tanto
+            sacados.forEach(this::devolver);
+            log.warn("No se pudo escribir el historial de {} buses, se reintenta en el siguiente volcado", lote.size(), e);
+        }
+    }
+
+    private void devolver(ClaveBloque clave, CodificadorPosiciones bloque) {
+        abiertos.merge(clave, bloque, (nuevo, anterior) -> {
+            CodificadorPosiciones unido = new CodificadorPosiciones();
+            unido.agregarTodos(CodificadorPosiciones.decodificar(anterior.getDatos()));
+            unido.agregarTodos(CodificadorPosiciones.decodificar(nuevo.getDatos()));
+            return unido;
+        });
+    }
+
+    // Cada dia cerrado queda en un bloque por bus y lo anterior a historial.dias se borra
+    @Scheduled(cron = "0 15 4 * * *", zone = "America/Lima")
+    public void compactar() {
+        LocalDate hoy = LocalDate.now(ZONA_PERU);
+        historialPosicionRepository.borrarAnteriores(hoy.minusDays(diasConservados));
+        for (Object[] fila : historialPosicionRepository.findDiasPorCompactar(hoy)) {
+            Long busId = (Long) fila[0];
+            LocalDate dia = (LocalDate) fila[1];
+            try {
+                transactionTemplate.executeWithoutResult(status -> compactarDia(busId, dia));
+            } catch (RuntimeException e) {
+                log.warn("No se pudo compactar el historial del bus {} del {}", busId, dia, e);
+            }
+        }
+    }
+
+    private void compactarDia(Long busId, LocalDate dia) {
+        List<HistorialPosicionModel> bloques = historialPosicionRepository.findByBusIdAndDiaOrderByIdAsc(busId, dia);
+        if (bloques.size() < 2) {
+            return;
+        }
+        CodificadorPosiciones unido = new CodificadorPosiciones();
+        for (HistorialPosicionModel bloque : bloques) {
+            unido.agregarTodos(CodificadorPosiciones.decodificar(bloque.getDatos()));
+        }
+        historialPosicionRepository.deleteAllInBatch(bloques);
+        historialPosicionRepository.save(new HistorialPosicionModel(null, busId, dia,
+                unido.getMinFecha(), unido.getMaxFecha(), unido.getPuntos(), unido.getDatos()));
+    }
+
+    public List<PuntoHistorial> reproducir(Long busId, long desde, long hasta) {
+        List<PuntoHistorial> puntos = new ArrayList<>();
+        for (HistorialPosicionModel bloque : historialPosicionRepository
+                .findByBusIdAndDiaBetweenAndHastaGreaterThanEqualAndDesdeLessThanEqualOrderByIdAsc(
+                        busId, diaDe(desde), diaDe(hasta), desde, hasta)) {
+            agregarEnRango(CodificadorPosiciones.decodificar(bloque.getDatos()), desde, hasta, puntos);
+        }
+        // Lo que aun no se escribe en la BD
+        for (ClaveBloque clave : abiertos.keySet()) {
+            if (clave.getBusId().equals(busId)) {
+                byte[][] datos = new byte[1][];
+                // Se copia dentro del compute para no leer el bloque mientras se le agrega un ping
+                abiertos.computeIfPresent(clave, (k, bloque) -> {
+                    datos[0] = bloque.getDatos();
+                    return bloque;
+                });
+                if (datos[0] != null) {
+                    agregarEnRango(CodificadorPosiciones.decodificar(datos[0]), desde, hasta, puntos);
+                }
+            }
+        }
+        puntos.sort(Comparator.comparingLong(PuntoHistorial::getFecha));
+        return puntos;
+    }
+
+    private void agregarEnRango(List<PuntoHistorial> bloque, long desde, long hasta, List<PuntoHistorial> puntos) {
+        for (PuntoHistorial punto : bloque) {
+            if (punto.getFecha() >= desde && punto.getFecha() <= hasta) {
+                puntos.add(punto);
+            }
+        }
+    }
+
+    private LocalDate diaDe(long fecha) {
+        return Instant.ofEpochMilli(fecha).atZone(ZONA_PERU).toLocalDate();
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        volcarHistorial();
+    }
+
+    @Data
+    @AllArgsConstructor
+    private static class ClaveBloque {
+        private Long busId;
+        private LocalDate dia;
+    }
+}
@@ -0,0 +1,281 @@
+package com.icm.dateroapi.services;
+
+import com.icm.dateroapi.models.DespachosModel;
+import com.icm.dateroapi.models.HorariosModel;
+import com.icm.dateroapi.repositories.DespachosRepository;
+import com.icm.dateroapi.repositories.HorariosRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Horario del dia por ruta: para cada despacho se recorre la ruta en orden sumando
+ * la mediana de cada tramo (de EstadisticasTramoService) a la hora de salida.
+ * Queda en la tabla Horarios y, por ruta y dia, en memoria como una matriz
+ * despacho x paradero. La hora esperada de un paso es la del despacho que tomo el bus:
+ * se fija cuando pasa por el primer paradero y se sigue en los paraderos siguientes.
+ */
+@Service
+public class HorariosService {
+    private static final int TAMANIO_LOTE = 500;
+
+    private static final String INSERT_HORARIO =
+            "INSERT INTO horarios (ruta, dia, despacho, paradero, orden, hora) VALUES (?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private HorariosRepository horariosRepository;
+
+    @Autowired
+    private DespachosRepository despachosRepository;
+
+    @Autowired
+    private ParadasRutaService paradasRutaService;
+
+    @Autowired
+    private EstadisticasTramoService estadisticasTramoService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    // Tramos sin ninguna muestra
+    @Value("${horarios.tramo-defecto-s:120}")
+    private long tramoDefectoS;
+
+    // Dias de horarios que se conservan en la BD
+    @Value("${horarios.dias:30}")
+    private int diasConservados;
+
+    private final Map<String, TablaHorario> tablas = new ConcurrentHashMap<>();
+
+    // Despacho en el que va cada bus
+    private final Map<Long, Viaje> viajes = new ConcurrentHashMap<>();
+
+    public HorariosService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Antes que los que rehacen el dia pidiendo horas esperadas
+    @Order(0)
+    @EventListener(ApplicationReadyEvent.class)
+    public void completarHoy() {
+        LocalDate hoy = LocalDate.now(SeguidorTramos.ZONA_PERU);
+        for (Long rutaId : despachosRepository.findRutasConDespachos()) {
+            if (!horariosRepository.existsByRutaIdAndDia(rutaId, hoy)) {
+                generar(rutaId, hoy);
+            }
+        }
+    }
+
+    // Despues de las ultimas vueltas y antes de los primeros despachos
+    @Scheduled(cron = "0 30 3 * * *", zone = "America/Lima")
+    public void generarDiario() {
+        LocalDate hoy = LocalDate.now(SeguidorTramos.ZONA_PERU);
+        for (Long rutaId : despachosRepository.findRutasConDespachos()) {
+            generar(rutaId, hoy);
+        }
+        horariosRepository.borrarAnteriores(hoy.minusDays(diasConservados));
+        tablas.values().removeIf(tabla -> tabla.dia.isBefore(hoy.minusDays(1)));
+        viajes.values().removeIf(viaje -> viaje.dia.isBefore(hoy.minusDays(1)));
+    }
+
+    // Rehace el horario de la ruta para ese dia; devuelve la cantidad de pasos generados
+    public int generar(Long rutaId, LocalDate dia) {
+        List<Object[]> filas = new ArrayList<>();
+        ParadasRutaService.ParadasRuta paradas = paradasRutaService.getParadas(rutaId);
+        if (paradas != null && paradas.tamanio() > 0) {
+            int diaSemana = dia.getDayOfWeek().getValue();
+            Map<String, double[]> medianas = estadisticasTramoService.medianas(rutaId, diaSemana);
+            Date fecha = Date.valueOf(dia);
+            int n = paradas.tamanio();
+            for (LocalTime salida : despachosRepository.findHorasDelDia(rutaId, diaSemana)) {
+                long segundo = salida.toSecondOfDay();
+                for (int i = 0; i < n; i++) {
+                    if (i > 0) {
+                        segundo += duracion(medianas, paradas.getParaderoId(i - 1), paradas.getParaderoId(i),
+                                (int) (segundo / 3600));
+                    }
+                    // Lo que pasa de medianoche no entra en el horario de este dia
+                    if (segundo >= SeguidorTramos.SEGUNDOS_DIA) {
+                        break;
+                    }
+                    filas.add(new Object[]{rutaId, fecha, Time.valueOf(salida), paradas.getParaderoId(i), i,
+                            Time.valueOf(LocalTime.ofSecondOfDay(segundo))});
+                }
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM horarios WHERE ruta = ? AND dia = ?", rutaId, Date.valueOf(dia));
+            for (int i = 0; i < filas.size(); i += TAMANIO_LOTE) {
+                jdbcTemplate.batchUpdate(INSERT_HORARIO, filas.subList(i, Math.min(i + TAMANIO_LOTE, filas.size())));
+            }
+        });
+        tablas.remove(clave(rutaId, dia));
+        return filas.size();
+    }
+
+    // Mediana del tramo a esa hora para ese dia de la semana, si no la de todas las horas
+    private long duracion(Map<String, double[]> medianas, long origenId, long destinoId, int hora) {
+        double[] valores = medianas.get(EstadisticasTramoService.tramo(origenId, destinoId));
+        if (valores != null) {
+            double valor = Double.isNaN(valores[hora]) ? valores[24] : valores[hora];
+            if (!Double.isNaN(valor)) {
+                return Math.round(valor);
+            }
+        }
+        return tramoDefectoS;
+    }
+
+    /*
+     * Hora del horario para el despacho en que va el bus. En el primer paradero de la ruta
+     * el bus toma el despacho de salida mas cercano a su paso; en los demas se usa ese
+     * despacho. null si no hay horario o si no se sabe en que despacho va (no se lo vio
+     * salir hoy, por ejemplo tras un reinicio): asi no cuenta para la puntualidad.
+     */
+    public Time horaEsperada(Long rutaId, Long busId, Long paraderoId, LocalDate dia, Time llegada) {
+        if (rutaId == null || busId == null || paraderoId == null || dia == null || llegada == null) {
+            return null;
+        }
+        TablaHorario tabla = tablas.computeIfAbsent(clave(rutaId, dia), k -> cargar(rutaId, dia));
+        Integer orden = tabla.ordenDe.get(paraderoId);
+        if (orden == null || tabla.salidas.length == 0) {
+            return null;
+        }
+        int segundo = llegada.toLocalTime().toSecondOfDay();
+        Viaje viaje = viajes.get(busId);
+        boolean mismoDia = viaje != null && viaje.rutaId.equals(rutaId) && viaje.dia.equals(dia);
+        if (orden == 0) {
+            Viaje salida = new Viaje(rutaId, dia, tabla.salidas[masCercano(tabla.salidas, segundo)], segundo);
+            // Un paso atrasado (ingesta diferida) no reemplaza a un despacho posterior
+            if (!mismoDia || viaje.inicio <= segundo) {
+                viajes.put(busId, salida);
+            }
+            viaje = salida;
+        } else if (!mismoDia || segundo < viaje.inicio) {
+            return null;
+        }
+        int despacho = Arrays.binarySearch(tabla.salidas, viaje.salida);
+        // El horario se rehizo y ese despacho ya no esta
+        if (despacho < 0 || orden >= tabla.horas[despacho].length || tabla.horas[despacho][orden] < 0) {
+            return null;
+        }
+        return Time.valueOf(LocalTime.ofSecondOfDay(tabla.horas[despacho][orden]));
+    }
+
+    private static int masCercano(int[] ordenados, int segundo) {
+        int i = Arrays.binarySearch(ordenados, segundo);
+        if (i >= 0) {
+            return i;
+        }
+        int siguiente = -i - 1;
+        if (siguiente == ordenados.length) {
+            return siguiente - 1;
+        }
+        if (siguiente == 0) {
+            return 0;
+        }
+        return segundo - ordenados[siguiente - 1] <= ordenados[siguiente] - segundo ? siguiente - 1 : siguiente;
+    }
+
+    public List<HorariosModel> getHorario(Long rutaId, LocalDate dia) {
+        return horariosRepository.findByRutaIdAndDiaOrderByDespachoAscOrdenAsc(rutaId, dia);
+    }
+
+    public List<DespachosModel> getDespachos(Long rutaId) {
+        return despachosRepository.findByRutasModelIdOrderByHora(rutaId);
+    }
+
+    // El horario de hoy de las rutas tocadas se rehace al momento
+    public List<DespachosModel> guardarDespachos(List<DespachosModel> despachos) {
+        List<DespachosModel> guardados = despachosRepository.saveAll(despachos);
+        LocalDate hoy = LocalDate.now(SeguidorTramos.ZONA_PERU);
+        guardados.stream().map(d -> d.getRutasModel().getId()).distinct().forEach(rutaId -> generar(rutaId, hoy));
+        return guardados;
+    }
+
+    public boolean eliminarDespacho(Long id) {
+        DespachosModel despacho = despachosRepository.findById(id).orElse(null);
+        if (despacho == null) {
+            return false;
+        }
+        despachosRepository.delete(despacho);
+        generar(despacho.getRutasModel().getId(), LocalDate.now(SeguidorTramos.ZONA_PERU));
+        return true;
+    }
+
+    private TablaHorario cargar(Long rutaId, LocalDate dia) {
+        List<HorariosModel> filas = horariosRepository.findByRutaIdAndDiaOrderByDespachoAscOrdenAsc(rutaId, dia);
+        Map<Long, Integer> ordenDe = new HashMap<>();
+        int paraderos = 0;
+        for (HorariosModel fila : filas) {
+            ordenDe.putIfAbsent(fila.getParaderoId(), fila.getOrden());
+            paraderos = Math.max(paraderos, fila.getOrden() + 1);
+        }
+        // Vienen por despacho y orden: cada despacho es un tramo seguido de filas
+        int[] salidas = filas.stream().mapToInt(f -> f.getDespacho().toSecondOfDay()).distinct().toArray();
+        int[][] horas = new int[salidas.length][paraderos];
+        for (int[] fila : horas) {
+            // Lo que paso de medianoche no tiene fila
+            Arrays.fill(fila, -1);
+        }
+        for (HorariosModel fila : filas) {
+            int despacho = Arrays.binarySearch(salidas, fila.getDespacho().toSecondOfDay());
+            horas[despacho][fila.getOrden()] = fila.getHora().toSecondOfDay();
+        }
+        return new TablaHorario(dia, ordenDe, salidas, horas);
+    }
+
+    private static String clave(Long rutaId, LocalDate dia) {
+        return rutaId + ":" + dia;
+    }
+
+    private static class TablaHorario {
+        private final LocalDate dia;
+        private final Map<Long, Integer> ordenDe;
+        // Segundo de salida de cada despacho, ordenado
+        private final int[] salidas;
+        // [despacho][orden]: segundo esperado en cada paradero, -1 si no hay
+        private final int[][] horas;
+
+        private TablaHorario(LocalDate dia, Map<Long, Integer> ordenDe, int[] salidas, int[][] horas) {
+            this.dia = dia;
+            this.ordenDe = ordenDe;
+            this.salidas = salidas;
+            this.horas = horas;
+        }
+    }
+
+    private static class Viaje {
+        private final Long rutaId;
+        private final LocalDate dia;
+        private final int salida;
+        // Segundo del paso por el primer paradero
+        private final int inicio;
+
+        private Viaje(Long rutaId, LocalDate dia, int salida, int inicio) {
+            this.rutaId = rutaId;
+            this.dia = dia;
+            this.salida = salida;
+            this.inicio = inicio;
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.icm.dateroapi.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.icm.dateroapi.dto.ParaderoDTO;
+import com.icm.dateroapi.dto.RPDTO;
+import com.icm.dateroapi.dto.ResultadoImportacion;
+import com.icm.dateroapi.dto.RutaDTO;
+import com.icm.dateroapi.models.DistritosModel;
+import com.icm.dateroapi.models.EmpresasModel;
+import com.icm.dateroapi.models.ParaderosModel;
+import com.icm.dateroapi.models.RPModel;
+import com.icm.dateroapi.models.RutasModel;
+import com.icm.dateroapi.repositories.DistritosRepository;
+import com.icm.dateroapi.repositories.EmpresasRepository;
+import com.icm.dateroapi.repositories.ParaderosRepository;
+import com.icm.dateroapi.repositories.RPRepository;
+import com.icm.dateroapi.repositories.RutasRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/*
+ * Carga masiva de paraderos, rutas y rutas-paraderos en JSON (arreglo) o CSV con encabezado.
+ * Las filas tienen la misma forma que los DTO de lectura. Se valida todo primero, con las
+ * referencias (distritos, empresas, rutas, paraderos) leidas una sola vez, y solo si no
+ * hay errores se guarda en una transaccion por tramos.
+ */
+@Service
+public class ImportacionService {
+    public static final String CSV = "text/csv";
+    public static final int MAX_FILAS = 10000;
+    private static final int TAMANIO_TRAMO = 500;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DistritosRepository distritosRepository;
+
+    @Autowired
+    private EmpresasRepository empresasRepository;
+
+    @Autowired
+    private RutasRepository rutasRepository;
+
+    @Autowired
+    private ParaderosRepository paraderosRepository;
+
+    @Autowired
+    private RPRepository rpRepository;
+
+    @Autowired
+    private ParaderosService paraderosService;
+
+    @Autowired
+    private RutasService rutasService;
+
+    @Autowired
+    private RPService rpService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public ImportacionService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public static boolean esCsv(String contentType) {
+        return contentType != null && contentType.toLowerCase().startsWith(CSV);
+    }
+
+    // IllegalArgumentException si el cuerpo no se puede leer; los errores por fila van en el resultado
+    public <T> List<T> leer(String cuerpo, boolean csv, Class<T> tipo) {
+        List<T> filas;
+        if (csv) {
+            filas = new ArrayList<>();
+            List<List<String>> registros = leerCsv(cuerpo);
+            if (registros.isEmpty()) {
+                return filas;
+            }
+            List<String> encabezado = registros.get(0);
+            for (int i = 1; i < registros.size(); i++) {
+                List<String> valores = registros.get(i);
+                Map<String, String> columnas = new HashMap<>();
+                for (int c = 0; c < encabezado.size() && c < valores.size(); c++) {
+                    String valor = valores.get(c).trim();
+                    columnas.put(encabezado.get(c).trim(), valor.isEmpty() ? null : valor);
+                }
+                try {
+                    filas.add(objectMapper.convertValue(columnas, tipo));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("fila " + i + ": valor invalido", e);
+                }
+            }
+        } else {
+            try {
+                filas = objectMapper.readValue(cuerpo,
+                        objectMapper.getTypeFactory().constructCollectionType(List.class, tipo));
+            } catch (IOException e) {
+                throw new IllegalArgumentException("JSON invalido", e);
+            }
+        }
+        if (filas.size() > MAX_FILAS) {
+            throw new IllegalArgumentException("maximo " + MAX_FILAS + " filas por importacion");
+        }
+        return filas;
+    }
+
+    public ResultadoImportacion importarParaderos(List<ParaderoDTO> filas) {
+        Map<Long, DistritosModel> distritos = buscar(distritosRepository, filas, ParaderoDTO::getDistritoId, DistritosModel::getId);
+
+        List<String> errores = new ArrayList<>();
+        List<ParaderosModel> nuevos = new ArrayList<>(filas.size());
+        for (int i = 0; i < filas.size(); i++) {
+            ParaderoDTO fila = filas.get(i);
+            int errorInicial = errores.size();
+            if (fila.getNombre() == null || fila.getNombre().isBlank()) {
+                errores.add(error(i, "nombre requerido"));
+            }
+            if (!enRango(fila.getLatitud(), 90) || !enRango(fila.getLongitud(), 180)) {
+                errores.add(error(i, "latitud/longitud fuera de rango"));
+            }
+            DistritosModel distrito = fila.getDistritoId() != null ? distritos.get(fila.getDistritoId()) : null;
+            if (distrito == null) {
+                errores.add(error(i, "distrito " + fila.getDistritoId() + " no existe"));
+            }
+            if (errores.size() == errorInicial) {
+                ParaderosModel paradero = new ParaderosModel();
+                paradero.setNombre(fila.getNombre().trim());
+                paradero.setEstado(fila.getEstado() != null ? fila.getEstado() : true);
+                paradero.setLatitud(fila.getLatitud());
+                paradero.setLongitud(fila.getLongitud());
+                paradero.setDistritosModel(distrito);
+                nuevos.add(paradero);
+            }
+        }
+        if (!errores.isEmpty()) {
+            return new ResultadoImportacion(0, null, errores);
+        }
+        List<ParaderosModel> guardados = guardar(paraderosRepository, nuevos);
+        paraderosService.importados(guardados);
+        return resultado(guardados, ParaderosModel::getId);
+    }
+
+    public ResultadoImportacion importarRutas(List<RutaDTO> filas) {
+        Map<Long, EmpresasModel> empresas = buscar(empresasRepository, filas, RutaDTO::getEmpresaId, EmpresasModel::getId);
+
+        List<String> errores = new ArrayList<>();
+        List<RutasModel> nuevas = new ArrayList<>(filas.size());
+        for (int i = 0; i < filas.size(); i++) {
+            RutaDTO fila = filas.get(i);
+            int errorInicial = errores.size();
+            if (fila.getNombre() == null || fila.getNombre().isBlank()) {
+                errores.add(error(i, "nombre requerido"));
+            }
+            EmpresasModel empresa = fila.getEmpresaId() != null ? empresas.get(fila.getEmpresaId()) : null;
+            if (empresa == null) {
+                errores.add(error(i, "empresa " + fila.getEmpresaId() + " no existe"));
+            }
+            if (errores.size() == errorInicial) {
+                RutasModel ruta = new RutasModel();
+                ruta.setNombre(fila.getNombre().trim());
+                ruta.setEstado(fila.getEstado() != null ? fila.getEstado() : true);
+                ruta.setEmpresasModel(empresa);
+                nuevas.add(ruta);
+            }
+        }
+        if (!errores.isEmpty()) {
+            return new ResultadoImportacion(0, null, errores);
+        }
+        List<RutasModel> guardadas = guardar(rutasRepository, nuevas);
+        rutasService.importadas(guardadas);
+        return resultado(guardadas, RutasModel::getId);
+    }
+
+    public ResultadoImportacion importarRP(List<RPDTO> filas) {
+        Map<Long, RutasModel> rutas = buscar(rutasRepository, filas, RPDTO::getRutaId, RutasModel::getId);
+        Map<Long, ParaderosModel> paraderos = buscar(paraderosRepository, filas, RPDTO::getParaderoId, ParaderosModel::getId);
+
+        // Ordenes ya usados por ruta, para no duplicar posiciones
+        Map<Long, Set<Integer>> ordenes = new HashMap<>();
+        for (Long rutaId : rutas.keySet()) {
+            Set<Integer> usados = new HashSet<>();
+            rpRepository.findByRutasModelId(rutaId).forEach(rp -> usados.add(rp.getOrden()));
+            ordenes.put(rutaId, usados);
+        }
+
+        List<String> errores = new ArrayList<>();
+        List<RPModel> nuevos = new ArrayList<>(filas.size());
+        for (int i = 0; i < filas.size(); i++) {
+            RPDTO fila = filas.get(i);
+            int errorInicial = errores.size();
+            RutasModel ruta = fila.getRutaId() != null ? rutas.get(fila.getRutaId()) : null;
+            if (ruta == null) {
+                errores.add(error(i, "ruta " + fila.getRutaId() + " no existe"));
+            }
+            ParaderosModel paradero = fila.getParaderoId() != null ? paraderos.get(fila.getParaderoId()) : null;
+            if (paradero == null) {
+                errores.add(error(i, "paradero " + fila.getParaderoId() + " no existe"));
+            }
+            if (fila.getOrden() == null || fila.getOrden() < 0) {
+                errores.add(error(i, "orden requerido"));
+            } else if (ruta != null && !ordenes.get(ruta.getId()).add(fila.getOrden())) {
+                errores.add(error(i, "orden " + fila.getOrden() + " repetido en la ruta " + ruta.getId()));
+            }
+            if (errores.size() == errorInicial) {
+                RPModel rp = new RPModel();
+                rp.setRutasModel(ruta);
+                rp.setParaderosModel(paradero);
+                rp.setOrden(fila.getOrden());
+                rp.setEstado(fila.getEstado() != null ? fila.getEstado() : true);
+                nuevos.add(rp);
+            }
+        }
+        if (!errores.isEmpty()) {
+            return new ResultadoImportacion(0, null, errores);
+        }
+        List<RPModel> guardados = guardar(rpRepository, nuevos);
+        rpService.importados(guardados);
+        return resultado(guardados, RPModel::getId);
+    }
+
+    // Una consulta por tipo de referencia, no una por fila
+    private static <F, E> Map<Long, E> buscar(JpaRepository<E, Long> repositorio, List<F> filas,
+                                              Function<F, Long> referencia, Function<E, Long> id) {
+        Set<Long> ids = new HashSet<>();
+        for (F fila : filas) {
+            Long valor = referencia.apply(fila);
+            if (valor != null) {
+                ids.add(valor);
+            }
+        }
+        Map<Long, E> encontrados = new HashMap<>();
+        if (!ids.isEmpty()) {
+            repositorio.findAllById(ids).forEach(e -> encontrados.put(id.apply(e), e));
+        }
+        return encontrados;
+    }
+
+    // Todo o nada; se vacia el contexto por tramos para que los INSERT salgan en lote sin acumular entidades
+    private <E> List<E> guardar(JpaRepository<E, Long> repositorio, List<E> entidades) {
+        return transactionTemplate.execute(status -> {
+            List<E> guardadas = new ArrayList<>(entidades.size());
+            for (int i = 0; i < entidades.size(); i += TAMANIO_TRAMO) {
+                guardadas.addAll(repositorio.saveAll(entidades.subList(i, Math.min(i + TAMANIO_TRAMO, entidades.size()))));
+                entityManager.flush();
+                entityManager.clear();
+            }
+            return guardadas;
+        });
+    }
+
+    private static <E> ResultadoImportacion resultado(List<E> guardadas, Function<E, Long> id) {
+        List<Long> ids = new ArrayList<>(guardadas.size());
+        for (E entidad : guardadas) {
+            ids.add(id.apply(entidad));
+        }
+        return new ResultadoImportacion(ids.size(), ids, null);
+    }
+
+    private static boolean enRango(BigDecimal valor, int limite) {
+        return valor != null && valor.abs().compareTo(BigDecimal.valueOf(limite)) <= 0;
+    }
+
+    private static String error(int indice, String mensaje) {
+        return "fila " + (indice + 1) + ": " + mensaje;
+    }
+
+    // CSV de RFC 4180: comillas dobles para campos con comas, saltos de linea o comillas ("")
+    private static List<List<String>> leerCsv(String texto) {
+        List<List<String>> registros = new ArrayList<>();
+        List<String> actual = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+        int i = texto.startsWith("\uFEFF") ? 1 : 0;
+        for (; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (entreComillas) {
+                if (c == '"') {
+                    if (i + 1 < texto.length() && texto.charAt(i + 1) == '"') {
+                        campo.append('"');
+                        i++;
+                    } else {
+                        entreComillas = false;
+                    }
+                } else {
+                    campo.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == ',') {
+                actual.add(campo.toString());
+                campo.setLength(0);
+            } else if (c == '\n' || c == '\r') {
+                if (c == '\r' && i + 1 < texto.length() && texto.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                actual.add(campo.toString());
+                campo.setLength(0);
+                agregarRegistro(registros, actual);
+                actual = new ArrayList<>();
+            } else {
+                campo.append(c);
+            }
+        }
+        if (entreComillas) {
+            throw new IllegalArgumentException("CSV con comillas sin cerrar");
+        }
+        if (campo.length() > 0 || !actual.isEmpty()) {
+            actual.add(campo.toString());
+            agregarRegistro(registros, actual);
+        }
+        return registros;
+    }
+
+    private static void agregarRegistro(List<List<String>> registros, List<String> registro) {
+        // Lineas en blanco
+        if (registro.size() == 1 && registro.get(0).isBlank()) {
+            return;
+        }
+        registros.add(registro);
+    }
+}
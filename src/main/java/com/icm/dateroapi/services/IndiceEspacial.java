@@ -0,0 +1,181 @@
+package com.icm.dateroapi.services;
+
+import com.icm.dateroapi.dto.ResultadoCercania;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/*
+ * Indice de grilla en memoria sobre coordenadas lat/lon.
+ * Cada celda guarda los ids que caen en ella; las consultas solo revisan
+ * las celdas que cubren el radio pedido en vez de recorrer todos los puntos.
+ */
+public class IndiceEspacial {
+    private static final double RADIO_TIERRA = 6371008.8;
+    private static final double METROS_POR_GRADO = 111320.0;
+    private static final int MAX_ANILLOS = 200;
+
+    private final double tamanioCelda;
+    private final Map<Long, Punto> puntos = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> celdas = new ConcurrentHashMap<>();
+
+    public IndiceEspacial(double tamanioCeldaMetros) {
+        this.tamanioCelda = tamanioCeldaMetros / METROS_POR_GRADO;
+    }
+
+    public void actualizar(Long id, double latitud, double longitud, String nombre) {
+        long celda = celda(fila(latitud), columna(longitud));
+        // compute serializa las actualizaciones del mismo id; se quita de la celda anterior antes de
+        // agregarlo a la nueva, y las consultas ignoran el id en una celda que no es la de su punto
+        puntos.compute(id, (k, anterior) -> {
+            if (anterior != null && anterior.celda != celda) {
+                quitarDeCelda(anterior.celda, id);
+            }
+            if (anterior == null || anterior.celda != celda) {
+                celdas.compute(celda, (c, ids) -> {
+                    Set<Long> contenido = ids != null ? ids : ConcurrentHashMap.newKeySet();
+                    contenido.add(id);
+                    return contenido;
+                });
+            }
+            return new Punto(latitud, longitud, celda, nombre != null ? nombre : (anterior != null ? anterior.nombre : null));
+        });
+    }
+
+    public void eliminar(Long id) {
+        puntos.computeIfPresent(id, (k, anterior) -> {
+            quitarDeCelda(anterior.celda, id);
+            return null;
+        });
+    }
+
+    public int tamanio() {
+        return puntos.size();
+    }
+
+    public List<ResultadoCercania> enRadio(double latitud, double longitud, double radioMetros, int limite) {
+        return enRadio(latitud, longitud, radioMetros, limite, id -> true);
+    }
+
+    // incluir descarta ids antes de contarlos, asi el limite no se llena con puntos que no sirven
+    public List<ResultadoCercania> enRadio(double latitud, double longitud, double radioMetros, int limite,
+                                           Predicate<Long> incluir) {
+        double dLat = radioMetros / METROS_POR_GRADO;
+        double dLon = radioMetros / (METROS_POR_GRADO * Math.max(Math.cos(Math.toRadians(latitud)), 0.01));
+        List<ResultadoCercania> resultado = new ArrayList<>();
+        Set<Long> vistos = new HashSet<>();
+        for (int f = fila(latitud - dLat); f <= fila(latitud + dLat); f++) {
+            for (int c = columna(longitud - dLon); c <= columna(longitud + dLon); c++) {
+                agregarCelda(celda(f, c), latitud, longitud, radioMetros, incluir, vistos, resultado);
+            }
+        }
+        resultado.sort(Comparator.comparingDouble(ResultadoCercania::getDistancia));
+        return resultado.size() > limite ? new ArrayList<>(resultado.subList(0, limite)) : resultado;
+    }
+
+    // Busca por anillos de celdas alrededor del punto hasta asegurar los k mas cercanos
+    public List<ResultadoCercania> cercanos(double latitud, double longitud, int k, double radioMaximo) {
+        return cercanos(latitud, longitud, k, radioMaximo, id -> true);
+    }
+
+    public List<ResultadoCercania> cercanos(double latitud, double longitud, int k, double radioMaximo,
+                                            Predicate<Long> incluir) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        int fila = fila(latitud);
+        int columna = columna(longitud);
+        double celdaMetros = tamanioCelda * METROS_POR_GRADO * Math.max(Math.cos(Math.toRadians(latitud)), 0.01);
+        List<ResultadoCercania> candidatos = new ArrayList<>();
+        Set<Long> vistos = new HashSet<>();
+
+        for (int anillo = 0; anillo <= MAX_ANILLOS; anillo++) {
+            for (int f = fila - anillo; f <= fila + anillo; f++) {
+                for (int c = columna - anillo; c <= columna + anillo; c++) {
+                    if (Math.abs(f - fila) == anillo || Math.abs(c - columna) == anillo) {
+                        agregarCelda(celda(f, c), latitud, longitud, radioMaximo, incluir, vistos, candidatos);
+                    }
+                }
+            }
+            // Todo lo que esta a menos de esta distancia ya fue revisado
+            double cubierto = anillo * celdaMetros;
+            if (cubierto >= radioMaximo) {
+                break;
+            }
+            if (candidatos.size() >= k) {
+                candidatos.sort(Comparator.comparingDouble(ResultadoCercania::getDistancia));
+                if (candidatos.get(k - 1).getDistancia() <= cubierto) {
+                    break;
+                }
+            }
+        }
+        candidatos.sort(Comparator.comparingDouble(ResultadoCercania::getDistancia));
+        return candidatos.size() > k ? new ArrayList<>(candidatos.subList(0, k)) : candidatos;
+    }
+
+    public static double distancia(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * RADIO_TIERRA * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private void agregarCelda(long celda, double latitud, double longitud, double radioMetros,
+                              Predicate<Long> incluir, Set<Long> vistos, List<ResultadoCercania> resultado) {
+        Set<Long> ids = celdas.get(celda);
+        if (ids == null) {
+            return;
+        }
+        for (Long id : ids) {
+            Punto punto = puntos.get(id);
+            // Un punto que se esta moviendo puede aparecer en dos celdas durante la consulta
+            if (punto == null || punto.celda != celda || !vistos.add(id) || !incluir.test(id)) {
+                continue;
+            }
+            double d = distancia(latitud, longitud, punto.latitud, punto.longitud);
+            if (d <= radioMetros) {
+                resultado.add(new ResultadoCercania(id, punto.nombre, punto.latitud, punto.longitud, d));
+            }
+        }
+    }
+
+    private void quitarDeCelda(long celda, Long id) {
+        celdas.computeIfPresent(celda, (c, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    private int fila(double latitud) {
+        return (int) Math.floor(latitud / tamanioCelda);
+    }
+
+    private int columna(double longitud) {
+        return (int) Math.floor(longitud / tamanioCelda);
+    }
+
+    private static long celda(int fila, int columna) {
+        return ((long) fila << 32) | (columna & 0xffffffffL);
+    }
+
+    private static class Punto {
+        private final double latitud;
+        private final double longitud;
+        private final long celda;
+        private final String nombre;
+
+        private Punto(double latitud, double longitud, long celda, String nombre) {
+            this.latitud = latitud;
+            this.longitud = longitud;
+            this.celda = celda;
+            this.nombre = nombre;
+        }
+    }
+}
@@ -0,0 +1,479 @@
+package com.icm.dateroapi.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.icm.dateroapi.dto.IngresoPaso;
+import com.icm.dateroapi.dto.IngresoVenta;
+import com.icm.dateroapi.models.ConteoBoletosModel;
+import com.icm.dateroapi.models.RegistroRutaModel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/*
+ * Modo asincrono de /conteoB/aumentar y /registroRuta/agregarPasoRuta.
+ * El hilo de Tomcat solo deja el ingreso en una cola circular y responde 202;
+ * un unico hilo por canal la vacia por lotes. Si la cola esta llena, o un lote
+ * falla contra la BD, los ingresos se anexan a un archivo que el mismo hilo
+ * vuelve a leer cuando la cola se vacia (al menos una vez, tambien tras reiniciar).
+ * Un ingreso que falla por si mismo (no por la BD caida) no vuelve a ese archivo:
+ * se aparta en <canal>-rechazados.ndjson para revisarlo a mano.
+ */
+@Service
+public class IngestaAsincronaService {
+    private static final Logger log = LoggerFactory.getLogger(IngestaAsincronaService.class);
+    private static final ZoneId ZONA_PERU = ZoneId.of("America/Lima");
+    private static final long PAUSA_ERROR_MS = 1000;
+
+    @Autowired
+    private ContadorBoletosService contadorBoletosService;
+
+    @Autowired
+    private RegistroRutaService registroRutaService;
+
+    @Autowired
+    private DetectorLlegadasService detectorLlegadasService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${ingesta.capacidad:16384}")
+    private int capacidad;
+
+    @Value("${ingesta.lote:500}")
+    private int tamanioLote;
+
+    @Value("${ingesta.espera-ms:5}")
+    private long esperaMs;
+
+    @Value("${ingesta.desborde.dir:ingesta}")
+    private String directorio;
+
+    private Canal<IngresoVenta> ventas;
+    private Canal<IngresoPaso> pasos;
+
+    @PostConstruct
+    public void iniciar() throws IOException {
+        Path dir = Paths.get(directorio);
+        Files.createDirectories(dir);
+        ventas = new Canal<>("ventas", dir, IngresoVenta.class, IngresoVenta::getRecibido, this::aplicarVentas);
+        pasos = new Canal<>("pasos", dir, IngresoPaso.class, IngresoPaso::getRecibido, this::aplicarPasos);
+        ventas.iniciar();
+        pasos.iniciar();
+    }
+
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        ventas.detener();
+        pasos.detener();
+    }
+
+    // Una venta de un bus o boleto que no existen se rechaza aqui y no llega a la cola
+    public boolean encolarVenta(ConteoBoletosModel conteoBoletosModel) {
+        if (conteoBoletosModel.getBusesModel() == null || conteoBoletosModel.getEmpresasModel() == null
+                || conteoBoletosModel.getBoletosModel() == null) {
+            throw new IllegalArgumentException("bus, empresa y boleto son obligatorios");
+        }
+        IngresoVenta venta = new IngresoVenta(conteoBoletosModel.getBusesModel().getId(),
+                conteoBoletosModel.getEmpresasModel().getId(),
+                conteoBoletosModel.getBoletosModel().getId(),
+                conteoBoletosModel.getTotalAcumulado(),
+                LocalDate.now(ZONA_PERU), System.currentTimeMillis());
+        contadorBoletosService.validar(venta.getBusId(), venta.getEmpresaId(), venta.getBoletoId());
+        return ventas.encolar(venta);
+    }
+
+    public boolean encolarPaso(RegistroRutaModel registroRutaModel) {
+        if (registroRutaModel.getEmpresasModel() == null || registroRutaModel.getRutasModel() == null
+                || registroRutaModel.getBusesModel() == null || registroRutaModel.getParaderosModel() == null) {
+            throw new IllegalArgumentException("empresa, ruta, bus y paradero son obligatorios");
+        }
+        IngresoPaso paso = new IngresoPaso(registroRutaModel.getEmpresasModel().getId(),
+                registroRutaModel.getRutasModel().getId(),
+                registroRutaModel.getBusesModel().getId(),
+                registroRutaModel.getParaderosModel().getId(),
+                LocalDate.now(ZONA_PERU), LocalTime.now(), System.currentTimeMillis());
+        if (!pasos.encolar(paso)) {
+            return false;
+        }
+        // El detector es solo memoria; se avisa al momento para que no vuelva a marcar el mismo paso,
+        // pero solo si el paso quedo encolado: uno perdido no debe tapar la deteccion por GPS
+        detectorLlegadasService.pasoExterno(paso.getBusId(), paso.getRutaId(), paso.getParaderoId());
+        return true;
+    }
+
+    // El contador ya agrupa y vuelca con upsert por lotes; aqui se aplica venta por venta
+    // para devolver solo las que fallaron y no contar dos veces las demas
+    private List<IngresoVenta> aplicarVentas(List<IngresoVenta> lote, Consumer<IngresoVenta> rechazar) {
+        List<IngresoVenta> fallidas = new ArrayList<>();
+        for (IngresoVenta venta : lote) {
+            try {
+                contadorBoletosService.aumentar(venta.getBusId(), venta.getEmpresaId(), venta.getBoletoId(),
+                        venta.getMonto(), venta.getDia());
+            } catch (RuntimeException e) {
+                if (esTransitorio(e)) {
+                    fallidas.add(venta);
+                } else {
+                    log.warn("Venta rechazada: bus {} boleto {}: {}", venta.getBusId(), venta.getBoletoId(), e.getMessage());
+                    rechazar.accept(venta);
+                }
+            }
+        }
+        return fallidas;
+    }
+
+    // Primero el lote entero; si falla, paso por paso para apartar solo los que la BD rechaza
+    private List<IngresoPaso> aplicarPasos(List<IngresoPaso> lote, Consumer<IngresoPaso> rechazar) {
+        List<IngresoPaso> armados = new ArrayList<>(lote.size());
+        List<RegistroRutaModel> registros = new ArrayList<>(lote.size());
+        for (int i = 0; i < lote.size(); i++) {
+            IngresoPaso paso = lote.get(i);
+            try {
+                registros.add(armar(paso));
+                armados.add(paso);
+            } catch (RuntimeException e) {
+                if (esTransitorio(e)) {
+                    return new ArrayList<>(lote.subList(i, lote.size()));
+                }
+                log.warn("Paso rechazado: bus {} paradero {}: {}", paso.getBusId(), paso.getParaderoId(), e.getMessage());
+                rechazar.accept(paso);
+            }
+        }
+        if (registros.isEmpty()) {
+            return List.of();
+        }
+        try {
+            registroRutaService.registrarPasos(registros);
+            return List.of();
+        } catch (RuntimeException e) {
+            return aplicarUnoAUno(armados, registros, rechazar);
+        }
+    }
+
+    private List<IngresoPaso> aplicarUnoAUno(List<IngresoPaso> pasos, List<RegistroRutaModel> registros,
+                                             Consumer<IngresoPaso> rechazar) {
+        for (int i = 0; i < pasos.size(); i++) {
+            RegistroRutaModel registro = registros.get(i);
+            // El id que dejo el insert que se revirtio
+            registro.setId(null);
+            try {
+                registroRutaService.registrarPasos(List.of(registro));
+            } catch (RuntimeException e) {
+                if (esTransitorio(e)) {
+                    return new ArrayList<>(pasos.subList(i, pasos.size()));
+                }
+                IngresoPaso paso = pasos.get(i);
+                log.warn("Paso rechazado: bus {} paradero {} a las {}: {}", paso.getBusId(), paso.getParaderoId(),
+                        paso.getHora(), e.getMessage());
+                rechazar.accept(paso);
+            }
+        }
+        return List.of();
+    }
+
+    private RegistroRutaModel armar(IngresoPaso paso) {
+        return registroRutaService.armarPaso(paso.getEmpresaId(), paso.getRutaId(), paso.getBusId(),
+                paso.getParaderoId(), paso.getDia(), Time.valueOf(paso.getHora()));
+    }
+
+    // La BD caida o un bloqueo se reintentan; una fila que la BD rechaza o un dato invalido
+    // fallaria igual en cada vuelta
+    static boolean esTransitorio(RuntimeException e) {
+        return (e instanceof DataAccessException && !(e instanceof DataIntegrityViolationException))
+                || e instanceof TransactionException;
+    }
+
+    public Map<String, Object> getMetricas() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("ventas", ventas.getMetricas());
+        metricas.put("pasos", pasos.getMetricas());
+        return metricas;
+    }
+
+    private class Canal<T> {
+        private final String nombre;
+        private final Path dir;
+        private final Path archivo;
+        private final Path archivoRechazados;
+        private final Class<T> tipo;
+        private final ToLongFunction<T> recibido;
+        // Aplica el lote; devuelve lo que hay que reintentar y pasa al consumidor lo que no tiene arreglo
+        private final BiFunction<List<T>, Consumer<T>, List<T>> aplicar;
+        private final ColaAnillo<T> anillo;
+        private final Object candadoArchivo = new Object();
+
+        private Thread consumidor;
+        private volatile boolean activo;
+        // Se levanta al escribir en disco; evita listar el directorio en cada espera
+        private volatile boolean hayDesborde = true;
+
+        private final LongAdder aceptados = new LongAdder();
+        private final LongAdder procesados = new LongAdder();
+        private final LongAdder desbordados = new LongAdder();
+        private final LongAdder reprocesados = new LongAdder();
+        private final LongAdder fallidos = new LongAdder();
+        private final LongAdder rechazados = new LongAdder();
+        private final LongAdder perdidos = new LongAdder();
+        private final LongAdder lotes = new LongAdder();
+        private final AtomicLong maxProfundidad = new AtomicLong();
+        private final AtomicLong ultimoRetrasoMs = new AtomicLong();
+        private final AtomicLong maxRetrasoMs = new AtomicLong();
+
+        private Canal(String nombre, Path dir, Class<T> tipo, ToLongFunction<T> recibido,
+                      BiFunction<List<T>, Consumer<T>, List<T>> aplicar) {
+            this.nombre = nombre;
+            this.dir = dir;
+            this.archivo = dir.resolve(nombre + ".ndjson");
+            this.archivoRechazados = dir.resolve(nombre + "-rechazados.ndjson");
+            this.tipo = tipo;
+            this.recibido = recibido;
+            this.aplicar = aplicar;
+            this.anillo = new ColaAnillo<>(capacidad);
+        }
+
+        private void iniciar() {
+            activo = true;
+            consumidor = new Thread(this::consumir, "ingesta-" + nombre);
+            consumidor.setDaemon(true);
+            consumidor.start();
+        }
+
+        private void detener() throws InterruptedException {
+            activo = false;
+            LockSupport.unpark(consumidor);
+            consumidor.join(TimeUnit.SECONDS.toMillis(5));
+            // Lo que quedo en memoria se aplica ahora; si el hilo no termino, el anillo sigue siendo suyo
+            if (!consumidor.isAlive()) {
+                List<T> lote = new ArrayList<>(tamanioLote);
+                while (anillo.drenar(lote::add, tamanioLote) > 0) {
+                    procesar(lote);
+                    lote.clear();
+                }
+            }
+        }
+
+        private boolean encolar(T dato) {
+            aceptados.increment();
+            if (activo && anillo.ofrecer(dato)) {
+                return true;
+            }
+            desbordados.increment();
+            return escribir(List.of(dato));
+        }
+
+        private void consumir() {
+            List<T> lote = new ArrayList<>(tamanioLote);
+            while (activo) {
+                maxProfundidad.accumulateAndGet(anillo.tamanio(), Math::max);
+                anillo.drenar(lote::add, tamanioLote);
+                if (!lote.isEmpty()) {
+                    procesar(lote);
+                    lote.clear();
+                } else if (!reprocesar()) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(esperaMs));
+                }
+            }
+        }
+
+        // Devuelve false si parte del lote quedo para reintentar
+        private boolean procesar(List<T> lote) {
+            long ahora = System.currentTimeMillis();
+            long retraso = 0;
+            for (T dato : lote) {
+                retraso = Math.max(retraso, ahora - recibido.applyAsLong(dato));
+            }
+            List<T> apartados = new ArrayList<>();
+            List<T> sinAplicar;
+            try {
+                sinAplicar = aplicar.apply(lote, apartados::add);
+            } catch (RuntimeException e) {
+                log.error("Fallo inesperado al aplicar un lote de {}", nombre, e);
+                apartados.clear();
+                sinAplicar = lote;
+            }
+            procesados.add(lote.size() - sinAplicar.size() - apartados.size());
+            lotes.increment();
+            ultimoRetrasoMs.set(retraso);
+            maxRetrasoMs.accumulateAndGet(retraso, Math::max);
+
+            if (!apartados.isEmpty()) {
+                rechazados.add(apartados.size());
+                escribir(archivoRechazados, apartados);
+            }
+            if (!sinAplicar.isEmpty()) {
+                fallidos.add(sinAplicar.size());
+                escribir(sinAplicar);
+                // La BD no responde: se espera antes de seguir vaciando
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(PAUSA_ERROR_MS));
+                return false;
+            }
+            return true;
+        }
+
+        private boolean escribir(List<T> datos) {
+            if (escribir(archivo, datos)) {
+                hayDesborde = true;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean escribir(Path destino, List<T> datos) {
+            synchronized (candadoArchivo) {
+                try (BufferedWriter writer = Files.newBufferedWriter(destino, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    for (T dato : datos) {
+                        writer.write(objectMapper.writeValueAsString(dato));
+                        writer.newLine();
+                    }
+                    return true;
+                } catch (IOException e) {
+                    perdidos.add(datos.size());
+                    return false;
+                }
+            }
+        }
+
+        // Solo con la cola vacia: toma el archivo pendiente mas antiguo y lo aplica por lotes
+        private boolean reprocesar() {
+            if (!hayDesborde) {
+                return false;
+            }
+            Path enCurso;
+            try {
+                enCurso = tomarPendiente();
+            } catch (IOException e) {
+                return false;
+            }
+            if (enCurso == null) {
+                return false;
+            }
+
+            List<T> lote = new ArrayList<>(tamanioLote);
+            // Tras un lote que no se pudo aplicar el resto del archivo vuelve al desborde sin intentarlo
+            boolean aplicando = true;
+            try (BufferedReader reader = Files.newBufferedReader(enCurso, StandardCharsets.UTF_8)) {
+                String linea;
+                while ((linea = reader.readLine()) != null) {
+                    if (linea.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        lote.add(objectMapper.readValue(linea, tipo));
+                    } catch (JsonProcessingException e) {
+                        perdidos.increment();
+                        continue;
+                    }
+                    if (lote.size() >= tamanioLote) {
+                        aplicando = reprocesarLote(lote, aplicando);
+                        lote.clear();
+                    }
+                }
+                if (!lote.isEmpty()) {
+                    reprocesarLote(lote, aplicando);
+                }
+                Files.delete(enCurso);
+            } catch (IOException e) {
+                // Se reintenta el archivo completo en la siguiente vuelta
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(PAUSA_ERROR_MS));
+            }
+            return true;
+        }
+
+        private boolean reprocesarLote(List<T> lote, boolean aplicando) {
+            if (!aplicando) {
+                escribir(lote);
+                return false;
+            }
+            reprocesados.add(lote.size());
+            return procesar(lote);
+        }
+
+        private Path tomarPendiente() throws IOException {
+            synchronized (candadoArchivo) {
+                // Primero los que quedaron a medias de un arranque anterior
+                try (Stream<Path> archivos = Files.list(dir)) {
+                    Optional<Path> previo = archivos
+                            .filter(p -> p.getFileName().toString().startsWith(nombre + "-")
+                                    && p.getFileName().toString().endsWith(".procesando"))
+                            .sorted()
+                            .findFirst();
+                    if (previo.isPresent()) {
+                        return previo.get();
+                    }
+                }
+                if (Files.exists(archivo) && Files.size(archivo) > 0) {
+                    Path destino = dir.resolve(nombre + "-" + System.currentTimeMillis() + ".procesando");
+                    Files.move(archivo, destino, StandardCopyOption.ATOMIC_MOVE);
+                    return destino;
+                }
+                hayDesborde = false;
+                return null;
+            }
+        }
+
+        private long bytesEnDisco() {
+            try (Stream<Path> archivos = Files.list(dir)) {
+                return archivos.filter(p -> p.getFileName().toString().startsWith(nombre) && !p.equals(archivoRechazados))
+                        .mapToLong(p -> p.toFile().length())
+                        .sum();
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+
+        private Map<String, Object> getMetricas() {
+            Map<String, Object> metricas = new LinkedHashMap<>();
+            metricas.put("capacidad", anillo.capacidad());
+            metricas.put("profundidad", anillo.tamanio());
+            metricas.put("maxProfundidad", maxProfundidad.get());
+            metricas.put("aceptados", aceptados.sum());
+            metricas.put("procesados", procesados.sum());
+            metricas.put("lotes", lotes.sum());
+            metricas.put("desbordados", desbordados.sum());
+            metricas.put("reprocesados", reprocesados.sum());
+            metricas.put("fallidos", fallidos.sum());
+            metricas.put("rechazados", rechazados.sum());
+            metricas.put("perdidos", perdidos.sum());
+            metricas.put("bytesEnDisco", bytesEnDisco());
+            metricas.put("bytesRechazados", archivoRechazados.toFile().length());
+            metricas.put("ultimoRetrasoMs", ultimoRetrasoMs.get());
+            metricas.put("maxRetrasoMs", maxRetrasoMs.get());
+            return metricas;
+        }
+    }
+}
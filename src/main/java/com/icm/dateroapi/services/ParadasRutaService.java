@@ -0,0 +1,140 @@
+package com.icm.dateroapi.services;
+
+import com.icm.dateroapi.models.RPModel;
+import com.icm.dateroapi.repositories.RPRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/*
+ * Paraderos de cada ruta en el orden de RPModel.orden, en arreglos primitivos.
+ * Lo usan los procesos que trabajan por ping o por paso sin ir a la BD.
+ */
+@Service
+public class ParadasRutaService {
+    @Autowired
+    private RPRepository rpRepository;
+
+    private final Map<Long, ParadasRuta> rutas = new ConcurrentHashMap<>();
+
+    public ParadasRuta getParadas(Long rutaId) {
+        if (rutaId == null) {
+            return null;
+        }
+        return rutas.computeIfAbsent(rutaId, this::cargar);
+    }
+
+    private ParadasRuta cargar(Long rutaId) {
+        List<RPModel> activos = rpRepository.findByRutasModelId(rutaId).stream()
+                .filter(rp -> !Boolean.FALSE.equals(rp.getEstado()))
+                .filter(rp -> rp.getParaderosModel() != null && rp.getParaderosModel().getLatitud() != null
+                        && rp.getParaderosModel().getLongitud() != null)
+                .sorted(Comparator.comparing(RPModel::getOrden, Comparator.nullsLast(Comparator.naturalOrder())))
+                .collect(Collectors.toList());
+
+        Long empresaId = activos.isEmpty() || activos.get(0).getRutasModel().getEmpresasModel() == null
+                ? null : activos.get(0).getRutasModel().getEmpresasModel().getId();
+        boolean circular = !activos.isEmpty() && Boolean.TRUE.equals(activos.get(0).getRutasModel().getCircular());
+        ParadasRuta paradas = new ParadasRuta(rutaId, empresaId, circular, activos.size());
+        for (int i = 0; i < activos.size(); i++) {
+            RPModel rp = activos.get(i);
+            paradas.paraderoIds[i] = rp.getParaderosModel().getId();
+            paradas.latitudes[i] = rp.getParaderosModel().getLatitud().doubleValue();
+            paradas.longitudes[i] = rp.getParaderosModel().getLongitud().doubleValue();
+            paradas.indices.putIfAbsent(paradas.paraderoIds[i], i);
+        }
+        return paradas;
+    }
+
+    public void invalidarRuta(Long rutaId) {
+        if (rutaId != null) {
+            rutas.remove(rutaId);
+        }
+    }
+
+    // Cambiar un paradero puede afectar a cualquier ruta que lo use
+    public void invalidarTodo() {
+        rutas.clear();
+    }
+
+    public static class ParadasRuta {
+        private final Long rutaId;
+        private final Long empresaId;
+        private final boolean circular;
+        private final long[] paraderoIds;
+        private final double[] latitudes;
+        private final double[] longitudes;
+        private final Map<Long, Integer> indices = new HashMap<>();
+
+        private ParadasRuta(Long rutaId, Long empresaId, boolean circular, int tamanio) {
+            this.rutaId = rutaId;
+            this.empresaId = empresaId;
+            this.circular = circular;
+            this.paraderoIds = new long[tamanio];
+            this.latitudes = new double[tamanio];
+            this.longitudes = new double[tamanio];
+        }
+
+        public Long getRutaId() {
+            return rutaId;
+        }
+
+        public Long getEmpresaId() {
+            return empresaId;
+        }
+
+        public boolean isCircular() {
+            return circular;
+        }
+
+        public int tamanio() {
+            return paraderoIds.length;
+        }
+
+        // Donde los buses esperan su despacho: el primer paradero y, si no es circular, tambien el ultimo
+        public boolean esTerminal(int indice) {
+            return indice == 0 || (!circular && indice == paraderoIds.length - 1);
+        }
+
+        public long getParaderoId(int indice) {
+            return paraderoIds[indice];
+        }
+
+        public double getLatitud(int indice) {
+            return latitudes[indice];
+        }
+
+        public double getLongitud(int indice) {
+            return longitudes[indice];
+        }
+
+        // Posicion del paradero dentro de la ruta, -1 si no pertenece a ella
+        public int indiceDe(Long paraderoId) {
+            Integer indice = indices.get(paraderoId);
+            return indice != null ? indice : -1;
+        }
+
+        public double distancia(int indice, double latitud, double longitud) {
+            return IndiceEspacial.distancia(latitudes[indice], longitudes[indice], latitud, longitud);
+        }
+
+        public int masCercano(double latitud, double longitud) {
+            int mejor = -1;
+            double mejorDistancia = Double.MAX_VALUE;
+            for (int i = 0; i < paraderoIds.length; i++) {
+                double d = distancia(i, latitud, longitud);
+                if (d < mejorDistancia) {
+                    mejorDistancia = d;
+                    mejor = i;
+                }
+            }
+            return mejor;
+        }
+    }
+}
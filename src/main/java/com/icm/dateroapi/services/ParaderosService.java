@@ -1,8 +1,15 @@
 package com.icm.dateroapi.services;
 
+import com.icm.dateroapi.config.cache.CacheRegistro;
+import com.icm.dateroapi.config.cache.VersionesRecurso;
+import com.icm.dateroapi.dto.PaginaCursor;
+import com.icm.dateroapi.dto.ParaderoDTO;
+import com.icm.dateroapi.dto.ResultadoCercania;
 import com.icm.dateroapi.models.ParaderosModel;
 import com.icm.dateroapi.repositories.ParaderosRepository;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -16,20 +23,79 @@ public class ParaderosService {
     @Autowired
     private ParaderosRepository paraderosRepository;
 
-    public List<ParaderosModel> getAll(){
-        return paraderosRepository.findAll();
+    @Autowired
+    private ParadasRutaService paradasRutaService;
+
+    @Autowired
+    private CacheRegistro cacheRegistro;
+
+    @Autowired
+    private VersionesRecurso versionesRecurso;
+
+    @Autowired
+    private SyncService syncService;
+
+    // Paraderos activos indexados por posicion para las busquedas de cercania
+    private final IndiceEspacial indiceParaderos = new IndiceEspacial(300);
+
+    @Value("${cercania.radio-max:5000}")
+    private double radioMaximo;
+
+    @Value("${cercania.k-max:100}")
+    private int kMaximo;
+
+    @PostConstruct
+    public void cargarIndice() {
+        paraderosRepository.findByEstado(true).forEach(this::indexar);
+    }
+
+    private void indexar(ParaderosModel paradero) {
+        if (Boolean.TRUE.equals(paradero.getEstado()) && paradero.getLatitud() != null && paradero.getLongitud() != null) {
+            indiceParaderos.actualizar(paradero.getId(), paradero.getLatitud().doubleValue(),
+                    paradero.getLongitud().doubleValue(), paradero.getNombre());
+        } else {
+            indiceParaderos.eliminar(paradero.getId());
+        }
+    }
+
+    // Lanza IllegalArgumentException si k o el radio pasan los maximos
+    public List<ResultadoCercania> getCercanos(double latitud, double longitud, int k, double radio) {
+        validarCercania(radio, k);
+        return indiceParaderos.cercanos(latitud, longitud, k, radio);
     }
 
-    public Page<ParaderosModel> findAll(Pageable pageable) {
-        return paraderosRepository.findAll(pageable);
+    public List<ResultadoCercania> getEnRadio(double latitud, double longitud, double radio, int limite) {
+        validarCercania(radio, 1);
+        return indiceParaderos.enRadio(latitud, longitud, radio, Math.min(limite, kMaximo));
+    }
+
+    private void validarCercania(double radio, int k) {
+        if (!(radio > 0 && radio <= radioMaximo)) {
+            throw new IllegalArgumentException("radio debe estar entre 0 y " + radioMaximo);
+        }
+        if (k <= 0 || k > kMaximo) {
+            throw new IllegalArgumentException("k debe estar entre 1 y " + kMaximo);
+        }
+    }
+
+    public String getEtag() {
+        return versionesRecurso.etag("paraderos");
+    }
+
+    public List<ParaderoDTO> getAll(){
+        return paraderosRepository.findAllDTO();
+    }
+
+    public Page<ParaderoDTO> findAll(Pageable pageable) {
+        return paraderosRepository.findAllDTO(pageable);
     }
 
     public Optional<ParaderosModel> getById(Long id){
         return paraderosRepository.findById(id);
     }
 
-    public List<ParaderosModel> getByEstado(Boolean estado) {
-        return paraderosRepository.findByEstado(estado);
+    public List<ParaderoDTO> getByEstado(Boolean estado) {
+        return paraderosRepository.findDTOByEstado(estado);
     }
     /*
     public List<ParaderosModel> getByEmpresasAndEstado(Long empresaid, Boolean estado) {
@@ -37,12 +103,33 @@ public class ParaderosService {
     }
     */
 
-    public Page<ParaderosModel> getByEstado(Boolean estado, Pageable pageable) {
-        return paraderosRepository.findByEstado(estado, pageable);
+    public Page<ParaderoDTO> getByEstado(Boolean estado, Pageable pageable) {
+        return paraderosRepository.findDTOByEstado(estado, pageable);
+    }
+
+    public PaginaCursor<ParaderoDTO> findAll(String despues, int size, boolean conteo) {
+        List<ParaderoDTO> filas = paraderosRepository.findDTODespues(PaginaCursor.decodificar(despues), PaginaCursor.limite(size));
+        Long total = conteo ? paraderosRepository.count() : null;
+        return PaginaCursor.armar(filas, size, ParaderoDTO::getId, total);
+    }
+
+    public PaginaCursor<ParaderoDTO> getByEstado(Boolean estado, String despues, int size, boolean conteo) {
+        List<ParaderoDTO> filas = paraderosRepository.findDTOByEstadoDespues(estado, PaginaCursor.decodificar(despues), PaginaCursor.limite(size));
+        Long total = conteo ? paraderosRepository.countByEstado(estado) : null;
+        return PaginaCursor.armar(filas, size, ParaderoDTO::getId, total);
     }
 
     public ParaderosModel createParaderos(ParaderosModel paraderosModel){
-        return paraderosRepository.save(paraderosModel);
+        ParaderosModel paradero = paraderosRepository.save(paraderosModel);
+        indexar(paradero);
+        versionesRecurso.incrementar("paraderos");
+        return paradero;
+    }
+
+    // Despues de una importacion masiva ya confirmada
+    public void importados(List<ParaderosModel> paraderos) {
+        paraderos.forEach(this::indexar);
+        versionesRecurso.incrementar("paraderos");
     }
 
     public ParaderosModel editParaderos(ParaderosModel paraderosModel, Long id){
@@ -54,7 +141,12 @@ public class ParaderosService {
             //paraderos.setDistritosModel(paraderosModel.getDistritosModel());
             paraderos.setLatitud(paraderosModel.getLatitud());
             paraderos.setLongitud(paraderosModel.getLongitud());
-            return paraderosRepository.save(paraderos);
+            ParaderosModel paradero = paraderosRepository.save(paraderos);
+            indexar(paradero);
+            paradasRutaService.invalidarTodo();
+            cacheRegistro.invalidar("rp.");
+            versionesRecurso.incrementar("paraderos", "rp");
+            return paradero;
         } else {
             return null;
         }
@@ -62,5 +154,10 @@ public class ParaderosService {
 
     public void deleteParadero(Long id){
         paraderosRepository.deleteById(id);
+        syncService.registrarEliminacion(SyncService.PARADEROS, id, null);
+        indiceParaderos.eliminar(id);
+        paradasRutaService.invalidarTodo();
+        cacheRegistro.invalidar("rp.");
+        versionesRecurso.incrementar("paraderos", "rp");
     }
 }
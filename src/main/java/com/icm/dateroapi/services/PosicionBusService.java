@@ -0,0 +1,215 @@
+package com.icm.dateroapi.services;
+
+import com.icm.dateroapi.dto.PosicionBus;
+import com.icm.dateroapi.dto.ResultadoCercania;
+import com.icm.dateroapi.models.BusesModel;
+import com.icm.dateroapi.repositories.BusesRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+@Service
+public class PosicionBusService {
+    private static final int TAMANIO_LOTE = 500;
+
+    // Se queda siempre con el ping mas reciente aunque lleguen desordenados
+    private static final BiFunction<PosicionBus, PosicionBus, PosicionBus> MAS_RECIENTE =
+            (actual, nueva) -> nueva.getFecha() >= actual.getFecha() ? nueva : actual;
+
+    @Autowired
+    private BusesRepository busesRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DetectorLlegadasService detectorLlegadasService;
+
+    @Autowired
+    private FlotaStreamService flotaStreamService;
+
+    @Autowired
+    private AgrupamientoService agrupamientoService;
+
+    @Autowired
+    private HistorialPosicionService historialPosicionService;
+
+    // Ultima posicion conocida de cada bus, se sirve directo desde memoria
+    private final Map<Long, PosicionBus> posiciones = new ConcurrentHashMap<>();
+
+    // Posiciones que aun no se escriben en la tabla Buses
+    private final Map<Long, PosicionBus> pendientes = new ConcurrentHashMap<>();
+
+    // Ultima posicion de cada bus indexada para las busquedas de cercania
+    private final IndiceEspacial indiceBuses = new IndiceEspacial(500);
+
+    // Un bus sin pings en este tiempo no sale en las busquedas de cercania
+    @Value("${buses.cercania.vigencia-ms:300000}")
+    private long vigenciaMs;
+
+    // Cuanto puede ir adelantado el reloj del dispositivo; mas alla se toma la hora de llegada
+    @Value("${buses.posicion.adelanto-max-ms:60000}")
+    private long adelantoMaximoMs;
+
+    private final LongAdder adelantadas = new LongAdder();
+
+    @Value("${cercania.radio-max:5000}")
+    private double radioMaximo;
+
+    @Value("${cercania.k-max:100}")
+    private int kMaximo;
+
+    // Al arrancar se parte de las ultimas posiciones guardadas
+    @PostConstruct
+    public void cargarPosiciones() {
+        for (Object[] fila : busesRepository.findPosiciones()) {
+            Long busId = (Long) fila[0];
+            PosicionBus posicion = new PosicionBus(busId, ((BigDecimal) fila[1]).doubleValue(),
+                    ((BigDecimal) fila[2]).doubleValue(), 0L);
+            posiciones.put(busId, posicion);
+            indiceBuses.actualizar(busId, posicion.getLatitud(), posicion.getLongitud(), (String) fila[3]);
+        }
+    }
+
+    public boolean esConocido(Long busId) {
+        return posiciones.containsKey(busId);
+    }
+
+    public PosicionBus actualizar(Long busId, double latitud, double longitud, long fecha) {
+        fecha = acotar(fecha);
+        PosicionBus nueva = new PosicionBus(busId, latitud, longitud, fecha);
+        // Al historial va todo ping, aunque llegue desordenado
+        historialPosicionService.registrar(busId, latitud, longitud, fecha);
+        PosicionBus vigente = posiciones.merge(busId, nueva, MAS_RECIENTE);
+        if (vigente == nueva) {
+            pendientes.merge(busId, nueva, MAS_RECIENTE);
+            indiceBuses.actualizar(busId, latitud, longitud, null);
+            detectorLlegadasService.procesar(nueva);
+            agrupamientoService.procesar(nueva);
+            flotaStreamService.publicarPosicion(nueva);
+        }
+        return vigente;
+    }
+
+    // Ping atrasado (por ejemplo, reenviado tras perder senal): va al historial y al
+    // detector de llegadas, pero no cambia la posicion actual
+    public void registrarAtrasado(Long busId, double latitud, double longitud, long fecha) {
+        fecha = acotar(fecha);
+        historialPosicionService.registrar(busId, latitud, longitud, fecha);
+        detectorLlegadasService.procesar(new PosicionBus(busId, latitud, longitud, fecha));
+    }
+
+    // Un ping con fecha futura ganaria a todos los reales, dejaria fija la posicion y
+    // mantendria al bus activo hasta esa hora
+    private long acotar(long fecha) {
+        long ahora = System.currentTimeMillis();
+        if (fecha > ahora + adelantoMaximoMs) {
+            adelantadas.increment();
+            return ahora;
+        }
+        return fecha;
+    }
+
+    public long getAdelantadas() {
+        return adelantadas.sum();
+    }
+
+    public Optional<PosicionBus> getPosicion(Long busId) {
+        PosicionBus posicion = posiciones.get(busId);
+        if (posicion != null) {
+            return Optional.of(posicion);
+        }
+        // Primer acceso despues de arrancar: se toma lo ultimo que quedo en la BD
+        Optional<BusesModel> bus = busesRepository.findById(busId);
+        if (bus.isEmpty() || bus.get().getLatitud() == null || bus.get().getLongitud() == null) {
+            return Optional.empty();
+        }
+        PosicionBus guardada = new PosicionBus(busId, bus.get().getLatitud().doubleValue(),
+                bus.get().getLongitud().doubleValue(), 0L);
+        PosicionBus vigente = posiciones.merge(busId, guardada, MAS_RECIENTE);
+        if (vigente == guardada) {
+            indiceBuses.actualizar(busId, guardada.getLatitud(), guardada.getLongitud(), bus.get().getPlaca());
+        }
+        return Optional.of(vigente);
+    }
+
+    // Lanza IllegalArgumentException si k o el radio pasan los maximos
+    public List<ResultadoCercania> getCercanos(double latitud, double longitud, int k, double radio) {
+        validarCercania(radio, k);
+        return indiceBuses.cercanos(latitud, longitud, k, radio, vigentes());
+    }
+
+    public List<ResultadoCercania> getEnRadio(double latitud, double longitud, double radio, int limite) {
+        validarCercania(radio, 1);
+        return indiceBuses.enRadio(latitud, longitud, radio, Math.min(limite, kMaximo), vigentes());
+    }
+
+    private void validarCercania(double radio, int k) {
+        if (!(radio > 0 && radio <= radioMaximo)) {
+            throw new IllegalArgumentException("radio debe estar entre 0 y " + radioMaximo);
+        }
+        if (k <= 0 || k > kMaximo) {
+            throw new IllegalArgumentException("k debe estar entre 1 y " + kMaximo);
+        }
+    }
+
+    private Predicate<Long> vigentes() {
+        long desde = System.currentTimeMillis() - vigenciaMs;
+        return busId -> {
+            PosicionBus posicion = posiciones.get(busId);
+            return posicion != null && posicion.getFecha() >= desde;
+        };
+    }
+
+    public Optional<PosicionBus> getPosicionEnMemoria(Long busId) {
+        return Optional.ofNullable(posiciones.get(busId));
+    }
+
+    public List<PosicionBus> getPosiciones() {
+        return new ArrayList<>(posiciones.values());
+    }
+
+    public void olvidar(Long busId) {
+        posiciones.remove(busId);
+        pendientes.remove(busId);
+        indiceBuses.eliminar(busId);
+    }
+
+    // Escribe solo la ultima coordenada de cada bus en un UPDATE por lotes
+    @Scheduled(fixedDelayString = "${buses.posicion.flush-ms:5000}")
+    public synchronized void volcarPosiciones() {
+        if (pendientes.isEmpty()) {
+            return;
+        }
+        List<PosicionBus> lote = new ArrayList<>(pendientes.values());
+        jdbcTemplate.batchUpdate("UPDATE buses SET latitud = ?, longitud = ? WHERE id = ?",
+                lote, TAMANIO_LOTE, (ps, posicion) -> {
+                    ps.setBigDecimal(1, BigDecimal.valueOf(posicion.getLatitud()));
+                    ps.setBigDecimal(2, BigDecimal.valueOf(posicion.getLongitud()));
+                    ps.setLong(3, posicion.getBusId());
+                });
+        // Si llego un ping nuevo mientras se escribia, se queda pendiente para la siguiente pasada
+        for (PosicionBus posicion : lote) {
+            pendientes.remove(posicion.getBusId(), posicion);
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        volcarPosiciones();
+    }
+}
@@ -1,7 +1,12 @@
 package com.icm.dateroapi.services;
 
+import com.icm.dateroapi.config.cache.CacheLocal;
+import com.icm.dateroapi.config.cache.CacheRegistro;
+import com.icm.dateroapi.config.cache.VersionesRecurso;
+import com.icm.dateroapi.dto.RPDTO;
 import com.icm.dateroapi.models.RPModel;
 import com.icm.dateroapi.repositories.RPRepository;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -13,20 +18,52 @@ public class RPService {
     @Autowired
     private RPRepository rpRepository;
 
-    public List<RPModel> listarRP(){
-        return rpRepository.findAll();
+    @Autowired
+    private ParadasRutaService paradasRutaService;
+
+    @Autowired
+    private CacheRegistro cacheRegistro;
+
+    @Autowired
+    private VersionesRecurso versionesRecurso;
+
+    @Autowired
+    private SyncService syncService;
+
+    private CacheLocal<Long, Optional<RPModel>> porId;
+    private CacheLocal<Long, List<RPDTO>> porRuta;
+
+    @PostConstruct
+    public void crearCaches() {
+        porId = cacheRegistro.crear("rp.id");
+        porRuta = cacheRegistro.crear("rp.xruta");
+    }
+
+    public List<RPDTO> listarRP(){
+        return rpRepository.findAllDTO();
     }
 
     public Optional<RPModel> listarRPXID(Long id){
-        return rpRepository.findById(id);
+        return porId.obtener(id, rpRepository::findById);
     }
 
-    public List<RPModel> getByRutasId(Long rutaid) {
-        return rpRepository.findByRutasModelId(rutaid);
+    // "rp" cambia cuando se edita un paradero o una ruta, "rp:<ruta>" con los cambios de esa ruta
+    public String getEtagxRuta(Long rutaid) {
+        return versionesRecurso.etag("rp", "rp:" + rutaid);
+    }
+
+    public List<RPDTO> getByRutasId(Long rutaid) {
+        return porRuta.obtener(rutaid, k -> List.copyOf(rpRepository.findDTOByRuta(rutaid)));
     }
 
     public RPModel crearRP(RPModel rpModel){
-        return rpRepository.save(rpModel);
+        RPModel rp = rpRepository.save(rpModel);
+        invalidarRuta(rp.getRutasModel().getId());
+        return rp;
+    }
+
+    public void importados(List<RPModel> rps) {
+        rps.stream().map(rp -> rp.getRutasModel().getId()).distinct().forEach(this::invalidarRuta);
     }
 
     public RPModel editarRP(RPModel rpModel, Long id){
@@ -37,12 +74,27 @@ public class RPService {
             rp.setParaderosModel(rpModel.getParaderosModel());
             rp.setOrden(rpModel.getOrden());
             rp.setEstado(rpModel.getEstado());
-            return rpRepository.save(rp);
+            RPModel guardado = rpRepository.save(rp);
+            porId.invalidar(id);
+            invalidarRuta(rp.getRutasModel().getId());
+            return guardado;
         }
         return null;
     }
 
     public void eliminarRP(Long id){
+        Optional<RPModel> existing = rpRepository.findById(id);
         rpRepository.deleteById(id);
+        porId.invalidar(id);
+        existing.ifPresent(rp -> {
+            invalidarRuta(rp.getRutasModel().getId());
+            syncService.registrarEliminacion(SyncService.RP, id, rp.getRutasModel().getEmpresasModel().getId());
+        });
+    }
+
+    private void invalidarRuta(Long rutaId) {
+        paradasRutaService.invalidarRuta(rutaId);
+        porRuta.invalidar(rutaId);
+        versionesRecurso.incrementar("rp:" + rutaId);
     }
 }
@@ -1,9 +1,10 @@
 package com.icm.dateroapi.services;
 
+import com.icm.dateroapi.dto.RegistroRutaDTO;
 import com.icm.dateroapi.models.*;
 import com.icm.dateroapi.repositories.RegistroRutaRepository;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.TypedQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -14,35 +15,51 @@ import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 @Service
 public class RegistroRutaService {
+    private static final Logger log = LoggerFactory.getLogger(RegistroRutaService.class);
+
     @Autowired
     private RegistroRutaRepository registroRutaRepository;
 
     @Autowired
-    private EntityManager entityManager;
+    private DetectorLlegadasService detectorLlegadasService;
+
+    @Autowired
+    private TramosService tramosService;
+
+    @Autowired
+    private EtaService etaService;
+
+    @Autowired
+    private EstadisticasTramoService estadisticasTramoService;
+
+    @Autowired
+    private HorariosService horariosService;
 
-    public List<RegistroRutaModel> getAll(){
-        return registroRutaRepository.findAll();
+    @Autowired
+    private CumplimientoService cumplimientoService;
+
+    @Autowired
+    private AgrupamientoService agrupamientoService;
+
+    public List<RegistroRutaDTO> getAll(){
+        return registroRutaRepository.findAllDTO();
+    }
+
+    public void exportar(LocalDate desde, LocalDate hasta, Consumer<RegistroRutaDTO> destino) {
+        ExportacionService.porPaginas((despues, pagina) -> registroRutaRepository.findDTOPagina(desde, hasta, despues, pagina),
+                RegistroRutaDTO::getId, destino);
     }
 
     public Optional<RegistroRutaModel> getById(Long id){
         return registroRutaRepository.findById(id);
     }
 
-    public List<RegistroRutaModel> obtenerRegistrosPorBusYFechaActual(Long busId) {
+    public List<RegistroRutaDTO> obtenerRegistrosPorBusYFechaActual(Long busId) {
         LocalDate fechaActualPeru = obtenerFechaActualPeru();
-
-        TypedQuery<RegistroRutaModel> query = entityManager.createQuery(
-                "SELECT r FROM RegistroRutaModel r " +
-                        "WHERE r.busesModel.id = :busId " +
-                        "AND r.dia = :fechaActualPeru",
-                RegistroRutaModel.class
-        );
-        query.setParameter("busId", busId);
-        query.setParameter("fechaActualPeru", fechaActualPeru);
-
-        return query.getResultList();
+        return registroRutaRepository.findDTOByBusAndDia(busId, fechaActualPeru);
     }
 
     private LocalDate obtenerFechaActualPeru() {
@@ -53,37 +70,85 @@ public class RegistroRutaService {
     }
 
     public RegistroRutaModel createRegistroRuta(RegistroRutaModel paraderosModel){
-        return registroRutaRepository.save(paraderosModel);
+        RegistroRutaModel registro = registroRutaRepository.save(paraderosModel);
+        pasoRegistrado(registro);
+        return registro;
+    }
+
+    // Pasos detectados por geocerca o de la ingesta asincrona; saveAll ya los inserta en una sola transaccion
+    public List<RegistroRutaModel> registrarPasos(List<RegistroRutaModel> registros){
+        List<RegistroRutaModel> guardados = registroRutaRepository.saveAll(registros);
+        // Ya estan guardados: un error en los modelos en memoria no debe hacer que se reintente el lote
+        for (RegistroRutaModel registro : guardados) {
+            try {
+                pasoRegistrado(registro);
+            } catch (RuntimeException e) {
+                log.error("No se pudo procesar el paso {} en memoria", registro.getId(), e);
+            }
+        }
+        return guardados;
+    }
+
+    // Despues del commit, cada paso alimenta los modelos en memoria
+    private void pasoRegistrado(RegistroRutaModel registro) {
+        if (registro.getDia() == null || registro.getHoraLlegada() == null || registro.getRutasModel() == null
+                || registro.getBusesModel() == null || registro.getParaderosModel() == null) {
+            return;
+        }
+        SeguidorTramos.Tramo tramo = tramosService.registrarPaso(registro.getRutasModel().getId(),
+                registro.getBusesModel().getId(), registro.getParaderosModel().getId(), registro.getDia(),
+                registro.getHoraLlegada().toLocalTime());
+        if (tramo != null) {
+            etaService.aprender(tramo);
+            estadisticasTramoService.registrar(tramo);
+        }
+        // La hora del horario y no horaEsperada, que puede ser solo una copia de la llegada
+        Long rutaId = registro.getRutasModel().getId();
+        Long busId = registro.getBusesModel().getId();
+        Long paraderoId = registro.getParaderosModel().getId();
+        cumplimientoService.registrar(rutaId, busId, paraderoId, registro.getDia(), registro.getHoraLlegada(),
+                horariosService.horaEsperada(rutaId, busId, paraderoId, registro.getDia(), registro.getHoraLlegada()));
+        agrupamientoService.paso(rutaId, busId, paraderoId, registro.getDia(), registro.getHoraLlegada());
     }
 
     public RegistroRutaModel agregarPasoRuta(RegistroRutaModel registroRutaModel){
         Long busId = registroRutaModel.getBusesModel().getId();
-        List<RegistroRutaModel> registro = obtenerRegistrosPorBusYFechaActual(busId);
+        Long rutaId = registroRutaModel.getRutasModel().getId();
+        Long paraderoId = registroRutaModel.getParaderosModel().getId();
 
+        LocalTime horaActual = LocalTime.now();
+        Time horaLlegada = Time.valueOf(horaActual);
+
+        RegistroRutaModel nuevoregistro = armarPaso(registroRutaModel.getEmpresasModel().getId(), rutaId, busId,
+                paraderoId, obtenerFechaActualPeru(), horaLlegada);
+        detectorLlegadasService.pasoExterno(busId, rutaId, paraderoId);
+        return createRegistroRuta(nuevoregistro);
+    }
+
+    // Tambien lo usa la ingesta asincrona, con el dia y la hora en que se recibio el pedido
+    public RegistroRutaModel armarPaso(Long empresaId, Long rutaId, Long busId, Long paraderoId, LocalDate dia, Time horaLlegada){
         EmpresasModel empresa = new EmpresasModel();
-        empresa.setId(registroRutaModel.getEmpresasModel().getId());
+        empresa.setId(empresaId);
 
         RutasModel rutas = new RutasModel();
-        rutas.setId(registroRutaModel.getRutasModel().getId());
+        rutas.setId(rutaId);
 
         BusesModel bus = new BusesModel();
         bus.setId(busId);
 
         ParaderosModel paradero = new ParaderosModel();
-        paradero.setId(registroRutaModel.getParaderosModel().getId());
-
-        LocalTime horaActual = LocalTime.now();
-        Time horaLlegada = Time.valueOf(horaActual);
+        paradero.setId(paraderoId);
 
         RegistroRutaModel nuevoregistro = new RegistroRutaModel();
         nuevoregistro.setEmpresasModel(empresa);
         nuevoregistro.setRutasModel(rutas);
         nuevoregistro.setBusesModel(bus);
         nuevoregistro.setParaderosModel(paradero);
-        nuevoregistro.setDia(obtenerFechaActualPeru());
+        nuevoregistro.setDia(dia);
         nuevoregistro.setHoraLlegada(horaLlegada);
-        nuevoregistro.setHoraEsperada(horaLlegada);
-        return createRegistroRuta(nuevoregistro);
+        Time horaEsperada = horariosService.horaEsperada(rutaId, busId, paraderoId, dia, horaLlegada);
+        nuevoregistro.setHoraEsperada(horaEsperada != null ? horaEsperada : horaLlegada);
+        return nuevoregistro;
     }
 
     /*
@@ -0,0 +1,214 @@
+package com.icm.dateroapi.services;
+
+import com.icm.dateroapi.config.cache.CacheLocal;
+import com.icm.dateroapi.config.cache.CacheRegistro;
+import com.icm.dateroapi.models.BoletosModel;
+import com.icm.dateroapi.models.BusesModel;
+import com.icm.dateroapi.models.ConteoBoletosDiarioModel;
+import com.icm.dateroapi.models.ConteoBoletosMensualModel;
+import com.icm.dateroapi.repositories.BoletosRepository;
+import com.icm.dateroapi.repositories.BusesRepository;
+import com.icm.dateroapi.repositories.ConteoBoletosDiarioRepository;
+import com.icm.dateroapi.repositories.ConteoBoletosMensualRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ * Mantiene los resumenes diarios y mensuales de boletos por bus y tipo de boleto.
+ * Se alimenta con los mismos incrementos que se escriben en ConteoBoletos, de modo
+ * que los reportes leen filas ya agregadas en vez de agrupar el historial completo.
+ */
+@Service
+public class ResumenConteoService {
+    private static final int TAMANIO_LOTE = 500;
+
+    private static final String UPSERT_DIARIO =
+            "INSERT INTO conteo_boletos_diario (bus, boleto, dia, placa, nombre_boleto, valor_boleto, conteo, total_acumulado) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE conteo = conteo + VALUES(conteo), " +
+            "total_acumulado = total_acumulado + VALUES(total_acumulado), " +
+            "placa = VALUES(placa), nombre_boleto = VALUES(nombre_boleto), valor_boleto = VALUES(valor_boleto)";
+
+    private static final String UPSERT_MENSUAL =
+            "INSERT INTO conteo_boletos_mensual (bus, boleto, anio, mes, placa, nombre_boleto, valor_boleto, conteo, total_acumulado) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE conteo = conteo + VALUES(conteo), " +
+            "total_acumulado = total_acumulado + VALUES(total_acumulado), " +
+            "placa = VALUES(placa), nombre_boleto = VALUES(nombre_boleto), valor_boleto = VALUES(valor_boleto)";
+
+    @Autowired
+    private ConteoBoletosDiarioRepository conteoBoletosDiarioRepository;
+
+    @Autowired
+    private ConteoBoletosMensualRepository conteoBoletosMensualRepository;
+
+    @Autowired
+    private BusesRepository busesRepository;
+
+    @Autowired
+    private BoletosRepository boletosRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CacheRegistro cacheRegistro;
+
+    // Datos que se copian en los resumenes; las ediciones de buses y boletos los invalidan y
+    // lo que no existe no se guarda, asi un alta posterior se ve en la siguiente venta
+    private CacheLocal<Long, String> placas;
+    private CacheLocal<Long, String[]> boletos;
+
+    // Lectura: transacciones que escriben ConteoBoletos. Escritura: reconstruir
+    private final ReentrantReadWriteLock candado = new ReentrantReadWriteLock();
+
+    @PostConstruct
+    public void crearCaches() {
+        placas = cacheRegistro.crear("resumen.placas");
+        boletos = cacheRegistro.crear("resumen.boletos");
+    }
+
+    /*
+     * Se llama al empezar cada transaccion que escribe ConteoBoletos, antes de tocar la tabla,
+     * y se libera al terminar esa transaccion: reconstruir espera a que terminen las que estan
+     * en curso y las que empiezan durante la reconstruccion esperan a que acabe. Asi ninguna
+     * escritura queda fuera de la reconstruccion ni se cuenta dos veces.
+     */
+    public void iniciarEscritura() {
+        retenerHastaTerminar(candado.readLock());
+    }
+
+    private static void retenerHastaTerminar(Lock lock) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Los resumenes de conteo solo se escriben dentro de una transaccion");
+        }
+        lock.lock();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lock.unlock();
+            }
+        });
+    }
+
+    // Debe llamarse dentro de la misma transaccion que escribe ConteoBoletos, despues de iniciarEscritura
+    public void aplicar(List<DeltaConteo> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        Map<ClaveMes, DeltaConteo> porMes = new LinkedHashMap<>();
+        for (DeltaConteo delta : deltas) {
+            YearMonth mes = YearMonth.from(delta.getDia());
+            porMes.merge(new ClaveMes(delta.getBusId(), delta.getBoletoId(), mes), delta,
+                    (a, b) -> new DeltaConteo(a.getBusId(), a.getBoletoId(), a.getDia(),
+                            a.getConteo() + b.getConteo(), a.getTotal() + b.getTotal()));
+        }
+
+        jdbcTemplate.batchUpdate(UPSERT_DIARIO, deltas, TAMANIO_LOTE, (ps, delta) -> {
+            String[] boleto = getBoleto(delta.getBoletoId());
+            ps.setLong(1, delta.getBusId());
+            ps.setLong(2, delta.getBoletoId());
+            ps.setDate(3, Date.valueOf(delta.getDia()));
+            ps.setString(4, getPlaca(delta.getBusId()));
+            ps.setString(5, boleto[0]);
+            ps.setString(6, boleto[1]);
+            ps.setLong(7, delta.getConteo());
+            ps.setDouble(8, delta.getTotal());
+        });
+
+        jdbcTemplate.batchUpdate(UPSERT_MENSUAL, new ArrayList<>(porMes.entrySet()), TAMANIO_LOTE, (ps, entrada) -> {
+            ClaveMes clave = entrada.getKey();
+            DeltaConteo delta = entrada.getValue();
+            String[] boleto = getBoleto(clave.getBoletoId());
+            ps.setLong(1, clave.getBusId());
+            ps.setLong(2, clave.getBoletoId());
+            ps.setInt(3, clave.getMes().getYear());
+            ps.setInt(4, clave.getMes().getMonthValue());
+            ps.setString(5, getPlaca(clave.getBusId()));
+            ps.setString(6, boleto[0]);
+            ps.setString(7, boleto[1]);
+            ps.setLong(8, delta.getConteo());
+            ps.setDouble(9, delta.getTotal());
+        });
+    }
+
+    public List<ConteoBoletosDiarioModel> getDiario(Long busId, LocalDate desde, LocalDate hasta) {
+        return conteoBoletosDiarioRepository.findByBusIdAndDiaBetweenOrderByDiaAscBoletoIdAsc(busId, desde, hasta);
+    }
+
+    public List<ConteoBoletosMensualModel> getMensual(Long busId) {
+        return conteoBoletosMensualRepository.findByBusIdOrderByAnioAscMesAscBoletoIdAsc(busId);
+    }
+
+    public boolean estaVacio() {
+        return conteoBoletosDiarioRepository.count() == 0;
+    }
+
+    // Recalcula ambos resumenes desde ConteoBoletos (migracion o correccion manual)
+    @Transactional
+    public void reconstruir() {
+        retenerHastaTerminar(candado.writeLock());
+        jdbcTemplate.update("DELETE FROM conteo_boletos_mensual");
+        jdbcTemplate.update("DELETE FROM conteo_boletos_diario");
+        jdbcTemplate.update(
+                "INSERT INTO conteo_boletos_diario (bus, boleto, dia, placa, nombre_boleto, valor_boleto, conteo, total_acumulado) " +
+                "SELECT cb.buses, cb.boletos, cb.dia, b.placa, bo.nombre, bo.valor, SUM(cb.conteo), COALESCE(SUM(cb.total_acumulado), 0) " +
+                "FROM conteo_boletos cb JOIN buses b ON b.id = cb.buses JOIN boletos bo ON bo.id = cb.boletos " +
+                "GROUP BY cb.buses, cb.boletos, cb.dia, b.placa, bo.nombre, bo.valor");
+        jdbcTemplate.update(
+                "INSERT INTO conteo_boletos_mensual (bus, boleto, anio, mes, placa, nombre_boleto, valor_boleto, conteo, total_acumulado) " +
+                "SELECT d.bus, d.boleto, YEAR(d.dia), MONTH(d.dia), MAX(d.placa), MAX(d.nombre_boleto), MAX(d.valor_boleto), " +
+                "SUM(d.conteo), SUM(d.total_acumulado) " +
+                "FROM conteo_boletos_diario d GROUP BY d.bus, d.boleto, YEAR(d.dia), MONTH(d.dia)");
+    }
+
+    public void olvidarBus(Long busId) {
+        placas.invalidar(busId);
+    }
+
+    public void olvidarBoleto(Long boletoId) {
+        boletos.invalidar(boletoId);
+    }
+
+    private String getPlaca(Long busId) {
+        return placas.obtener(busId, id -> busesRepository.findById(id).map(BusesModel::getPlaca).orElse(null));
+    }
+
+    private String[] getBoleto(Long boletoId) {
+        String[] boleto = boletos.obtener(boletoId, id -> boletosRepository.findById(id)
+                .map(b -> new String[]{b.getNombre(), b.getValor()}).orElse(null));
+        return boleto != null ? boleto : new String[2];
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class DeltaConteo {
+        private Long busId;
+        private Long boletoId;
+        private LocalDate dia;
+        private long conteo;
+        private double total;
+    }
+
+    @Data
+    @AllArgsConstructor
+    private static class ClaveMes {
+        private Long busId;
+        private Long boletoId;
+        private YearMonth mes;
+    }
+}
@@ -1,7 +1,10 @@
 package com.icm.dateroapi.services;
 
+import com.icm.dateroapi.config.cache.CacheLocal;
+import com.icm.dateroapi.config.cache.CacheRegistro;
 import com.icm.dateroapi.models.RolesModel;
 import com.icm.dateroapi.repositories.RolesRepository;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -13,19 +16,33 @@ public class RolesService {
     @Autowired
     private RolesRepository rolesRepository;
 
+    @Autowired
+    private CacheRegistro cacheRegistro;
+
+    private CacheLocal<Long, Optional<RolesModel>> porId;
+    private CacheLocal<String, List<RolesModel>> listas;
+
+    @PostConstruct
+    public void crearCaches() {
+        porId = cacheRegistro.crear("roles.id");
+        listas = cacheRegistro.crear("roles.lista");
+    }
+
     public List<RolesModel> getAll(){
-        return rolesRepository.findAll();
+        return listas.obtener("todos", k -> List.copyOf(rolesRepository.findAll()));
     }
 
     public Optional<RolesModel> getById(Long id){
-        return rolesRepository.findById(id);
+        return porId.obtener(id, rolesRepository::findById);
     }
     public List<RolesModel> getByEstado(Boolean estado) {
-        return rolesRepository.findByEstado(estado);
+        return listas.obtener(String.valueOf(estado), k -> List.copyOf(rolesRepository.findByEstado(estado)));
     }
 
     public RolesModel createRoles(RolesModel rolesModel){
-        return rolesRepository.save(rolesModel);
+        RolesModel guardado = rolesRepository.save(rolesModel);
+        listas.invalidarTodo();
+        return guardado;
     }
 
     public RolesModel editRoles(RolesModel rolesModel, Long id){
@@ -34,12 +51,20 @@ public class RolesService {
             RolesModel roles = existing.get();
             roles.setNombre(rolesModel.getNombre());
             roles.setEstado(rolesModel.getEstado());
-            return rolesRepository.save(roles);
+            RolesModel guardado = rolesRepository.save(roles);
+            invalidar(id);
+            return guardado;
         }
         return null;
     }
 
     public void deleteRoles(Long id){
         rolesRepository.deleteById(id);
+        invalidar(id);
+    }
+
+    private void invalidar(Long id) {
+        porId.invalidar(id);
+        listas.invalidarTodo();
     }
 }
\ No newline at end of file
@@ -1,7 +1,13 @@
 package com.icm.dateroapi.services;
 
+import com.icm.dateroapi.dto.PaginaCursor;
+import com.icm.dateroapi.config.cache.CacheLocal;
+import com.icm.dateroapi.config.cache.CacheRegistro;
+import com.icm.dateroapi.config.cache.VersionesRecurso;
+import com.icm.dateroapi.dto.RutaDTO;
 import com.icm.dateroapi.models.RutasModel;
 import com.icm.dateroapi.repositories.RutasRepository;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -15,21 +21,59 @@ public class RutasService {
     @Autowired
     private RutasRepository rutasRepository;
 
+    @Autowired
+    private CacheRegistro cacheRegistro;
+
+    @Autowired
+    private VersionesRecurso versionesRecurso;
+
+    @Autowired
+    private SyncService syncService;
+
+    @Autowired
+    private ParadasRutaService paradasRutaService;
+
+    private CacheLocal<Long, Optional<RutasModel>> porId;
+    private CacheLocal<String, List<RutaDTO>> listas;
+
+    @PostConstruct
+    public void crearCaches() {
+        porId = cacheRegistro.crear("rutas.id");
+        listas = cacheRegistro.crear("rutas.lista");
+    }
 
-    public List<RutasModel> getAll(){
-        return rutasRepository.findAll();
+    public List<RutaDTO> getAll(){
+        return listas.obtener("todos", k -> List.copyOf(rutasRepository.findAllDTO()));
     }
     public Optional<RutasModel> getById(Long id){
-        return rutasRepository.findById(id);
+        return porId.obtener(id, rutasRepository::findById);
     }
-    public Page<RutasModel> getByEmpresa(Long empresaid, Pageable pageable) {
-        return rutasRepository.findByEmpresasModelId(empresaid, pageable);
+    public Page<RutaDTO> getByEmpresa(Long empresaid, Pageable pageable) {
+        return rutasRepository.findDTOByEmpresa(empresaid, pageable);
     }
-    public Page<RutasModel> getByEmpresaAndEstado(Long empresaid, Boolean estado, Pageable pageable) {
-        return rutasRepository.findByEmpresasModelIdAndEstado(empresaid, estado, pageable);
+    public Page<RutaDTO> getByEmpresaAndEstado(Long empresaid, Boolean estado, Pageable pageable) {
+        return rutasRepository.findDTOByEmpresaAndEstado(empresaid, estado, pageable);
+    }
+
+    public PaginaCursor<RutaDTO> getByEmpresa(Long empresaid, String despues, int size, boolean conteo) {
+        List<RutaDTO> filas = rutasRepository.findDTOByEmpresaDespues(empresaid, PaginaCursor.decodificar(despues), PaginaCursor.limite(size));
+        Long total = conteo ? rutasRepository.countByEmpresasModelId(empresaid) : null;
+        return PaginaCursor.armar(filas, size, RutaDTO::getId, total);
+    }
+
+    public PaginaCursor<RutaDTO> getByEmpresaAndEstado(Long empresaid, Boolean estado, String despues, int size, boolean conteo) {
+        List<RutaDTO> filas = rutasRepository.findDTOByEmpresaAndEstadoDespues(empresaid, estado, PaginaCursor.decodificar(despues), PaginaCursor.limite(size));
+        Long total = conteo ? rutasRepository.countByEmpresasModelIdAndEstado(empresaid, estado) : null;
+        return PaginaCursor.armar(filas, size, RutaDTO::getId, total);
     }
     public RutasModel createRuta(RutasModel rutasModel){
-        return rutasRepository.save(rutasModel);
+        RutasModel guardado = rutasRepository.save(rutasModel);
+        listas.invalidarTodo();
+        return guardado;
+    }
+
+    public void importadas(List<RutasModel> rutas) {
+        listas.invalidarTodo();
     }
 
     public RutasModel editRuta(RutasModel rutasModel, Long id){
@@ -38,13 +82,28 @@ public class RutasService {
             RutasModel rutas = existing.get();
             rutas.setNombre(rutasModel.getNombre());
             rutas.setEstado(rutasModel.getEstado());
-            return rutasRepository.save(rutas);
+            rutas.setCircular(rutasModel.getCircular());
+            RutasModel guardado = rutasRepository.save(rutas);
+            invalidar(id);
+            paradasRutaService.invalidarRuta(id);
+            return guardado;
         }
         return null;
     }
 
     public void deleteRuta(Long id){
+        Optional<RutasModel> existing = rutasRepository.findById(id);
         rutasRepository.deleteById(id);
+        invalidar(id);
+        existing.ifPresent(r -> syncService.registrarEliminacion(SyncService.RUTAS, id, r.getEmpresasModel().getId()));
+    }
+
+    private void invalidar(Long id) {
+        porId.invalidar(id);
+        listas.invalidarTodo();
+        // Los boletos y las rutas-paraderos muestran datos de la ruta
+        cacheRegistro.invalidar("boletos.", "rp.");
+        versionesRecurso.incrementar("boletos", "rp");
     }
 
 }
@@ -0,0 +1,182 @@
+package com.icm.dateroapi.services;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Sigue el ultimo paso de cada bus y reconoce los tramos recorridos: dos pasos
+ * seguidos del mismo bus por paraderos consecutivos de su ruta.
+ * Los tiempos van en "segundos locales": dia * 86400 + segundo del dia en Peru.
+ */
+public class SeguidorTramos {
+    public static final ZoneId ZONA_PERU = ZoneId.of("America/Lima");
+    public static final long SEGUNDOS_DIA = 86400;
+    private static final long MAX_TRAMO_S = 2 * 3600;
+
+    private final ParadasRutaService paradasRutaService;
+    private final Map<Long, UltimoPaso> ultimos = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> busesPorRuta = new ConcurrentHashMap<>();
+
+    public SeguidorTramos(ParadasRutaService paradasRutaService) {
+        this.paradasRutaService = paradasRutaService;
+    }
+
+    // Devuelve el tramo que cierra este paso, o null si no cierra ninguno
+    public Tramo registrarPaso(Long rutaId, Long busId, Long paraderoId, LocalDate dia, LocalTime hora) {
+        ParadasRutaService.ParadasRuta paradas = paradasRutaService.getParadas(rutaId);
+        if (paradas == null || paradas.tamanio() < 2) {
+            return null;
+        }
+        int indice = paradas.indiceDe(paraderoId);
+        if (indice < 0) {
+            return null;
+        }
+        long segundo = segundoLocal(dia, hora);
+        UltimoPaso nuevo = new UltimoPaso(rutaId, paraderoId, segundo);
+        Tramo[] tramo = new Tramo[1];
+
+        ultimos.compute(busId, (id, previo) -> {
+            if (previo != null && previo.segundo > segundo) {
+                // Llego tarde (ingesta diferida): no retrocede al bus ni da un tramo negativo
+                return previo;
+            }
+            if (previo != null && previo.rutaId.equals(rutaId)) {
+                int anterior = paradas.indiceDe(previo.paraderoId);
+                long duracion = segundo - previo.segundo;
+                if (anterior >= 0 && (anterior + 1) % paradas.tamanio() == indice
+                        && duracion > 0 && duracion <= MAX_TRAMO_S) {
+                    tramo[0] = new Tramo(paradas, busId, anterior, previo.paraderoId, paraderoId, previo.segundo, duracion);
+                }
+            } else {
+                if (previo != null) {
+                    Set<Long> antes = busesPorRuta.get(previo.rutaId);
+                    if (antes != null) {
+                        antes.remove(id);
+                    }
+                }
+                busesPorRuta.computeIfAbsent(rutaId, r -> ConcurrentHashMap.newKeySet()).add(id);
+            }
+            return nuevo;
+        });
+        return tramo[0];
+    }
+
+    public UltimoPaso getUltimo(Long busId) {
+        return ultimos.get(busId);
+    }
+
+    public Set<Long> getBuses(Long rutaId) {
+        return busesPorRuta.getOrDefault(rutaId, Set.of());
+    }
+
+    public Set<Long> getRutas() {
+        return busesPorRuta.keySet();
+    }
+
+    public static long segundoLocal(LocalDate dia, LocalTime hora) {
+        return dia.toEpochDay() * SEGUNDOS_DIA + hora.toSecondOfDay();
+    }
+
+    public static long segundoActual() {
+        LocalDateTime ahora = LocalDateTime.now(ZONA_PERU);
+        return segundoLocal(ahora.toLocalDate(), ahora.toLocalTime());
+    }
+
+    public static long aEpochMs(long segundoLocal) {
+        return LocalDateTime.ofEpochSecond(segundoLocal, 0, ZoneOffset.UTC)
+                .atZone(ZONA_PERU).toInstant().toEpochMilli();
+    }
+
+    public static int hora(long segundoLocal) {
+        return (int) (Math.floorMod(segundoLocal, SEGUNDOS_DIA) / 3600);
+    }
+
+    // 1 = lunes ... 7 = domingo
+    public static int diaSemana(long segundoLocal) {
+        return LocalDate.ofEpochDay(Math.floorDiv(segundoLocal, SEGUNDOS_DIA)).getDayOfWeek().getValue();
+    }
+
+    public static class UltimoPaso {
+        private final Long rutaId;
+        private final Long paraderoId;
+        private final long segundo;
+
+        private UltimoPaso(Long rutaId, Long paraderoId, long segundo) {
+            this.rutaId = rutaId;
+            this.paraderoId = paraderoId;
+            this.segundo = segundo;
+        }
+
+        public Long getRutaId() {
+            return rutaId;
+        }
+
+        public Long getParaderoId() {
+            return paraderoId;
+        }
+
+        public long getSegundo() {
+            return segundo;
+        }
+    }
+
+    public static class Tramo {
+        private final ParadasRutaService.ParadasRuta paradas;
+        private final Long busId;
+        private final int indice;
+        private final Long origenId;
+        private final Long destinoId;
+        private final long inicio;
+        private final long duracion;
+
+        private Tramo(ParadasRutaService.ParadasRuta paradas, Long busId, int indice, Long origenId, Long destinoId,
+                      long inicio, long duracion) {
+            this.paradas = paradas;
+            this.busId = busId;
+            this.indice = indice;
+            this.origenId = origenId;
+            this.destinoId = destinoId;
+            this.inicio = inicio;
+            this.duracion = duracion;
+        }
+
+        public ParadasRutaService.ParadasRuta getParadas() {
+            return paradas;
+        }
+
+        public Long getRutaId() {
+            return paradas.getRutaId();
+        }
+
+        public Long getBusId() {
+            return busId;
+        }
+
+        // Posicion del paradero de origen en la ruta
+        public int getIndice() {
+            return indice;
+        }
+
+        public Long getOrigenId() {
+            return origenId;
+        }
+
+        public Long getDestinoId() {
+            return destinoId;
+        }
+
+        public long getInicio() {
+            return inicio;
+        }
+
+        public long getDuracion() {
+            return duracion;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.icm.dateroapi.services;
+
+import com.icm.dateroapi.dto.PuntoHistorial;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/*
+ * Reduce un recorrido ordenado por tiempo antes de enviarlo al mapa.
+ * Douglas-Peucker conserva la forma con una tolerancia en metros; el muestreo
+ * por intervalo limita la cantidad de puntos a lo que pide el cliente.
+ */
+public class SimplificadorTrayectoria {
+    private static final double METROS_POR_GRADO = 111320.0;
+
+    private SimplificadorTrayectoria() {
+    }
+
+    public static List<PuntoHistorial> simplificar(List<PuntoHistorial> puntos, Double toleranciaMetros, Integer maxPuntos) {
+        List<PuntoHistorial> resultado = puntos;
+        if (toleranciaMetros != null && toleranciaMetros > 0) {
+            resultado = douglasPeucker(resultado, toleranciaMetros);
+        }
+        if (maxPuntos != null && maxPuntos > 1 && resultado.size() > maxPuntos) {
+            resultado = porIntervalo(resultado, maxPuntos);
+        }
+        return resultado;
+    }
+
+    public static List<PuntoHistorial> douglasPeucker(List<PuntoHistorial> puntos, double toleranciaMetros) {
+        int n = puntos.size();
+        if (n < 3) {
+            return puntos;
+        }
+        // Proyeccion local a metros; suficiente para el tamanio de una ciudad
+        double cosLat = Math.cos(Math.toRadians(puntos.get(0).getLatitud()));
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = puntos.get(i).getLongitud() * METROS_POR_GRADO * cosLat;
+            y[i] = puntos.get(i).getLatitud() * METROS_POR_GRADO;
+        }
+
+        boolean[] conservar = new boolean[n];
+        conservar[0] = true;
+        conservar[n - 1] = true;
+        Deque<int[]> tramos = new ArrayDeque<>();
+        tramos.push(new int[]{0, n - 1});
+        double tolerancia2 = toleranciaMetros * toleranciaMetros;
+
+        while (!tramos.isEmpty()) {
+            int[] tramo = tramos.pop();
+            int inicio = tramo[0];
+            int fin = tramo[1];
+            int mayor = -1;
+            double mayorDistancia2 = tolerancia2;
+            for (int i = inicio + 1; i < fin; i++) {
+                double d2 = distanciaSegmento2(x[i], y[i], x[inicio], y[inicio], x[fin], y[fin]);
+                if (d2 > mayorDistancia2) {
+                    mayorDistancia2 = d2;
+                    mayor = i;
+                }
+            }
+            if (mayor >= 0) {
+                conservar[mayor] = true;
+                tramos.push(new int[]{inicio, mayor});
+                tramos.push(new int[]{mayor, fin});
+            }
+        }
+
+        List<PuntoHistorial> resultado = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (conservar[i]) {
+                resultado.add(puntos.get(i));
+            }
+        }
+        return resultado;
+    }
+
+    // Un punto por intervalo de tiempo, siempre con el primero y el ultimo
+    public static List<PuntoHistorial> porIntervalo(List<PuntoHistorial> puntos, int maxPuntos) {
+        int n = puntos.size();
+        if (n <= maxPuntos) {
+            return puntos;
+        }
+        long inicio = puntos.get(0).getFecha();
+        long fin = puntos.get(n - 1).getFecha();
+        double intervalo = Math.max(1, (double) (fin - inicio) / (maxPuntos - 1));
+
+        List<PuntoHistorial> resultado = new ArrayList<>(maxPuntos);
+        resultado.add(puntos.get(0));
+        long ultimoIntervalo = 0;
+        for (int i = 1; i < n - 1; i++) {
+            long actual = (long) ((puntos.get(i).getFecha() - inicio) / intervalo);
+            // El intervalo maxPuntos - 1 es solo el instante final, que ya lo ocupa el ultimo punto
+            if (actual > ultimoIntervalo && actual < maxPuntos - 1) {
+                resultado.add(puntos.get(i));
+                ultimoIntervalo = actual;
+            }
+        }
+        resultado.add(puntos.get(n - 1));
+        return resultado;
+    }
+
+    private static double distanciaSegmento2(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double largo2 = dx * dx + dy * dy;
+        double t = largo2 == 0 ? 0 : Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / largo2));
+        double cx = ax + t * dx - px;
+        double cy = ay + t * dy - py;
+        return cx * cx + cy * cy;
+    }
+}
@@ -0,0 +1,157 @@
+package com.icm.dateroapi.services;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/*
+ * Resumen de cuantiles con error relativo acotado (estilo DDSketch).
+ * Cada valor cae en la cubeta ceil(log_gamma(x)); cualquier cuantil sale con error
+ * relativo <= precision. Dos resumenes con la misma precision se fusionan sumando
+ * cubetas, asi se pueden juntar horas o dias sin volver a los datos.
+ * No es seguro entre hilos.
+ */
+public class SketchCuantiles {
+    private final double precision;
+    private final double gamma;
+    private final double logGamma;
+    // Conteos de las cubetas [desplazamiento, desplazamiento + conteos.length)
+    private int desplazamiento;
+    private long[] conteos = new long[0];
+    private long total;
+    // Valores <= 0 (no deberian darse en duraciones)
+    private long ceros;
+
+    public SketchCuantiles(double precision) {
+        this.precision = precision;
+        this.gamma = (1 + precision) / (1 - precision);
+        this.logGamma = Math.log(gamma);
+    }
+
+    public void agregar(double valor) {
+        total++;
+        if (valor <= 0) {
+            ceros++;
+            return;
+        }
+        int indice = (int) Math.ceil(Math.log(valor) / logGamma);
+        asegurar(indice, indice);
+        conteos[indice - desplazamiento]++;
+    }
+
+    public void fusionar(SketchCuantiles otro) {
+        if (otro.gamma != gamma) {
+            throw new IllegalArgumentException("precision distinta");
+        }
+        total += otro.total;
+        ceros += otro.ceros;
+        if (otro.conteos.length == 0) {
+            return;
+        }
+        asegurar(otro.desplazamiento, otro.desplazamiento + otro.conteos.length - 1);
+        for (int i = 0; i < otro.conteos.length; i++) {
+            conteos[otro.desplazamiento + i - desplazamiento] += otro.conteos[i];
+        }
+    }
+
+    // q entre 0 y 1; NaN si esta vacio
+    public double cuantil(double q) {
+        if (total == 0) {
+            return Double.NaN;
+        }
+        long rango = (long) Math.floor(q * (total - 1));
+        if (rango < ceros) {
+            return 0;
+        }
+        long acumulado = ceros;
+        for (int i = 0; i < conteos.length; i++) {
+            acumulado += conteos[i];
+            if (acumulado > rango) {
+                // Punto medio de la cubeta en escala relativa
+                return 2 * Math.pow(gamma, desplazamiento + i) / (gamma + 1);
+            }
+        }
+        return 2 * Math.pow(gamma, desplazamiento + conteos.length - 1) / (gamma + 1);
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public double getPrecision() {
+        return precision;
+    }
+
+    private void asegurar(int desde, int hasta) {
+        if (conteos.length == 0) {
+            desplazamiento = desde;
+            conteos = new long[hasta - desde + 1];
+            return;
+        }
+        int actualHasta = desplazamiento + conteos.length - 1;
+        if (desde >= desplazamiento && hasta <= actualHasta) {
+            return;
+        }
+        int nuevoDesde = Math.min(desde, desplazamiento);
+        int nuevoHasta = Math.max(hasta, actualHasta);
+        long[] nuevos = new long[nuevoHasta - nuevoDesde + 1];
+        System.arraycopy(conteos, 0, nuevos, desplazamiento - nuevoDesde, conteos.length);
+        conteos = nuevos;
+        desplazamiento = nuevoDesde;
+    }
+
+    // Formato: varints de ceros, desplazamiento (zigzag), cantidad de cubetas y cada conteo
+    public byte[] codificar() {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(16 + conteos.length);
+        escribir(salida, ceros);
+        escribir(salida, (desplazamiento << 1) ^ (desplazamiento >> 31));
+        escribir(salida, conteos.length);
+        for (long conteo : conteos) {
+            escribir(salida, conteo);
+        }
+        return salida.toByteArray();
+    }
+
+    public static SketchCuantiles decodificar(byte[] datos, double precision) {
+        SketchCuantiles sketch = new SketchCuantiles(precision);
+        int[] posicion = {0};
+        sketch.ceros = leer(datos, posicion);
+        int zigzag = (int) leer(datos, posicion);
+        sketch.desplazamiento = (zigzag >>> 1) ^ -(zigzag & 1);
+        sketch.conteos = new long[(int) leer(datos, posicion)];
+        sketch.total = sketch.ceros;
+        for (int i = 0; i < sketch.conteos.length; i++) {
+            sketch.conteos[i] = leer(datos, posicion);
+            sketch.total += sketch.conteos[i];
+        }
+        return sketch;
+    }
+
+    public SketchCuantiles copia() {
+        SketchCuantiles copia = new SketchCuantiles(precision);
+        copia.desplazamiento = desplazamiento;
+        copia.conteos = Arrays.copyOf(conteos, conteos.length);
+        copia.total = total;
+        copia.ceros = ceros;
+        return copia;
+    }
+
+    private static void escribir(ByteArrayOutputStream salida, long valor) {
+        while ((valor & ~0x7FL) != 0) {
+            salida.write((int) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        salida.write((int) valor);
+    }
+
+    private static long leer(byte[] datos, int[] posicion) {
+        long valor = 0;
+        int corrimiento = 0;
+        byte b;
+        do {
+            b = datos[posicion[0]++];
+            valor |= (long) (b & 0x7F) << corrimiento;
+            corrimiento += 7;
+        } while ((b & 0x80) != 0);
+        return valor;
+    }
+}
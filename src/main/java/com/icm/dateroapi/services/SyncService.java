@@ -0,0 +1,89 @@
+package com.icm.dateroapi.services;
+
+import com.icm.dateroapi.dto.CambiosSync;
+import com.icm.dateroapi.models.EliminacionesModel;
+import com.icm.dateroapi.repositories.BoletosRepository;
+import com.icm.dateroapi.repositories.EliminacionesRepository;
+import com.icm.dateroapi.repositories.ParaderosRepository;
+import com.icm.dateroapi.repositories.RPRepository;
+import com.icm.dateroapi.repositories.RutasRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Cambios del catalogo (rutas, paraderos, rp, boletos) desde la ultima sincronizacion de un equipo.
+// Los nombres de empresa y distrito van dentro de rutas y paraderos: un cambio en ellos reenvia esas filas.
+// No necesitan registro de borrados, las llaves foraneas impiden borrarlos mientras tengan rutas o paraderos
+@Service
+public class SyncService {
+    public static final String RUTAS = "rutas";
+    public static final String PARADEROS = "paraderos";
+    public static final String RP = "rp";
+    public static final String BOLETOS = "boletos";
+
+    @Autowired
+    private RutasRepository rutasRepository;
+
+    @Autowired
+    private ParaderosRepository paraderosRepository;
+
+    @Autowired
+    private RPRepository rpRepository;
+
+    @Autowired
+    private BoletosRepository boletosRepository;
+
+    @Autowired
+    private EliminacionesRepository eliminacionesRepository;
+
+    // Una transaccion que empezo antes de la marca puede confirmar despues; se repite ese tramo
+    @Value("${sync.solape-ms:5000}")
+    private long solapeMs;
+
+    @Value("${sync.eliminaciones.dias:30}")
+    private int diasEliminaciones;
+
+    public void registrarEliminacion(String tipo, Long id, Long empresaId) {
+        eliminacionesRepository.save(new EliminacionesModel(null, tipo, id, empresaId, LocalDateTime.now()));
+    }
+
+    @Transactional(readOnly = true)
+    public CambiosSync cambiosDesde(Long desde, Long empresaId) {
+        long marca = System.currentTimeMillis();
+        // Los borrados se guardan por un tiempo; una marca mas vieja obliga a recargar todo
+        boolean completo = desde == null || desde < marca - diasEliminaciones * 86_400_000L;
+        LocalDateTime limite = completo ? null : aFecha(desde - solapeMs);
+
+        Map<String, List<Long>> eliminados = new LinkedHashMap<>();
+        if (!completo) {
+            for (EliminacionesModel e : eliminacionesRepository.findDesde(limite, empresaId)) {
+                eliminados.computeIfAbsent(e.getTipo(), t -> new ArrayList<>()).add(e.getEntidadId());
+            }
+        }
+        return new CambiosSync(marca, completo,
+                rutasRepository.findDTOCambiados(limite, empresaId),
+                paraderosRepository.findDTOCambiados(limite),
+                rpRepository.findDTOCambiados(limite, empresaId),
+                boletosRepository.findDTOCambiados(limite, empresaId),
+                eliminados);
+    }
+
+    @Scheduled(cron = "0 30 3 * * *", zone = "America/Lima")
+    public void purgarEliminaciones() {
+        eliminacionesRepository.borrarAnteriores(LocalDateTime.now().minusDays(diasEliminaciones));
+    }
+
+    private static LocalDateTime aFecha(long milis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(milis), ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,281 @@
+package com.icm.dateroapi.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.icm.dateroapi.dto.AsignacionBus;
+import com.icm.dateroapi.dto.PosicionBus;
+import com.icm.dateroapi.models.BoletosModel;
+import com.icm.dateroapi.models.BusesModel;
+import com.icm.dateroapi.models.ConteoBoletosModel;
+import com.icm.dateroapi.models.EmpresasModel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Recibe la telemetria de los dateros publicada por MQTT.
+ * Topicos: {prefijo}/{empresaId}/{busId}/posicion y {prefijo}/{empresaId}/{busId}/boleto
+ * El hilo de Paho solo encola el mensaje crudo; el parseo y la entrega a los
+ * servicios se hace por lotes en un hilo propio.
+ */
+@Service
+public class TelemetriaService {
+    public static final String TIPO_POSICION = "posicion";
+    public static final String TIPO_BOLETO = "boleto";
+
+    @Autowired
+    private BusesService busesService;
+
+    @Autowired
+    private ConteoBoletosService conteoBoletosService;
+
+    @Autowired
+    private AsignacionBusService asignacionBusService;
+
+    @Autowired
+    private PosicionBusService posicionBusService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${mqtt.telemetria.prefijo:datero}")
+    private String prefijo;
+
+    @Value("${mqtt.telemetria.capacidad:10000}")
+    private int capacidad;
+
+    @Value("${mqtt.telemetria.lote:500}")
+    private int tamanioLote;
+
+    @Value("${mqtt.telemetria.espera-ms:50}")
+    private long esperaMs;
+
+    private BlockingQueue<MensajeTelemetria> cola;
+    private Thread consumidor;
+    private volatile boolean activo;
+
+    private final LongAdder recibidos = new LongAdder();
+    private final LongAdder descartados = new LongAdder();
+    private final LongAdder procesados = new LongAdder();
+    private final LongAdder invalidos = new LongAdder();
+    // Bus inexistente o de otra empresa que la del topico
+    private final LongAdder rechazados = new LongAdder();
+    private final LongAdder errores = new LongAdder();
+    private final LongAdder lotes = new LongAdder();
+    private final AtomicLong maxProfundidad = new AtomicLong();
+    private final AtomicLong ultimoRetrasoMs = new AtomicLong();
+
+    // Estado de la conexion MQTT que informa MqttSubscriber
+    private volatile boolean conectado;
+    private final AtomicLong desconectadoDesde = new AtomicLong();
+    private final LongAdder desconexiones = new LongAdder();
+    private final LongAdder reconexiones = new LongAdder();
+
+    @PostConstruct
+    public void iniciar() {
+        cola = new ArrayBlockingQueue<>(capacidad);
+        activo = true;
+        consumidor = new Thread(this::consumir, "telemetria-mqtt");
+        consumidor.setDaemon(true);
+        consumidor.start();
+    }
+
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        activo = false;
+        consumidor.interrupt();
+        consumidor.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    public List<String> getTopicos() {
+        return List.of(prefijo + "/+/+/" + TIPO_POSICION, prefijo + "/+/+/" + TIPO_BOLETO);
+    }
+
+    // Llamado desde el hilo de Paho: no parsea nada, solo encola
+    public boolean recibir(String topico, byte[] payload) {
+        recibidos.increment();
+        boolean aceptado;
+        try {
+            // Una espera corta frena al cliente MQTT antes de empezar a descartar
+            aceptado = cola.offer(new MensajeTelemetria(topico, payload, System.currentTimeMillis()),
+                    esperaMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            aceptado = false;
+        }
+        if (!aceptado) {
+            descartados.increment();
+        }
+        maxProfundidad.accumulateAndGet(cola.size(), Math::max);
+        return aceptado;
+    }
+
+    public void registrarConexion(boolean reconexion) {
+        conectado = true;
+        desconectadoDesde.set(0);
+        if (reconexion) {
+            reconexiones.increment();
+        }
+    }
+
+    public void registrarDesconexion() {
+        conectado = false;
+        desconectadoDesde.set(System.currentTimeMillis());
+        desconexiones.increment();
+    }
+
+    private void consumir() {
+        List<MensajeTelemetria> lote = new ArrayList<>(tamanioLote);
+        while (activo || !cola.isEmpty()) {
+            try {
+                MensajeTelemetria primero = cola.poll(500, TimeUnit.MILLISECONDS);
+                if (primero == null) {
+                    continue;
+                }
+                lote.add(primero);
+                cola.drainTo(lote, tamanioLote - 1);
+                procesarLote(lote);
+            } catch (InterruptedException e) {
+                if (!activo) {
+                    // Se vacia lo que quede antes de salir
+                    cola.drainTo(lote);
+                    if (!lote.isEmpty()) {
+                        procesarLote(lote);
+                    }
+                    return;
+                }
+            } catch (RuntimeException e) {
+                errores.add(lote.size());
+            } finally {
+                lote.clear();
+            }
+        }
+    }
+
+    private void procesarLote(List<MensajeTelemetria> lote) {
+        // De las posiciones solo interesa la mas reciente de cada bus dentro del lote
+        Map<Long, PosicionBus> posiciones = new LinkedHashMap<>();
+        List<ConteoBoletosModel> boletos = new ArrayList<>();
+
+        for (MensajeTelemetria mensaje : lote) {
+            String[] partes = mensaje.topico.split("/");
+            if (partes.length != 4) {
+                invalidos.increment();
+                continue;
+            }
+            try {
+                Long empresaId = Long.valueOf(partes[1]);
+                Long busId = Long.valueOf(partes[2]);
+                AsignacionBus asignacion = asignacionBusService.getAsignacion(busId);
+                if (asignacion == null || !empresaId.equals(asignacion.getEmpresaId())) {
+                    rechazados.increment();
+                    continue;
+                }
+                JsonNode datos = objectMapper.readTree(mensaje.payload);
+                if (TIPO_POSICION.equals(partes[3])) {
+                    long fecha = datos.path("fecha").asLong(mensaje.recibido);
+                    PosicionBus previa = posiciones.get(busId);
+                    if (previa == null || fecha >= previa.getFecha()) {
+                        posiciones.put(busId, new PosicionBus(busId, datos.get("latitud").asDouble(),
+                                datos.get("longitud").asDouble(), fecha));
+                    }
+                } else if (TIPO_BOLETO.equals(partes[3])) {
+                    boletos.add(crearConteo(empresaId, busId, datos));
+                } else {
+                    invalidos.increment();
+                }
+            } catch (IOException | RuntimeException e) {
+                invalidos.increment();
+            }
+        }
+
+        // Cada entrega por separado: un mensaje que falla no se lleva al resto del lote
+        for (PosicionBus p : posiciones.values()) {
+            try {
+                busesService.actualizarPosicion(p.getBusId(), p.getLatitud(), p.getLongitud(), p.getFecha());
+                procesados.increment();
+            } catch (RuntimeException e) {
+                errores.increment();
+            }
+        }
+        for (ConteoBoletosModel conteo : boletos) {
+            try {
+                conteoBoletosService.aumentarBoleto(conteo);
+                procesados.increment();
+            } catch (IllegalArgumentException e) {
+                // Bus o boleto que no existen o son de otra empresa
+                rechazados.increment();
+            } catch (RuntimeException e) {
+                errores.increment();
+            }
+        }
+        lotes.increment();
+        ultimoRetrasoMs.set(System.currentTimeMillis() - lote.get(0).recibido);
+    }
+
+    private ConteoBoletosModel crearConteo(Long empresaId, Long busId, JsonNode datos) {
+        EmpresasModel empresa = new EmpresasModel();
+        empresa.setId(empresaId);
+
+        BusesModel bus = new BusesModel();
+        bus.setId(busId);
+
+        BoletosModel boleto = new BoletosModel();
+        boleto.setId(datos.get("boletoId").asLong());
+
+        ConteoBoletosModel conteo = new ConteoBoletosModel();
+        conteo.setEmpresasModel(empresa);
+        conteo.setBusesModel(bus);
+        conteo.setBoletosModel(boleto);
+        conteo.setTotalAcumulado(datos.path("totalAcumulado").asDouble(0));
+        return conteo;
+    }
+
+    public Map<String, Object> getMetricas() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        long desde = desconectadoDesde.get();
+        metricas.put("conectado", conectado);
+        metricas.put("desconectadoMs", desde > 0 ? System.currentTimeMillis() - desde : 0L);
+        metricas.put("desconexiones", desconexiones.sum());
+        metricas.put("reconexiones", reconexiones.sum());
+        metricas.put("recibidos", recibidos.sum());
+        metricas.put("procesados", procesados.sum());
+        metricas.put("descartados", descartados.sum());
+        metricas.put("invalidos", invalidos.sum());
+        metricas.put("rechazados", rechazados.sum());
+        metricas.put("errores", errores.sum());
+        // Pings con la fecha del dispositivo adelantada, de la telemetria o de los lotes REST
+        metricas.put("fechasAdelantadas", posicionBusService.getAdelantadas());
+        metricas.put("lotes", lotes.sum());
+        metricas.put("profundidad", cola.size());
+        metricas.put("maxProfundidad", maxProfundidad.get());
+        metricas.put("capacidad", capacidad);
+        metricas.put("ultimoRetrasoMs", ultimoRetrasoMs.get());
+        return metricas;
+    }
+
+    private static class MensajeTelemetria {
+        private final String topico;
+        private final byte[] payload;
+        private final long recibido;
+
+        private MensajeTelemetria(String topico, byte[] payload, long recibido) {
+            this.topico = topico;
+            this.payload = payload;
+            this.recibido = recibido;
+        }
+    }
+}
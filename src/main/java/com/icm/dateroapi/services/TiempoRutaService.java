@@ -1,5 +1,6 @@
 package com.icm.dateroapi.services;
 
+import com.icm.dateroapi.dto.TiempoRutaDTO;
 import com.icm.dateroapi.models.TiempoRutaModel;
 import com.icm.dateroapi.repositories.TiempoRutaRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -7,14 +8,20 @@ import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 public class TiempoRutaService {
     @Autowired
     private TiempoRutaRepository tiempoRutaRepository;
 
-    public List<TiempoRutaModel> getAll(){
-        return tiempoRutaRepository.findAll();
+    public List<TiempoRutaDTO> getAll(){
+        return tiempoRutaRepository.findAllDTO();
+    }
+
+    public void exportar(Long rutaId, Consumer<TiempoRutaDTO> destino) {
+        ExportacionService.porPaginas((despues, pagina) -> tiempoRutaRepository.findDTOPagina(rutaId, despues, pagina),
+                TiempoRutaDTO::getId, destino);
     }
 
     public Optional<TiempoRutaModel> getById(Long id){
@@ -0,0 +1,44 @@
+package com.icm.dateroapi.services;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Set;
+
+// Seguimiento en vivo compartido por los procesos que trabajan por tramo (ETA, estadisticas)
+@Service
+public class TramosService {
+    @Autowired
+    private ParadasRutaService paradasRutaService;
+
+    private SeguidorTramos vivo;
+
+    @PostConstruct
+    public void iniciar() {
+        vivo = new SeguidorTramos(paradasRutaService);
+    }
+
+    public SeguidorTramos.Tramo registrarPaso(Long rutaId, Long busId, Long paraderoId, LocalDate dia, LocalTime hora) {
+        return vivo.registrarPaso(rutaId, busId, paraderoId, dia, hora);
+    }
+
+    public SeguidorTramos.UltimoPaso getUltimo(Long busId) {
+        return vivo.getUltimo(busId);
+    }
+
+    public Set<Long> getBuses(Long rutaId) {
+        return vivo.getBuses(rutaId);
+    }
+
+    public Set<Long> getRutas() {
+        return vivo.getRutas();
+    }
+
+    // Para reprocesar historial sin tocar el estado en vivo
+    public SeguidorTramos nuevoSeguidor() {
+        return new SeguidorTramos(paradasRutaService);
+    }
+}
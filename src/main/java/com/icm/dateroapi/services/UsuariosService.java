@@ -1,5 +1,7 @@
 package com.icm.dateroapi.services;
 
+import com.icm.dateroapi.dto.PaginaCursor;
+import com.icm.dateroapi.dto.UsuarioDTO;
 import com.icm.dateroapi.models.UsuariosModel;
 import com.icm.dateroapi.repositories.UsuariosRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,19 +17,31 @@ public class UsuariosService {
     @Autowired
     private UsuariosRepository usuariosRepository;
 
-    public List<UsuariosModel> getAll(){
-        return usuariosRepository.findAll();
+    public List<UsuarioDTO> getAll(){
+        return usuariosRepository.findAllDTO();
     }
 
     public Optional<UsuariosModel> getById(Long id){
         return usuariosRepository.findById(id);
     }
-    public Page<UsuariosModel> getByEmpresa(Long empresaid, Pageable pageable) {
-        return usuariosRepository.findByEmpresasModelId(empresaid, pageable);
+    public Page<UsuarioDTO> getByEmpresa(Long empresaid, Pageable pageable) {
+        return usuariosRepository.findDTOByEmpresa(empresaid, pageable);
     }
 
-    public Page<UsuariosModel> getByEmpresaAndEstado(Long empresaid, Boolean estado, Pageable pageable) {
-        return usuariosRepository.findByEmpresasModelIdAndEstado(empresaid, estado, pageable);
+    public Page<UsuarioDTO> getByEmpresaAndEstado(Long empresaid, Boolean estado, Pageable pageable) {
+        return usuariosRepository.findDTOByEmpresaAndEstado(empresaid, estado, pageable);
+    }
+
+    public PaginaCursor<UsuarioDTO> getByEmpresa(Long empresaid, String despues, int size, boolean conteo) {
+        List<UsuarioDTO> filas = usuariosRepository.findDTOByEmpresaDespues(empresaid, PaginaCursor.decodificar(despues), PaginaCursor.limite(size));
+        Long total = conteo ? usuariosRepository.countByEmpresasModelId(empresaid) : null;
+        return PaginaCursor.armar(filas, size, UsuarioDTO::getId, total);
+    }
+
+    public PaginaCursor<UsuarioDTO> getByEmpresaAndEstado(Long empresaid, Boolean estado, String despues, int size, boolean conteo) {
+        List<UsuarioDTO> filas = usuariosRepository.findDTOByEmpresaAndEstadoDespues(empresaid, estado, PaginaCursor.decodificar(despues), PaginaCursor.limite(size));
+        Long total = conteo ? usuariosRepository.countByEmpresasModelIdAndEstado(empresaid, estado) : null;
+        return PaginaCursor.armar(filas, size, UsuarioDTO::getId, total);
     }
 
     public UsuariosModel createUsuario(UsuariosModel trabajadoresModel){
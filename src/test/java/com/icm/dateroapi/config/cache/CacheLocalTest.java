@@ -0,0 +1,56 @@
+package com.icm.dateroapi.config.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CacheLocalTest {
+
+	private final CacheLocal<Long, Optional<String>> cache = new CacheLocal<>("prueba", 10, 60000);
+	private final AtomicInteger cargas = new AtomicInteger();
+
+	@Test
+	void guardaLoEncontradoPeroNoUnOptionalVacio() {
+		cache.obtener(1L, this::cargar);
+		cache.obtener(1L, this::cargar);
+		assertEquals(1, cargas.get());
+
+		// Si no existe se vuelve a buscar: puede crearse despues sin invalidar por id
+		cache.obtener(-1L, this::cargar);
+		cache.obtener(-1L, this::cargar);
+		assertEquals(3, cargas.get());
+	}
+
+	@Test
+	void unaCargaQueCruzaUnaInvalidacionNoQuedaGuardada() {
+		cache.obtener(1L, id -> {
+			cache.invalidar(id);
+			return cargar(id);
+		});
+		cache.obtener(1L, this::cargar);
+		assertEquals(2, cargas.get());
+
+		cache.obtener(2L, id -> {
+			cache.invalidarTodo();
+			return cargar(id);
+		});
+		cache.obtener(2L, this::cargar);
+		assertEquals(4, cargas.get());
+	}
+
+	@Test
+	void respetaElMaximoDeEntradas() {
+		for (long id = 1; id <= 25; id++) {
+			cache.obtener(id, this::cargar);
+		}
+		assertEquals(10, ((Number) cache.getMetricas().get("entradas")).intValue());
+	}
+
+	private Optional<String> cargar(Long id) {
+		cargas.incrementAndGet();
+		return id > 0 ? Optional.of("v" + id) : Optional.empty();
+	}
+}
@@ -0,0 +1,109 @@
+package com.icm.dateroapi.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ColaAnilloTest {
+
+	@Test
+	void laCapacidadSeRedondeaALaSiguientePotenciaDeDos() {
+		assertEquals(4, new ColaAnillo<Integer>(3).capacidad());
+		assertEquals(8, new ColaAnillo<Integer>(8).capacidad());
+		assertEquals(16, new ColaAnillo<Integer>(9).capacidad());
+		assertEquals(16384, new ColaAnillo<Integer>(16384).capacidad());
+	}
+
+	@Test
+	void saleEnOrdenYRechazaCuandoEstaLlena() {
+		ColaAnillo<Integer> cola = new ColaAnillo<>(4);
+		for (int i = 0; i < 4; i++) {
+			assertTrue(cola.ofrecer(i));
+		}
+		assertFalse(cola.ofrecer(4));
+		assertEquals(4, cola.tamanio());
+		for (int i = 0; i < 4; i++) {
+			assertEquals(i, cola.sacar());
+		}
+		assertNull(cola.sacar());
+		assertEquals(0, cola.tamanio());
+	}
+
+	@Test
+	void daVariasVueltasSinPerderNiRepetir() {
+		ColaAnillo<Integer> cola = new ColaAnillo<>(4);
+		List<Integer> salida = new ArrayList<>();
+		int siguiente = 0;
+		for (int vuelta = 0; vuelta < 100; vuelta++) {
+			while (cola.ofrecer(siguiente)) {
+				siguiente++;
+			}
+			assertEquals(3, cola.drenar(salida::add, 3));
+		}
+		cola.drenar(salida::add, Integer.MAX_VALUE);
+		assertEquals(siguiente, salida.size());
+		for (int i = 0; i < salida.size(); i++) {
+			assertEquals(i, salida.get(i));
+		}
+	}
+
+	@Test
+	void variosProductoresUnConsumidorNoPierdenNiDuplican() throws InterruptedException {
+		int productores = 4;
+		int porProductor = 50_000;
+		ColaAnillo<Integer> cola = new ColaAnillo<>(1024);
+		CountDownLatch inicio = new CountDownLatch(1);
+		List<Thread> hilos = new ArrayList<>();
+		for (int p = 0; p < productores; p++) {
+			int base = p * porProductor;
+			Thread hilo = new Thread(() -> {
+				try {
+					inicio.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (int i = 0; i < porProductor; i++) {
+					while (!cola.ofrecer(base + i)) {
+						Thread.onSpinWait();
+					}
+				}
+			});
+			hilo.start();
+			hilos.add(hilo);
+		}
+
+		boolean[] vistos = new boolean[productores * porProductor];
+		int[] ultimoPorProductor = new int[productores];
+		Arrays.fill(ultimoPorProductor, -1);
+		int recibidos = 0;
+		inicio.countDown();
+		long limite = System.currentTimeMillis() + 30_000;
+		while (recibidos < vistos.length && System.currentTimeMillis() < limite) {
+			Integer valor = cola.sacar();
+			if (valor == null) {
+				Thread.onSpinWait();
+				continue;
+			}
+			assertFalse(vistos[valor], "repetido " + valor);
+			vistos[valor] = true;
+			// Lo de un mismo productor sale en el orden en que entro
+			int productor = valor / porProductor;
+			assertTrue(valor > ultimoPorProductor[productor], "desordenado " + valor);
+			ultimoPorProductor[productor] = valor;
+			recibidos++;
+		}
+		for (Thread hilo : hilos) {
+			hilo.join();
+		}
+		assertEquals(vistos.length, recibidos);
+		assertNull(cola.sacar());
+	}
+}
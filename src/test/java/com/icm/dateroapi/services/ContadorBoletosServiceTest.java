@@ -0,0 +1,208 @@
+package com.icm.dateroapi.services;
+
+import com.icm.dateroapi.dto.AsignacionBus;
+import com.icm.dateroapi.models.BoletosModel;
+import com.icm.dateroapi.models.EmpresasModel;
+import com.icm.dateroapi.repositories.ConteoBoletosRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Camino de falla del volcado: una fila que la BD rechaza y una BD caida
+class ContadorBoletosServiceTest {
+
+	private static final LocalDate DIA = LocalDate.of(2024, 3, 1);
+
+	private final Set<Long> busesSinLlave = new java.util.HashSet<>();
+	private boolean bdCaida;
+	// bus -> conteo escrito en conteo_boletos
+	private final Map<Long, Long> escritos = new HashMap<>();
+	private final List<Object[]> rechazados = new ArrayList<>();
+	private ContadorBoletosService contador;
+
+	@BeforeEach
+	void iniciar() {
+		JdbcTemplate jdbc = new JdbcTemplate() {
+			@Override
+			public <T> int[][] batchUpdate(String sql, Collection<T> filas, int tamanio,
+										   ParameterizedPreparedStatementSetter<T> setter) {
+				if (bdCaida) {
+					throw new DataAccessResourceFailureException("sin conexion");
+				}
+				Map<Long, Long> lote = new HashMap<>();
+				for (T fila : filas) {
+					long[] valores = new long[6];
+					try {
+						setter.setValues(sentencia(valores), fila);
+					} catch (java.sql.SQLException e) {
+						throw new IllegalStateException(e);
+					}
+					if (busesSinLlave.contains(valores[1])) {
+						throw new DataIntegrityViolationException("llave foranea buses");
+					}
+					lote.merge(valores[1], valores[5], Long::sum);
+				}
+				lote.forEach((bus, conteo) -> escritos.merge(bus, conteo, Long::sum));
+				return new int[0][];
+			}
+
+			@Override
+			public int update(String sql, Object... args) {
+				rechazados.add(args);
+				return 1;
+			}
+		};
+		PlatformTransactionManager transacciones = new PlatformTransactionManager() {
+			@Override
+			public TransactionStatus getTransaction(TransactionDefinition definicion) {
+				return new SimpleTransactionStatus();
+			}
+
+			@Override
+			public void commit(TransactionStatus status) {
+			}
+
+			@Override
+			public void rollback(TransactionStatus status) {
+			}
+		};
+		AsignacionBusService asignaciones = new AsignacionBusService() {
+			@Override
+			public AsignacionBus getAsignacion(Long busId) {
+				return busId < 100 ? new AsignacionBus(busId, 7L, null) : null;
+			}
+		};
+		BoletosService boletos = new BoletosService() {
+			@Override
+			public Optional<BoletosModel> getById(Long id) {
+				EmpresasModel empresa = new EmpresasModel();
+				empresa.setId(7L);
+				BoletosModel boleto = new BoletosModel();
+				boleto.setId(id);
+				boleto.setEmpresasModel(empresa);
+				return id < 100 ? Optional.of(boleto) : Optional.empty();
+			}
+		};
+		ResumenConteoService resumen = new ResumenConteoService() {
+			@Override
+			public void iniciarEscritura() {
+			}
+
+			@Override
+			public void aplicar(List<DeltaConteo> deltas) {
+			}
+		};
+		ConteoBoletosRepository repositorio = (ConteoBoletosRepository) Proxy.newProxyInstance(
+				getClass().getClassLoader(), new Class<?>[]{ConteoBoletosRepository.class},
+				(proxy, metodo, args) -> Optional.empty());
+
+		contador = new ContadorBoletosService(transacciones);
+		ReflectionTestUtils.setField(contador, "jdbcTemplate", jdbc);
+		ReflectionTestUtils.setField(contador, "conteoBoletosRepository", repositorio);
+		ReflectionTestUtils.setField(contador, "resumenConteoService", resumen);
+		ReflectionTestUtils.setField(contador, "asignacionBusService", asignaciones);
+		ReflectionTestUtils.setField(contador, "boletosService", boletos);
+	}
+
+	@Test
+	void unaFilaRechazadaNoFrenaAlRestoNiSeReintenta() {
+		busesSinLlave.add(2L);
+		contador.aumentar(1L, 7L, 3L, 1.5, DIA);
+		contador.aumentar(2L, 7L, 3L, 1.5, DIA);
+		contador.aumentar(3L, 7L, 3L, 1.5, DIA);
+		contador.aumentar(3L, 7L, 3L, 1.5, DIA);
+
+		contador.volcarConteos();
+
+		assertEquals(Map.of(1L, 1L, 3L, 2L), escritos);
+		assertEquals(1, rechazados.size());
+		assertEquals(2L, rechazados.get(0)[0]);
+		// El incremento rechazado no queda pendiente ni en el total del dia
+		contador.volcarConteos();
+		assertEquals(1, rechazados.size());
+		assertEquals(1, contador.aumentar(2L, 7L, 3L, 1.0, DIA).getConteo());
+	}
+
+	@Test
+	void conLaBdCaidaLosIncrementosQuedanParaElSiguienteVolcado() {
+		contador.aumentar(1L, 7L, 3L, 1.0, DIA);
+		contador.aumentar(2L, 7L, 3L, 1.0, DIA);
+		bdCaida = true;
+
+		contador.volcarConteos();
+		assertTrue(escritos.isEmpty());
+		assertTrue(rechazados.isEmpty());
+
+		bdCaida = false;
+		contador.aumentar(1L, 7L, 3L, 1.0, DIA);
+		contador.volcarConteos();
+		assertEquals(Map.of(1L, 2L, 2L, 1L), escritos);
+	}
+
+	@Test
+	void descartarVuelcaYUnaVentaPosteriorEmpiezaOtroAcumulador() {
+		contador.aumentar(1L, 7L, 3L, 1.0, DIA);
+		contador.descartar(1L, 3L, DIA);
+		assertEquals(Map.of(1L, 1L), escritos);
+
+		contador.aumentar(1L, 7L, 3L, 1.0, DIA);
+		contador.volcarConteos();
+		assertEquals(Map.of(1L, 2L), escritos);
+	}
+
+	@Test
+	void descartarConLaBdCaidaNoPierdeLasVentas() {
+		contador.aumentar(1L, 7L, 3L, 1.0, DIA);
+		bdCaida = true;
+		assertThrows(IllegalStateException.class, () -> contador.descartar(1L, 3L, DIA));
+
+		bdCaida = false;
+		contador.volcarConteos();
+		assertEquals(Map.of(1L, 1L), escritos);
+	}
+
+	@Test
+	void rechazaVentasQueNoCorrespondenAntesDeAcumular() {
+		assertThrows(IllegalArgumentException.class, () -> contador.aumentar(1L, null, 3L, 1.0, DIA));
+		assertThrows(IllegalArgumentException.class, () -> contador.aumentar(1L, 8L, 3L, 1.0, DIA));
+		assertThrows(IllegalArgumentException.class, () -> contador.aumentar(500L, 7L, 3L, 1.0, DIA));
+		assertThrows(IllegalArgumentException.class, () -> contador.aumentar(1L, 7L, 300L, 1.0, DIA));
+
+		contador.volcarConteos();
+		assertTrue(escritos.isEmpty());
+	}
+
+	// Solo guarda los setLong/setDate por posicion: 1 bus, 2 boleto, 3 empresa, 5 conteo
+	private static PreparedStatement sentencia(long[] valores) {
+		return (PreparedStatement) Proxy.newProxyInstance(ContadorBoletosServiceTest.class.getClassLoader(),
+				new Class<?>[]{PreparedStatement.class}, (proxy, metodo, args) -> {
+					if (metodo.getName().equals("setLong")) {
+						valores[(int) args[0]] = (long) args[1];
+					}
+					return null;
+				});
+	}
+}
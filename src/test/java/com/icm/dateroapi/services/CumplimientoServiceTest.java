@@ -0,0 +1,63 @@
+package com.icm.dateroapi.services;
+
+import com.icm.dateroapi.dto.Cumplimiento;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CumplimientoServiceTest {
+	private static final LocalDate DIA = LocalDate.of(2024, 3, 4);
+
+	private CumplimientoService cumplimiento;
+
+	@BeforeEach
+	void iniciar() {
+		cumplimiento = new CumplimientoService();
+		ReflectionTestUtils.setField(cumplimiento, "adelantoS", 60L);
+		ReflectionTestUtils.setField(cumplimiento, "atrasoS", 300L);
+	}
+
+	@Test
+	void elMismoBusDosVecesSeguidasNoEsUnIntervalo() {
+		paso(1L, 6, 0);
+		// Se queda en el paradero y vuelve a marcar
+		paso(1L, 6, 2);
+		paso(2L, 6, 10);
+		paso(3L, 6, 20);
+
+		Cumplimiento paradero = cumplimiento.getParadero(1L, 10L, DIA);
+		assertEquals(4, paradero.getPasos());
+		assertEquals(2, paradero.getIntervalos());
+		// 6:02 -> 6:10 y 6:10 -> 6:20
+		assertEquals(480L, paradero.getIntervaloMinS());
+		assertEquals(600L, paradero.getIntervaloMaxS());
+		assertEquals(2, cumplimiento.getRuta(1L, DIA).getIntervalos());
+	}
+
+	@Test
+	void laPuntualidadSoloCuentaLosPasosConHora() {
+		cumplimiento.registrar(1L, 1L, 10L, DIA, hora(6, 4), hora(6, 0));
+		cumplimiento.registrar(1L, 2L, 10L, DIA, hora(6, 30), hora(6, 10));
+		cumplimiento.registrar(1L, 3L, 10L, DIA, hora(6, 40), null);
+
+		Cumplimiento ruta = cumplimiento.getRuta(1L, DIA);
+		assertEquals(3, ruta.getPasos());
+		assertEquals(2, ruta.getConHorario());
+		assertEquals(1, ruta.getPuntuales());
+		assertEquals(1, ruta.getAtrasados());
+	}
+
+	private void paso(Long busId, int h, int m) {
+		cumplimiento.registrar(1L, busId, 10L, DIA, hora(h, m), null);
+	}
+
+	private static Time hora(int h, int m) {
+		return Time.valueOf(LocalTime.of(h, m));
+	}
+}
@@ -0,0 +1,158 @@
+package com.icm.dateroapi.services;
+
+import com.icm.dateroapi.dto.AsignacionBus;
+import com.icm.dateroapi.dto.PosicionBus;
+import com.icm.dateroapi.models.ParaderosModel;
+import com.icm.dateroapi.models.RPModel;
+import com.icm.dateroapi.models.RegistroRutaModel;
+import com.icm.dateroapi.models.RutasModel;
+import com.icm.dateroapi.repositories.HorariosRepository;
+import com.icm.dateroapi.repositories.RPRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Ruta 1 con seis paraderos en linea recta, ~1 km entre cada uno (ids 10 a 15)
+class DetectorLlegadasServiceTest {
+	private static final double GRADOS_POR_KM = 1 / 111.195;
+	private static final int REANCLAR = 3;
+	// 6:00 en Lima
+	private static final long INICIO = 1_709_550_000_000L;
+
+	private long fecha = INICIO;
+
+	@Test
+	void revisaVariosParaderosPorDelante() {
+		DetectorLlegadasService detector = detector(false);
+		en(detector, 0);
+		// El 1 y el 2 sin ping en su geocerca
+		en(detector, 3);
+		assertEquals(List.of(10L, 13L), pasos(detector));
+	}
+
+	@Test
+	void trasUnHuecoDeGpsSeLoVuelveAUbicar() {
+		DetectorLlegadasService detector = detector(false);
+		en(detector, 0);
+		// Sin ver el 1, 2 ni 3: el 4 ya queda fuera de la ventana
+		for (int i = 0; i < REANCLAR; i++) {
+			en(detector, 3.5);
+		}
+		en(detector, 4);
+		en(detector, 5);
+		assertEquals(List.of(10L, 14L, 15L), pasos(detector));
+	}
+
+	@Test
+	void laRutaLinealNoVuelveAlPrimero() {
+		DetectorLlegadasService detector = detector(false);
+		for (int i = 0; i < 6; i++) {
+			en(detector, i);
+		}
+		// Pasado el ultimo no se espera el primero
+		en(detector, 0);
+		assertEquals(6, pasos(detector).size());
+		// Solo se lo reubica tras varios pings sin llegar a nada
+		for (int i = 1; i < REANCLAR; i++) {
+			en(detector, 0);
+			assertEquals(6, pasos(detector).size());
+		}
+		en(detector, 0);
+		assertEquals(7, pasos(detector).size());
+		assertEquals(10L, pasos(detector).get(6));
+	}
+
+	@Test
+	void esperandoEnLaTerminalNoSeRepiteElPaso() {
+		DetectorLlegadasService detector = detector(false);
+		for (int i = 0; i < 6; i++) {
+			en(detector, i);
+		}
+		for (int i = 0; i < 3 * REANCLAR; i++) {
+			en(detector, 5);
+		}
+		assertEquals(6, pasos(detector).size());
+	}
+
+	@Test
+	void laRutaCircularSiVuelveAlPrimero() {
+		DetectorLlegadasService detector = detector(true);
+		for (int i = 0; i < 6; i++) {
+			en(detector, i);
+		}
+		en(detector, 5);
+		en(detector, 0);
+		assertEquals(List.of(10L, 11L, 12L, 13L, 14L, 15L, 10L), pasos(detector));
+	}
+
+	private void en(DetectorLlegadasService detector, double km) {
+		fecha += 60_000;
+		detector.procesar(new PosicionBus(1L, 0, km * GRADOS_POR_KM, fecha));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Long> pasos(DetectorLlegadasService detector) {
+		List<Long> ids = new ArrayList<>();
+		for (RegistroRutaModel registro : (Queue<RegistroRutaModel>) ReflectionTestUtils.getField(detector, "pendientes")) {
+			ids.add(registro.getParaderosModel().getId());
+		}
+		return ids;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static DetectorLlegadasService detector(boolean circular) {
+		RutasModel ruta = new RutasModel();
+		ruta.setId(1L);
+		ruta.setCircular(circular);
+		List<RPModel> rps = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			ParaderosModel paradero = new ParaderosModel();
+			paradero.setId(10L + i);
+			paradero.setLatitud(BigDecimal.ZERO);
+			paradero.setLongitud(BigDecimal.valueOf(i * GRADOS_POR_KM));
+			RPModel rp = new RPModel();
+			rp.setOrden(i);
+			rp.setRutasModel(ruta);
+			rp.setParaderosModel(paradero);
+			rps.add(rp);
+		}
+		ParadasRutaService paradasRutaService = new ParadasRutaService();
+		ReflectionTestUtils.setField(paradasRutaService, "rpRepository", stub(RPRepository.class, "findByRutasModelId", rps));
+
+		AsignacionBusService asignacionBusService = new AsignacionBusService();
+		((Map<Long, AsignacionBus>) ReflectionTestUtils.getField(asignacionBusService, "asignaciones"))
+				.put(1L, new AsignacionBus(1L, 1L, 1L));
+
+		// Sin horario: la hora esperada queda en la de llegada
+		HorariosService horariosService = new HorariosService(null);
+		ReflectionTestUtils.setField(horariosService, "horariosRepository",
+				stub(HorariosRepository.class, "findByRutaIdAndDiaOrderByDespachoAscOrdenAsc", List.of()));
+
+		DetectorLlegadasService detector = new DetectorLlegadasService();
+		ReflectionTestUtils.setField(detector, "asignacionBusService", asignacionBusService);
+		ReflectionTestUtils.setField(detector, "paradasRutaService", paradasRutaService);
+		ReflectionTestUtils.setField(detector, "horariosService", horariosService);
+		ReflectionTestUtils.setField(detector, "radioMetros", 40.0);
+		ReflectionTestUtils.setField(detector, "ventanaParaderos", 3);
+		ReflectionTestUtils.setField(detector, "reanclarPings", REANCLAR);
+		return detector;
+	}
+
+	private static <T> T stub(Class<T> tipo, String metodo, Object resultado) {
+		return tipo.cast(Proxy.newProxyInstance(DetectorLlegadasServiceTest.class.getClassLoader(), new Class<?>[]{tipo},
+				(proxy, llamado, args) -> {
+					if (llamado.getName().equals(metodo)) {
+						return resultado;
+					}
+					throw new UnsupportedOperationException(llamado.getName());
+				}));
+	}
+}
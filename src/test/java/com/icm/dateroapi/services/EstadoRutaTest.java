@@ -0,0 +1,132 @@
+package com.icm.dateroapi.services;
+
+import com.icm.dateroapi.dto.AlertaAgrupamiento;
+import com.icm.dateroapi.dto.EspaciadoBus;
+import com.icm.dateroapi.dto.PosicionBus;
+import com.icm.dateroapi.models.ParaderosModel;
+import com.icm.dateroapi.models.RPModel;
+import com.icm.dateroapi.models.RutasModel;
+import com.icm.dateroapi.repositories.RPRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/*
+ * Ruta en U: de (0,0) sube a (0,0.01), cruza a (0.01,0.01), baja a (0.01,0) y vuelve
+ * hasta (0.0005,0), a unos 55 m del primer paradero. Cada tramo largo mide ~1112 m.
+ */
+class EstadoRutaTest {
+	private static final double METROS_POR_GRADO = 111_195;
+	private static final double DISTANCIA_M = 300;
+	private static final long ACTIVO_MS = 300_000;
+	private static final double TERMINAL_M = 150;
+
+	@Test
+	void avisaAlBusDeAtrasEnLaMismaVuelta() {
+		AgrupamientoService.EstadoRuta estado = estado(false);
+		assertNull(estado.mover(enTramo1(1L, 100), 1, DISTANCIA_M, ACTIVO_MS));
+		AlertaAgrupamiento alerta = estado.mover(enTramo1(2L, 300), 1, DISTANCIA_M, ACTIVO_MS);
+		assertNotNull(alerta);
+		assertEquals(1L, alerta.getBusId());
+		assertEquals(2L, alerta.getBusDelanteId());
+	}
+
+	@Test
+	void soloLaRutaCircularDaLaVuelta() {
+		for (boolean circular : new boolean[]{true, false}) {
+			AgrupamientoService.EstadoRuta estado = estado(circular);
+			// El bus 1 va por el tramo de vuelta, a ~30 m del final; el 2 recien salio de la terminal
+			estado.mover(new PosicionBus(1L, 0.0008, 0, 1000), 3, DISTANCIA_M, ACTIVO_MS);
+			AlertaAgrupamiento alerta = estado.mover(new PosicionBus(2L, 0, 170 / METROS_POR_GRADO, 2000), 0,
+					DISTANCIA_M, ACTIVO_MS);
+			if (circular) {
+				assertNotNull(alerta);
+				assertEquals(1L, alerta.getBusId());
+				assertEquals(2L, alerta.getBusDelanteId());
+			} else {
+				assertNull(alerta);
+			}
+
+			List<EspaciadoBus> espaciado = estado.espaciado();
+			assertEquals(2, espaciado.size());
+			// El primero en avance es el 2; el ultimo solo tiene a alguien delante si la ruta es circular
+			assertEquals(2L, espaciado.get(0).getBusId());
+			assertEquals(1L, espaciado.get(0).getBusDelanteId());
+			assertEquals(circular ? (Long) 2L : null, espaciado.get(1).getBusDelanteId());
+		}
+	}
+
+	@Test
+	void enLaTerminalNoSeAvisa() {
+		AgrupamientoService.EstadoRuta estado = estado(true);
+		// Dos buses esperando su despacho, uno al lado del otro
+		assertNull(estado.mover(new PosicionBus(1L, 0, 20 / METROS_POR_GRADO, 1000), 0, DISTANCIA_M, ACTIVO_MS));
+		assertNull(estado.mover(new PosicionBus(2L, 0, 60 / METROS_POR_GRADO, 2000), 0, DISTANCIA_M, ACTIVO_MS));
+		// El 2 sale: el 1 sigue en la terminal y no cuenta como el de atras
+		assertNull(estado.mover(new PosicionBus(2L, 0, 250 / METROS_POR_GRADO, 3000), 0, DISTANCIA_M, ACTIVO_MS));
+		// Cuando el 1 tambien sale, ya estan pegados
+		assertNotNull(estado.mover(new PosicionBus(1L, 0, 160 / METROS_POR_GRADO, 4000), 0, DISTANCIA_M, ACTIVO_MS));
+	}
+
+	@Test
+	void elFinalDeUnaRutaLinealEsTerminal() {
+		AgrupamientoService.EstadoRuta estado = estado(false);
+		estado.mover(new PosicionBus(1L, 0.0013, 0, 1000), 3, DISTANCIA_M, ACTIVO_MS);
+		// Llega al ultimo paradero, a metros del bus 1
+		assertNull(estado.mover(new PosicionBus(2L, 0.0005, 0, 2000), 4, DISTANCIA_M, ACTIVO_MS));
+		// Y para el bus 1 el que ya termino no es el de adelante
+		assertNull(estado.mover(new PosicionBus(1L, 0.0011, 0, 3000), 3, DISTANCIA_M, ACTIVO_MS));
+	}
+
+	@Test
+	void losInactivosNoSonVecinos() {
+		AgrupamientoService.EstadoRuta estado = estado(false);
+		estado.mover(enTramo1(1L, 100), 1, DISTANCIA_M, ACTIVO_MS);
+		PosicionBus tarde = enTramo1(2L, 300);
+		tarde.setFecha(1000 + ACTIVO_MS + 1);
+		assertNull(estado.mover(tarde, 1, DISTANCIA_M, ACTIVO_MS));
+		assertEquals(1, estado.espaciado().size());
+	}
+
+	// Sobre el tramo del paradero 1 (0,0.01) al 2 (0.01,0.01)
+	private static PosicionBus enTramo1(Long busId, double metros) {
+		return new PosicionBus(busId, metros / METROS_POR_GRADO, 0.01, 1000);
+	}
+
+	private static AgrupamientoService.EstadoRuta estado(boolean circular) {
+		double[][] puntos = {{0, 0}, {0, 0.01}, {0.01, 0.01}, {0.01, 0}, {0.0005, 0}};
+		RutasModel ruta = new RutasModel();
+		ruta.setId(1L);
+		ruta.setCircular(circular);
+		List<RPModel> rps = new ArrayList<>();
+		for (int i = 0; i < puntos.length; i++) {
+			ParaderosModel paradero = new ParaderosModel();
+			paradero.setId(10L + i);
+			paradero.setLatitud(BigDecimal.valueOf(puntos[i][0]));
+			paradero.setLongitud(BigDecimal.valueOf(puntos[i][1]));
+			RPModel rp = new RPModel();
+			rp.setOrden(i);
+			rp.setRutasModel(ruta);
+			rp.setParaderosModel(paradero);
+			rps.add(rp);
+		}
+		RPRepository repositorio = (RPRepository) Proxy.newProxyInstance(EstadoRutaTest.class.getClassLoader(),
+				new Class<?>[]{RPRepository.class}, (proxy, metodo, args) -> {
+					if (metodo.getName().equals("findByRutasModelId")) {
+						return rps;
+					}
+					throw new UnsupportedOperationException(metodo.getName());
+				});
+		ParadasRutaService paradasRutaService = new ParadasRutaService();
+		ReflectionTestUtils.setField(paradasRutaService, "rpRepository", repositorio);
+		return new AgrupamientoService.EstadoRuta(paradasRutaService.getParadas(1L), TERMINAL_M);
+	}
+}
@@ -0,0 +1,68 @@
+package com.icm.dateroapi.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FiltroBloomTest {
+
+	@Test
+	void loAgregadoSiempreApareceYLosFalsosPositivosQuedanCercaDeLaTeoria() {
+		int n = 100_000;
+		long bits = 1 << 20;
+		int funciones = 5;
+		FiltroBloom filtro = new FiltroBloom(bits, funciones);
+		for (int i = 0; i < n; i++) {
+			filtro.agregar("venta-" + i);
+		}
+		for (int i = 0; i < n; i++) {
+			assertTrue(filtro.puedeContener("venta-" + i), "venta-" + i);
+		}
+
+		int falsos = 0;
+		for (int i = 0; i < n; i++) {
+			if (filtro.puedeContener("otra-" + i)) {
+				falsos++;
+			}
+		}
+		double teorica = Math.pow(1 - Math.exp(-(double) funciones * n / bits), funciones);
+		double medida = (double) falsos / n;
+		assertTrue(medida < teorica * 1.5, "falsos positivos " + medida + ", teorica " + teorica);
+	}
+
+	@Test
+	void vacioNoContieneNada() {
+		FiltroBloom filtro = new FiltroBloom(1024, 3);
+		assertFalse(filtro.puedeContener(UUID.randomUUID().toString()));
+		assertFalse(filtro.puedeContener(""));
+	}
+
+	@Test
+	void agregarDesdeVariosHilosNoPierdeBits() throws InterruptedException {
+		// Pocos bits para que los hilos choquen en las mismas palabras
+		FiltroBloom filtro = new FiltroBloom(4096, 4);
+		List<Thread> hilos = new ArrayList<>();
+		for (int h = 0; h < 4; h++) {
+			int hilo = h;
+			hilos.add(new Thread(() -> {
+				for (int i = 0; i < 500; i++) {
+					filtro.agregar(hilo + ":" + i);
+				}
+			}));
+		}
+		hilos.forEach(Thread::start);
+		for (Thread hilo : hilos) {
+			hilo.join();
+		}
+		for (int h = 0; h < 4; h++) {
+			for (int i = 0; i < 500; i++) {
+				assertTrue(filtro.puedeContener(h + ":" + i));
+			}
+		}
+	}
+}
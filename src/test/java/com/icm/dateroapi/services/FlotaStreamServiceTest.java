@@ -0,0 +1,142 @@
+package com.icm.dateroapi.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.icm.dateroapi.dto.DeltaFlota;
+import com.icm.dateroapi.repositories.BusesRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FlotaStreamServiceTest {
+	private static final int COLA_MAXIMA = 3;
+
+	private final CountDownLatch soltar = new CountDownLatch(1);
+	private FlotaStreamService flota;
+
+	@BeforeEach
+	void iniciar() {
+		BusesRepository buses = (BusesRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[]{BusesRepository.class}, (proxy, metodo, args) -> {
+					if (metodo.getName().equals("findFlota")) {
+						return List.of();
+					}
+					throw new UnsupportedOperationException(metodo.getName());
+				});
+		flota = new FlotaStreamService();
+		ReflectionTestUtils.setField(flota, "busesRepository", buses);
+		ReflectionTestUtils.setField(flota, "posicionBusService", new PosicionBusService());
+		ReflectionTestUtils.setField(flota, "objectMapper", new ObjectMapper());
+		ReflectionTestUtils.setField(flota, "hilos", 2);
+		ReflectionTestUtils.setField(flota, "colaMaxima", COLA_MAXIMA);
+		flota.iniciar();
+	}
+
+	@AfterEach
+	void detener() {
+		soltar.countDown();
+		flota.detener();
+	}
+
+	@Test
+	void unClienteColgadoNoFrenaAlResto() throws Exception {
+		Emisor colgado = new Emisor(true);
+		Emisor normal = new Emisor(false);
+		flota.suscribir(1L, colgado);
+		flota.suscribir(1L, normal);
+
+		flota.publicar(1L, posicion(5L));
+		long inicio = System.nanoTime();
+		flota.emitirCambios();
+		assertTrue(System.nanoTime() - inicio < TimeUnit.SECONDS.toNanos(1));
+		// La foto y el delta
+		assertTrue(normal.esperar(2));
+		assertEquals(1, colgado.enviados.get());
+	}
+
+	@Test
+	void alClienteQueSeAtrasaSeLoDesconecta() throws Exception {
+		Emisor colgado = new Emisor(true);
+		Emisor normal = new Emisor(false);
+		flota.suscribir(1L, colgado);
+		flota.suscribir(1L, normal);
+		// El primer delta queda trabado en la escritura; los siguientes llenan su cola
+		for (int i = 0; i < COLA_MAXIMA + 2; i++) {
+			flota.publicar(1L, posicion(5L + i));
+			flota.emitirCambios();
+			// Una ventana tras otra, el que lee al dia no se atrasa
+			assertTrue(normal.esperar(2 + i));
+		}
+		assertEquals(List.of(normal), clientes(1L));
+	}
+
+	@Test
+	void loUltimoGanaSobreUnaBaja() {
+		DeltaFlota baja = new DeltaFlota(5L, null, null, null, null, null, true, null);
+		DeltaFlota alta = DeltaFlota.combinar(baja, posicion(5L));
+		assertFalse(alta.getEliminado());
+		assertEquals(-12.0, alta.getLatitud());
+
+		DeltaFlota otraBaja = DeltaFlota.combinar(new DeltaFlota(5L, null, null, null, null, 3L, null, "ABC"), baja);
+		assertTrue(otraBaja.getEliminado());
+		assertNull(otraBaja.getPlaca());
+	}
+
+	private static DeltaFlota posicion(Long busId) {
+		return new DeltaFlota(busId, -12.0, -77.0, 1000L, null, null, null, null);
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<SseEmitter> clientes(Long empresaId) {
+		List<Object> lista = ((Map<Long, List<Object>>) ReflectionTestUtils.getField(flota, "suscriptores")).get(empresaId);
+		return lista.stream().map(c -> (SseEmitter) ReflectionTestUtils.getField(c, "emitter")).toList();
+	}
+
+	// Cuenta los envios; el colgado se traba despues de la foto, como un socket que no lee
+	private class Emisor extends SseEmitter {
+		private final boolean colgado;
+		private final AtomicInteger enviados = new AtomicInteger();
+
+		private Emisor(boolean colgado) {
+			this.colgado = colgado;
+		}
+
+		@Override
+		public void send(SseEventBuilder builder) throws IOException {
+			if (colgado && enviados.get() > 0) {
+				try {
+					soltar.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			enviados.incrementAndGet();
+		}
+
+		@Override
+		public void completeWithError(Throwable ex) {
+		}
+
+		private boolean esperar(int cantidad) throws InterruptedException {
+			long limite = System.currentTimeMillis() + 5000;
+			while (enviados.get() < cantidad && System.currentTimeMillis() < limite) {
+				Thread.sleep(10);
+			}
+			return enviados.get() >= cantidad;
+		}
+	}
+}
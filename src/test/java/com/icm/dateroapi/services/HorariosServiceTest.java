@@ -0,0 +1,85 @@
+package com.icm.dateroapi.services;
+
+import com.icm.dateroapi.models.HorariosModel;
+import com.icm.dateroapi.repositories.HorariosRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// Ruta 1 con paraderos 10 -> 20 -> 30 y despachos a las 6:00 y 6:10, cada tramo de 15 minutos
+class HorariosServiceTest {
+	private static final LocalDate DIA = LocalDate.of(2024, 3, 4);
+
+	private HorariosService horarios;
+
+	@BeforeEach
+	void iniciar() {
+		List<HorariosModel> filas = new ArrayList<>();
+		for (LocalTime salida : List.of(LocalTime.of(6, 0), LocalTime.of(6, 10))) {
+			long[] paraderos = {10, 20, 30};
+			for (int orden = 0; orden < paraderos.length; orden++) {
+				filas.add(new HorariosModel(null, 1L, DIA, salida, paraderos[orden], orden, salida.plusMinutes(15L * orden)));
+			}
+		}
+		HorariosRepository repositorio = (HorariosRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[]{HorariosRepository.class}, (proxy, metodo, args) -> {
+					if (metodo.getName().equals("findByRutaIdAndDiaOrderByDespachoAscOrdenAsc")) {
+						return filas;
+					}
+					throw new UnsupportedOperationException(metodo.getName());
+				});
+		horarios = new HorariosService(null);
+		ReflectionTestUtils.setField(horarios, "horariosRepository", repositorio);
+	}
+
+	@Test
+	void sigueElDespachoQueTomoElBusAunqueOtroQuedeMasCerca() {
+		// Sale 4 minutos tarde en el despacho de las 6:00
+		assertEquals(hora(6, 0), esperada(5L, 10L, hora(6, 4)));
+		// A las 6:24 el despacho de las 6:10 esperaba a las 6:25 en el 20, pero este bus va en el de las 6:00
+		assertEquals(hora(6, 15), esperada(5L, 20L, hora(6, 24)));
+		assertEquals(hora(6, 30), esperada(5L, 30L, hora(6, 41)));
+	}
+
+	@Test
+	void sinVerloSalirNoHayHoraEsperada() {
+		assertNull(esperada(6L, 20L, hora(6, 16)));
+		// Otro dia tampoco sirve
+		esperada(6L, 10L, hora(6, 0));
+		assertNull(horarios.horaEsperada(1L, 6L, 20L, DIA.plusDays(1), hora(6, 15)));
+	}
+
+	@Test
+	void unPasoAtrasadoNoCambiaElDespacho() {
+		esperada(7L, 10L, hora(6, 11));
+		// Llega tarde el paso de la vuelta anterior por el primer paradero
+		assertEquals(hora(6, 0), esperada(7L, 10L, hora(5, 58)));
+		assertEquals(hora(6, 25), esperada(7L, 20L, hora(6, 27)));
+		// Y un paso por un paradero intermedio anterior a la salida no es de este despacho
+		assertNull(esperada(7L, 20L, hora(6, 5)));
+	}
+
+	@Test
+	void paraderoFueraDelHorarioNoTieneHora() {
+		esperada(8L, 10L, hora(6, 0));
+		assertNull(esperada(8L, 99L, hora(6, 10)));
+	}
+
+	private Time esperada(Long busId, Long paraderoId, Time llegada) {
+		return horarios.horaEsperada(1L, busId, paraderoId, DIA, llegada);
+	}
+
+	private static Time hora(int h, int m) {
+		return Time.valueOf(LocalTime.of(h, m));
+	}
+}
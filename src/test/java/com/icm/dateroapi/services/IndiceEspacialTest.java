@@ -0,0 +1,113 @@
+package com.icm.dateroapi.services;
+
+import com.icm.dateroapi.dto.ResultadoCercania;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Las consultas del indice contra un recorrido de todos los puntos
+class IndiceEspacialTest {
+
+	private static final double LATITUD = -12.0464;
+	private static final double LONGITUD = -77.0428;
+
+	private final IndiceEspacial indice = new IndiceEspacial(300);
+	private final List<double[]> puntos = new ArrayList<>();
+
+	@BeforeEach
+	void iniciar() {
+		Random azar = new Random(7);
+		for (long id = 0; id < 2000; id++) {
+			double latitud = LATITUD + (azar.nextDouble() - 0.5) * 0.1;
+			double longitud = LONGITUD + (azar.nextDouble() - 0.5) * 0.1;
+			puntos.add(new double[]{id, latitud, longitud});
+			indice.actualizar(id, latitud, longitud, "p" + id);
+		}
+	}
+
+	@Test
+	void enRadioDevuelveLosMismosQueUnRecorridoCompleto() {
+		List<ResultadoCercania> resultado = indice.enRadio(LATITUD, LONGITUD, 800, Integer.MAX_VALUE);
+
+		assertEquals(idsAMenosDe(800, Integer.MAX_VALUE), ids(resultado));
+		for (int i = 1; i < resultado.size(); i++) {
+			assertTrue(resultado.get(i - 1).getDistancia() <= resultado.get(i).getDistancia());
+		}
+	}
+
+	@Test
+	void cercanosDevuelveLosKMasProximos() {
+		assertEquals(idsAMenosDe(Double.MAX_VALUE, 10), ids(indice.cercanos(LATITUD, LONGITUD, 10, 20000)));
+		// Con un radio chico quedan solo los que caen dentro
+		assertEquals(idsAMenosDe(150, 10), ids(indice.cercanos(LATITUD, LONGITUD, 10, 150)));
+	}
+
+	@Test
+	void moverYEliminarActualizanLasCeldas() {
+		indice.actualizar(0L, LATITUD, LONGITUD, null);
+		assertEquals(0L, indice.cercanos(LATITUD, LONGITUD, 1, 1000).get(0).getId());
+		assertEquals("p0", indice.cercanos(LATITUD, LONGITUD, 1, 1000).get(0).getNombre());
+
+		indice.actualizar(0L, LATITUD + 1, LONGITUD, null);
+		assertTrue(indice.enRadio(LATITUD + 1, LONGITUD, 10, 10).stream().allMatch(r -> r.getId() == 0L));
+		assertTrue(indice.enRadio(LATITUD, LONGITUD, 10, 10).stream().noneMatch(r -> r.getId() == 0L));
+
+		indice.eliminar(0L);
+		assertTrue(indice.enRadio(LATITUD + 1, LONGITUD, 10, 10).isEmpty());
+		assertEquals(1999, indice.tamanio());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void unPuntoAMitadDeMovimientoNoSeRepite() {
+		indice.actualizar(0L, LATITUD, LONGITUD, null);
+		Map<Long, Object> puntosIndice = (Map<Long, Object>) ReflectionTestUtils.getField(indice, "puntos");
+		long anterior = (long) ReflectionTestUtils.getField(puntosIndice.get(0L), "celda");
+		indice.actualizar(0L, LATITUD + 0.01, LONGITUD, null);
+		// Como lo ve una consulta concurrente: el id sigue en la celda de la posicion anterior
+		Map<Long, Set<Long>> celdas = (Map<Long, Set<Long>>) ReflectionTestUtils.getField(indice, "celdas");
+		celdas.computeIfAbsent(anterior, c -> new HashSet<>()).add(0L);
+
+		List<Long> enRadio = ids(indice.enRadio(LATITUD, LONGITUD, 5000, Integer.MAX_VALUE));
+		assertEquals(enRadio.size(), enRadio.stream().distinct().count());
+		List<Long> cercanos = ids(indice.cercanos(LATITUD, LONGITUD, 2000, 5000));
+		assertEquals(cercanos.size(), cercanos.stream().distinct().count());
+		assertTrue(cercanos.contains(0L));
+	}
+
+	@Test
+	void elFiltroSeAplicaAntesDelLimite() {
+		List<ResultadoCercania> pares = indice.cercanos(LATITUD, LONGITUD, 5, 20000, id -> id % 2 == 0);
+		assertEquals(5, pares.size());
+		assertTrue(pares.stream().allMatch(r -> r.getId() % 2 == 0));
+
+		List<ResultadoCercania> enRadio = indice.enRadio(LATITUD, LONGITUD, 800, 3, id -> id % 2 == 0);
+		assertEquals(3, enRadio.size());
+		assertTrue(enRadio.stream().allMatch(r -> r.getId() % 2 == 0));
+	}
+
+	private List<Long> idsAMenosDe(double metros, int limite) {
+		return puntos.stream()
+				.filter(p -> IndiceEspacial.distancia(LATITUD, LONGITUD, p[1], p[2]) <= metros)
+				.sorted(Comparator.comparingDouble(p -> IndiceEspacial.distancia(LATITUD, LONGITUD, p[1], p[2])))
+				.limit(limite)
+				.map(p -> (long) p[0])
+				.collect(Collectors.toList());
+	}
+
+	private static List<Long> ids(List<ResultadoCercania> resultado) {
+		return resultado.stream().map(ResultadoCercania::getId).collect(Collectors.toList());
+	}
+}
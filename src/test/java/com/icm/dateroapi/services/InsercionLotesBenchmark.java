@@ -0,0 +1,128 @@
+package com.icm.dateroapi.services;
+
+import com.icm.dateroapi.models.RegistroRutaModel;
+import com.icm.dateroapi.repositories.RegistroRutaRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/*
+ * Mide las inserciones masivas contra la BD configurada (la MySQL local de application.properties).
+ * No es parte de la suite: mvn test -Dtest=InsercionLotesBenchmark -Dbenchmark=true
+ * Usa la primera empresa, ruta, bus, paradero y boleto que encuentra, y borra lo que inserta.
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class InsercionLotesBenchmark {
+	private static final int PASOS = 5000;
+	private static final int VENTAS = 5000;
+	private static final int TAMANIO_LOTE = 500;
+	// Dias que no se cruzan con datos reales; se borran al terminar
+	private static final LocalDate DIA_PRUEBA = LocalDate.of(2000, 1, 1);
+
+	@Autowired
+	private RegistroRutaRepository registroRutaRepository;
+
+	@Autowired
+	private RegistroRutaService registroRutaService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Test
+	void pasosUnoPorUnoContraPorLotes() {
+		Long empresa = primero("empresas");
+		Long ruta = primero("rutas");
+		Long bus = primero("buses");
+		Long paradero = primero("paraderos");
+		TransactionTemplate transaccion = new TransactionTemplate(transactionManager);
+		try {
+			// Como con IDENTITY: cada save va a la BD en el momento, sin agrupar
+			List<RegistroRutaModel> registros = pasos(empresa, ruta, bus, paradero);
+			long inicio = System.nanoTime();
+			transaccion.executeWithoutResult(status -> registros.forEach(registroRutaRepository::saveAndFlush));
+			long unoPorUno = System.nanoTime() - inicio;
+
+			List<RegistroRutaModel> otros = pasos(empresa, ruta, bus, paradero);
+			inicio = System.nanoTime();
+			for (int i = 0; i < otros.size(); i += TAMANIO_LOTE) {
+				registroRutaRepository.saveAll(otros.subList(i, Math.min(i + TAMANIO_LOTE, otros.size())));
+			}
+			long porLotes = System.nanoTime() - inicio;
+
+			informar("pasos", PASOS, unoPorUno, porLotes);
+		} finally {
+			jdbcTemplate.update("DELETE FROM registro_ruta WHERE dia = ?", Date.valueOf(DIA_PRUEBA));
+		}
+	}
+
+	@Test
+	void ventasUnoPorUnoContraPorLotes() {
+		Long empresa = primero("empresas");
+		Long bus = primero("buses");
+		Long boleto = primero("boletos");
+		try {
+			long inicio = System.nanoTime();
+			for (int i = 0; i < VENTAS; i++) {
+				jdbcTemplate.update(ContadorBoletosService.UPSERT_CONTEO, venta(bus, boleto, empresa, i));
+			}
+			long unoPorUno = System.nanoTime() - inicio;
+
+			List<Object[]> filas = new ArrayList<>(VENTAS);
+			for (int i = 0; i < VENTAS; i++) {
+				filas.add(venta(bus, boleto, empresa, VENTAS + i));
+			}
+			inicio = System.nanoTime();
+			for (int i = 0; i < filas.size(); i += TAMANIO_LOTE) {
+				jdbcTemplate.batchUpdate(ContadorBoletosService.UPSERT_CONTEO, filas.subList(i, Math.min(i + TAMANIO_LOTE, filas.size())));
+			}
+			long porLotes = System.nanoTime() - inicio;
+
+			informar("ventas", VENTAS, unoPorUno, porLotes);
+		} finally {
+			jdbcTemplate.update("DELETE FROM conteo_boletos WHERE dia BETWEEN ? AND ?", Date.valueOf(DIA_PRUEBA),
+					Date.valueOf(DIA_PRUEBA.plusDays(2L * VENTAS)));
+		}
+	}
+
+	private List<RegistroRutaModel> pasos(Long empresa, Long ruta, Long bus, Long paradero) {
+		List<RegistroRutaModel> registros = new ArrayList<>(PASOS);
+		for (int i = 0; i < PASOS; i++) {
+			Time hora = Time.valueOf(LocalTime.ofSecondOfDay(i % 86_400));
+			registros.add(registroRutaService.armarPaso(empresa, ruta, bus, paradero, DIA_PRUEBA, hora));
+		}
+		return registros;
+	}
+
+	// Un dia distinto por venta para que cada una sea una fila nueva y no una suma
+	private static Object[] venta(Long bus, Long boleto, Long empresa, int i) {
+		return new Object[]{bus, boleto, empresa, Date.valueOf(DIA_PRUEBA.plusDays(i)), 1, 1.0};
+	}
+
+	private Long primero(String tabla) {
+		Long id = jdbcTemplate.queryForObject("SELECT MIN(id) FROM " + tabla, Long.class);
+		assertNotNull(id, "la tabla " + tabla + " esta vacia");
+		return id;
+	}
+
+	private static void informar(String que, int filas, long unoPorUnoNs, long porLotesNs) {
+		System.out.printf("%s: uno por uno %.0f filas/s, por lotes %.0f filas/s (x%.1f)%n", que,
+				filas / (unoPorUnoNs / 1e9), filas / (porLotesNs / 1e9), (double) unoPorUnoNs / porLotesNs);
+	}
+}
@@ -0,0 +1,154 @@
+package com.icm.dateroapi.services;
+
+import com.icm.dateroapi.config.cache.CacheRegistro;
+import com.icm.dateroapi.models.BoletosModel;
+import com.icm.dateroapi.models.BusesModel;
+import com.icm.dateroapi.repositories.BoletosRepository;
+import com.icm.dateroapi.repositories.BusesRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResumenConteoServiceTest {
+	private static final LocalDate DIA = LocalDate.of(2024, 3, 1);
+
+	private final List<String> sentencias = new CopyOnWriteArrayList<>();
+	// Placas que se escribieron en el resumen diario
+	private final List<String> placasEscritas = new CopyOnWriteArrayList<>();
+	private final Map<Long, BusesModel> buses = new HashMap<>();
+	private ResumenConteoService resumen;
+
+	@BeforeEach
+	void iniciar() {
+		JdbcTemplate jdbc = new JdbcTemplate() {
+			@Override
+			public int update(String sql) {
+				sentencias.add(sql.substring(0, sql.indexOf(' ', 7)));
+				return 0;
+			}
+
+			@Override
+			public <T> int[][] batchUpdate(String sql, Collection<T> filas, int tamanio,
+										   ParameterizedPreparedStatementSetter<T> setter) {
+				for (T fila : filas) {
+					try {
+						setter.setValues(sentencia(sql), fila);
+					} catch (java.sql.SQLException e) {
+						throw new IllegalStateException(e);
+					}
+				}
+				return new int[0][];
+			}
+		};
+		CacheRegistro cacheRegistro = new CacheRegistro();
+		ReflectionTestUtils.setField(cacheRegistro, "maximo", 100);
+		ReflectionTestUtils.setField(cacheRegistro, "ttlMs", 600_000L);
+
+		resumen = new ResumenConteoService();
+		ReflectionTestUtils.setField(resumen, "jdbcTemplate", jdbc);
+		ReflectionTestUtils.setField(resumen, "cacheRegistro", cacheRegistro);
+		ReflectionTestUtils.setField(resumen, "busesRepository", stub(BusesRepository.class,
+				args -> Optional.ofNullable(buses.get((Long) args[0]))));
+		ReflectionTestUtils.setField(resumen, "boletosRepository", stub(BoletosRepository.class,
+				args -> Optional.<BoletosModel>empty()));
+		resumen.crearCaches();
+	}
+
+	@Test
+	void reconstruirEsperaALasEscriturasEnCurso() throws Exception {
+		TransactionSynchronizationManager.initSynchronization();
+		resumen.iniciarEscritura();
+
+		CountDownLatch termino = new CountDownLatch(1);
+		Thread reconstruccion = new Thread(() -> {
+			TransactionSynchronizationManager.initSynchronization();
+			try {
+				resumen.reconstruir();
+			} finally {
+				terminar();
+				termino.countDown();
+			}
+		});
+		reconstruccion.start();
+		assertFalse(termino.await(200, TimeUnit.MILLISECONDS));
+		assertEquals(List.of(), sentencias);
+
+		// La escritura termina su transaccion y recien ahi se reconstruye
+		terminar();
+		assertTrue(termino.await(5, TimeUnit.SECONDS));
+		assertEquals(List.of("DELETE FROM", "DELETE FROM", "INSERT INTO", "INSERT INTO"), sentencias);
+	}
+
+	@Test
+	void unBusQueAunNoExisteNoQuedaEnBlanco() {
+		aplicar();
+		assertNull(placasEscritas.get(0));
+
+		BusesModel bus = new BusesModel();
+		bus.setId(5L);
+		bus.setPlaca("ABC-123");
+		buses.put(5L, bus);
+		aplicar();
+		assertEquals("ABC-123", placasEscritas.get(2));
+
+		// Una edicion se ve despues de invalidar
+		bus.setPlaca("XYZ-789");
+		resumen.olvidarBus(5L);
+		aplicar();
+		assertEquals("XYZ-789", placasEscritas.get(4));
+	}
+
+	private void aplicar() {
+		resumen.aplicar(List.of(new ResumenConteoService.DeltaConteo(5L, 3L, DIA, 1, 1.5)));
+	}
+
+	private static void terminar() {
+		List<TransactionSynchronization> sincronizaciones = TransactionSynchronizationManager.getSynchronizations();
+		TransactionSynchronizationManager.clearSynchronization();
+		TransactionSynchronizationUtils.invokeAfterCompletion(sincronizaciones, TransactionSynchronization.STATUS_COMMITTED);
+	}
+
+	// Guarda la placa (parametro 4 del diario, 5 del mensual) de cada fila
+	private PreparedStatement sentencia(String sql) {
+		int posicionPlaca = sql.contains("conteo_boletos_diario") ? 4 : 5;
+		return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class},
+				(proxy, metodo, args) -> {
+					if (metodo.getName().equals("setString") && (int) args[0] == posicionPlaca) {
+						placasEscritas.add((String) args[1]);
+					}
+					return null;
+				});
+	}
+
+	private static <T> T stub(Class<T> tipo, java.util.function.Function<Object[], Object> findById) {
+		return tipo.cast(Proxy.newProxyInstance(ResumenConteoServiceTest.class.getClassLoader(), new Class<?>[]{tipo},
+				(proxy, metodo, args) -> {
+					if (metodo.getName().equals("findById")) {
+						return findById.apply(args);
+					}
+					throw new UnsupportedOperationException(metodo.getName());
+				}));
+	}
+}
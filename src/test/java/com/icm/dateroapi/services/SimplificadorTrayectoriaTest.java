@@ -0,0 +1,107 @@
+package com.icm.dateroapi.services;
+
+import com.icm.dateroapi.dto.PuntoHistorial;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimplificadorTrayectoriaTest {
+
+	private static final double METROS_POR_GRADO = 111320.0;
+
+	@Test
+	void douglasPeuckerDejaSoloLasEsquinasDeUnaL() {
+		List<PuntoHistorial> puntos = new ArrayList<>();
+		// 100 m al norte y luego 100 m al este, un punto cada 10 m
+		for (int i = 0; i <= 10; i++) {
+			puntos.add(punto(i * 10, 0, i));
+		}
+		for (int i = 1; i <= 10; i++) {
+			puntos.add(punto(100, i * 10, 10 + i));
+		}
+
+		List<PuntoHistorial> resultado = SimplificadorTrayectoria.douglasPeucker(puntos, 1);
+
+		assertEquals(3, resultado.size());
+		assertSame(puntos.get(0), resultado.get(0));
+		assertSame(puntos.get(10), resultado.get(1));
+		assertSame(puntos.get(20), resultado.get(2));
+	}
+
+	@Test
+	void douglasPeuckerRespetaLaTolerancia() {
+		Random azar = new Random(3);
+		List<PuntoHistorial> puntos = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			puntos.add(punto(i * 5, (azar.nextDouble() - 0.5) * 40, i));
+		}
+
+		List<PuntoHistorial> resultado = SimplificadorTrayectoria.douglasPeucker(puntos, 10);
+
+		assertTrue(resultado.size() < puntos.size());
+		assertSame(puntos.get(0), resultado.get(0));
+		assertSame(puntos.get(499), resultado.get(resultado.size() - 1));
+		// Todo punto descartado queda a menos de la tolerancia del tramo que lo reemplaza
+		int j = 0;
+		for (PuntoHistorial p : puntos) {
+			while (p.getFecha() > resultado.get(j + 1).getFecha()) {
+				j++;
+			}
+			assertTrue(distancia(p, resultado.get(j), resultado.get(j + 1)) <= 10.0001);
+		}
+	}
+
+	@Test
+	void porIntervaloNoPasaDelMaximo() {
+		for (int n = 3; n <= 60; n++) {
+			for (int maximo = 2; maximo < n; maximo++) {
+				List<PuntoHistorial> puntos = new ArrayList<>();
+				for (int i = 0; i < n; i++) {
+					// El penultimo cae en el mismo instante que el ultimo
+					puntos.add(punto(i, 0, i == n - 2 ? (n - 1) * 1000L : i * 1000L));
+				}
+				List<PuntoHistorial> resultado = SimplificadorTrayectoria.porIntervalo(puntos, maximo);
+				assertTrue(resultado.size() <= maximo, n + " puntos, maximo " + maximo + ": " + resultado.size());
+				assertSame(puntos.get(0), resultado.get(0));
+				assertSame(puntos.get(n - 1), resultado.get(resultado.size() - 1));
+			}
+		}
+	}
+
+	@Test
+	void porIntervaloRepartePuntosEnElTiempo() {
+		List<PuntoHistorial> puntos = new ArrayList<>();
+		for (int i = 0; i <= 1000; i++) {
+			puntos.add(punto(i, 0, i * 1000L));
+		}
+		List<PuntoHistorial> resultado = SimplificadorTrayectoria.simplificar(puntos, null, 11);
+
+		assertEquals(11, resultado.size());
+		for (int i = 1; i < resultado.size(); i++) {
+			long paso = resultado.get(i).getFecha() - resultado.get(i - 1).getFecha();
+			assertTrue(paso >= 99_000 && paso <= 101_000, "paso " + paso);
+		}
+	}
+
+	private static PuntoHistorial punto(double norteMetros, double esteMetros, long fecha) {
+		return new PuntoHistorial(-12 + norteMetros / METROS_POR_GRADO,
+				-77 + esteMetros / (METROS_POR_GRADO * Math.cos(Math.toRadians(-12))), fecha);
+	}
+
+	// Distancia en metros de p al segmento a-b
+	private static double distancia(PuntoHistorial p, PuntoHistorial a, PuntoHistorial b) {
+		double cos = Math.cos(Math.toRadians(-12));
+		double px = p.getLongitud() * METROS_POR_GRADO * cos, py = p.getLatitud() * METROS_POR_GRADO;
+		double ax = a.getLongitud() * METROS_POR_GRADO * cos, ay = a.getLatitud() * METROS_POR_GRADO;
+		double bx = b.getLongitud() * METROS_POR_GRADO * cos, by = b.getLatitud() * METROS_POR_GRADO;
+		double dx = bx - ax, dy = by - ay;
+		double t = Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / (dx * dx + dy * dy)));
+		return Math.hypot(ax + t * dx - px, ay + t * dy - py);
+	}
+}
@@ -0,0 +1,97 @@
+package com.icm.dateroapi.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SketchCuantilesTest {
+	private static final double PRECISION = 0.01;
+
+	@Test
+	void losCuantilesQuedanDentroDelErrorRelativo() {
+		Random random = new Random(7);
+		double[] valores = new double[20_000];
+		SketchCuantiles sketch = new SketchCuantiles(PRECISION);
+		for (int i = 0; i < valores.length; i++) {
+			// Duraciones de tramo: entre unos segundos y un par de horas, con cola larga
+			valores[i] = Math.exp(3 + 2 * random.nextGaussian());
+			sketch.agregar(valores[i]);
+		}
+		Arrays.sort(valores);
+		for (double q : new double[]{0.01, 0.1, 0.5, 0.9, 0.99}) {
+			double exacto = valores[(int) Math.floor(q * (valores.length - 1))];
+			double estimado = sketch.cuantil(q);
+			assertTrue(Math.abs(estimado - exacto) <= PRECISION * exacto * 1.0001,
+					"q=" + q + " exacto " + exacto + " estimado " + estimado);
+		}
+		assertEquals(valores.length, sketch.getTotal());
+	}
+
+	@Test
+	void fusionarEsIgualQueAgregarTodoEnUno() {
+		Random random = new Random(11);
+		SketchCuantiles todo = new SketchCuantiles(PRECISION);
+		SketchCuantiles manana = new SketchCuantiles(PRECISION);
+		SketchCuantiles tarde = new SketchCuantiles(PRECISION);
+		for (int i = 0; i < 5000; i++) {
+			double corto = 30 + random.nextDouble() * 60;
+			double largo = 600 + random.nextDouble() * 1200;
+			todo.agregar(corto);
+			todo.agregar(largo);
+			manana.agregar(corto);
+			tarde.agregar(largo);
+		}
+		manana.agregar(0);
+		todo.agregar(0);
+
+		SketchCuantiles fusionado = manana.copia();
+		fusionado.fusionar(tarde);
+		assertEquals(todo.getTotal(), fusionado.getTotal());
+		assertArrayEquals(todo.codificar(), fusionado.codificar());
+		// La copia no comparte cubetas con el original
+		assertEquals(5001, manana.getTotal());
+	}
+
+	@Test
+	void noSeFusionanPrecisionesDistintas() {
+		SketchCuantiles fino = new SketchCuantiles(0.01);
+		SketchCuantiles grueso = new SketchCuantiles(0.05);
+		grueso.agregar(10);
+		assertThrows(IllegalArgumentException.class, () -> fino.fusionar(grueso));
+	}
+
+	@Test
+	void codificarYDecodificarDevuelveLoMismo() {
+		SketchCuantiles sketch = new SketchCuantiles(PRECISION);
+		// Valores menores que 1 dan cubetas negativas (desplazamiento en zigzag)
+		sketch.agregar(0.25);
+		sketch.agregar(-3);
+		for (int i = 0; i < 300; i++) {
+			sketch.agregar(1 + i * 17.5);
+		}
+		// Un conteo que necesita varios bytes de varint
+		for (int i = 0; i < 70_000; i++) {
+			sketch.agregar(120);
+		}
+
+		SketchCuantiles leido = SketchCuantiles.decodificar(sketch.codificar(), PRECISION);
+		assertEquals(sketch.getTotal(), leido.getTotal());
+		assertArrayEquals(sketch.codificar(), leido.codificar());
+		for (double q : new double[]{0, 0.001, 0.25, 0.5, 0.75, 1}) {
+			assertEquals(sketch.cuantil(q), leido.cuantil(q), 0.0);
+		}
+	}
+
+	@Test
+	void vacioDaNaN() {
+		SketchCuantiles sketch = SketchCuantiles.decodificar(new SketchCuantiles(PRECISION).codificar(), PRECISION);
+		assertEquals(0, sketch.getTotal());
+		assertTrue(Double.isNaN(sketch.cuantil(0.5)));
+	}
+}
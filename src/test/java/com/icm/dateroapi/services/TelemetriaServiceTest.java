@@ -0,0 +1,201 @@
+package com.icm.dateroapi.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.icm.dateroapi.config.MQTT.MqttSubscriber;
+import com.icm.dateroapi.dto.AsignacionBus;
+import com.icm.dateroapi.dto.PosicionBus;
+import com.icm.dateroapi.models.ConteoBoletosModel;
+import org.eclipse.paho.client.mqttv3.IMqttClient;
+import org.eclipse.paho.client.mqttv3.IMqttMessageListener;
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.MqttTopic;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// Publica por un broker en memoria en lugar de Mosquitto: suscripcion con comodines, cola y lote
+class TelemetriaServiceTest {
+
+	private final List<PosicionBus> posiciones = new CopyOnWriteArrayList<>();
+	private final List<ConteoBoletosModel> boletos = new CopyOnWriteArrayList<>();
+	private final Map<String, IMqttMessageListener> suscripciones = new ConcurrentHashMap<>();
+	private MqttCallbackExtended callback;
+	private MqttSubscriber subscriber;
+	private TelemetriaService telemetria;
+
+	@BeforeEach
+	void iniciar() throws Exception {
+		BusesService buses = new BusesService() {
+			@Override
+			public PosicionBus actualizarPosicion(Long id, double latitud, double longitud, long fecha) {
+				if (id == 13L) {
+					throw new IllegalStateException("falla de prueba");
+				}
+				PosicionBus posicion = new PosicionBus(id, latitud, longitud, fecha);
+				posiciones.add(posicion);
+				return posicion;
+			}
+		};
+		ConteoBoletosService conteos = new ConteoBoletosService() {
+			@Override
+			public ConteoBoletosModel aumentarBoleto(ConteoBoletosModel conteo) {
+				boletos.add(conteo);
+				return conteo;
+			}
+		};
+		AsignacionBusService asignaciones = new AsignacionBusService() {
+			@Override
+			public AsignacionBus getAsignacion(Long busId) {
+				// Los buses 1-99 son de la empresa 7
+				return busId < 100 ? new AsignacionBus(busId, 7L, 1L) : null;
+			}
+		};
+
+		telemetria = new TelemetriaService();
+		ReflectionTestUtils.setField(telemetria, "busesService", buses);
+		ReflectionTestUtils.setField(telemetria, "conteoBoletosService", conteos);
+		ReflectionTestUtils.setField(telemetria, "asignacionBusService", asignaciones);
+		ReflectionTestUtils.setField(telemetria, "posicionBusService", new PosicionBusService());
+		ReflectionTestUtils.setField(telemetria, "objectMapper", new ObjectMapper());
+		ReflectionTestUtils.setField(telemetria, "prefijo", "datero");
+		ReflectionTestUtils.setField(telemetria, "capacidad", 100);
+		ReflectionTestUtils.setField(telemetria, "tamanioLote", 50);
+		ReflectionTestUtils.setField(telemetria, "esperaMs", 50L);
+		telemetria.iniciar();
+
+		subscriber = new MqttSubscriber();
+		ReflectionTestUtils.setField(subscriber, "mqttClient", broker());
+		ReflectionTestUtils.setField(subscriber, "telemetriaService", telemetria);
+		subscriber.subscribeTelemetria();
+	}
+
+	@AfterEach
+	void detener() throws Exception {
+		subscriber.detener();
+		telemetria.detener();
+	}
+
+	@Test
+	void entregaPosicionesYBoletosSuscritosConComodines() throws Exception {
+		publicar("datero/7/5/posicion", "{\"latitud\":-12.05,\"longitud\":-77.04,\"fecha\":1000}");
+		publicar("datero/7/5/boleto", "{\"boletoId\":3,\"totalAcumulado\":1.5}");
+		publicar("otro/7/5/posicion", "{\"latitud\":1,\"longitud\":1}");
+
+		esperar(2);
+		assertEquals(1, posiciones.size());
+		assertEquals(-12.05, posiciones.get(0).getLatitud());
+		assertEquals(1, boletos.size());
+		assertEquals(3L, boletos.get(0).getBoletosModel().getId());
+	}
+
+	@Test
+	void rechazaBusDeOtraEmpresaOInexistente() throws Exception {
+		publicar("datero/8/5/posicion", "{\"latitud\":1,\"longitud\":1}");
+		publicar("datero/7/500/posicion", "{\"latitud\":1,\"longitud\":1}");
+		publicar("datero/7/6/posicion", "{\"latitud\":2,\"longitud\":2}");
+
+		esperar(1);
+		assertEquals(1, posiciones.size());
+		assertEquals(6L, posiciones.get(0).getBusId());
+		assertEquals(2L, telemetria.getMetricas().get("rechazados"));
+	}
+
+	@Test
+	void unMensajeQueFallaNoDescartaElRestoDelLote() throws Exception {
+		publicar("datero/7/13/posicion", "{\"latitud\":1,\"longitud\":1}");
+		publicar("datero/7/14/posicion", "{\"latitud\":1,\"longitud\":1}");
+		publicar("datero/7/14/boleto", "{\"boletoId\":3}");
+		publicar("datero/7/15/posicion", "no es json");
+
+		esperar(2);
+		Map<String, Object> metricas = telemetria.getMetricas();
+		assertEquals(1, posiciones.size());
+		assertEquals(1, boletos.size());
+		assertEquals(1L, metricas.get("errores"));
+		assertEquals(1L, metricas.get("invalidos"));
+	}
+
+	@Test
+	void alReconectarVuelveASuscribirse() throws Exception {
+		assertEquals(true, telemetria.getMetricas().get("conectado"));
+
+		// El broker se reinicia sin la sesion guardada
+		callback.connectionLost(new MqttException(MqttException.REASON_CODE_CONNECTION_LOST));
+		suscripciones.clear();
+		assertEquals(false, telemetria.getMetricas().get("conectado"));
+		assertEquals(1L, telemetria.getMetricas().get("desconexiones"));
+
+		callback.connectComplete(true, "tcp://localhost:1883");
+		long limite = System.currentTimeMillis() + 5000;
+		while (suscripciones.size() < 2 && System.currentTimeMillis() < limite) {
+			Thread.sleep(10);
+		}
+		publicar("datero/7/5/posicion", "{\"latitud\":-12.05,\"longitud\":-77.04,\"fecha\":1000}");
+		esperar(1);
+		Map<String, Object> metricas = telemetria.getMetricas();
+		assertEquals(1, posiciones.size());
+		assertEquals(true, metricas.get("conectado"));
+		assertEquals(1L, metricas.get("reconexiones"));
+		assertTrue(suscripciones.containsKey("datero/+/+/boleto"));
+	}
+
+	private IMqttClient broker() {
+		return (IMqttClient) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{IMqttClient.class},
+				(proxy, metodo, args) -> {
+					if (metodo.getName().equals("subscribe") && args.length == 3) {
+						suscripciones.put((String) args[0], (IMqttMessageListener) args[2]);
+						return null;
+					}
+					if (metodo.getName().equals("setCallback")) {
+						callback = (MqttCallbackExtended) args[0];
+						return null;
+					}
+					if (metodo.getName().equals("isConnected")) {
+						return true;
+					}
+					throw new UnsupportedOperationException(metodo.getName());
+				});
+	}
+
+	private void publicar(String topico, String payload) throws Exception {
+		MqttMessage mensaje = new MqttMessage(payload.getBytes(StandardCharsets.UTF_8));
+		List<IMqttMessageListener> destinos = new ArrayList<>();
+		suscripciones.forEach((filtro, listener) -> {
+			if (MqttTopic.isMatched(filtro, topico)) {
+				destinos.add(listener);
+			}
+		});
+		for (IMqttMessageListener listener : destinos) {
+			listener.messageArrived(topico, mensaje);
+		}
+	}
+
+	// Hasta que el consumidor haya entregado (o fallado) la cantidad indicada
+	private void esperar(long entregas) throws InterruptedException {
+		long limite = System.currentTimeMillis() + 5000;
+		while (System.currentTimeMillis() < limite) {
+			Map<String, Object> metricas = telemetria.getMetricas();
+			if ((long) metricas.get("procesados") + (long) metricas.get("errores") >= entregas) {
+				Thread.sleep(100);
+				return;
+			}
+			Thread.sleep(10);
+		}
+		fail("el consumidor no entrego a tiempo");
+	}
+}